@@ -2,6 +2,7 @@ package com.instagramclone.backend;
 
 import com.instagramclone.backend.message.MessageAttachmentProperties;
 import com.instagramclone.backend.storage.StorageProperties;
+import com.instagramclone.backend.timeline.TimelineProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -9,7 +10,7 @@ import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
-@EnableConfigurationProperties({StorageProperties.class, MessageAttachmentProperties.class})
+@EnableConfigurationProperties({StorageProperties.class, MessageAttachmentProperties.class, TimelineProperties.class})
 @EnableScheduling
 @EnableAsync
 public class BackendApplication {
@@ -2,8 +2,6 @@ package com.instagramclone.backend.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.time.Duration;
-import java.util.HashMap;
-import java.util.Map;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -25,12 +23,8 @@ public class CacheConfig {
                 .disableCachingNullValues()
                 .entryTtl(Duration.ofMinutes(5));
 
-        Map<String, RedisCacheConfiguration> cacheConfigs = new HashMap<>();
-        cacheConfigs.put("notificationUnreadCount", baseConfig.entryTtl(Duration.ofSeconds(30)));
-
         return RedisCacheManager.builder(connectionFactory)
                 .cacheDefaults(baseConfig)
-                .withInitialCacheConfigurations(cacheConfigs)
                 .build();
     }
 }
@@ -0,0 +1,20 @@
+package com.instagramclone.backend.config;
+
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+@Configuration
+public class SchedulingConfig {
+
+    /**
+     * Runs every {@code @Scheduled} job, sized by {@code spring.task.scheduling.pool.size}. Spring Boot skips
+     * its own scheduler once the STOMP broker has registered one, which would leave the jobs on the broker's
+     * heartbeat scheduler; {@code @Scheduled} picks the bean named {@code taskScheduler} among several.
+     */
+    @Bean(name = "taskScheduler")
+    public ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+}
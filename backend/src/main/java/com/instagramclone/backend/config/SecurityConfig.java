@@ -1,6 +1,7 @@
 package com.instagramclone.backend.config;
 
 import com.instagramclone.backend.jwt.JwtAuthenticationFilter;
+import com.instagramclone.backend.pagination.CursorPage;
 import com.instagramclone.backend.user.UserService;
 import java.util.List;
 import org.springframework.context.annotation.Bean;
@@ -100,6 +101,7 @@ public class SecurityConfig {
         configuration.addAllowedOriginPattern("http://127.0.0.1:*");
         configuration.setAllowedMethods(List.of("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(List.of("Authorization", "Content-Type", "Accept"));
+        configuration.setExposedHeaders(List.of(CursorPage.NEXT_CURSOR_HEADER));
         configuration.setAllowCredentials(true);
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
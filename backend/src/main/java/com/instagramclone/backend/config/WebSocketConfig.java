@@ -1,7 +1,13 @@
 package com.instagramclone.backend.config;
 
+import com.instagramclone.backend.realtime.ClusterUserDestinationRelay;
+import com.instagramclone.backend.realtime.UserSessionRegistry;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
@@ -14,14 +20,17 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     private final WebSocketAuthChannelInterceptor authChannelInterceptor;
     private final WebSocketHandshakeHandler webSocketHandshakeHandler;
+    private final ClusterUserDestinationRelay clusterRelay;
     private final String frontendBaseUrl;
 
     public WebSocketConfig(
             WebSocketAuthChannelInterceptor authChannelInterceptor,
             WebSocketHandshakeHandler webSocketHandshakeHandler,
+            ClusterUserDestinationRelay clusterRelay,
             @Value("${frontend.base-url:http://localhost:4200}") String frontendBaseUrl) {
         this.authChannelInterceptor = authChannelInterceptor;
         this.webSocketHandshakeHandler = webSocketHandshakeHandler;
+        this.clusterRelay = clusterRelay;
         this.frontendBaseUrl = frontendBaseUrl;
     }
 
@@ -30,6 +39,8 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.enableSimpleBroker("/queue", "/topic");
         registry.setApplicationDestinationPrefixes("/app");
         registry.setUserDestinationPrefix("/user");
+        // User destinations are copied to the other nodes holding sessions for the target user.
+        registry.configureBrokerChannel().interceptors(clusterRelay);
     }
 
     @Override
@@ -48,4 +59,17 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     public void configureClientInboundChannel(ChannelRegistration registration) {
         registration.interceptors(authChannelInterceptor);
     }
+
+    /**
+     * Receives messages relayed to this node by {@link ClusterUserDestinationRelay} on other nodes.
+     */
+    @Bean
+    public RedisMessageListenerContainer realtimeRelayListenerContainer(
+            RedisConnectionFactory connectionFactory,
+            UserSessionRegistry sessionRegistry) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(clusterRelay, new ChannelTopic(sessionRegistry.channel()));
+        return container;
+    }
 }
@@ -0,0 +1,131 @@
+package com.instagramclone.backend.message;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * One stored copy of attachment content, keyed by its SHA-256. Attachments that share the content point at
+ * the same files through {@link MessageAttachment#getBlobId()}. Rows are created, completed and reference
+ * counted only by the atomic statements in {@link AttachmentBlobRepository}.
+ */
+@Entity
+@Table(name = "attachment_blobs")
+public class AttachmentBlob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 128, unique = true, updatable = false)
+    private String checksum;
+
+    @Column(nullable = false, updatable = false)
+    private long sizeBytes;
+
+    @Column(nullable = false, length = 150, updatable = false)
+    private String mimeType;
+
+    @Column(nullable = false, length = 400, updatable = false)
+    private String storageKey;
+
+    @Column(length = 400, updatable = false)
+    private String thumbnailKey;
+
+    @Column(updatable = false)
+    private Integer width;
+
+    @Column(updatable = false)
+    private Integer height;
+
+    // READY once scanned clean (and thumbnailed, for images), QUARANTINED for content found infected, and
+    // UPLOADING while an image is still waiting for its thumbnail.
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20, updatable = false)
+    private AttachmentStatus status;
+
+    @Column(nullable = false, updatable = false)
+    private int refCount;
+
+    @Column(updatable = false)
+    private LocalDateTime createdAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public void setSizeBytes(long sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public void setMimeType(String mimeType) {
+        this.mimeType = mimeType;
+    }
+
+    public String getStorageKey() {
+        return storageKey;
+    }
+
+    public void setStorageKey(String storageKey) {
+        this.storageKey = storageKey;
+    }
+
+    public String getThumbnailKey() {
+        return thumbnailKey;
+    }
+
+    public void setThumbnailKey(String thumbnailKey) {
+        this.thumbnailKey = thumbnailKey;
+    }
+
+    public Integer getWidth() {
+        return width;
+    }
+
+    public void setWidth(Integer width) {
+        this.width = width;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+
+    public void setHeight(Integer height) {
+        this.height = height;
+    }
+
+    public AttachmentStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(AttachmentStatus status) {
+        this.status = status;
+    }
+
+    public int getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(int refCount) {
+        this.refCount = refCount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,71 @@
+package com.instagramclone.backend.message;
+
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface AttachmentBlobRepository extends JpaRepository<AttachmentBlob, Long> {
+    Optional<AttachmentBlob> findByChecksum(String checksum);
+
+    /**
+     * Records content under its checksum unless another attachment already did; returns 0 in that case.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO attachment_blobs (
+                checksum, size_bytes, mime_type, storage_key, thumbnail_key, width, height, status, ref_count, created_at
+            )
+            VALUES (
+                :checksum, :sizeBytes, :mimeType, :storageKey, :thumbnailKey, :width, :height, :status, :refCount, now()
+            )
+            ON CONFLICT (checksum) DO NOTHING
+            """, nativeQuery = true)
+    int insertIfAbsent(
+            @Param("checksum") String checksum,
+            @Param("sizeBytes") long sizeBytes,
+            @Param("mimeType") String mimeType,
+            @Param("storageKey") String storageKey,
+            @Param("thumbnailKey") String thumbnailKey,
+            @Param("width") Integer width,
+            @Param("height") Integer height,
+            @Param("status") String status,
+            @Param("refCount") int refCount
+    );
+
+    @Modifying
+    @Query(value = """
+            UPDATE attachment_blobs SET
+                status = 'READY',
+                thumbnail_key = :thumbnailKey,
+                width = :width,
+                height = :height
+            WHERE id = :id AND status = 'UPLOADING'
+            """, nativeQuery = true)
+    int markReady(
+            @Param("id") Long id,
+            @Param("thumbnailKey") String thumbnailKey,
+            @Param("width") Integer width,
+            @Param("height") Integer height
+    );
+
+    /**
+     * Takes a reference on a ready blob. Fails once the count has dropped to zero, because the blob is then
+     * about to be deleted together with its files.
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE attachment_blobs SET ref_count = ref_count + 1
+            WHERE id = :id AND status = 'READY' AND ref_count > 0
+            """, nativeQuery = true)
+    int acquire(@Param("id") Long id);
+
+    @Modifying
+    @Query(value = "UPDATE attachment_blobs SET ref_count = ref_count - 1 WHERE id = :id AND ref_count > 0", nativeQuery = true)
+    int release(@Param("id") Long id);
+
+    @Modifying
+    @Query(value = "DELETE FROM attachment_blobs WHERE id = :id AND ref_count <= 0", nativeQuery = true)
+    int deleteIfUnreferenced(@Param("id") Long id);
+}
@@ -0,0 +1,147 @@
+package com.instagramclone.backend.message;
+
+import com.instagramclone.backend.storage.AttachmentStorageService;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Content-addressed store on top of the attachment files. The first attachment with a given SHA-256 to pass
+ * the virus scan registers its file as a blob; later uploads of the same bytes share that file, its scan
+ * verdict and its thumbnail instead of being processed again. Each sharing attachment holds one reference
+ * and the files are deleted when the last one is released. Attachments without a blob (uploaded before
+ * blobs existed, or that lost a registration race) keep owning their files exclusively.
+ */
+@Service
+public class AttachmentBlobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttachmentBlobService.class);
+
+    private final AttachmentBlobRepository blobRepository;
+    private final AttachmentStorageService storageService;
+
+    public AttachmentBlobService(AttachmentBlobRepository blobRepository, AttachmentStorageService storageService) {
+        this.blobRepository = blobRepository;
+        this.storageService = storageService;
+    }
+
+    public Optional<AttachmentBlob> findByContent(String checksum, long sizeBytes) {
+        if (checksum == null || checksum.isBlank()) {
+            return Optional.empty();
+        }
+        return blobRepository.findByChecksum(checksum.toLowerCase())
+                .filter(blob -> blob.getSizeBytes() == sizeBytes);
+    }
+
+    /**
+     * Points the attachment at the blob's files and processing results. Its own copy of the content is
+     * deleted once the transaction commits. Returns false when the blob is no longer available.
+     */
+    public boolean share(AttachmentBlob blob, MessageAttachment attachment) {
+        if (blobRepository.acquire(blob.getId()) == 0) {
+            return false;
+        }
+        String ownStorageKey = attachment.getStorageKey();
+        attachment.setBlobId(blob.getId());
+        attachment.setStorageKey(blob.getStorageKey());
+        attachment.setThumbnailKey(blob.getThumbnailKey());
+        attachment.setMimeType(blob.getMimeType());
+        attachment.setWidth(blob.getWidth());
+        attachment.setHeight(blob.getHeight());
+        if (!blob.getStorageKey().equals(ownStorageKey)) {
+            deleteAfterCommit(ownStorageKey, null);
+        }
+        return true;
+    }
+
+    /**
+     * Records the scan verdict for the attachment's content. A clean attachment becomes the blob's first
+     * reference; images are registered as {@link AttachmentStatus#UPLOADING} until their thumbnail exists.
+     * Infected content is remembered without a reference so repeat uploads can be quarantined right away.
+     */
+    public void register(MessageAttachment attachment, AttachmentStatus verdict) {
+        if (attachment.getBlobId() != null || attachment.getChecksum() == null || attachment.getChecksum().isBlank()) {
+            return;
+        }
+        String checksum = attachment.getChecksum().toLowerCase();
+        boolean referenced = verdict != AttachmentStatus.QUARANTINED;
+        int inserted = blobRepository.insertIfAbsent(
+                checksum,
+                attachment.getSizeBytes(),
+                attachment.getMimeType(),
+                attachment.getStorageKey(),
+                attachment.getThumbnailKey(),
+                attachment.getWidth(),
+                attachment.getHeight(),
+                verdict.name(),
+                referenced ? 1 : 0
+        );
+        if (inserted == 0 || !referenced) {
+            return;
+        }
+        blobRepository.findByChecksum(checksum).ifPresent(blob -> attachment.setBlobId(blob.getId()));
+    }
+
+    /**
+     * Makes an image blob shareable once its thumbnail stage has run.
+     */
+    public void completeThumbnail(MessageAttachment attachment) {
+        if (attachment.getBlobId() == null) {
+            return;
+        }
+        blobRepository.markReady(
+                attachment.getBlobId(),
+                attachment.getThumbnailKey(),
+                attachment.getWidth(),
+                attachment.getHeight()
+        );
+    }
+
+    /**
+     * Drops the attachment's claim on its content: files it owns alone are deleted now, shared files once
+     * the last reference is gone and the transaction has committed.
+     */
+    public void release(MessageAttachment attachment) {
+        Long blobId = attachment.getBlobId();
+        if (blobId == null) {
+            deleteFiles(attachment.getStorageKey(), attachment.getThumbnailKey());
+            return;
+        }
+        attachment.setBlobId(null);
+        blobRepository.release(blobId);
+        if (blobRepository.deleteIfUnreferenced(blobId) > 0) {
+            deleteAfterCommit(attachment.getStorageKey(), attachment.getThumbnailKey());
+        }
+    }
+
+    private void deleteAfterCommit(String storageKey, String thumbnailKey) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deleteQuietly(storageKey, thumbnailKey);
+                }
+            });
+        } else {
+            deleteQuietly(storageKey, thumbnailKey);
+        }
+    }
+
+    private void deleteQuietly(String storageKey, String thumbnailKey) {
+        try {
+            deleteFiles(storageKey, thumbnailKey);
+        } catch (RuntimeException ex) {
+            logger.warn("Failed to delete attachment content {}: {}", storageKey, ex.getMessage());
+        }
+    }
+
+    private void deleteFiles(String storageKey, String thumbnailKey) {
+        storageService.deletePermanent(storageKey);
+        if (thumbnailKey != null) {
+            storageService.deleteThumbnail(thumbnailKey);
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package com.instagramclone.backend.message;
 
-import com.instagramclone.backend.storage.AttachmentStorageService;
 import java.time.LocalDateTime;
 import java.util.List;
 import org.slf4j.Logger;
@@ -15,18 +14,18 @@ public class AttachmentExpiryService {
     private static final Logger logger = LoggerFactory.getLogger(AttachmentExpiryService.class);
 
     private final MessageAttachmentRepository attachmentRepository;
-    private final AttachmentStorageService storageService;
+    private final AttachmentBlobService blobService;
     private final MessageService messageService;
     private final MessageAttachmentProperties properties;
 
     public AttachmentExpiryService(
             MessageAttachmentRepository attachmentRepository,
-            AttachmentStorageService storageService,
+            AttachmentBlobService blobService,
             MessageService messageService,
             MessageAttachmentProperties properties
     ) {
         this.attachmentRepository = attachmentRepository;
-        this.storageService = storageService;
+        this.blobService = blobService;
         this.messageService = messageService;
         this.properties = properties;
     }
@@ -46,10 +45,8 @@ public class AttachmentExpiryService {
             attachment.setStatus(AttachmentStatus.EXPIRED);
             attachmentRepository.save(attachment);
             try {
-                storageService.deletePermanent(attachment.getStorageKey());
-                if (attachment.getThumbnailKey() != null) {
-                    storageService.deleteThumbnail(attachment.getThumbnailKey());
-                }
+                // Shared content is only deleted with its last reference.
+                blobService.release(attachment);
             } catch (RuntimeException ex) {
                 logger.warn("Failed to delete expired attachment {}: {}", attachment.getId(), ex.getMessage());
             }
@@ -0,0 +1,350 @@
+package com.instagramclone.backend.message;
+
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Runs finalized attachments through a virus scan stage and, for images, a thumbnail stage, each on its own
+ * fixed-size pool. Waiting work is ordered images first, then documents, then videos, smallest first within
+ * a type. The scan queue is bounded: finalize checks {@link #hasCapacity()} and pushes back on the client
+ * when it is full, and attachments that still miss their slot (or were queued on a node that went away) are
+ * claimed and picked up again by {@link #resubmitStalled()} on one node of the cluster. Each recovery run also
+ * renews the claim on everything still queued or running here, so a video waiting behind a stream of images
+ * is never mistaken for a stall elsewhere; the recovery interval must stay below the stall timeout. A full
+ * thumbnail queue makes the scan worker thumbnail the image itself, which slows the scan stage down instead of
+ * dropping work.
+ */
+@Component
+public class AttachmentProcessingPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttachmentProcessingPipeline.class);
+
+    private final AttachmentProcessingService processingService;
+    private final MessageAttachmentRepository attachmentRepository;
+    private final AttachmentUploadSessionRepository uploadSessionRepository;
+    private final Stage scanStage;
+    private final Stage thumbnailStage;
+    private final long stalledAfterSeconds;
+    private final AtomicLong sequence = new AtomicLong();
+    // Attachments between submission and their last stage; keeps recovery from queueing them twice.
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    public AttachmentProcessingPipeline(
+            AttachmentProcessingService processingService,
+            MessageAttachmentRepository attachmentRepository,
+            AttachmentUploadSessionRepository uploadSessionRepository,
+            @Value("${message.attachments.processing.scan-concurrency:2}") int scanConcurrency,
+            @Value("${message.attachments.processing.thumbnail-concurrency:2}") int thumbnailConcurrency,
+            @Value("${message.attachments.processing.queue-capacity:200}") int queueCapacity,
+            @Value("${message.attachments.processing.stalled-after-seconds:300}") long stalledAfterSeconds
+    ) {
+        this.processingService = processingService;
+        this.attachmentRepository = attachmentRepository;
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.scanStage = new Stage("scan", scanConcurrency, queueCapacity);
+        this.thumbnailStage = new Stage("thumbnail", thumbnailConcurrency, queueCapacity);
+        this.stalledAfterSeconds = Math.max(1, stalledAfterSeconds);
+    }
+
+    public boolean hasCapacity() {
+        return scanStage.remainingCapacity() > 0;
+    }
+
+    /**
+     * Queues the attachment once the surrounding transaction commits, so workers never read it early.
+     */
+    public void submit(MessageAttachment attachment) {
+        Long attachmentId = attachment.getId();
+        AttachmentType type = attachment.getType();
+        long sizeBytes = attachment.getSizeBytes();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(attachmentId, type, sizeBytes);
+                }
+            });
+        } else {
+            enqueue(attachmentId, type, sizeBytes);
+        }
+    }
+
+    boolean enqueue(Long attachmentId, AttachmentType type, long sizeBytes) {
+        if (attachmentId == null || !inFlight.add(attachmentId)) {
+            return false;
+        }
+        int rank = rankOf(type);
+        boolean accepted = scanStage.offer(rank, sizeBytes, () -> scan(attachmentId, rank, sizeBytes));
+        if (!accepted) {
+            inFlight.remove(attachmentId);
+            logger.warn("Attachment processing queue full, attachment {} left for recovery", attachmentId);
+        }
+        return accepted;
+    }
+
+    public List<StageStats> stats() {
+        return List.of(scanStage.stats(), thumbnailStage.stats());
+    }
+
+    @Scheduled(fixedDelayString = "${message.attachments.processing.recovery-ms:60000}")
+    public void resubmitStalled() {
+        renewClaims();
+        int room = scanStage.remainingCapacity();
+        if (room <= 0) {
+            return;
+        }
+        // Every node runs recovery, and inFlight only covers this node, so rows are claimed in the database first.
+        List<MessageAttachment> stalled;
+        try {
+            List<Long> claimed = uploadSessionRepository.claimStalled(
+                    LocalDateTime.now().minusSeconds(stalledAfterSeconds),
+                    room
+            );
+            stalled = claimed.isEmpty() ? List.of() : attachmentRepository.findAllById(claimed);
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to claim stalled attachments: {}", ex.getMessage());
+            return;
+        }
+        int resubmitted = 0;
+        for (MessageAttachment attachment : stalled) {
+            if (enqueue(attachment.getId(), attachment.getType(), attachment.getSizeBytes())) {
+                resubmitted++;
+            }
+        }
+        if (resubmitted > 0) {
+            logger.info("Resubmitted {} stalled attachments for processing", resubmitted);
+        }
+    }
+
+    private void renewClaims() {
+        List<Long> held = List.copyOf(inFlight);
+        if (held.isEmpty()) {
+            return;
+        }
+        try {
+            uploadSessionRepository.renewClaims(held);
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to renew claims on {} queued attachments: {}", held.size(), ex.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${message.attachments.processing.stats-log-ms:60000}")
+    public void logStats() {
+        for (Stage stage : List.of(scanStage, thumbnailStage)) {
+            StageStats stats = stage.stats();
+            long completedSinceLastLog = stage.completedSinceLastLog();
+            if (completedSinceLastLog == 0 && stats.queued() == 0 && stats.active() == 0) {
+                continue;
+            }
+            logger.info(
+                    "Attachment {} stage: {} completed since last report, {} queued, {} active, {} rejected, "
+                            + "avg {} ms (max {} ms), avg wait {} ms",
+                    stats.stage(),
+                    completedSinceLastLog,
+                    stats.queued(),
+                    stats.active(),
+                    stats.rejected(),
+                    stats.averageMillis(),
+                    stats.maxMillis(),
+                    stats.averageWaitMillis()
+            );
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Queued attachments stay uploading and are resubmitted by whichever node runs recovery next.
+        scanStage.shutdown();
+        thumbnailStage.shutdown();
+    }
+
+    private void scan(Long attachmentId, int rank, long sizeBytes) {
+        boolean needsThumbnail = false;
+        try {
+            needsThumbnail = processingService.scanAttachment(attachmentId);
+        } catch (RuntimeException ex) {
+            logger.warn("Attachment scan failed for {}: {}", attachmentId, ex.getMessage());
+        }
+        if (!needsThumbnail) {
+            inFlight.remove(attachmentId);
+            return;
+        }
+        thumbnailStage.offerOrRun(rank, sizeBytes, () -> thumbnail(attachmentId));
+    }
+
+    private void thumbnail(Long attachmentId) {
+        try {
+            processingService.thumbnailAttachment(attachmentId);
+        } catch (RuntimeException ex) {
+            logger.warn("Attachment thumbnail stage failed for {}: {}", attachmentId, ex.getMessage());
+        } finally {
+            inFlight.remove(attachmentId);
+        }
+    }
+
+    private static int rankOf(AttachmentType type) {
+        if (type == null) {
+            return 1;
+        }
+        return switch (type) {
+            case IMAGE -> 0;
+            case DOCUMENT -> 1;
+            case VIDEO -> 2;
+        };
+    }
+
+    public record StageStats(
+            String stage,
+            int queued,
+            int active,
+            long completed,
+            long rejected,
+            long averageMillis,
+            long maxMillis,
+            long averageWaitMillis
+    ) {
+    }
+
+    /**
+     * One processing stage: a fixed pool draining a priority queue whose size is capped by a counter, since
+     * {@link PriorityBlockingQueue} itself is unbounded.
+     */
+    private final class Stage {
+        private final String name;
+        private final int capacity;
+        private final ThreadPoolExecutor executor;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLong waitNanos = new AtomicLong();
+        private final AtomicLong lastReportedCompleted = new AtomicLong();
+
+        private Stage(String name, int concurrency, int capacity) {
+            this.name = name;
+            this.capacity = Math.max(1, capacity);
+            int threads = Math.max(1, concurrency);
+            AtomicInteger threadNumber = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(
+                    threads,
+                    threads,
+                    0L,
+                    TimeUnit.MILLISECONDS,
+                    new PriorityBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "attachment-" + name + "-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+            );
+        }
+
+        int remainingCapacity() {
+            return capacity - queued.get();
+        }
+
+        boolean offer(int rank, long sizeBytes, Runnable work) {
+            int current;
+            do {
+                current = queued.get();
+                if (current >= capacity) {
+                    rejected.incrementAndGet();
+                    return false;
+                }
+            } while (!queued.compareAndSet(current, current + 1));
+            executor.execute(new StageTask(rank, sizeBytes, sequence.incrementAndGet(), work));
+            return true;
+        }
+
+        void offerOrRun(int rank, long sizeBytes, Runnable work) {
+            if (!offer(rank, sizeBytes, work)) {
+                queued.incrementAndGet();
+                new StageTask(rank, sizeBytes, sequence.incrementAndGet(), work).run();
+            }
+        }
+
+        long completedSinceLastLog() {
+            long total = completed.get();
+            return total - lastReportedCompleted.getAndSet(total);
+        }
+
+        StageStats stats() {
+            long done = completed.get();
+            return new StageStats(
+                    name,
+                    queued.get(),
+                    active.get(),
+                    done,
+                    rejected.get(),
+                    done == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(busyNanos.get() / done),
+                    TimeUnit.NANOSECONDS.toMillis(maxNanos.get()),
+                    done == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(waitNanos.get() / done)
+            );
+        }
+
+        void shutdown() {
+            executor.shutdownNow();
+        }
+
+        private final class StageTask implements Runnable, Comparable<StageTask> {
+            private final int rank;
+            private final long sizeBytes;
+            private final long order;
+            private final long queuedAt = System.nanoTime();
+            private final Runnable work;
+
+            private StageTask(int rank, long sizeBytes, long order, Runnable work) {
+                this.rank = rank;
+                this.sizeBytes = sizeBytes;
+                this.order = order;
+                this.work = work;
+            }
+
+            @Override
+            public void run() {
+                long startedAt = System.nanoTime();
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                waitNanos.addAndGet(startedAt - queuedAt);
+                try {
+                    work.run();
+                } finally {
+                    long elapsed = System.nanoTime() - startedAt;
+                    busyNanos.addAndGet(elapsed);
+                    maxNanos.accumulateAndGet(elapsed, Math::max);
+                    completed.incrementAndGet();
+                    active.decrementAndGet();
+                }
+            }
+
+            @Override
+            public int compareTo(StageTask other) {
+                if (rank != other.rank) {
+                    return Integer.compare(rank, other.rank);
+                }
+                if (sizeBytes != other.sizeBytes) {
+                    return Long.compare(sizeBytes, other.sizeBytes);
+                }
+                return Long.compare(order, other.order);
+            }
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.instagramclone.backend.message;
 
 import com.instagramclone.backend.storage.AttachmentStorageService;
+import com.instagramclone.backend.storage.ImageDerivativeService;
+import com.instagramclone.backend.storage.ImageInspector;
 import com.instagramclone.backend.storage.VirusScanResult;
 import com.instagramclone.backend.storage.VirusScanService;
+import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -11,7 +14,6 @@ import java.nio.file.Path;
 import net.coobird.thumbnailator.Thumbnails;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -19,40 +21,51 @@ import org.springframework.transaction.annotation.Transactional;
 public class AttachmentProcessingService {
 
     private static final Logger logger = LoggerFactory.getLogger(AttachmentProcessingService.class);
+    private static final int THUMBNAIL_SIZE = 360;
 
     private final MessageAttachmentRepository attachmentRepository;
     private final AttachmentStorageService storageService;
     private final VirusScanService virusScanService;
     private final MessageService messageService;
+    private final AttachmentBlobService blobService;
+    private final ImageDerivativeService derivativeService;
 
     public AttachmentProcessingService(
             MessageAttachmentRepository attachmentRepository,
             AttachmentStorageService storageService,
             VirusScanService virusScanService,
-            MessageService messageService
+            MessageService messageService,
+            AttachmentBlobService blobService,
+            ImageDerivativeService derivativeService
     ) {
         this.attachmentRepository = attachmentRepository;
         this.storageService = storageService;
         this.virusScanService = virusScanService;
         this.messageService = messageService;
+        this.blobService = blobService;
+        this.derivativeService = derivativeService;
     }
 
-    @Async
+    /**
+     * Scan stage. Resolves expired, infected and unscannable attachments and marks everything else ready,
+     * except images, which stay uploading until the thumbnail stage has run; returns true for those.
+     * Clean and infected verdicts are recorded as a blob so repeat uploads of the content skip this stage.
+     */
     @Transactional
-    public void processAttachmentAsync(Long attachmentId) {
+    public boolean scanAttachment(Long attachmentId) {
         MessageAttachment attachment = attachmentRepository.findById(attachmentId).orElse(null);
         if (attachment == null) {
-            return;
+            return false;
         }
         if (attachment.getStatus() != AttachmentStatus.UPLOADING) {
-            return;
+            return false;
         }
         if (attachment.getExpiresAt() != null && attachment.getExpiresAt().isBefore(java.time.LocalDateTime.now())) {
             attachment.setStatus(AttachmentStatus.EXPIRED);
             attachmentRepository.save(attachment);
             storageService.deletePermanent(attachment.getStorageKey());
             safeNotifyMessageUpdate(attachment);
-            return;
+            return false;
         }
 
         Path filePath = storageService.resolvePermanentPath(attachment.getStorageKey());
@@ -63,56 +76,107 @@ public class AttachmentProcessingService {
                 attachment.setStatus(AttachmentStatus.QUARANTINED);
                 attachmentRepository.save(attachment);
                 storageService.moveToQuarantine(attachment.getStorageKey());
+                blobService.register(attachment, AttachmentStatus.QUARANTINED);
                 safeNotifyMessageUpdate(attachment);
-                return;
+                return false;
             }
             case FAILED -> {
                 attachment.setStatus(AttachmentStatus.FAILED);
                 attachmentRepository.save(attachment);
                 storageService.deletePermanent(attachment.getStorageKey());
                 safeNotifyMessageUpdate(attachment);
-                return;
+                return false;
             }
             case SKIPPED, CLEAN -> {
                 // continue
             }
         }
 
+        // Skipped scans carry no verdict worth reusing.
+        boolean scannedClean = scanResult.status() == VirusScanStatus.CLEAN;
         if (attachment.getType() == AttachmentType.IMAGE) {
+            if (scannedClean) {
+                blobService.register(attachment, AttachmentStatus.UPLOADING);
+                attachmentRepository.save(attachment);
+            }
+            return true;
+        }
+        attachment.setStatus(AttachmentStatus.READY);
+        if (scannedClean) {
+            blobService.register(attachment, AttachmentStatus.READY);
+        }
+        attachmentRepository.save(attachment);
+        safeNotifyMessageUpdate(attachment);
+        return false;
+    }
+
+    /**
+     * Thumbnail stage for scanned images: writes the chat thumbnail and the resized variants served for
+     * {@code ?w=}. Failures here do not hold the image back.
+     */
+    @Transactional
+    public void thumbnailAttachment(Long attachmentId) {
+        MessageAttachment attachment = attachmentRepository.findById(attachmentId).orElse(null);
+        if (attachment == null || attachment.getStatus() != AttachmentStatus.UPLOADING) {
+            return;
+        }
+        Path filePath = storageService.resolvePermanentPath(attachment.getStorageKey());
+        ImageInspector.ImageInfo info = null;
+        BufferedImage image = null;
+        try {
+            if (Files.exists(filePath)) {
+                info = ImageInspector.inspect(filePath);
+            }
+            if (info != null) {
+                // One decode, subsampled to what the largest output needs, feeds the thumbnail and all variants.
+                int decodeWidth = Math.max(THUMBNAIL_SIZE, derivativeService.widestFor(info.width()));
+                image = ImageInspector.decode(filePath, decodeWidth);
+            }
+        } catch (Exception ex) {
+            logger.warn("Image decode failed for attachment {}: {}", attachmentId, ex.getMessage());
+        }
+        if (image != null) {
             try {
-                ThumbnailResult thumbnailResult = generateThumbnail(filePath, attachment.getOriginalFilename());
-                if (thumbnailResult != null) {
-                    attachment.setThumbnailKey(thumbnailResult.thumbnailKey());
-                    attachment.setWidth(thumbnailResult.width());
-                    attachment.setHeight(thumbnailResult.height());
-                }
+                ThumbnailResult thumbnailResult = generateThumbnail(image, info, attachment.getOriginalFilename());
+                attachment.setThumbnailKey(thumbnailResult.thumbnailKey());
+                attachment.setWidth(thumbnailResult.width());
+                attachment.setHeight(thumbnailResult.height());
             } catch (Exception ex) {
                 logger.warn("Thumbnail generation failed for attachment {}: {}", attachmentId, ex.getMessage());
             }
+            try {
+                derivativeService.generate(filePath, image, info.width());
+            } catch (Exception ex) {
+                logger.warn("Image variants failed for attachment {}: {}", attachmentId, ex.getMessage());
+            }
         }
 
         attachment.setStatus(AttachmentStatus.READY);
         attachmentRepository.save(attachment);
+        blobService.completeThumbnail(attachment);
         safeNotifyMessageUpdate(attachment);
     }
 
-    private ThumbnailResult generateThumbnail(Path filePath, String originalFilename) throws IOException {
-        if (!Files.exists(filePath)) {
-            return null;
-        }
+    /**
+     * Fits the image into the thumbnail box. The output size comes from the original's dimensions, so the
+     * (possibly subsampled) input never decides it and the result does not have to be read back.
+     */
+    private ThumbnailResult generateThumbnail(BufferedImage image, ImageInspector.ImageInfo info, String originalFilename)
+            throws IOException {
+        double scale = Math.min((double) THUMBNAIL_SIZE / info.width(), (double) THUMBNAIL_SIZE / info.height());
+        int width = Math.max(1, (int) Math.round(info.width() * scale));
+        int height = Math.max(1, (int) Math.round(info.height() * scale));
         try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-            Thumbnails.of(filePath.toFile())
-                    .size(360, 360)
+            Thumbnails.of(image)
+                    .forceSize(width, height)
                     .outputQuality(0.85)
                     .outputFormat("jpg")
                     .toOutputStream(outputStream);
-            byte[] data = outputStream.toByteArray();
-            if (data.length == 0) {
-                return null;
-            }
-            String thumbnailKey = storageService.storeThumbnail(new ByteArrayInputStream(data), "thumb-" + originalFilename);
-            var bufferedImage = Thumbnails.of(new ByteArrayInputStream(data)).scale(1).asBufferedImage();
-            return new ThumbnailResult(thumbnailKey, bufferedImage.getWidth(), bufferedImage.getHeight());
+            String thumbnailKey = storageService.storeThumbnail(
+                    new ByteArrayInputStream(outputStream.toByteArray()),
+                    "thumb-" + originalFilename
+            );
+            return new ThumbnailResult(thumbnailKey, width, height);
         }
     }
 
@@ -1,55 +1,163 @@
 package com.instagramclone.backend.message;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.Key;
-import java.time.Instant;
-import java.util.Date;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.crypto.Mac;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
+/**
+ * Compact signed attachment tokens of the form {@code attachmentId.userId.expiresAt.signature}, where the
+ * signature is HMAC-SHA256 truncated to 128 bits. Expiry is rounded up to a bucket boundary, so every token
+ * minted for the same attachment and viewer within one bucket is identical and is signed only once.
+ * JWTs issued before the switch are still accepted until they expire.
+ */
 @Service
 public class AttachmentTokenService {
 
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int SIGNATURE_BYTES = 16;
+    private static final int MAX_CACHED_TOKENS = 100_000;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
     private final Key key;
+    private final JwtParser legacyParser;
+    private final ThreadLocal<Mac> mac;
     private final long ttlSeconds;
+    private final long bucketSeconds;
+    private final Clock clock;
+    private volatile TokenCache cache = new TokenCache(0);
 
+    @Autowired
     public AttachmentTokenService(
             @Value("${jwt.secret}") String secret,
             MessageAttachmentProperties properties
     ) {
+        this(secret, properties, Clock.systemUTC());
+    }
+
+    AttachmentTokenService(String secret, MessageAttachmentProperties properties, Clock clock) {
         byte[] keyBytes = Decoders.BASE64.decode(encodeSecret(secret));
         this.key = Keys.hmacShaKeyFor(keyBytes);
-        this.ttlSeconds = properties.getDownloadTokenTtlSeconds();
+        this.legacyParser = Jwts.parserBuilder().setSigningKey(key).build();
+        this.mac = ThreadLocal.withInitial(this::newMac);
+        this.ttlSeconds = Math.max(1, properties.getDownloadTokenTtlSeconds());
+        this.bucketSeconds = Math.max(1, Math.min(properties.getDownloadTokenBucketSeconds(), ttlSeconds));
+        this.clock = clock;
     }
 
     public String generateToken(Long attachmentId, Long userId) {
-        Instant now = Instant.now();
-        Instant expiry = now.plusSeconds(ttlSeconds);
-        return Jwts.builder()
-                .setSubject("attachment")
-                .setIssuedAt(Date.from(now))
-                .setExpiration(Date.from(expiry))
-                .claim("attachmentId", attachmentId)
-                .claim("userId", userId)
-                .signWith(key, SignatureAlgorithm.HS256)
-                .compact();
+        long now = clock.instant().getEpochSecond();
+        // Valid for at least the configured TTL and at most one bucket longer.
+        long expiresAt = Math.floorDiv(now + ttlSeconds + bucketSeconds - 1, bucketSeconds) * bucketSeconds;
+        TokenCache current = cache;
+        if (current.expiresAt != expiresAt || current.tokens.size() >= MAX_CACHED_TOKENS) {
+            current = rollCache(expiresAt);
+        }
+        return current.tokens.computeIfAbsent(
+                new TokenKey(attachmentId, userId),
+                ignored -> sign(attachmentId, userId, expiresAt)
+        );
     }
 
     public AttachmentTokenPayload parseToken(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-        Long attachmentId = claims.get("attachmentId", Long.class);
-        Long userId = claims.get("userId", Long.class);
+        if (token == null || token.isBlank()) {
+            throw invalidToken();
+        }
+        String[] parts = token.split("\\.");
+        if (parts.length != 4) {
+            return parseLegacyToken(token);
+        }
+        long attachmentId;
+        long userId;
+        long expiresAt;
+        byte[] signature;
+        try {
+            attachmentId = Long.parseLong(parts[0]);
+            userId = Long.parseLong(parts[1]);
+            expiresAt = Long.parseLong(parts[2]);
+            signature = DECODER.decode(parts[3]);
+        } catch (IllegalArgumentException ex) {
+            throw invalidToken();
+        }
+        byte[] expected = signature(parts[0] + "." + parts[1] + "." + parts[2]);
+        if (!MessageDigest.isEqual(expected, signature)) {
+            throw invalidToken();
+        }
+        if (expiresAt <= clock.instant().getEpochSecond()) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Attachment token expired.");
+        }
         return new AttachmentTokenPayload(attachmentId, userId);
     }
 
+    private AttachmentTokenPayload parseLegacyToken(String token) {
+        try {
+            Claims claims = legacyParser.parseClaimsJws(token).getBody();
+            Long attachmentId = claims.get("attachmentId", Long.class);
+            Long userId = claims.get("userId", Long.class);
+            if (attachmentId == null || userId == null) {
+                throw invalidToken();
+            }
+            return new AttachmentTokenPayload(attachmentId, userId);
+        } catch (JwtException | IllegalArgumentException ex) {
+            throw invalidToken();
+        }
+    }
+
+    private synchronized TokenCache rollCache(long expiresAt) {
+        TokenCache current = cache;
+        if (expiresAt < current.expiresAt) {
+            // A caller that read the clock just before the bucket moved on; never roll the cache back.
+            return new TokenCache(expiresAt);
+        }
+        if (expiresAt > current.expiresAt || current.tokens.size() >= MAX_CACHED_TOKENS) {
+            current = new TokenCache(expiresAt);
+            cache = current;
+        }
+        return current;
+    }
+
+    private String sign(Long attachmentId, Long userId, long expiresAt) {
+        String claims = attachmentId + "." + userId + "." + expiresAt;
+        return claims + "." + ENCODER.encodeToString(signature(claims));
+    }
+
+    private byte[] signature(String claims) {
+        byte[] digest = mac.get().doFinal(claims.getBytes(StandardCharsets.US_ASCII));
+        return Arrays.copyOf(digest, SIGNATURE_BYTES);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac instance = Mac.getInstance(HMAC_ALGORITHM);
+            instance.init(key);
+            return instance;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("HMAC-SHA256 unavailable", ex);
+        }
+    }
+
+    private static ResponseStatusException invalidToken() {
+        return new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid attachment token.");
+    }
+
     private String encodeSecret(String secret) {
         if (secret == null) {
             return "";
@@ -59,6 +167,21 @@ public class AttachmentTokenService {
         if (normalized.length() < 32) {
             normalized = String.format("%-32s", normalized).replace(' ', '0');
         }
-        return java.util.Base64.getEncoder().encodeToString(normalized.getBytes());
+        return Base64.getEncoder().encodeToString(normalized.getBytes());
+    }
+
+    private record TokenKey(Long attachmentId, Long userId) {
+    }
+
+    /**
+     * Tokens of one expiry bucket; replaced wholesale when the bucket moves on, which also bounds its size.
+     */
+    private static final class TokenCache {
+        private final long expiresAt;
+        private final Map<TokenKey, String> tokens = new ConcurrentHashMap<>();
+
+        private TokenCache(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
     }
 }
@@ -24,12 +24,18 @@ public class AttachmentUploadSession {
     @Column(nullable = false)
     private long expectedBytes;
 
-    @Column(nullable = false)
+    // Chunk progress is only changed by atomic updates in the repository, so concurrent chunk uploads and a
+    // full-entity save can never overwrite each other.
+    @Column(nullable = false, updatable = false)
     private int totalChunks;
 
-    @Column(nullable = false)
+    @Column(nullable = false, updatable = false)
     private int uploadedChunks;
 
+    // Bit i (least significant bit first within each byte) is set once chunk i has been stored.
+    @Column(name = "received_chunks", insertable = false, updatable = false)
+    private byte[] receivedChunks;
+
     @Column(nullable = false, length = 400)
     private String tempKey;
 
@@ -101,6 +107,14 @@ public class AttachmentUploadSession {
         this.uploadedChunks = uploadedChunks;
     }
 
+    public byte[] getReceivedChunks() {
+        return receivedChunks;
+    }
+
+    public void setReceivedChunks(byte[] receivedChunks) {
+        this.receivedChunks = receivedChunks;
+    }
+
     public String getTempKey() {
         return tempKey;
     }
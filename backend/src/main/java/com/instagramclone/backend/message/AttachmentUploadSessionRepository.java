@@ -1,8 +1,107 @@
 package com.instagramclone.backend.message;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface AttachmentUploadSessionRepository extends JpaRepository<AttachmentUploadSession, String> {
     Optional<AttachmentUploadSession> findByIdAndOwnerUsername(String id, String ownerUsername);
+
+    @Query("""
+            SELECT s.totalChunks AS totalChunks, s.uploadedChunks AS uploadedChunks, s.receivedChunks AS receivedChunks
+            FROM AttachmentUploadSession s
+            WHERE s.id = :id
+            """)
+    Optional<UploadChunkProgress> findChunkProgress(@Param("id") String id);
+
+    /**
+     * Fixes the chunk count and allocates the bitmap; only the first chunk request of a session wins. Sessions
+     * started before chunk tracking stored chunks 0 to uploaded_chunks - 1 in order, so when the count matches
+     * those chunks are marked as received instead of being uploaded again.
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE attachment_upload_sessions SET
+                total_chunks = :totalChunks,
+                uploaded_chunks = seed.chunks,
+                received_chunks = decode(
+                    repeat('ff', seed.chunks / 8)
+                        || CASE
+                            WHEN seed.chunks % 8 > 0 THEN lpad(to_hex((1 << (seed.chunks % 8)) - 1), 2, '0')
+                            ELSE ''
+                        END
+                        || repeat('00', (:totalChunks + 7) / 8 - (seed.chunks + 7) / 8),
+                    'hex'
+                )
+            FROM (
+                SELECT CASE
+                    WHEN total_chunks = :totalChunks THEN LEAST(GREATEST(uploaded_chunks, 0), :totalChunks)
+                    ELSE 0
+                END AS chunks
+                FROM attachment_upload_sessions
+                WHERE id = :id
+            ) seed
+            WHERE id = :id AND received_chunks IS NULL AND completed = false
+            """, nativeQuery = true)
+    int startChunkTracking(@Param("id") String id, @Param("totalChunks") int totalChunks);
+
+    @Modifying
+    @Query(value = """
+            UPDATE attachment_upload_sessions SET
+                uploaded_chunks = uploaded_chunks + 1 - get_bit(received_chunks, :chunkIndex),
+                received_chunks = set_bit(received_chunks, :chunkIndex, 1),
+                updated_at = now()
+            WHERE id = :id AND completed = false AND received_chunks IS NOT NULL AND :chunkIndex < total_chunks
+            """, nativeQuery = true)
+    int markChunkReceived(@Param("id") String id, @Param("chunkIndex") int chunkIndex);
+
+    @Modifying
+    @Query(value = """
+            UPDATE attachment_upload_sessions SET
+                uploaded_chunks = uploaded_chunks - get_bit(received_chunks, :chunkIndex),
+                received_chunks = set_bit(received_chunks, :chunkIndex, 0),
+                updated_at = now()
+            WHERE id = :id AND received_chunks IS NOT NULL AND :chunkIndex < total_chunks
+            """, nativeQuery = true)
+    int markChunkMissing(@Param("id") String id, @Param("chunkIndex") int chunkIndex);
+
+    /**
+     * Claims up to {@code limit} attachments whose upload was finalized before the cutoff but which were never
+     * processed, for example because the processing queue was full or the node restarted. Claiming pushes the
+     * session's {@code updated_at} forward, and rows another node is claiming at the same time are skipped, so
+     * each stalled attachment is handed to a single node per stall period. Not a {@code @Modifying} query
+     * because it returns the claimed ids; the write transaction overrides the read-only default.
+     */
+    @Transactional
+    @Query(value = """
+            UPDATE attachment_upload_sessions SET updated_at = now()
+            WHERE id IN (
+                SELECT s.id FROM attachment_upload_sessions s
+                JOIN message_attachments a ON a.id = s.attachment_id
+                WHERE s.completed = true AND a.status = 'UPLOADING' AND s.updated_at < :cutoff
+                ORDER BY s.updated_at ASC
+                LIMIT :limit
+                FOR UPDATE OF s SKIP LOCKED
+            )
+            RETURNING attachment_id
+            """, nativeQuery = true)
+    List<Long> claimStalled(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+
+    /**
+     * Keeps attachments a node has queued or is processing out of {@link #claimStalled}, however long they wait
+     * behind higher-priority work there.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            UPDATE attachment_upload_sessions SET updated_at = now()
+            WHERE attachment_id IN (:attachmentIds) AND completed = true
+            """, nativeQuery = true)
+    int renewClaims(@Param("attachmentIds") Collection<Long> attachmentIds);
 }
@@ -6,19 +6,23 @@ public class AttachmentUploadSessionResponse {
     private String uploadUrl;
     private String finalizeUrl;
     private long chunkSizeBytes;
+    // True when the server already has the content and the session is complete; nothing is to be uploaded.
+    private boolean skipUpload;
 
     public AttachmentUploadSessionResponse(
             String uploadId,
             Long attachmentId,
             String uploadUrl,
             String finalizeUrl,
-            long chunkSizeBytes
+            long chunkSizeBytes,
+            boolean skipUpload
     ) {
         this.uploadId = uploadId;
         this.attachmentId = attachmentId;
         this.uploadUrl = uploadUrl;
         this.finalizeUrl = finalizeUrl;
         this.chunkSizeBytes = chunkSizeBytes;
+        this.skipUpload = skipUpload;
     }
 
     public String getUploadId() {
@@ -40,4 +44,8 @@ public class AttachmentUploadSessionResponse {
     public long getChunkSizeBytes() {
         return chunkSizeBytes;
     }
+
+    public boolean isSkipUpload() {
+        return skipUpload;
+    }
 }
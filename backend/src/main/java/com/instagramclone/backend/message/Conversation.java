@@ -34,6 +34,13 @@ public class Conversation {
 
     private LocalDateTime lastMessageAt;
 
+    // Maintained only by ConversationRepository's atomic updates, so entity saves never overwrite them.
+    @Column(name = "user_one_unread_count", nullable = false, updatable = false)
+    private int userOneUnreadCount = 0;
+
+    @Column(name = "user_two_unread_count", nullable = false, updatable = false)
+    private int userTwoUnreadCount = 0;
+
     public Conversation() {
         this.createdAt = LocalDateTime.now();
         this.lastMessageAt = this.createdAt;
@@ -96,4 +103,20 @@ public class Conversation {
     public void setLastMessageAt(LocalDateTime lastMessageAt) {
         this.lastMessageAt = lastMessageAt;
     }
+
+    public int getUserOneUnreadCount() {
+        return userOneUnreadCount;
+    }
+
+    public void setUserOneUnreadCount(int userOneUnreadCount) {
+        this.userOneUnreadCount = userOneUnreadCount;
+    }
+
+    public int getUserTwoUnreadCount() {
+        return userTwoUnreadCount;
+    }
+
+    public void setUserTwoUnreadCount(int userTwoUnreadCount) {
+        this.userTwoUnreadCount = userTwoUnreadCount;
+    }
 }
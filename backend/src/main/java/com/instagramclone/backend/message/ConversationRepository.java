@@ -1,21 +1,65 @@
 package com.instagramclone.backend.message;
 
 import com.instagramclone.backend.user.User;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 public interface ConversationRepository extends JpaRepository<Conversation, Long> {
 
-    @Query("SELECT c FROM Conversation c " +
-            "WHERE c.userOne = :user OR c.userTwo = :user " +
-            "ORDER BY c.lastMessageAt DESC")
-    List<Conversation> findByParticipant(@Param("user") User user);
+    @Query("""
+            select c from Conversation c
+            join fetch c.userOne join fetch c.userTwo left join fetch c.lastMessageSender
+            where c.userOne.id = :userId or c.userTwo.id = :userId
+            order by c.lastMessageAt desc, c.id desc
+            """)
+    List<Conversation> findPageByParticipant(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("""
+            select c from Conversation c
+            join fetch c.userOne join fetch c.userTwo left join fetch c.lastMessageSender
+            where (c.userOne.id = :userId or c.userTwo.id = :userId)
+              and (c.lastMessageAt < :lastMessageAt or (c.lastMessageAt = :lastMessageAt and c.id < :id))
+            order by c.lastMessageAt desc, c.id desc
+            """)
+    List<Conversation> findPageByParticipantBefore(
+            @Param("userId") Long userId,
+            @Param("lastMessageAt") LocalDateTime lastMessageAt,
+            @Param("id") Long id,
+            Pageable pageable
+    );
 
     @Query("SELECT c FROM Conversation c " +
             "WHERE (c.userOne = :userA AND c.userTwo = :userB) " +
             "OR (c.userOne = :userB AND c.userTwo = :userA)")
     Optional<Conversation> findBetweenUsers(@Param("userA") User userA, @Param("userB") User userB);
+
+    @Modifying
+    @Query(value = """
+            UPDATE conversations SET
+                user_one_unread_count = user_one_unread_count + CASE WHEN user_one_id = :recipientId THEN 1 ELSE 0 END,
+                user_two_unread_count = user_two_unread_count + CASE WHEN user_two_id = :recipientId THEN 1 ELSE 0 END
+            WHERE id = :conversationId
+            """, nativeQuery = true)
+    int incrementUnread(@Param("conversationId") Long conversationId, @Param("recipientId") Long recipientId);
+
+    // Recounts instead of zeroing, so a message that lands while the reader marks the thread read still counts.
+    @Modifying
+    @Query(value = """
+            UPDATE conversations c SET
+                user_one_unread_count = CASE WHEN c.user_one_id = :readerId THEN unread.total ELSE c.user_one_unread_count END,
+                user_two_unread_count = CASE WHEN c.user_two_id = :readerId THEN unread.total ELSE c.user_two_unread_count END
+            FROM (
+                SELECT COUNT(*) AS total
+                FROM messages m
+                WHERE m.conversation_id = :conversationId AND m.recipient_id = :readerId AND m.is_read = false
+            ) unread
+            WHERE c.id = :conversationId
+            """, nativeQuery = true)
+    int refreshUnread(@Param("conversationId") Long conversationId, @Param("readerId") Long readerId);
 }
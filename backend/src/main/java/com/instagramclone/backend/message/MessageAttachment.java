@@ -49,6 +49,10 @@ public class MessageAttachment {
     @Column(length = 400)
     private String thumbnailKey;
 
+    // Set when the files behind storageKey and thumbnailKey are a shared AttachmentBlob rather than our own.
+    @Column(name = "blob_id")
+    private Long blobId;
+
     @Column(length = 255)
     private String originalFilename;
 
@@ -181,6 +185,14 @@ public class MessageAttachment {
         this.thumbnailKey = thumbnailKey;
     }
 
+    public Long getBlobId() {
+        return blobId;
+    }
+
+    public void setBlobId(Long blobId) {
+        this.blobId = blobId;
+    }
+
     public String getOriginalFilename() {
         return originalFilename;
     }
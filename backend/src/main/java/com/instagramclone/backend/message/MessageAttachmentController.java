@@ -52,10 +52,26 @@ public class MessageAttachmentController {
             @PathVariable String uploadId,
             @RequestParam(value = "chunkIndex", required = false) Integer chunkIndex,
             @RequestParam(value = "totalChunks", required = false) Integer totalChunks,
+            @RequestParam(value = "checksum", required = false) String checksum,
             @RequestPart("file") MultipartFile file,
             Principal principal
     ) {
-        return ResponseEntity.ok(attachmentService.uploadChunk(uploadId, file, chunkIndex, totalChunks, requireUsername(principal)));
+        return ResponseEntity.ok(attachmentService.uploadChunk(
+                uploadId,
+                file,
+                chunkIndex,
+                totalChunks,
+                checksum,
+                requireUsername(principal)
+        ));
+    }
+
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<UploadChunkResponse> getUploadStatus(
+            @PathVariable String uploadId,
+            Principal principal
+    ) {
+        return ResponseEntity.ok(attachmentService.getUploadStatus(uploadId, requireUsername(principal)));
     }
 
     @PostMapping("/uploads/{uploadId}/finalize")
@@ -80,6 +96,7 @@ public class MessageAttachmentController {
             @PathVariable Long attachmentId,
             @RequestHeader HttpHeaders headers,
             @RequestParam(value = "token", required = false) String token,
+            @RequestParam(value = "w", required = false) Integer width,
             Principal principal
     ) throws IOException {
         MessageAttachment attachment = attachmentRepository.findById(attachmentId)
@@ -97,7 +114,9 @@ public class MessageAttachmentController {
                 accessService.resolveUserForAttachment(principal == null ? null : principal.getName(), token, attachment.getId())
         );
 
-        Resource resource = storageService.loadAsResource(attachment.getStorageKey());
+        Resource resource = attachment.getType() == AttachmentType.IMAGE
+                ? storageService.loadAsResource(attachment.getStorageKey(), width)
+                : storageService.loadAsResource(attachment.getStorageKey());
         MediaType mediaType = MediaTypeFactory.getMediaType(resource).orElse(MediaType.APPLICATION_OCTET_STREAM);
         String filename = sanitizeFilename(attachment.getOriginalFilename());
         ContentDisposition disposition = ContentDisposition.inline().filename(filename).build();
@@ -12,6 +12,7 @@ public class MessageAttachmentProperties {
     private long maxExpiryHours = 168;
     private long chunkSizeBytes = 5242880;
     private long downloadTokenTtlSeconds = 900;
+    private long downloadTokenBucketSeconds = 300;
     private String expiryCron = "0 */15 * * * *";
 
     public int getMaxFiles() {
@@ -78,6 +79,14 @@ public class MessageAttachmentProperties {
         this.downloadTokenTtlSeconds = downloadTokenTtlSeconds;
     }
 
+    public long getDownloadTokenBucketSeconds() {
+        return downloadTokenBucketSeconds;
+    }
+
+    public void setDownloadTokenBucketSeconds(long downloadTokenBucketSeconds) {
+        this.downloadTokenBucketSeconds = downloadTokenBucketSeconds;
+    }
+
     public String getExpiryCron() {
         return expiryCron;
     }
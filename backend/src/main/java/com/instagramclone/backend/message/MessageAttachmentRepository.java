@@ -4,9 +4,25 @@ import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface MessageAttachmentRepository extends JpaRepository<MessageAttachment, Long> {
     List<MessageAttachment> findByStatusInAndExpiresAtBefore(Collection<AttachmentStatus> statuses, LocalDateTime timestamp);
 
     long countByMessageSenderUsernameAndStatus(String senderUsername, AttachmentStatus status);
+
+    /**
+     * Whether the user sent or received a ready attachment backed by the blob, i.e. already holds its content.
+     */
+    @Query("""
+            SELECT COUNT(a) > 0 FROM MessageAttachment a
+            JOIN a.message m
+            WHERE a.blobId = :blobId AND a.status = :status AND (m.sender.id = :userId OR m.recipient.id = :userId)
+            """)
+    boolean existsAccessibleCopy(
+            @Param("blobId") Long blobId,
+            @Param("userId") Long userId,
+            @Param("status") AttachmentStatus status
+    );
 }
@@ -1,6 +1,8 @@
 package com.instagramclone.backend.message;
 
 import com.instagramclone.backend.storage.AttachmentStorageService;
+import com.instagramclone.backend.storage.ImageInspector;
+import com.instagramclone.backend.storage.StoredContent;
 import com.instagramclone.backend.user.User;
 import com.instagramclone.backend.user.UserRepository;
 import java.io.InputStream;
@@ -29,7 +31,8 @@ public class MessageAttachmentService {
     private final AttachmentUploadSessionRepository uploadSessionRepository;
     private final MessageAttachmentValidationService validationService;
     private final AttachmentStorageService storageService;
-    private final AttachmentProcessingService processingService;
+    private final AttachmentProcessingPipeline processingPipeline;
+    private final AttachmentBlobService blobService;
     private final UserRepository userRepository;
     private final MessageAttachmentProperties properties;
     private final Tika tika = new Tika();
@@ -40,7 +43,8 @@ public class MessageAttachmentService {
             AttachmentUploadSessionRepository uploadSessionRepository,
             MessageAttachmentValidationService validationService,
             AttachmentStorageService storageService,
-            AttachmentProcessingService processingService,
+            AttachmentProcessingPipeline processingPipeline,
+            AttachmentBlobService blobService,
             UserRepository userRepository,
             MessageAttachmentProperties properties
     ) {
@@ -49,7 +53,8 @@ public class MessageAttachmentService {
         this.uploadSessionRepository = uploadSessionRepository;
         this.validationService = validationService;
         this.storageService = storageService;
-        this.processingService = processingService;
+        this.processingPipeline = processingPipeline;
+        this.blobService = blobService;
         this.userRepository = userRepository;
         this.properties = properties;
     }
@@ -106,6 +111,7 @@ public class MessageAttachmentService {
             String publicId = java.util.UUID.randomUUID().toString();
             attachment.setPublicId(publicId);
             attachment.setStorageFilename(resolveStorageFilename(attachmentRequest.getFileName(), attachment.getStorageKey(), publicId));
+            shareKnownContent(attachment, sender);
             attachments.add(attachment);
         }
 
@@ -120,12 +126,15 @@ public class MessageAttachmentService {
 
         List<AttachmentUploadSessionResponse> uploads = new ArrayList<>();
         for (MessageAttachment attachment : message.getAttachments()) {
+            // Attachments that are already ready share known content; their sessions start out complete.
+            boolean skipUpload = attachment.getStatus() == AttachmentStatus.READY;
             AttachmentUploadSession session = new AttachmentUploadSession();
             session.setAttachment(attachment);
             session.setOwner(sender);
             session.setExpectedBytes(attachment.getSizeBytes());
             session.setTotalChunks(1);
-            session.setUploadedChunks(0);
+            session.setUploadedChunks(skipUpload ? 1 : 0);
+            session.setCompleted(skipUpload);
             session.setTempKey(storageService.createTempKey());
             uploadSessionRepository.save(session);
 
@@ -143,7 +152,8 @@ public class MessageAttachmentService {
                     attachment.getId(),
                     uploadUrl,
                     finalizeUrl,
-                    properties.getChunkSizeBytes()
+                    properties.getChunkSizeBytes(),
+                    skipUpload
             ));
         }
 
@@ -152,8 +162,21 @@ public class MessageAttachmentService {
         return new CreateAttachmentUploadSessionResponse(response, uploads);
     }
 
-    @Transactional
-    public UploadChunkResponse uploadChunk(String uploadId, MultipartFile file, Integer chunkIndex, Integer totalChunks, String username) {
+    /**
+     * Stores one chunk. Chunks may arrive in any order and concurrently; each is recorded in the session's
+     * received bitmap once stored (and, when the client sends one, once its checksum matches), so a client
+     * can resume by re-sending only the chunks reported missing. Rejections commit: a checksum mismatch must
+     * keep its cleared bit, since the chunk file is already gone.
+     */
+    @Transactional(noRollbackFor = ResponseStatusException.class)
+    public UploadChunkResponse uploadChunk(
+            String uploadId,
+            MultipartFile file,
+            Integer chunkIndex,
+            Integer totalChunks,
+            String chunkChecksum,
+            String username
+    ) {
         AttachmentUploadSession session = uploadSessionRepository.findByIdAndOwnerUsername(uploadId, username)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload session not found."));
         if (session.isCompleted()) {
@@ -170,25 +193,55 @@ public class MessageAttachmentService {
         }
         int resolvedTotalChunks = totalChunks == null ? 1 : totalChunks;
         int resolvedChunkIndex = chunkIndex == null ? 0 : chunkIndex;
-        if (resolvedTotalChunks <= 0 || resolvedChunkIndex < 0 || resolvedChunkIndex >= resolvedTotalChunks) {
+        if (resolvedTotalChunks <= 0
+                || resolvedTotalChunks > maxChunksFor(session.getExpectedBytes())
+                || resolvedChunkIndex < 0
+                || resolvedChunkIndex >= resolvedTotalChunks) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid chunk metadata.");
         }
-        session.setTotalChunks(resolvedTotalChunks);
+        if (session.getReceivedChunks() == null) {
+            uploadSessionRepository.startChunkTracking(session.getId(), resolvedTotalChunks);
+        }
+        UploadChunkProgress progress = loadChunkProgress(session.getId());
+        if (progress.getTotalChunks() != resolvedTotalChunks) {
+            throw new ResponseStatusException(
+                    HttpStatus.CONFLICT,
+                    "Upload was started with " + progress.getTotalChunks() + " chunks."
+            );
+        }
         storageService.ensureTempDirectory(session.getTempKey());
+        StoredContent stored;
         try (InputStream inputStream = file.getInputStream()) {
             if (resolvedTotalChunks > 1) {
-                storageService.writeChunk(session.getTempKey(), resolvedChunkIndex, inputStream);
+                stored = storageService.writeChunk(session.getTempKey(), resolvedChunkIndex, inputStream);
             } else {
-                storageService.writeTempFile(session.getTempKey(), inputStream);
+                stored = storageService.writeTempFile(session.getTempKey(), inputStream);
             }
         } catch (Exception e) {
             session.setLastError(e.getMessage());
             uploadSessionRepository.save(session);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to store upload chunk.");
         }
-        session.setUploadedChunks(Math.min(resolvedTotalChunks, Math.max(session.getUploadedChunks(), resolvedChunkIndex + 1)));
-        uploadSessionRepository.save(session);
-        return new UploadChunkResponse(session.getId(), session.getUploadedChunks(), session.getTotalChunks());
+        String expectedChecksum = normalize(chunkChecksum);
+        if (!expectedChecksum.isEmpty() && !expectedChecksum.equalsIgnoreCase(stored.checksum())) {
+            // A corrupted resend must not leave an earlier good copy of this chunk marked as received.
+            uploadSessionRepository.markChunkMissing(session.getId(), resolvedChunkIndex);
+            if (resolvedTotalChunks > 1) {
+                storageService.deleteChunk(session.getTempKey(), resolvedChunkIndex);
+            }
+            session.setLastError("Chunk " + resolvedChunkIndex + " checksum mismatch.");
+            uploadSessionRepository.save(session);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Chunk checksum mismatch.");
+        }
+        uploadSessionRepository.markChunkReceived(session.getId(), resolvedChunkIndex);
+        return toUploadChunkResponse(session.getId(), loadChunkProgress(session.getId()));
+    }
+
+    @Transactional(readOnly = true)
+    public UploadChunkResponse getUploadStatus(String uploadId, String username) {
+        AttachmentUploadSession session = uploadSessionRepository.findByIdAndOwnerUsername(uploadId, username)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload session not found."));
+        return toUploadChunkResponse(session.getId(), loadChunkProgress(session.getId()));
     }
 
     @Transactional(noRollbackFor = ResponseStatusException.class)
@@ -202,32 +255,46 @@ public class MessageAttachmentService {
         if (attachment == null) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Attachment not found.");
         }
-        java.nio.file.Path assembledPath = storageService.resolveTempPath(session.getTempKey()).resolve("upload.bin");
+        if (!processingPipeline.hasCapacity()) {
+            // Nothing has been touched yet, so the client can simply retry the finalize call.
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Attachment processing is busy, try again shortly.");
+        }
+        List<Integer> missingChunks = missingChunks(
+                session.getTotalChunks(),
+                session.getUploadedChunks(),
+                session.getReceivedChunks()
+        );
+        if (!missingChunks.isEmpty()) {
+            // Nothing is discarded: the client can upload the missing chunks and finalize again.
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    "Upload is incomplete; " + missingChunks.size() + " chunks missing."
+            );
+        }
         try {
-            if (session.getTotalChunks() > 1) {
-                assembledPath = storageService.assembleChunks(session.getTempKey(), session.getTotalChunks());
-            }
-            long actualSize = java.nio.file.Files.size(assembledPath);
+            long actualSize = storageService.uploadSize(session.getTempKey(), session.getTotalChunks());
             if (actualSize != session.getExpectedBytes()) {
                 attachment.setStatus(AttachmentStatus.FAILED);
                 attachmentRepository.save(attachment);
                 messageService.notifyMessageUpdated(attachment.getMessage());
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Attachment size mismatch.");
             }
-            String checksum = calculateChecksum(assembledPath);
+            StoredContent stored = storageService.storePermanentFromUpload(
+                    session.getTempKey(),
+                    session.getTotalChunks(),
+                    attachment.getStorageKey()
+            );
             if (attachment.getChecksum() != null && !attachment.getChecksum().isBlank()) {
-                if (!attachment.getChecksum().equalsIgnoreCase(checksum)) {
+                if (!attachment.getChecksum().equalsIgnoreCase(stored.checksum())) {
+                    storageService.deletePermanent(attachment.getStorageKey());
                     attachment.setStatus(AttachmentStatus.FAILED);
                     attachmentRepository.save(attachment);
                     messageService.notifyMessageUpdated(attachment.getMessage());
                     throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Attachment checksum mismatch.");
                 }
             }
-            attachment.setChecksum(checksum);
-            attachment.setSizeBytes(actualSize);
-            try (InputStream inputStream = java.nio.file.Files.newInputStream(assembledPath)) {
-                storageService.storePermanent(inputStream, attachment.getStorageKey());
-            }
+            attachment.setChecksum(stored.checksum());
+            attachment.setSizeBytes(stored.sizeBytes());
         } catch (ResponseStatusException ex) {
             session.setLastError(ex.getReason());
             uploadSessionRepository.save(session);
@@ -248,6 +315,10 @@ public class MessageAttachmentService {
         uploadSessionRepository.save(session);
         storageService.deleteTemp(session.getTempKey());
 
+        if (reuseExistingContent(attachment)) {
+            return messageService.toAttachmentResponse(attachment, loadUser(username));
+        }
+
         try (InputStream resourceStream = storageService.loadAsResource(attachment.getStorageKey()).getInputStream()) {
             String detected = tika.detect(resourceStream, attachment.getOriginalFilename());
             if (!validationService.isMimeAllowed(attachment.getType(), detected)) {
@@ -270,10 +341,11 @@ public class MessageAttachmentService {
 
         if (attachment.getType() == AttachmentType.IMAGE) {
             try {
-                var bufferedImage = javax.imageio.ImageIO.read(storageService.resolvePermanentPath(attachment.getStorageKey()).toFile());
-                if (bufferedImage != null) {
-                    attachment.setWidth(bufferedImage.getWidth());
-                    attachment.setHeight(bufferedImage.getHeight());
+                // Header only; the pixels are decoded once, later, by the thumbnail stage.
+                ImageInspector.ImageInfo info = ImageInspector.inspect(storageService.resolvePermanentPath(attachment.getStorageKey()));
+                if (info != null) {
+                    attachment.setWidth(info.width());
+                    attachment.setHeight(info.height());
                 }
             } catch (Exception ex) {
                 logger.warn("Failed to read image dimensions: {}", ex.getMessage());
@@ -281,10 +353,52 @@ public class MessageAttachmentService {
         }
 
         attachmentRepository.save(attachment);
-        processingService.processAttachmentAsync(attachment.getId());
+        processingPipeline.submit(attachment);
         return messageService.toAttachmentResponse(attachment, loadUser(username));
     }
 
+    /**
+     * Instant send: when the declared checksum and size match a ready blob that the sender already sent or
+     * received, the new attachment shares that blob and is ready without any bytes being transferred.
+     * Requiring an existing copy keeps a bare checksum from unlocking someone else's content. Everything
+     * else is uploaded and verified against the declared checksum on finalize as usual.
+     */
+    private void shareKnownContent(MessageAttachment attachment, User sender) {
+        AttachmentBlob blob = blobService.findByContent(attachment.getChecksum(), attachment.getSizeBytes()).orElse(null);
+        if (blob == null
+                || blob.getStatus() != AttachmentStatus.READY
+                || !validationService.isMimeAllowed(attachment.getType(), blob.getMimeType())
+                || !attachmentRepository.existsAccessibleCopy(blob.getId(), sender.getId(), AttachmentStatus.READY)
+                || !blobService.share(blob, attachment)) {
+            return;
+        }
+        attachment.setStatus(AttachmentStatus.READY);
+    }
+
+    /**
+     * Resolves a finalized upload from an earlier upload of the same bytes: it shares a clean blob's file,
+     * scan verdict and thumbnail, or is quarantined straight away when the content was found infected.
+     * Returns false when the content still has to be validated and processed.
+     */
+    private boolean reuseExistingContent(MessageAttachment attachment) {
+        AttachmentBlob blob = blobService.findByContent(attachment.getChecksum(), attachment.getSizeBytes()).orElse(null);
+        if (blob == null) {
+            return false;
+        }
+        if (blob.getStatus() == AttachmentStatus.QUARANTINED) {
+            storageService.deletePermanent(attachment.getStorageKey());
+            attachment.setStatus(AttachmentStatus.QUARANTINED);
+        } else if (validationService.isMimeAllowed(attachment.getType(), blob.getMimeType())
+                && blobService.share(blob, attachment)) {
+            attachment.setStatus(AttachmentStatus.READY);
+        } else {
+            return false;
+        }
+        attachmentRepository.save(attachment);
+        messageService.notifyMessageUpdated(attachment.getMessage());
+        return true;
+    }
+
     @Transactional
     public void cancelUpload(String uploadId, String username) {
         AttachmentUploadSession session = uploadSessionRepository.findByIdAndOwnerUsername(uploadId, username)
@@ -301,6 +415,47 @@ public class MessageAttachmentService {
         }
     }
 
+    /**
+     * Clients split uploads into chunks of the size announced when the session was created, so a session never
+     * needs more chunks than that; the cap keeps the bitmap and the missing chunk list small.
+     */
+    private long maxChunksFor(long expectedBytes) {
+        long chunkSize = Math.max(1, properties.getChunkSizeBytes());
+        return Math.max(1, (expectedBytes + chunkSize - 1) / chunkSize);
+    }
+
+    private UploadChunkProgress loadChunkProgress(String uploadId) {
+        return uploadSessionRepository.findChunkProgress(uploadId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload session not found."));
+    }
+
+    private UploadChunkResponse toUploadChunkResponse(String uploadId, UploadChunkProgress progress) {
+        return new UploadChunkResponse(
+                uploadId,
+                progress.getUploadedChunks(),
+                progress.getTotalChunks(),
+                missingChunks(progress.getTotalChunks(), progress.getUploadedChunks(), progress.getReceivedChunks())
+        );
+    }
+
+    static List<Integer> missingChunks(int totalChunks, int uploadedChunks, byte[] receivedChunks) {
+        List<Integer> missing = new ArrayList<>();
+        if (receivedChunks == null) {
+            // Sessions from before chunk tracking only know a sequential high-water mark.
+            for (int i = Math.max(0, uploadedChunks); i < totalChunks; i++) {
+                missing.add(i);
+            }
+            return missing;
+        }
+        for (int i = 0; i < totalChunks; i++) {
+            int index = i >>> 3;
+            if (index >= receivedChunks.length || (receivedChunks[index] & (1 << (i & 7))) == 0) {
+                missing.add(i);
+            }
+        }
+        return missing;
+    }
+
     private User loadUser(String username) {
         return userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found."));
@@ -341,25 +496,4 @@ public class MessageAttachmentService {
                 .replaceAll("\\s+", "_")
                 .replaceAll("[\\\\/]+", "_");
     }
-
-    private String calculateChecksum(java.nio.file.Path filePath) {
-        try {
-            java.security.MessageDigest digest = java.security.MessageDigest.getInstance("SHA-256");
-            try (InputStream inputStream = java.nio.file.Files.newInputStream(filePath)) {
-                byte[] buffer = new byte[4096];
-                int read;
-                while ((read = inputStream.read(buffer)) > 0) {
-                    digest.update(buffer, 0, read);
-                }
-            }
-            byte[] hash = digest.digest();
-            StringBuilder builder = new StringBuilder();
-            for (byte b : hash) {
-                builder.append(String.format("%02x", b));
-            }
-            return builder.toString();
-        } catch (Exception ex) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to compute checksum.");
-        }
-    }
 }
@@ -1,5 +1,6 @@
 package com.instagramclone.backend.message;
 
+import com.instagramclone.backend.pagination.CursorPage;
 import java.security.Principal;
 import java.util.List;
 import org.springframework.http.ResponseEntity;
@@ -16,16 +17,22 @@ public class MessageController {
     }
 
     @GetMapping("/conversations")
-    public ResponseEntity<List<ConversationResponse>> getConversations(Principal principal) {
-        return ResponseEntity.ok(messageService.getConversations(requireUsername(principal)));
+    public ResponseEntity<List<ConversationResponse>> getConversations(
+            @RequestParam(name = "before", required = false) String before,
+            @RequestParam(name = "limit", defaultValue = "20") int limit,
+            Principal principal
+    ) {
+        return withNextCursor(messageService.getConversationsPage(requireUsername(principal), before, limit));
     }
 
     @GetMapping("/conversations/{conversationId}")
     public ResponseEntity<List<MessageResponse>> getMessages(
             @PathVariable Long conversationId,
+            @RequestParam(name = "before", required = false) String before,
+            @RequestParam(name = "limit", defaultValue = "20") int limit,
             Principal principal
     ) {
-        return ResponseEntity.ok(messageService.getMessages(conversationId, requireUsername(principal)));
+        return withNextCursor(messageService.getMessagesPage(conversationId, requireUsername(principal), before, limit));
     }
 
     @PutMapping("/conversations/{conversationId}/read")
@@ -45,6 +52,14 @@ public class MessageController {
         return ResponseEntity.ok(messageService.sendMessage(requireUsername(principal), request));
     }
 
+    private static <T> ResponseEntity<List<T>> withNextCursor(CursorPage<T> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.hasNext()) {
+            response.header(CursorPage.NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.items());
+    }
+
     private String requireUsername(Principal principal) {
         if (principal == null || principal.getName() == null || principal.getName().isBlank()) {
             throw new org.springframework.web.server.ResponseStatusException(
@@ -2,7 +2,9 @@ package com.instagramclone.backend.message;
 
 import com.instagramclone.backend.user.User;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -11,10 +13,29 @@ import org.springframework.data.repository.query.Param;
 
 public interface MessageRepository extends JpaRepository<Message, Long> {
 
-    @EntityGraph(attributePaths = "attachments")
-    List<Message> findByConversationOrderByCreatedAtAsc(Conversation conversation);
+    @Query("""
+            select m from Message m join fetch m.sender join fetch m.recipient
+            where m.conversation.id = :conversationId
+            order by m.createdAt desc, m.id desc
+            """)
+    List<Message> findPageByConversation(@Param("conversationId") Long conversationId, Pageable pageable);
+
+    @Query("""
+            select m from Message m join fetch m.sender join fetch m.recipient
+            where m.conversation.id = :conversationId
+              and (m.createdAt < :createdAt or (m.createdAt = :createdAt and m.id < :id))
+            order by m.createdAt desc, m.id desc
+            """)
+    List<Message> findPageByConversationBefore(
+            @Param("conversationId") Long conversationId,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            Pageable pageable
+    );
 
-    long countByConversationAndRecipientAndReadIsFalse(Conversation conversation, User recipient);
+    // Loads attachments for one page only; fetching them in the page query would paginate in memory.
+    @EntityGraph(attributePaths = "attachments")
+    List<Message> findWithAttachmentsByIdIn(Collection<Long> ids);
 
     @Modifying
     @Query("UPDATE Message m SET m.read = true, m.readAt = :readAt " +
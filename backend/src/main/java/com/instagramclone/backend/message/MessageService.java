@@ -1,17 +1,33 @@
 package com.instagramclone.backend.message;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.instagramclone.backend.pagination.CursorPage;
+import com.instagramclone.backend.pagination.KeysetCursor;
+import com.instagramclone.backend.realtime.CoalescingUserSender;
 import com.instagramclone.backend.user.User;
 import com.instagramclone.backend.user.UserRepository;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.server.ResponseStatusException;
@@ -23,12 +39,17 @@ public class MessageService {
 
     private static final int MESSAGE_PREVIEW_LIMIT = 120;
     private static final int MESSAGE_MAX_LENGTH = 2000;
+    private static final String MESSAGE_QUEUE = "/queue/messages";
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageService.class);
 
     private final ConversationRepository conversationRepository;
     private final MessageRepository messageRepository;
     private final UserRepository userRepository;
     private final SimpMessagingTemplate messagingTemplate;
     private final AttachmentTokenService attachmentTokenService;
+    private final ObjectMapper objectMapper;
+    private final CoalescingUserSender coalescingUserSender;
     private final String backendBaseUrl;
 
     public MessageService(
@@ -37,6 +58,8 @@ public class MessageService {
             UserRepository userRepository,
             SimpMessagingTemplate messagingTemplate,
             AttachmentTokenService attachmentTokenService,
+            ObjectMapper objectMapper,
+            CoalescingUserSender coalescingUserSender,
             @Value("${backend.base-url:http://localhost:8080}") String backendBaseUrl
     ) {
         this.conversationRepository = conversationRepository;
@@ -44,26 +67,79 @@ public class MessageService {
         this.userRepository = userRepository;
         this.messagingTemplate = messagingTemplate;
         this.attachmentTokenService = attachmentTokenService;
+        this.objectMapper = objectMapper;
+        this.coalescingUserSender = coalescingUserSender;
         this.backendBaseUrl = (backendBaseUrl == null || backendBaseUrl.isBlank())
                 ? "http://localhost:8080"
                 : backendBaseUrl;
     }
 
+    /**
+     * Returns one page of the inbox, most recently active first. Participants and the last sender are fetched
+     * with the conversations and unread counts are stored on them, so a page costs a single query.
+     */
     @Transactional(readOnly = true)
-    public List<ConversationResponse> getConversations(String username) {
+    public CursorPage<ConversationResponse> getConversationsPage(String username, String before, int limit) {
         User currentUser = loadUser(username);
-        return conversationRepository.findByParticipant(currentUser).stream()
+        int safeLimit = CursorPage.clampLimit(limit);
+        KeysetCursor position = KeysetCursor.decode(before);
+        PageRequest pageRequest = PageRequest.of(0, safeLimit + 1);
+        List<Conversation> rows = position == null
+                ? conversationRepository.findPageByParticipant(currentUser.getId(), pageRequest)
+                : conversationRepository.findPageByParticipantBefore(
+                        currentUser.getId(),
+                        position.createdAt(),
+                        position.id(),
+                        pageRequest
+                );
+        CursorPage<Conversation> page = CursorPage.fromOverfetched(
+                rows,
+                safeLimit,
+                conversation -> new KeysetCursor(conversation.getLastMessageAt(), conversation.getId())
+        );
+        List<ConversationResponse> responses = page.items().stream()
                 .map(conversation -> toConversationResponse(conversation, currentUser))
-                .collect(Collectors.toList());
+                .toList();
+        return new CursorPage<>(responses, page.nextCursor());
     }
 
+    /**
+     * Returns the newest messages older than {@code before}, oldest first so the page renders top to bottom.
+     * The next cursor points at the oldest message of the page and walks further back in history.
+     */
     @Transactional(readOnly = true)
-    public List<MessageResponse> getMessages(Long conversationId, String username) {
+    public CursorPage<MessageResponse> getMessagesPage(Long conversationId, String username, String before, int limit) {
         User currentUser = loadUser(username);
         Conversation conversation = getConversationForUser(conversationId, currentUser);
-        return messageRepository.findByConversationOrderByCreatedAtAsc(conversation).stream()
-                .map(message -> toMessageResponse(message, currentUser))
-                .collect(Collectors.toList());
+        int safeLimit = CursorPage.clampLimit(limit);
+        KeysetCursor position = KeysetCursor.decode(before);
+        PageRequest pageRequest = PageRequest.of(0, safeLimit + 1);
+        List<Message> rows = position == null
+                ? messageRepository.findPageByConversation(conversation.getId(), pageRequest)
+                : messageRepository.findPageByConversationBefore(
+                        conversation.getId(),
+                        position.createdAt(),
+                        position.id(),
+                        pageRequest
+                );
+        CursorPage<Message> page = CursorPage.fromOverfetched(
+                rows,
+                safeLimit,
+                message -> new KeysetCursor(message.getCreatedAt(), message.getId())
+        );
+        Map<Long, Message> withAttachments = new HashMap<>();
+        if (!page.items().isEmpty()) {
+            for (Message loaded : messageRepository.findWithAttachmentsByIdIn(
+                    page.items().stream().map(Message::getId).toList())) {
+                withAttachments.put(loaded.getId(), loaded);
+            }
+        }
+        List<MessageResponse> responses = new ArrayList<>(page.items().size());
+        for (int i = page.items().size() - 1; i >= 0; i--) {
+            Message message = page.items().get(i);
+            responses.add(toMessageResponse(withAttachments.getOrDefault(message.getId(), message), currentUser));
+        }
+        return new CursorPage<>(responses, page.nextCursor());
     }
 
     @Transactional
@@ -116,6 +192,7 @@ public class MessageService {
         conversation.setLastMessagePreview(buildPreview(savedMessage.getContent(), savedMessage.getAttachments()));
         conversation.setLastMessageSender(sender);
         conversationRepository.save(conversation);
+        conversationRepository.incrementUnread(conversation.getId(), recipient.getId());
         return savedMessage;
     }
 
@@ -124,6 +201,7 @@ public class MessageService {
         User currentUser = loadUser(username);
         Conversation conversation = getConversationForUser(conversationId, currentUser);
         messageRepository.markConversationRead(conversation, currentUser, LocalDateTime.now());
+        conversationRepository.refreshUnread(conversation.getId(), currentUser.getId());
     }
 
     @Transactional(readOnly = true)
@@ -139,7 +217,13 @@ public class MessageService {
                 sender.getUsername(),
                 request.isTyping()
         );
-        messagingTemplate.convertAndSendToUser(recipient.getUsername(), "/queue/typing", response);
+        // Typing state is coalesced per conversation and sender; only the latest state in a window matters.
+        coalescingUserSender.send(
+                recipient.getUsername(),
+                "/queue/typing",
+                conversation.getId() + ":" + sender.getUsername(),
+                response
+        );
     }
 
     public MessageResponse toMessageResponse(Message message, User viewer) {
@@ -159,12 +243,114 @@ public class MessageService {
     public MessageAttachmentResponse toAttachmentResponse(MessageAttachment attachment, User viewer) {
         String url = null;
         String thumbnailUrl = null;
-        if (attachment.getStatus() == AttachmentStatus.READY && !isExpired(attachment)) {
-            url = buildAttachmentUrl(attachment.getId(), viewer.getId());
+        if (isDeliverable(attachment)) {
+            // One token serves both links; it authorizes the attachment, not a particular rendition.
+            String token = attachmentTokenService.generateToken(attachment.getId(), viewer.getId());
+            url = buildAttachmentUrl(attachment.getId(), token);
+            if (attachment.getThumbnailKey() != null) {
+                thumbnailUrl = buildThumbnailUrl(attachment.getId(), token);
+            }
+        }
+        return toAttachmentResponse(attachment, url, thumbnailUrl);
+    }
+
+    public void notifyMessageCreated(Message message) {
+        publishMessage(message);
+    }
+
+    public void notifyMessageUpdated(Message message) {
+        if (message == null) {
+            return;
+        }
+        publishMessage(message);
+    }
+
+    /**
+     * Serializes the message once with placeholders where the per-viewer attachment links go, then fills in
+     * each participant's links and sends the bytes as-is, bypassing the broker's per-send conversion.
+     */
+    private void publishMessage(Message message) {
+        String template;
+        try {
+            template = objectMapper.writeValueAsString(toMessageTemplate(message));
+        } catch (JsonProcessingException ex) {
+            logger.warn("Failed to serialize message {} for delivery, converting per viewer: {}", message.getId(), ex.getMessage());
+            for (User viewer : List.of(message.getSender(), message.getRecipient())) {
+                messagingTemplate.convertAndSendToUser(viewer.getUsername(), MESSAGE_QUEUE, toMessageResponse(message, viewer));
+            }
+            return;
+        }
+        List<MessageAttachment> deliverable = message.getAttachments() == null
+                ? List.of()
+                : message.getAttachments().stream().filter(this::isDeliverable).toList();
+        for (User viewer : List.of(message.getSender(), message.getRecipient())) {
+            String payload = deliverable.isEmpty() ? template : fillViewerLinks(template, deliverable, viewer);
+            sendToUser(viewer.getUsername(), MESSAGE_QUEUE, payload.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private MessageResponse toMessageTemplate(Message message) {
+        List<MessageAttachment> attachments = message.getAttachments() == null ? List.of() : message.getAttachments();
+        List<MessageAttachmentResponse> attachmentResponses = attachments.stream()
+                .map(attachment -> isDeliverable(attachment)
+                        ? toAttachmentResponse(
+                                attachment,
+                                linkPlaceholder(attachment.getId(), "url"),
+                                attachment.getThumbnailKey() == null ? null : linkPlaceholder(attachment.getId(), "thumbnail")
+                        )
+                        : toAttachmentResponse(attachment, null, null))
+                .collect(Collectors.toList());
+        return new MessageResponse(
+                message.getId(),
+                message.getConversation().getId(),
+                message.getSender().getUsername(),
+                message.getRecipient().getUsername(),
+                message.getContent(),
+                attachmentResponses,
+                message.getCreatedAt(),
+                message.isRead(),
+                message.getReadAt()
+        );
+    }
+
+    private String fillViewerLinks(String template, List<MessageAttachment> attachments, User viewer) {
+        String payload = template;
+        for (MessageAttachment attachment : attachments) {
+            String token = attachmentTokenService.generateToken(attachment.getId(), viewer.getId());
+            payload = payload.replace(
+                    quoted(linkPlaceholder(attachment.getId(), "url")),
+                    quoted(buildAttachmentUrl(attachment.getId(), token))
+            );
             if (attachment.getThumbnailKey() != null) {
-                thumbnailUrl = buildThumbnailUrl(attachment.getId(), viewer.getId());
+                payload = payload.replace(
+                        quoted(linkPlaceholder(attachment.getId(), "thumbnail")),
+                        quoted(buildThumbnailUrl(attachment.getId(), token))
+                );
             }
         }
+        return payload;
+    }
+
+    // A quoted placeholder cannot occur inside user text: quotes in JSON strings are always escaped.
+    private static String linkPlaceholder(Long attachmentId, String kind) {
+        return "@@attachment-" + kind + ":" + attachmentId + "@@";
+    }
+
+    private static String quoted(String value) {
+        return "\"" + value + "\"";
+    }
+
+    private void sendToUser(String username, String destination, byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        String userDestination = messagingTemplate.getUserDestinationPrefix()
+                + username.replace("/", "%2F")
+                + destination;
+        messagingTemplate.send(userDestination, MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+    }
+
+    private MessageAttachmentResponse toAttachmentResponse(MessageAttachment attachment, String url, String thumbnailUrl) {
         return new MessageAttachmentResponse(
                 attachment.getId(),
                 attachment.getType(),
@@ -183,21 +369,8 @@ public class MessageService {
         );
     }
 
-    public void notifyMessageCreated(Message message) {
-        User sender = message.getSender();
-        User recipient = message.getRecipient();
-        messagingTemplate.convertAndSendToUser(sender.getUsername(), "/queue/messages", toMessageResponse(message, sender));
-        messagingTemplate.convertAndSendToUser(recipient.getUsername(), "/queue/messages", toMessageResponse(message, recipient));
-    }
-
-    public void notifyMessageUpdated(Message message) {
-        if (message == null) {
-            return;
-        }
-        User sender = message.getSender();
-        User recipient = message.getRecipient();
-        messagingTemplate.convertAndSendToUser(sender.getUsername(), "/queue/messages", toMessageResponse(message, sender));
-        messagingTemplate.convertAndSendToUser(recipient.getUsername(), "/queue/messages", toMessageResponse(message, recipient));
+    private boolean isDeliverable(MessageAttachment attachment) {
+        return attachment.getStatus() == AttachmentStatus.READY && !isExpired(attachment);
     }
 
     private List<MessageAttachmentResponse> toAttachmentResponses(Message message, User viewer) {
@@ -210,8 +383,7 @@ public class MessageService {
                 .collect(Collectors.toList());
     }
 
-    private String buildAttachmentUrl(Long attachmentId, Long viewerId) {
-        String token = attachmentTokenService.generateToken(attachmentId, viewerId);
+    private String buildAttachmentUrl(Long attachmentId, String token) {
         return buildBaseUrl()
                 .path("/api/messages/attachments/")
                 .path(String.valueOf(attachmentId))
@@ -219,8 +391,7 @@ public class MessageService {
                 .toUriString();
     }
 
-    private String buildThumbnailUrl(Long attachmentId, Long viewerId) {
-        String token = attachmentTokenService.generateToken(attachmentId, viewerId);
+    private String buildThumbnailUrl(Long attachmentId, String token) {
         return buildBaseUrl()
                 .path("/api/messages/attachments/")
                 .path(String.valueOf(attachmentId))
@@ -249,7 +420,9 @@ public class MessageService {
 
     private ConversationResponse toConversationResponse(Conversation conversation, User currentUser) {
         User other = resolveOtherParticipant(conversation, currentUser);
-        long unreadCount = messageRepository.countByConversationAndRecipientAndReadIsFalse(conversation, currentUser);
+        long unreadCount = Objects.equals(conversation.getUserOne().getId(), currentUser.getId())
+                ? conversation.getUserOneUnreadCount()
+                : conversation.getUserTwoUnreadCount();
         String lastSenderUsername = conversation.getLastMessageSender() == null
                 ? null
                 : conversation.getLastMessageSender().getUsername();
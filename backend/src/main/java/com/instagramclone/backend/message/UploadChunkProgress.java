@@ -0,0 +1,9 @@
+package com.instagramclone.backend.message;
+
+public interface UploadChunkProgress {
+    int getTotalChunks();
+
+    int getUploadedChunks();
+
+    byte[] getReceivedChunks();
+}
@@ -1,14 +1,18 @@
 package com.instagramclone.backend.message;
 
+import java.util.List;
+
 public class UploadChunkResponse {
     private String uploadId;
     private int uploadedChunks;
     private int totalChunks;
+    private List<Integer> missingChunks;
 
-    public UploadChunkResponse(String uploadId, int uploadedChunks, int totalChunks) {
+    public UploadChunkResponse(String uploadId, int uploadedChunks, int totalChunks, List<Integer> missingChunks) {
         this.uploadId = uploadId;
         this.uploadedChunks = uploadedChunks;
         this.totalChunks = totalChunks;
+        this.missingChunks = missingChunks;
     }
 
     public String getUploadId() {
@@ -22,4 +26,8 @@ public class UploadChunkResponse {
     public int getTotalChunks() {
         return totalChunks;
     }
+
+    public List<Integer> getMissingChunks() {
+        return missingChunks;
+    }
 }
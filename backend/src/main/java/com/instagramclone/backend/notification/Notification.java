@@ -5,7 +5,13 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "notifications")
+@Table(
+        name = "notifications",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_notifications_recipient_group",
+                columnNames = {"recipient_id", "group_key"}
+        )
+)
 public class Notification {
 
     @Id
@@ -40,6 +46,17 @@ public class Notification {
     @Column(name = "is_read", nullable = false)
     private boolean read = false;
 
+    // Set only on rows folded by NotificationAggregator; null keeps a notification ungrouped.
+    @Column(name = "group_key", length = 120)
+    private String groupKey;
+
+    @Column(name = "actor_count", nullable = false)
+    private int actorCount = 1;
+
+    // Comma-separated ids of the most recent distinct actors, newest first.
+    @Column(name = "recent_actor_ids", length = 255)
+    private String recentActorIds;
+
     public Notification() {
         this.createdAt = LocalDateTime.now();
     }
@@ -134,4 +151,28 @@ public class Notification {
     public void setRead(boolean read) {
         this.read = read;
     }
+
+    public String getGroupKey() {
+        return groupKey;
+    }
+
+    public void setGroupKey(String groupKey) {
+        this.groupKey = groupKey;
+    }
+
+    public int getActorCount() {
+        return actorCount;
+    }
+
+    public void setActorCount(int actorCount) {
+        this.actorCount = actorCount;
+    }
+
+    public String getRecentActorIds() {
+        return recentActorIds;
+    }
+
+    public void setRecentActorIds(String recentActorIds) {
+        this.recentActorIds = recentActorIds;
+    }
 }
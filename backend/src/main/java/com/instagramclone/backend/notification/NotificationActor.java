@@ -0,0 +1,71 @@
+package com.instagramclone.backend.notification;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.util.Objects;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * One distinct actor folded into an aggregated notification. Rows are only inserted by
+ * {@link NotificationWriter}, and {@code notifications.actor_count} grows only when an insert adds a new
+ * actor, so repeat actions by the same person are never counted twice.
+ */
+@Entity
+@Table(name = "notification_actors")
+@IdClass(NotificationActor.Key.class)
+public class NotificationActor {
+
+    @Id
+    @Column(name = "notification_id")
+    private Long notificationId;
+
+    @Id
+    @Column(name = "actor_id")
+    private Long actorId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "notification_id", insertable = false, updatable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Notification notification;
+
+    protected NotificationActor() {
+    }
+
+    public Long getNotificationId() {
+        return notificationId;
+    }
+
+    public Long getActorId() {
+        return actorId;
+    }
+
+    public static class Key implements Serializable {
+        private Long notificationId;
+        private Long actorId;
+
+        public Key() {
+        }
+
+        public Key(Long notificationId, Long actorId) {
+            this.notificationId = notificationId;
+            this.actorId = actorId;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key key)) {
+                return false;
+            }
+            return Objects.equals(notificationId, key.notificationId) && Objects.equals(actorId, key.actorId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(notificationId, actorId);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.instagramclone.backend.notification;
+
+import java.time.ZoneOffset;
+import java.util.EnumSet;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides which notifications fold into one row per (recipient, type, post) and aggregation window, so a
+ * viral post produces one "alice and 42 others liked your post" entry instead of one row per like.
+ * Windows are fixed buckets of {@code notifications.aggregation.window-minutes} aligned to the epoch; the
+ * bucket is part of the group key, which lets {@link NotificationWriter} fold with a single atomic upsert.
+ */
+@Component
+public class NotificationAggregator {
+
+    static final int RECENT_ACTOR_LIMIT = 3;
+
+    private final boolean enabled;
+    private final long windowSeconds;
+    private final Set<NotificationType> aggregatedTypes;
+
+    public NotificationAggregator(
+            @Value("${notifications.aggregation.enabled:true}") boolean enabled,
+            @Value("${notifications.aggregation.window-minutes:1440}") long windowMinutes,
+            @Value("${notifications.aggregation.types:LIKE,COMMENT,REPLY,MENTION}") Set<NotificationType> aggregatedTypes
+    ) {
+        this.enabled = enabled;
+        this.windowSeconds = Math.max(1, windowMinutes) * 60L;
+        this.aggregatedTypes = aggregatedTypes == null || aggregatedTypes.isEmpty()
+                ? EnumSet.noneOf(NotificationType.class)
+                : EnumSet.copyOf(aggregatedTypes);
+    }
+
+    /**
+     * Returns the aggregation group of the notification, or null when it should be stored as its own row.
+     */
+    public String groupKeyFor(Notification notification) {
+        return isGrouped(notification) ? groupKey(notification) : null;
+    }
+
+    boolean isGrouped(Notification notification) {
+        return enabled
+                && notification.getType() != null
+                && aggregatedTypes.contains(notification.getType())
+                && notification.getPostId() != null
+                && notification.getCreatedAt() != null
+                && notification.getRecipient() != null
+                && notification.getRecipient().getId() != null
+                && notification.getActor() != null
+                && notification.getActor().getId() != null;
+    }
+
+    String groupKey(Notification notification) {
+        long bucket = notification.getCreatedAt().toEpochSecond(ZoneOffset.UTC) / windowSeconds;
+        return notification.getType().name() + ":" + notification.getPostId() + ":" + bucket;
+    }
+}
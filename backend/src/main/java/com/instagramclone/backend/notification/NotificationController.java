@@ -1,5 +1,6 @@
 package com.instagramclone.backend.notification;
 
+import com.instagramclone.backend.pagination.CursorPage;
 import java.security.Principal;
 import java.util.List;
 import org.springframework.http.ResponseEntity;
@@ -16,9 +17,17 @@ public class NotificationController {
     }
 
     @GetMapping
-    public ResponseEntity<List<NotificationResponse>> getNotifications(Principal principal) {
+    public ResponseEntity<List<NotificationResponse>> getNotifications(
+            @RequestParam(name = "before", required = false) String before,
+            @RequestParam(name = "limit", defaultValue = "20") int limit,
+            Principal principal) {
         String username = principal.getName();
-        return ResponseEntity.ok(notificationService.getNotificationsForUser(username));
+        CursorPage<NotificationResponse> page = notificationService.getNotificationsPage(username, before, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.hasNext()) {
+            response.header(CursorPage.NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.items());
     }
 
     @GetMapping("/unread-count")
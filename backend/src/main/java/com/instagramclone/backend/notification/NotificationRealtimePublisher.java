@@ -1,16 +1,16 @@
 package com.instagramclone.backend.notification;
 
+import com.instagramclone.backend.realtime.CoalescingUserSender;
 import org.springframework.context.event.EventListener;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
 
 @Component
 public class NotificationRealtimePublisher {
 
-    private final SimpMessagingTemplate messagingTemplate;
+    private final CoalescingUserSender coalescingUserSender;
 
-    public NotificationRealtimePublisher(SimpMessagingTemplate messagingTemplate) {
-        this.messagingTemplate = messagingTemplate;
+    public NotificationRealtimePublisher(CoalescingUserSender coalescingUserSender) {
+        this.coalescingUserSender = coalescingUserSender;
     }
 
     @EventListener
@@ -18,9 +18,11 @@ public class NotificationRealtimePublisher {
         if (event == null || event.username() == null || event.username().isBlank()) {
             return;
         }
-        messagingTemplate.convertAndSendToUser(
+        // Only the latest count matters, so bursts of notifications collapse into one push per window.
+        coalescingUserSender.send(
                 event.username(),
                 "/queue/notification-count",
+                null,
                 new NotificationCountResponse(event.count())
         );
     }
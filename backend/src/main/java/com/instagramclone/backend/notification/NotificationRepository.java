@@ -1,8 +1,11 @@
 package com.instagramclone.backend.notification;
 
 import com.instagramclone.backend.user.User;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -10,11 +13,38 @@ import org.springframework.data.repository.query.Param;
 
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
 
-    @Query("select n from Notification n join fetch n.actor where n.recipient = :recipient order by n.createdAt desc")
-    List<Notification> findByRecipientWithActor(@Param("recipient") User recipient);
+    @Query("""
+            select n from Notification n join fetch n.actor
+            where n.recipient.id = :recipientId
+            order by n.createdAt desc, n.id desc
+            """)
+    List<Notification> findPageByRecipient(@Param("recipientId") Long recipientId, Pageable pageable);
+
+    @Query("""
+            select n from Notification n join fetch n.actor
+            where n.recipient.id = :recipientId
+              and (n.createdAt < :createdAt or (n.createdAt = :createdAt and n.id < :id))
+            order by n.createdAt desc, n.id desc
+            """)
+    List<Notification> findPageByRecipientBefore(
+            @Param("recipientId") Long recipientId,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            Pageable pageable
+    );
 
     long countByRecipientAndReadIsFalse(User recipient);
 
+    long countByRecipientIdAndReadIsFalse(Long recipientId);
+
+    @Query("""
+            select n.recipient.id as recipientId, count(n.id) as count
+            from Notification n
+            where n.recipient.id in :recipientIds and n.read = false
+            group by n.recipient.id
+            """)
+    List<UnreadCountProjection> countUnreadByRecipientIds(@Param("recipientIds") Collection<Long> recipientIds);
+
     Optional<Notification> findByIdAndRecipient(Long id, User recipient);
 
     @Modifying
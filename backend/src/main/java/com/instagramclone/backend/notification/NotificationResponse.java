@@ -2,6 +2,7 @@ package com.instagramclone.backend.notification;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.time.LocalDateTime;
+import java.util.List;
 
 public class NotificationResponse {
     private Long id;
@@ -18,6 +19,8 @@ public class NotificationResponse {
     private boolean isRead;
     @JsonProperty("actorFollowed")
     private boolean actorFollowed;
+    private int actorCount = 1;
+    private List<String> recentActorUsernames = List.of();
 
     public NotificationResponse(
             Long id,
@@ -96,4 +99,20 @@ public class NotificationResponse {
     public boolean getActorFollowed() {
         return actorFollowed;
     }
+
+    public int getActorCount() {
+        return actorCount;
+    }
+
+    public void setActorCount(int actorCount) {
+        this.actorCount = actorCount;
+    }
+
+    public List<String> getRecentActorUsernames() {
+        return recentActorUsernames;
+    }
+
+    public void setRecentActorUsernames(List<String> recentActorUsernames) {
+        this.recentActorUsernames = recentActorUsernames == null ? List.of() : recentActorUsernames;
+    }
 }
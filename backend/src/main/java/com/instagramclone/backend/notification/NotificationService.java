@@ -1,18 +1,25 @@
 package com.instagramclone.backend.notification;
 
+import com.instagramclone.backend.pagination.CursorPage;
+import com.instagramclone.backend.pagination.KeysetCursor;
 import com.instagramclone.backend.post.Comment;
 import com.instagramclone.backend.post.Post;
 import com.instagramclone.backend.user.User;
 import com.instagramclone.backend.user.UserRepository;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Service
 public class NotificationService {
@@ -22,18 +29,23 @@ public class NotificationService {
     private final NotificationRepository notificationRepository;
     private final UserRepository userRepository;
     private final ApplicationEventPublisher eventPublisher;
+    private final NotificationWriter notificationWriter;
+    private final UnreadNotificationCounter unreadCounter;
 
     public NotificationService(
             NotificationRepository notificationRepository,
             UserRepository userRepository,
-            ApplicationEventPublisher eventPublisher
+            ApplicationEventPublisher eventPublisher,
+            NotificationWriter notificationWriter,
+            UnreadNotificationCounter unreadCounter
     ) {
         this.notificationRepository = notificationRepository;
         this.userRepository = userRepository;
         this.eventPublisher = eventPublisher;
+        this.notificationWriter = notificationWriter;
+        this.unreadCounter = unreadCounter;
     }
 
-    @CacheEvict(cacheNames = "notificationUnreadCount", key = "#recipient.username", condition = "#recipient != null")
     public void createFollowNotification(User actor, User recipient) {
         if (actor == null || recipient == null) {
             return;
@@ -42,15 +54,9 @@ public class NotificationService {
             return;
         }
         Notification notification = new Notification(recipient, actor, NotificationType.FOLLOW);
-        notificationRepository.save(notification);
-        notifyUnreadCount(recipient);
+        notificationWriter.enqueue(notification);
     }
 
-    @CacheEvict(
-            cacheNames = "notificationUnreadCount",
-            key = "#post.user.username",
-            condition = "#post != null && #post.user != null"
-    )
     public void createLikeNotification(User actor, Post post) {
         if (actor == null || post == null || post.getUser() == null) {
             return;
@@ -62,15 +68,9 @@ public class NotificationService {
         Notification notification = new Notification(recipient, actor, NotificationType.LIKE);
         notification.setPostId(post.getId());
         notification.setPostImageUrl(post.getImageUrl());
-        notificationRepository.save(notification);
-        notifyUnreadCount(recipient);
+        notificationWriter.enqueue(notification);
     }
 
-    @CacheEvict(
-            cacheNames = "notificationUnreadCount",
-            key = "#post.user.username",
-            condition = "#post != null && #post.user != null"
-    )
     public void createCommentNotification(User actor, Post post, Comment comment) {
         if (actor == null || post == null || post.getUser() == null || comment == null) {
             return;
@@ -87,15 +87,9 @@ public class NotificationService {
             notification.setParentCommentId(comment.getParentComment().getId());
         }
         notification.setCommentPreview(buildCommentPreview(comment.getContent()));
-        notificationRepository.save(notification);
-        notifyUnreadCount(recipient);
+        notificationWriter.enqueue(notification);
     }
 
-    @CacheEvict(
-            cacheNames = "notificationUnreadCount",
-            key = "#recipient.username",
-            condition = "#recipient != null"
-    )
     public void createCommentNotification(User actor, Post post, Comment comment, User recipient) {
         if (actor == null || post == null || comment == null || recipient == null) {
             return;
@@ -111,15 +105,9 @@ public class NotificationService {
             notification.setParentCommentId(comment.getParentComment().getId());
         }
         notification.setCommentPreview(buildCommentPreview(comment.getContent()));
-        notificationRepository.save(notification);
-        notifyUnreadCount(recipient);
+        notificationWriter.enqueue(notification);
     }
 
-    @CacheEvict(
-            cacheNames = "notificationUnreadCount",
-            key = "#recipient.username",
-            condition = "#recipient != null"
-    )
     public void createMentionNotification(User actor, Post post, Comment comment, User recipient) {
         if (actor == null || post == null || comment == null || recipient == null) {
             return;
@@ -135,55 +123,125 @@ public class NotificationService {
             notification.setParentCommentId(comment.getParentComment().getId());
         }
         notification.setCommentPreview(buildCommentPreview(comment.getContent()));
-        notificationRepository.save(notification);
-        notifyUnreadCount(recipient);
+        notificationWriter.enqueue(notification);
     }
 
     @Transactional(readOnly = true)
-    public List<NotificationResponse> getNotificationsForUser(String username) {
+    public CursorPage<NotificationResponse> getNotificationsPage(String username, String before, int limit) {
         User recipient = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
-        Set<String> followingUsernames = recipient.getFollowing().stream()
-                .map(User::getUsername)
-                .collect(Collectors.toSet());
-        return notificationRepository.findByRecipientWithActor(recipient).stream()
-                .map(notification -> toResponse(notification, followingUsernames))
-                .collect(Collectors.toList());
+        int safeLimit = CursorPage.clampLimit(limit);
+        KeysetCursor position = KeysetCursor.decode(before);
+        PageRequest pageRequest = PageRequest.of(0, safeLimit + 1);
+        List<Notification> rows = position == null
+                ? notificationRepository.findPageByRecipient(recipient.getId(), pageRequest)
+                : notificationRepository.findPageByRecipientBefore(
+                        recipient.getId(),
+                        position.createdAt(),
+                        position.id(),
+                        pageRequest
+                );
+        CursorPage<Notification> page = CursorPage.fromOverfetched(
+                rows,
+                safeLimit,
+                notification -> new KeysetCursor(notification.getCreatedAt(), notification.getId())
+        );
+        Set<Long> followedActorIds = loadFollowedActorIds(recipient, page.items());
+        Map<Long, String> recentActorNames = loadRecentActorNames(page.items());
+        List<NotificationResponse> responses = page.items().stream()
+                .map(notification -> toResponse(notification, followedActorIds, recentActorNames))
+                .toList();
+        return new CursorPage<>(responses, page.nextCursor());
     }
 
     @Transactional(readOnly = true)
-    @Cacheable(cacheNames = "notificationUnreadCount", key = "#username", condition = "#username != null")
     public long getUnreadCount(String username) {
         User recipient = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
-        return notificationRepository.countByRecipientAndReadIsFalse(recipient);
+        return unreadCounter.get(recipient.getId());
     }
 
     @Transactional
-    @CacheEvict(cacheNames = "notificationUnreadCount", key = "#username", condition = "#username != null")
     public void markAllRead(String username) {
         User recipient = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
         notificationRepository.markAllRead(recipient);
-        notifyUnreadCount(recipient);
+        afterCommit(() -> {
+            unreadCounter.reset(recipient.getId());
+            publishUnreadCount(recipient, 0);
+        });
     }
 
     @Transactional
-    @CacheEvict(cacheNames = "notificationUnreadCount", key = "#username", condition = "#username != null")
     public void markRead(String username, Long notificationId) {
         User recipient = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
         Notification notification = notificationRepository.findByIdAndRecipient(notificationId, recipient)
                 .orElseThrow(() -> new IllegalArgumentException("Notification not found"));
+        boolean wasUnread = !notification.isRead();
         notification.setRead(true);
         notificationRepository.save(notification);
-        notifyUnreadCount(recipient);
+        afterCommit(() -> {
+            long count = wasUnread
+                    ? unreadCounter.adjust(recipient.getId(), -1)
+                    : unreadCounter.get(recipient.getId());
+            publishUnreadCount(recipient, count);
+        });
     }
 
-    private NotificationResponse toResponse(Notification notification, Set<String> followingUsernames) {
+    private Set<Long> loadFollowedActorIds(User recipient, List<Notification> notifications) {
+        Set<Long> actorIds = new HashSet<>();
+        for (Notification notification : notifications) {
+            if (notification.getActor() != null && notification.getActor().getId() != null) {
+                actorIds.add(notification.getActor().getId());
+            }
+        }
+        if (actorIds.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(userRepository.findFollowingIdsAmong(recipient.getId(), actorIds));
+    }
+
+    private Map<Long, String> loadRecentActorNames(List<Notification> notifications) {
+        Set<Long> actorIds = new HashSet<>();
+        for (Notification notification : notifications) {
+            if (notification.getActorCount() > 1) {
+                actorIds.addAll(parseActorIds(notification.getRecentActorIds()));
+            }
+        }
+        if (actorIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, String> names = new HashMap<>();
+        for (User user : userRepository.findAllById(actorIds)) {
+            names.put(user.getId(), user.getUsername());
+        }
+        return names;
+    }
+
+    private List<Long> parseActorIds(String recentActorIds) {
+        if (recentActorIds == null || recentActorIds.isBlank()) {
+            return List.of();
+        }
+        List<Long> ids = new ArrayList<>();
+        for (String value : recentActorIds.split(",")) {
+            try {
+                ids.add(Long.valueOf(value.trim()));
+            } catch (NumberFormatException ignored) {
+                // Skip malformed entries; the actor list is informational only.
+            }
+        }
+        return ids;
+    }
+
+    private NotificationResponse toResponse(
+            Notification notification,
+            Set<Long> followedActorIds,
+            Map<Long, String> recentActorNames
+    ) {
         User actor = notification.getActor();
-        boolean actorFollowed = followingUsernames.contains(actor.getUsername());
-        return new NotificationResponse(
+        boolean actorFollowed = followedActorIds.contains(actor.getId());
+        NotificationResponse response = new NotificationResponse(
                 notification.getId(),
                 notification.getType().name(),
                 actor.getUsername(),
@@ -197,6 +255,16 @@ public class NotificationService {
                 notification.isRead(),
                 actorFollowed
         );
+        response.setActorCount(Math.max(1, notification.getActorCount()));
+        if (notification.getActorCount() > 1) {
+            response.setRecentActorUsernames(parseActorIds(notification.getRecentActorIds()).stream()
+                    .map(recentActorNames::get)
+                    .filter(Objects::nonNull)
+                    .toList());
+        } else {
+            response.setRecentActorUsernames(List.of(actor.getUsername()));
+        }
+        return response;
     }
 
     private String buildCommentPreview(String content) {
@@ -210,11 +278,24 @@ public class NotificationService {
         return normalized.substring(0, COMMENT_PREVIEW_LIMIT).trim() + "...";
     }
 
-    private void notifyUnreadCount(User recipient) {
+    // Counter updates follow the commit so a rolled-back read never moves the badge.
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void publishUnreadCount(User recipient, long count) {
         if (recipient == null || recipient.getUsername() == null) {
             return;
         }
-        long count = notificationRepository.countByRecipientAndReadIsFalse(recipient);
         eventPublisher.publishEvent(new NotificationCountChangedEvent(recipient.getUsername(), count));
     }
 }
@@ -0,0 +1,305 @@
+package com.instagramclone.backend.notification;
+
+import jakarta.annotation.PreDestroy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Moves notification inserts off the request path. Notifications are queued once the surrounding transaction
+ * commits, drained by a single scheduled worker and written with JDBC batches; unread counters are then
+ * adjusted and pushed once per recipient per batch instead of once per notification. A full queue makes the
+ * caller write its own notification, so bursts slow requests down rather than lose notifications.
+ */
+@Component
+public class NotificationWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationWriter.class);
+
+    static final String INSERT_SQL = """
+            INSERT INTO notifications (
+                recipient_id, actor_id, type, post_id, post_image_url, comment_id, parent_comment_id,
+                comment_preview, created_at, is_read, actor_count
+            )
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, false, 1)
+            """;
+
+    // Folds the actor into the row of the same aggregation group: the row moves to the top of the inbox and
+    // turns unread again. Counting is left to ADD_GROUP_ACTOR_SQL.
+    static final String UPSERT_GROUPED_SQL = """
+            INSERT INTO notifications (
+                recipient_id, actor_id, type, post_id, post_image_url, comment_id, parent_comment_id,
+                comment_preview, created_at, is_read, group_key, actor_count, recent_actor_ids
+            )
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, false, ?, 1, ?)
+            ON CONFLICT (recipient_id, group_key) DO UPDATE SET
+                actor_id = EXCLUDED.actor_id,
+                post_image_url = EXCLUDED.post_image_url,
+                comment_id = EXCLUDED.comment_id,
+                parent_comment_id = EXCLUDED.parent_comment_id,
+                comment_preview = EXCLUDED.comment_preview,
+                created_at = EXCLUDED.created_at,
+                is_read = false,
+                recent_actor_ids = array_to_string(ARRAY(
+                    SELECT recent.actor_id
+                    FROM unnest(
+                        ARRAY[EXCLUDED.recent_actor_ids]
+                        || array_remove(string_to_array(notifications.recent_actor_ids, ','), EXCLUDED.recent_actor_ids)
+                    ) WITH ORDINALITY AS recent(actor_id, position)
+                    ORDER BY recent.position
+                    LIMIT ?
+                ), ',')
+            """;
+
+    // Records the actor on the group's row and counts it only if it is new there. The EXISTS sees the
+    // statement's starting snapshot, so the actor that created the row (already counted as 1) adds nothing.
+    static final String ADD_GROUP_ACTOR_SQL = """
+            WITH added AS (
+                INSERT INTO notification_actors (notification_id, actor_id)
+                SELECT id, ? FROM notifications WHERE recipient_id = ? AND group_key = ?
+                ON CONFLICT DO NOTHING
+                RETURNING notification_id
+            )
+            UPDATE notifications n
+            SET actor_count = n.actor_count + 1
+            FROM added
+            WHERE n.id = added.notification_id
+              AND EXISTS (SELECT 1 FROM notification_actors a WHERE a.notification_id = n.id)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NotificationAggregator notificationAggregator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UnreadNotificationCounter unreadCounter;
+    private final BlockingQueue<PendingNotification> queue;
+    private final int batchSize;
+
+    public NotificationWriter(
+            JdbcTemplate jdbcTemplate,
+            NotificationAggregator notificationAggregator,
+            ApplicationEventPublisher eventPublisher,
+            UnreadNotificationCounter unreadCounter,
+            @Value("${notifications.writer.queue-capacity:10000}") int queueCapacity,
+            @Value("${notifications.writer.batch-size:500}") int batchSize
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.notificationAggregator = notificationAggregator;
+        this.eventPublisher = eventPublisher;
+        this.unreadCounter = unreadCounter;
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, queueCapacity));
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public void enqueue(Notification notification) {
+        PendingNotification pending = PendingNotification.from(notification, notificationAggregator.groupKeyFor(notification));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    offer(pending);
+                }
+            });
+        } else {
+            offer(pending);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${notifications.writer.flush-delay-ms:250}")
+    public void drain() {
+        List<PendingNotification> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        drain();
+    }
+
+    int pendingCount() {
+        return queue.size();
+    }
+
+    private void offer(PendingNotification pending) {
+        if (!queue.offer(pending)) {
+            logger.warn("Notification queue full, writing notification for recipient {} inline", pending.recipientId());
+            write(List.of(pending));
+        }
+    }
+
+    void write(List<PendingNotification> batch) {
+        List<PendingNotification> grouped = new ArrayList<>();
+        List<PendingNotification> plain = new ArrayList<>();
+        for (PendingNotification pending : batch) {
+            (pending.groupKey() == null ? plain : grouped).add(pending);
+        }
+        // Folding into a group that is still unread leaves the unread count unchanged.
+        Set<String> unreadGroups = findUnreadGroups(grouped);
+        Map<Long, RecipientDelta> deltas = new LinkedHashMap<>();
+        for (PendingNotification row : writeAll(INSERT_SQL, plain, (ps, pending) -> bind(ps, pending, false))) {
+            deltas.computeIfAbsent(row.recipientId(), ignored -> new RecipientDelta(row.recipientUsername())).unread++;
+        }
+        List<PendingNotification> folded = writeAll(UPSERT_GROUPED_SQL, grouped, (ps, pending) -> bind(ps, pending, true));
+        writeAll(ADD_GROUP_ACTOR_SQL, folded, NotificationWriter::bindGroupActor);
+        for (PendingNotification row : folded) {
+            RecipientDelta delta = deltas.computeIfAbsent(row.recipientId(), ignored -> new RecipientDelta(row.recipientUsername()));
+            if (unreadGroups.add(groupId(row))) {
+                delta.unread++;
+            }
+        }
+        publishUnreadCounts(deltas);
+    }
+
+    private Set<String> findUnreadGroups(List<PendingNotification> grouped) {
+        Set<String> unread = new HashSet<>();
+        if (grouped.isEmpty()) {
+            return unread;
+        }
+        StringBuilder sql = new StringBuilder(
+                "SELECT recipient_id, group_key FROM notifications WHERE is_read = false AND (recipient_id, group_key) IN (");
+        List<Object> args = new ArrayList<>(grouped.size() * 2);
+        for (int i = 0; i < grouped.size(); i++) {
+            sql.append(i == 0 ? "(?, ?)" : ", (?, ?)");
+            args.add(grouped.get(i).recipientId());
+            args.add(grouped.get(i).groupKey());
+        }
+        sql.append(')');
+        try {
+            jdbcTemplate.query(sql.toString(), rs -> {
+                unread.add(rs.getLong("recipient_id") + "|" + rs.getString("group_key"));
+            }, args.toArray());
+        } catch (DataAccessException ex) {
+            // Counting every fold as new only overstates the badge until the next reconciliation.
+            logger.warn("Failed to look up unread notification groups: {}", ex.getMessage());
+        }
+        return unread;
+    }
+
+    private static String groupId(PendingNotification row) {
+        return row.recipientId() + "|" + row.groupKey();
+    }
+
+    private List<PendingNotification> writeAll(
+            String sql,
+            List<PendingNotification> rows,
+            ParameterizedPreparedStatementSetter<PendingNotification> binder
+    ) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        try {
+            jdbcTemplate.batchUpdate(sql, rows, rows.size(), binder);
+            return rows;
+        } catch (DataAccessException ex) {
+            // One bad row (e.g. a post deleted meanwhile) must not take the rest of the batch with it.
+            logger.warn("Notification batch of {} failed, retrying row by row: {}", rows.size(), ex.getMessage());
+            List<PendingNotification> written = new ArrayList<>(rows.size());
+            for (PendingNotification row : rows) {
+                try {
+                    jdbcTemplate.update(sql, ps -> binder.setValues(ps, row));
+                    written.add(row);
+                } catch (DataAccessException rowEx) {
+                    logger.warn("Dropping notification for recipient {}: {}", row.recipientId(), rowEx.getMessage());
+                }
+            }
+            return written;
+        }
+    }
+
+    private void bind(PreparedStatement ps, PendingNotification row, boolean grouped) throws SQLException {
+        ps.setLong(1, row.recipientId());
+        ps.setLong(2, row.actorId());
+        ps.setString(3, row.type().name());
+        ps.setObject(4, row.postId(), Types.BIGINT);
+        ps.setObject(5, row.postImageUrl(), Types.VARCHAR);
+        ps.setObject(6, row.commentId(), Types.BIGINT);
+        ps.setObject(7, row.parentCommentId(), Types.BIGINT);
+        ps.setObject(8, row.commentPreview(), Types.VARCHAR);
+        ps.setTimestamp(9, Timestamp.valueOf(row.createdAt()));
+        if (grouped) {
+            ps.setString(10, row.groupKey());
+            ps.setString(11, row.actorId().toString());
+            ps.setInt(12, NotificationAggregator.RECENT_ACTOR_LIMIT);
+        }
+    }
+
+    private static void bindGroupActor(PreparedStatement ps, PendingNotification row) throws SQLException {
+        ps.setLong(1, row.actorId());
+        ps.setLong(2, row.recipientId());
+        ps.setString(3, row.groupKey());
+    }
+
+    private void publishUnreadCounts(Map<Long, RecipientDelta> deltas) {
+        deltas.forEach((recipientId, delta) -> {
+            long count = delta.unread == 0 ? unreadCounter.get(recipientId) : unreadCounter.adjust(recipientId, delta.unread);
+            if (delta.username != null) {
+                eventPublisher.publishEvent(new NotificationCountChangedEvent(delta.username, count));
+            }
+        });
+    }
+
+    private static final class RecipientDelta {
+        private final String username;
+        private long unread;
+
+        private RecipientDelta(String username) {
+            this.username = username;
+        }
+    }
+
+    /**
+     * Detached snapshot of a notification, holding ids only so the worker never touches request-scoped entities.
+     */
+    record PendingNotification(
+            Long recipientId,
+            String recipientUsername,
+            Long actorId,
+            NotificationType type,
+            Long postId,
+            String postImageUrl,
+            Long commentId,
+            Long parentCommentId,
+            String commentPreview,
+            LocalDateTime createdAt,
+            String groupKey
+    ) {
+        static PendingNotification from(Notification notification, String groupKey) {
+            return new PendingNotification(
+                    notification.getRecipient().getId(),
+                    notification.getRecipient().getUsername(),
+                    notification.getActor().getId(),
+                    notification.getType(),
+                    notification.getPostId(),
+                    notification.getPostImageUrl(),
+                    notification.getCommentId(),
+                    notification.getParentCommentId(),
+                    notification.getCommentPreview(),
+                    notification.getCreatedAt(),
+                    groupKey
+            );
+        }
+    }
+}
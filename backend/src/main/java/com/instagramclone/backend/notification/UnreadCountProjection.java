@@ -0,0 +1,6 @@
+package com.instagramclone.backend.notification;
+
+public interface UnreadCountProjection {
+    Long getRecipientId();
+    long getCount();
+}
@@ -0,0 +1,164 @@
+package com.instagramclone.backend.notification;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Unread notification counts kept as one Redis counter per recipient. Writes adjust a counter only while it
+ * exists, a missing counter is loaded from Postgres on first read, and a periodic reconciler overwrites every
+ * live counter with the database count, repairing drift from races or failed writes.
+ * Redis errors fall back to counting in Postgres.
+ */
+@Component
+public class UnreadNotificationCounter {
+
+    private static final Logger logger = LoggerFactory.getLogger(UnreadNotificationCounter.class);
+
+    private static final String KEY_PREFIX = "notifications:unread:";
+    private static final int RECONCILE_BATCH_SIZE = 500;
+
+    // Adjusts an existing counter, never below zero; returns nil when the counter is not loaded.
+    private static final RedisScript<Long> ADJUST_IF_PRESENT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return nil
+            end
+            local value = redis.call('INCRBY', KEYS[1], ARGV[1])
+            if value < 0 then
+                redis.call('SET', KEYS[1], 0)
+                value = 0
+            end
+            redis.call('EXPIRE', KEYS[1], ARGV[2])
+            return value
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final NotificationRepository notificationRepository;
+    private final Duration ttl;
+
+    public UnreadNotificationCounter(
+            StringRedisTemplate redisTemplate,
+            NotificationRepository notificationRepository,
+            @Value("${notifications.unread-counter.ttl-hours:168}") long ttlHours
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.notificationRepository = notificationRepository;
+        this.ttl = Duration.ofHours(Math.max(1, ttlHours));
+    }
+
+    public long get(Long recipientId) {
+        try {
+            String value = redisTemplate.opsForValue().getAndExpire(key(recipientId), ttl);
+            if (value != null) {
+                return Long.parseLong(value);
+            }
+            long count = notificationRepository.countByRecipientIdAndReadIsFalse(recipientId);
+            redisTemplate.opsForValue().setIfAbsent(key(recipientId), Long.toString(count), ttl);
+            return count;
+        } catch (DataAccessException ex) {
+            logger.warn("Unread counter unavailable for recipient {}: {}", recipientId, ex.getMessage());
+            return notificationRepository.countByRecipientIdAndReadIsFalse(recipientId);
+        }
+    }
+
+    /**
+     * Applies the delta and returns the new count, loading the counter first when it does not exist yet.
+     */
+    public long adjust(Long recipientId, long delta) {
+        try {
+            Long value = redisTemplate.execute(
+                    ADJUST_IF_PRESENT,
+                    List.of(key(recipientId)),
+                    Long.toString(delta),
+                    Long.toString(ttl.toSeconds())
+            );
+            // A missing counter is loaded from the database, which already includes this change.
+            return value != null ? value : get(recipientId);
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to adjust unread counter for recipient {}: {}", recipientId, ex.getMessage());
+            evictQuietly(recipientId);
+            return notificationRepository.countByRecipientIdAndReadIsFalse(recipientId);
+        }
+    }
+
+    public void reset(Long recipientId) {
+        try {
+            redisTemplate.opsForValue().set(key(recipientId), "0", ttl);
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to reset unread counter for recipient {}: {}", recipientId, ex.getMessage());
+            evictQuietly(recipientId);
+        }
+    }
+
+    @Scheduled(
+            initialDelayString = "${notifications.unread-counter.reconcile-delay-ms:300000}",
+            fixedDelayString = "${notifications.unread-counter.reconcile-delay-ms:300000}"
+    )
+    public void reconcile() {
+        ScanOptions options = ScanOptions.scanOptions().match(KEY_PREFIX + "*").count(RECONCILE_BATCH_SIZE).build();
+        int repaired = 0;
+        try (Cursor<String> keys = redisTemplate.scan(options)) {
+            List<Long> batch = new ArrayList<>(RECONCILE_BATCH_SIZE);
+            while (keys.hasNext()) {
+                batch.add(Long.valueOf(keys.next().substring(KEY_PREFIX.length())));
+                if (batch.size() == RECONCILE_BATCH_SIZE) {
+                    repaired += reconcileBatch(batch);
+                    batch.clear();
+                }
+            }
+            repaired += reconcileBatch(batch);
+        } catch (DataAccessException | NumberFormatException ex) {
+            logger.warn("Unread counter reconciliation stopped early: {}", ex.getMessage());
+        }
+        if (repaired > 0) {
+            logger.info("Reconciled {} drifted unread notification counters", repaired);
+        }
+    }
+
+    private int reconcileBatch(List<Long> recipientIds) {
+        if (recipientIds.isEmpty()) {
+            return 0;
+        }
+        Map<Long, Long> actual = new HashMap<>();
+        for (UnreadCountProjection projection : notificationRepository.countUnreadByRecipientIds(recipientIds)) {
+            actual.put(projection.getRecipientId(), projection.getCount());
+        }
+        List<String> keys = recipientIds.stream().map(this::key).toList();
+        List<String> cached = redisTemplate.opsForValue().multiGet(keys);
+        int repaired = 0;
+        for (int i = 0; i < recipientIds.size(); i++) {
+            String expected = Long.toString(actual.getOrDefault(recipientIds.get(i), 0L));
+            String current = cached == null ? null : cached.get(i);
+            if (current != null && !current.equals(expected)) {
+                redisTemplate.opsForValue().set(keys.get(i), expected, ttl);
+                repaired++;
+            }
+        }
+        return repaired;
+    }
+
+    private void evictQuietly(Long recipientId) {
+        try {
+            redisTemplate.delete(key(recipientId));
+        } catch (DataAccessException ignored) {
+            // The counter is reloaded or reconciled once Redis is reachable again.
+        }
+    }
+
+    private String key(Long recipientId) {
+        return KEY_PREFIX + recipientId;
+    }
+}
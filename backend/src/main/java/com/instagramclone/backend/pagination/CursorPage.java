@@ -0,0 +1,38 @@
+package com.instagramclone.backend.pagination;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated list. {@code nextCursor} is null once the last page has been served.
+ */
+public record CursorPage<T>(List<T> items, String nextCursor) {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 50;
+
+    public CursorPage {
+        items = items == null ? Collections.emptyList() : items;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    public static int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    /**
+     * Builds a page from rows fetched with {@code limit + 1}; the extra row only signals that another page exists.
+     */
+    public static <T> CursorPage<T> fromOverfetched(List<T> rows, int limit, Function<T, KeysetCursor> positionOf) {
+        if (rows == null || rows.size() <= limit) {
+            return new CursorPage<>(rows, null);
+        }
+        List<T> page = rows.subList(0, limit);
+        return new CursorPage<>(page, positionOf.apply(page.get(page.size() - 1)).encode());
+    }
+}
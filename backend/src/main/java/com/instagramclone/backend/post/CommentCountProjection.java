@@ -0,0 +1,6 @@
+package com.instagramclone.backend.post;
+
+public interface CommentCountProjection {
+    Long getTargetId();
+    long getCount();
+}
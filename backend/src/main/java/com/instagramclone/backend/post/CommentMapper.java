@@ -2,11 +2,11 @@ package com.instagramclone.backend.post;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 public final class CommentMapper {
 
@@ -14,7 +14,7 @@ public final class CommentMapper {
     }
 
     public static List<CommentResponse> toThreadedResponses(
-            Set<Comment> comments,
+            Collection<Comment> comments,
             CommentReactionService.CommentReactionLookup reactionLookup
     ) {
         if (comments == null || comments.isEmpty()) {
@@ -46,6 +46,19 @@ public final class CommentMapper {
         return response;
     }
 
+    public static List<CommentResponse> toReplyResponses(
+            List<Comment> replies,
+            CommentReactionService.CommentReactionLookup reactionLookup
+    ) {
+        List<CommentResponse> response = mapReplies(replies == null ? null : new ArrayList<>(replies));
+        if (reactionLookup != null) {
+            for (CommentResponse reply : response) {
+                applyReactions(reply, reactionLookup);
+            }
+        }
+        return response;
+    }
+
     private static List<CommentResponse> mapReplies(List<Comment> replies) {
         if (replies == null || replies.isEmpty()) {
             return List.of();
@@ -87,6 +100,7 @@ public final class CommentMapper {
     }
 
     private static Comparator<Comment> createdAtComparator() {
-        return Comparator.comparing(Comment::getCreatedAt, Comparator.nullsLast(LocalDateTime::compareTo));
+        return Comparator.comparing(Comment::getCreatedAt, Comparator.nullsLast(LocalDateTime::compareTo))
+                .thenComparing(Comment::getId, Comparator.nullsLast(Long::compareTo));
     }
 }
@@ -0,0 +1,187 @@
+package com.instagramclone.backend.post;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+/**
+ * Redis layout for comment reaction counts: one hash per comment mapping emoji to count. A hash only counts
+ * as loaded once it carries the marker field, so increments landing on an evicted or expired key never
+ * masquerade as complete counts. Every committed increment also bumps a version field, loaded or not, and a
+ * rebuild only writes when that version is still the one it saw before reading the database, so a snapshot
+ * older than the latest commit is never cached.
+ */
+@Component
+public class CommentReactionCountCache {
+
+    private static final String KEY_PREFIX = "comment:reactions:";
+    static final String LOADED_FIELD = "_loaded";
+    static final String VERSION_FIELD = "_version";
+
+    // ARGV: ttl, expected version ("" when absent), then emoji/count pairs.
+    private static final String PUT_IF_UNCHANGED = """
+            if redis.call('HEXISTS', KEYS[1], '_loaded') == 1 then
+                return 0
+            end
+            local version = redis.call('HGET', KEYS[1], '_version') or ''
+            if version ~= ARGV[2] then
+                return 0
+            end
+            redis.call('DEL', KEYS[1])
+            redis.call('HSET', KEYS[1], '_loaded', '1')
+            if version ~= '' then
+                redis.call('HSET', KEYS[1], '_version', version)
+            end
+            for i = 3, #ARGV, 2 do
+                redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1])
+            end
+            redis.call('EXPIRE', KEYS[1], ARGV[1])
+            return 1
+            """;
+
+    // ARGV: ttl, then emoji/delta pairs.
+    private static final RedisScript<Long> INCREMENT_IF_LOADED = new DefaultRedisScript<>("""
+            redis.call('HINCRBY', KEYS[1], '_version', 1)
+            redis.call('EXPIRE', KEYS[1], ARGV[1])
+            if redis.call('HEXISTS', KEYS[1], '_loaded') == 0 then
+                return 0
+            end
+            for i = 2, #ARGV, 2 do
+                redis.call('HINCRBY', KEYS[1], ARGV[i], ARGV[i + 1])
+            end
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final long ttlSeconds;
+
+    public CommentReactionCountCache(
+            StringRedisTemplate redisTemplate,
+            @Value("${post.comments.reaction-cache.ttl-hours:24}") long ttlHours
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.ttlSeconds = Math.max(1, ttlHours) * 3600L;
+    }
+
+    /**
+     * Returns counts for the comments whose hashes are loaded; misses are absent from the counts and carry the
+     * version to pass back to {@link #putAll} when present.
+     */
+    public CachedCounts getAll(Collection<Long> commentIds) {
+        if (commentIds == null || commentIds.isEmpty()) {
+            return new CachedCounts(Map.of(), Map.of());
+        }
+        List<Long> ids = new ArrayList<>(commentIds);
+        List<Object> hashes = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = asStringConnection(connection);
+            for (Long commentId : ids) {
+                stringConnection.hGetAll(key(commentId));
+            }
+            return null;
+        });
+        Map<Long, Map<String, Long>> counts = new HashMap<>();
+        Map<Long, String> missVersions = new HashMap<>();
+        for (int i = 0; i < ids.size() && i < hashes.size(); i++) {
+            Long commentId = ids.get(i);
+            Object hash = hashes.get(i);
+            Optional<Map<String, Long>> loaded = toCounts(hash);
+            if (loaded.isPresent()) {
+                counts.put(commentId, loaded.get());
+            } else if (hash instanceof Map<?, ?> fields && fields.get(VERSION_FIELD) != null) {
+                missVersions.put(commentId, String.valueOf(fields.get(VERSION_FIELD)));
+            }
+        }
+        return new CachedCounts(counts, missVersions);
+    }
+
+    /**
+     * Stores freshly aggregated counts for comments whose hashes are still unloaded and unchanged since
+     * {@link #getAll}. Every written id is marked loaded, including those without reactions, so empty comments
+     * stay cache hits.
+     */
+    public void putAll(
+            Collection<Long> commentIds,
+            Map<Long, Map<String, Long>> countsByComment,
+            Map<Long, String> observedVersions
+    ) {
+        if (commentIds == null || commentIds.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = asStringConnection(connection);
+            for (Long commentId : commentIds) {
+                List<String> keysAndArgs = new ArrayList<>();
+                keysAndArgs.add(key(commentId));
+                keysAndArgs.add(Long.toString(ttlSeconds));
+                keysAndArgs.add(observedVersions.getOrDefault(commentId, ""));
+                countsByComment.getOrDefault(commentId, Map.of()).forEach((emoji, count) -> {
+                    keysAndArgs.add(emoji);
+                    keysAndArgs.add(Long.toString(count));
+                });
+                stringConnection.eval(PUT_IF_UNCHANGED, ReturnType.INTEGER, 1, keysAndArgs.toArray(String[]::new));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Applies committed deltas to a loaded hash and bumps its version either way; returns whether the hash was
+     * loaded.
+     */
+    public boolean increment(Long commentId, Map<String, Long> deltas) {
+        List<String> args = new ArrayList<>();
+        args.add(Long.toString(ttlSeconds));
+        deltas.forEach((emoji, delta) -> {
+            args.add(emoji);
+            args.add(Long.toString(delta));
+        });
+        Long applied = redisTemplate.execute(INCREMENT_IF_LOADED, List.of(key(commentId)), args.toArray());
+        return applied != null && applied == 1L;
+    }
+
+    public void evict(Long commentId) {
+        redisTemplate.delete(key(commentId));
+    }
+
+    private Optional<Map<String, Long>> toCounts(Object hash) {
+        if (!(hash instanceof Map<?, ?> fields) || !fields.containsKey(LOADED_FIELD)) {
+            return Optional.empty();
+        }
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> field : fields.entrySet()) {
+            String emoji = String.valueOf(field.getKey());
+            if (LOADED_FIELD.equals(emoji) || VERSION_FIELD.equals(emoji)) {
+                continue;
+            }
+            long count = Long.parseLong(String.valueOf(field.getValue()));
+            if (count > 0) {
+                counts.put(emoji, count);
+            }
+        }
+        return Optional.of(counts);
+    }
+
+    public record CachedCounts(Map<Long, Map<String, Long>> counts, Map<Long, String> missVersions) {
+    }
+
+    private StringRedisConnection asStringConnection(RedisConnection connection) {
+        return (StringRedisConnection) connection;
+    }
+
+    private String key(Long commentId) {
+        return KEY_PREFIX + commentId;
+    }
+}
@@ -20,12 +20,4 @@ public interface CommentReactionRepository extends JpaRepository<CommentReaction
             group by cr.comment.id, cr.emoji
             """)
     List<CommentReactionCountProjection> findReactionCountsByCommentIds(@Param("commentIds") Collection<Long> commentIds);
-
-    @Query("""
-            select cr.comment.id as commentId, cr.emoji as emoji, count(cr.id) as count
-            from CommentReaction cr
-            where cr.comment.id = :commentId
-            group by cr.comment.id, cr.emoji
-            """)
-    List<CommentReactionCountProjection> findReactionCountsByCommentId(@Param("commentId") Long commentId);
 }
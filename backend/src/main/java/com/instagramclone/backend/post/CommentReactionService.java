@@ -4,18 +4,27 @@ import com.instagramclone.backend.user.User;
 import com.instagramclone.backend.user.UserRepository;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.server.ResponseStatusException;
 
 @Service
 public class CommentReactionService {
+    private static final Logger logger = LoggerFactory.getLogger(CommentReactionService.class);
     private static final String EMOJI_HEART = "\u2764\uFE0F";
     private static final String EMOJI_LAUGH = "\uD83D\uDE02";
     private static final String EMOJI_WOW = "\uD83D\uDE2E";
@@ -30,18 +39,25 @@ public class CommentReactionService {
             EMOJI_ANGRY,
             EMOJI_THUMBS_UP
     );
-private final CommentReactionRepository reactionRepository;
+    private static final Comparator<CommentReactionCountResponse> COUNT_ORDER =
+            Comparator.comparingLong(CommentReactionCountResponse::getCount).reversed()
+                    .thenComparing(CommentReactionCountResponse::getEmoji);
+
+    private final CommentReactionRepository reactionRepository;
     private final CommentRepository commentRepository;
     private final UserRepository userRepository;
+    private final CommentReactionCountCache countCache;
 
     public CommentReactionService(
             CommentReactionRepository reactionRepository,
             CommentRepository commentRepository,
-            UserRepository userRepository
+            UserRepository userRepository,
+            CommentReactionCountCache countCache
     ) {
         this.reactionRepository = reactionRepository;
         this.commentRepository = commentRepository;
         this.userRepository = userRepository;
+        this.countCache = countCache;
     }
 
     @Transactional
@@ -63,22 +79,31 @@ private final CommentReactionRepository reactionRepository;
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found."));
 
-        reactionRepository.findByCommentIdAndUserUsername(commentId, username)
-                .ifPresentOrElse(existing -> {
-                    if (normalizedEmoji.equals(existing.getEmoji())) {
-                        reactionRepository.delete(existing);
-                    } else {
-                        existing.setEmoji(normalizedEmoji);
-                        reactionRepository.save(existing);
-                    }
-                }, () -> reactionRepository.save(new CommentReaction(comment, user, normalizedEmoji)));
-
-        return buildSummary(commentId, username);
+        Map<String, Long> deltas = new LinkedHashMap<>();
+        String viewerReaction = normalizedEmoji;
+        Optional<CommentReaction> existing = reactionRepository.findByCommentIdAndUserUsername(commentId, username);
+        if (existing.isPresent()) {
+            CommentReaction reaction = existing.get();
+            deltas.put(reaction.getEmoji(), -1L);
+            if (normalizedEmoji.equals(reaction.getEmoji())) {
+                reactionRepository.delete(reaction);
+                viewerReaction = null;
+            } else {
+                reaction.setEmoji(normalizedEmoji);
+                reactionRepository.save(reaction);
+                deltas.put(normalizedEmoji, 1L);
+            }
+        } else {
+            reactionRepository.save(new CommentReaction(comment, user, normalizedEmoji));
+            deltas.put(normalizedEmoji, 1L);
+        }
+
+        return new CommentReactionSummaryResponse(commentId, applyDeltas(commentId, deltas), viewerReaction);
     }
 
     @Transactional(readOnly = true)
     public CommentReactionSummaryResponse buildSummary(Long commentId, String username) {
-        List<CommentReactionCountResponse> reactions = mapCounts(reactionRepository.findReactionCountsByCommentId(commentId));
+        List<CommentReactionCountResponse> reactions = loadCounts(Set.of(commentId)).getOrDefault(commentId, List.of());
         String viewerReaction = null;
         if (username != null && !username.isBlank()) {
             viewerReaction = reactionRepository.findByCommentIdAndUserUsername(commentId, username)
@@ -89,7 +114,7 @@ private final CommentReactionRepository reactionRepository;
     }
 
     @Transactional(readOnly = true)
-    public CommentReactionLookup buildLookup(Set<Comment> comments, String username) {
+    public CommentReactionLookup buildLookup(Collection<Comment> comments, String username) {
         if (comments == null || comments.isEmpty()) {
             return new CommentReactionLookup(Map.of(), Map.of());
         }
@@ -102,12 +127,7 @@ private final CommentReactionRepository reactionRepository;
         if (commentIds.isEmpty()) {
             return new CommentReactionLookup(Map.of(), Map.of());
         }
-        Map<Long, List<CommentReactionCountResponse>> reactionsByComment = new HashMap<>();
-        for (CommentReactionCountProjection projection : reactionRepository.findReactionCountsByCommentIds(commentIds)) {
-            reactionsByComment
-                    .computeIfAbsent(projection.getCommentId(), ignored -> new ArrayList<>())
-                    .add(new CommentReactionCountResponse(projection.getEmoji(), projection.getCount()));
-        }
+        Map<Long, List<CommentReactionCountResponse>> reactionsByComment = loadCounts(commentIds);
         Map<Long, String> viewerReactions = new HashMap<>();
         if (username != null && !username.isBlank()) {
             for (CommentReaction reaction : reactionRepository.findByCommentIdInAndUserUsername(commentIds, username)) {
@@ -141,15 +161,109 @@ private final CommentReactionRepository reactionRepository;
         }
     }
 
-    private List<CommentReactionCountResponse> mapCounts(Collection<CommentReactionCountProjection> projections) {
-        if (projections == null || projections.isEmpty()) {
-            return List.of();
+    /**
+     * Reads counts from the Redis hashes and aggregates only the misses in the database, writing them back.
+     * Redis failures degrade to a database read for the whole batch.
+     */
+    private Map<Long, List<CommentReactionCountResponse>> loadCounts(Set<Long> commentIds) {
+        CommentReactionCountCache.CachedCounts cached;
+        try {
+            cached = countCache.getAll(commentIds);
+        } catch (DataAccessException ex) {
+            logger.warn("Reaction count cache unavailable, reading counts from the database: {}", ex.getMessage());
+            return toResponses(aggregate(commentIds));
+        }
+        Set<Long> misses = new HashSet<>(commentIds);
+        misses.removeAll(cached.counts().keySet());
+        if (misses.isEmpty()) {
+            return toResponses(cached.counts());
+        }
+        Map<Long, Map<String, Long>> loaded = aggregate(misses);
+        try {
+            countCache.putAll(misses, loaded, cached.missVersions());
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to cache reaction counts for {} comments: {}", misses.size(), ex.getMessage());
         }
-        List<CommentReactionCountResponse> results = new ArrayList<>();
-        for (CommentReactionCountProjection projection : projections) {
-            results.add(new CommentReactionCountResponse(projection.getEmoji(), projection.getCount()));
+        Map<Long, Map<String, Long>> counts = new HashMap<>(cached.counts());
+        counts.putAll(loaded);
+        return toResponses(counts);
+    }
+
+    /**
+     * Answers with the cached counts plus this toggle, or with a database aggregate (which already sees the
+     * flushed change) when the hash is not loaded. The cache itself is only touched after commit: the deltas
+     * are applied with HINCRBY and bump the hash version, so a concurrent rebuild from an older snapshot is
+     * discarded instead of overwriting them.
+     */
+    private List<CommentReactionCountResponse> applyDeltas(Long commentId, Map<String, Long> deltas) {
+        incrementAfterCommit(commentId, deltas);
+        Map<String, Long> counts;
+        try {
+            counts = countCache.getAll(Set.of(commentId)).counts().get(commentId);
+        } catch (DataAccessException ex) {
+            logger.warn("Reaction count cache unavailable for comment {}: {}", commentId, ex.getMessage());
+            counts = null;
+        }
+        if (counts == null) {
+            return toResponses(aggregate(Set.of(commentId))).getOrDefault(commentId, List.of());
+        }
+        Map<String, Long> updated = new HashMap<>(counts);
+        deltas.forEach((emoji, delta) -> updated.merge(emoji, delta, Long::sum));
+        updated.values().removeIf(count -> count <= 0);
+        return toResponses(Map.of(commentId, updated)).getOrDefault(commentId, List.of());
+    }
+
+    private void incrementAfterCommit(Long commentId, Map<String, Long> deltas) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            incrementQuietly(commentId, deltas);
+            return;
         }
-        return results;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                incrementQuietly(commentId, deltas);
+            }
+        });
+    }
+
+    private void incrementQuietly(Long commentId, Map<String, Long> deltas) {
+        try {
+            countCache.increment(commentId, deltas);
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to update cached reaction counts for comment {}: {}", commentId, ex.getMessage());
+            evictQuietly(commentId);
+        }
+    }
+
+    private void evictQuietly(Long commentId) {
+        try {
+            countCache.evict(commentId);
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to evict cached reaction counts for comment {}: {}", commentId, ex.getMessage());
+        }
+    }
+
+    private Map<Long, Map<String, Long>> aggregate(Set<Long> commentIds) {
+        Map<Long, Map<String, Long>> counts = new HashMap<>();
+        for (CommentReactionCountProjection projection : reactionRepository.findReactionCountsByCommentIds(commentIds)) {
+            counts.computeIfAbsent(projection.getCommentId(), ignored -> new HashMap<>())
+                    .put(projection.getEmoji(), projection.getCount());
+        }
+        return counts;
+    }
+
+    private Map<Long, List<CommentReactionCountResponse>> toResponses(Map<Long, Map<String, Long>> countsByComment) {
+        Map<Long, List<CommentReactionCountResponse>> responses = new HashMap<>();
+        countsByComment.forEach((commentId, counts) -> {
+            if (counts.isEmpty()) {
+                return;
+            }
+            List<CommentReactionCountResponse> reactions = new ArrayList<>();
+            counts.forEach((emoji, count) -> reactions.add(new CommentReactionCountResponse(emoji, count)));
+            reactions.sort(COUNT_ORDER);
+            responses.put(commentId, reactions);
+        });
+        return responses;
     }
 
     private String normalizeEmoji(String emoji) {
@@ -1,6 +1,96 @@
 package com.instagramclone.backend.post;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface CommentRepository extends JpaRepository<Comment, Long> {
+
+    @Query("select c from Comment c join fetch c.user where c.id in :ids")
+    List<Comment> findWithUserByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("""
+            select c from Comment c join fetch c.user
+            where c.post.id = :postId and c.parentComment is null
+            order by c.createdAt asc, c.id asc
+            """)
+    List<Comment> findTopLevelPage(@Param("postId") Long postId, Pageable pageable);
+
+    @Query("""
+            select c from Comment c join fetch c.user
+            where c.post.id = :postId and c.parentComment is null
+              and (c.createdAt > :createdAt or (c.createdAt = :createdAt and c.id > :id))
+            order by c.createdAt asc, c.id asc
+            """)
+    List<Comment> findTopLevelPageAfter(
+            @Param("postId") Long postId,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            Pageable pageable
+    );
+
+    @Query("""
+            select c from Comment c join fetch c.user
+            where c.post.id = :postId and c.parentComment.id = :parentId
+            order by c.createdAt asc, c.id asc
+            """)
+    List<Comment> findReplyPage(@Param("postId") Long postId, @Param("parentId") Long parentId, Pageable pageable);
+
+    @Query("""
+            select c from Comment c join fetch c.user
+            where c.post.id = :postId and c.parentComment.id = :parentId
+              and (c.createdAt > :createdAt or (c.createdAt = :createdAt and c.id > :id))
+            order by c.createdAt asc, c.id asc
+            """)
+    List<Comment> findReplyPageAfter(
+            @Param("postId") Long postId,
+            @Param("parentId") Long parentId,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            Pageable pageable
+    );
+
+    @Query(value = """
+            SELECT ranked.id FROM (
+                SELECT c.id, ROW_NUMBER() OVER (PARTITION BY c.post_id ORDER BY c.created_at, c.id) AS rn
+                FROM comments c
+                WHERE c.post_id IN (:postIds) AND c.parent_comment_id IS NULL
+            ) ranked
+            WHERE ranked.rn <= :perPost
+            """, nativeQuery = true)
+    List<Long> findFirstTopLevelIds(@Param("postIds") Collection<Long> postIds, @Param("perPost") int perPost);
+
+    @Query(value = """
+            SELECT ranked.id FROM (
+                SELECT c.id, ROW_NUMBER() OVER (PARTITION BY c.parent_comment_id ORDER BY c.created_at, c.id) AS rn
+                FROM comments c
+                WHERE c.post_id = :postId AND c.parent_comment_id IN (:parentIds)
+            ) ranked
+            WHERE ranked.rn <= :perParent
+            """, nativeQuery = true)
+    List<Long> findFirstReplyIds(
+            @Param("postId") Long postId,
+            @Param("parentIds") Collection<Long> parentIds,
+            @Param("perParent") int perParent
+    );
+
+    @Query("""
+            select c.post.id as targetId, count(c.id) as count
+            from Comment c
+            where c.post.id in :postIds
+            group by c.post.id
+            """)
+    List<CommentCountProjection> countByPostIds(@Param("postIds") Collection<Long> postIds);
+
+    @Query("""
+            select c.parentComment.id as targetId, count(c.id) as count
+            from Comment c
+            where c.parentComment.id in :parentIds
+            group by c.parentComment.id
+            """)
+    List<CommentCountProjection> countRepliesByParentIds(@Param("parentIds") Collection<Long> parentIds);
 }
@@ -14,6 +14,8 @@ public class CommentResponse {
     private List<CommentResponse> replies;
     private List<CommentReactionCountResponse> reactions;
     private String viewerReaction;
+    private long replyCount;
+    private String repliesNextCursor;
 
     public CommentResponse(Long id, String content, String username, String profilePictureUrl, LocalDateTime createdAt, Long parentId, List<CommentResponse> replies) {
         this.id = id;
@@ -92,4 +94,20 @@ public class CommentResponse {
     public void setViewerReaction(String viewerReaction) {
         this.viewerReaction = viewerReaction;
     }
+
+    public long getReplyCount() {
+        return replyCount;
+    }
+
+    public void setReplyCount(long replyCount) {
+        this.replyCount = replyCount;
+    }
+
+    public String getRepliesNextCursor() {
+        return repliesNextCursor;
+    }
+
+    public void setRepliesNextCursor(String repliesNextCursor) {
+        this.repliesNextCursor = repliesNextCursor;
+    }
 }
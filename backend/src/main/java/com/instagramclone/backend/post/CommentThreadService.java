@@ -0,0 +1,132 @@
+package com.instagramclone.backend.post;
+
+import com.instagramclone.backend.pagination.CursorPage;
+import com.instagramclone.backend.pagination.KeysetCursor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Serves a post's comment thread one page at a time: top-level comments oldest first, each with its
+ * first few replies inline and a cursor for the rest, so large threads are never loaded whole.
+ */
+@Service
+public class CommentThreadService {
+
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final CommentReactionService reactionService;
+    private final int inlineReplies;
+
+    public CommentThreadService(
+            PostRepository postRepository,
+            CommentRepository commentRepository,
+            CommentReactionService reactionService,
+            @Value("${post.comments.inline-replies:3}") int inlineReplies
+    ) {
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.reactionService = reactionService;
+        this.inlineReplies = Math.max(0, inlineReplies);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<CommentResponse> getComments(Long postId, String cursor, int limit, String viewerUsername) {
+        requirePost(postId);
+        int safeLimit = CursorPage.clampLimit(limit);
+        KeysetCursor position = KeysetCursor.decode(cursor);
+        PageRequest pageRequest = PageRequest.of(0, safeLimit + 1);
+        List<Comment> rows = position == null
+                ? commentRepository.findTopLevelPage(postId, pageRequest)
+                : commentRepository.findTopLevelPageAfter(postId, position.createdAt(), position.id(), pageRequest);
+        CursorPage<Comment> page = CursorPage.fromOverfetched(rows, safeLimit, CommentThreadService::positionOf);
+        if (page.items().isEmpty()) {
+            return new CursorPage<>(List.of(), null);
+        }
+
+        List<Long> parentIds = page.items().stream().map(Comment::getId).toList();
+        Map<Long, Long> replyCounts = toCountMap(commentRepository.countRepliesByParentIds(parentIds));
+        List<Comment> replies = loadInlineReplies(postId, parentIds, replyCounts);
+
+        List<Comment> thread = new ArrayList<>(page.items().size() + replies.size());
+        thread.addAll(page.items());
+        thread.addAll(replies);
+        List<CommentResponse> responses = CommentMapper.toThreadedResponses(
+                thread,
+                reactionService.buildLookup(replies, viewerUsername)
+        );
+
+        for (CommentResponse response : responses) {
+            long replyCount = replyCounts.getOrDefault(response.getId(), 0L);
+            response.setReplyCount(replyCount);
+            List<CommentResponse> inline = response.getReplies();
+            if (!inline.isEmpty() && replyCount > inline.size()) {
+                CommentResponse last = inline.get(inline.size() - 1);
+                response.setRepliesNextCursor(new KeysetCursor(last.getCreatedAt(), last.getId()).encode());
+            }
+        }
+        return new CursorPage<>(responses, page.nextCursor());
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<CommentResponse> getReplies(Long postId, Long commentId, String cursor, int limit, String viewerUsername) {
+        Comment parent = commentRepository.findById(commentId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Comment not found."));
+        if (parent.getPost() == null || !parent.getPost().getId().equals(postId)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Comment does not belong to this post.");
+        }
+        if (parent.getParentComment() != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Replies are only supported on top-level comments.");
+        }
+
+        int safeLimit = CursorPage.clampLimit(limit);
+        KeysetCursor position = KeysetCursor.decode(cursor);
+        PageRequest pageRequest = PageRequest.of(0, safeLimit + 1);
+        List<Comment> rows = position == null
+                ? commentRepository.findReplyPage(postId, commentId, pageRequest)
+                : commentRepository.findReplyPageAfter(postId, commentId, position.createdAt(), position.id(), pageRequest);
+        CursorPage<Comment> page = CursorPage.fromOverfetched(rows, safeLimit, CommentThreadService::positionOf);
+        List<CommentResponse> responses = CommentMapper.toReplyResponses(
+                page.items(),
+                reactionService.buildLookup(page.items(), viewerUsername)
+        );
+        return new CursorPage<>(responses, page.nextCursor());
+    }
+
+    private List<Comment> loadInlineReplies(Long postId, List<Long> parentIds, Map<Long, Long> replyCounts) {
+        if (inlineReplies == 0 || replyCounts.isEmpty()) {
+            return List.of();
+        }
+        List<Long> threadsWithReplies = parentIds.stream().filter(replyCounts::containsKey).toList();
+        List<Long> replyIds = commentRepository.findFirstReplyIds(postId, threadsWithReplies, inlineReplies);
+        if (replyIds.isEmpty()) {
+            return List.of();
+        }
+        return commentRepository.findWithUserByIdIn(replyIds);
+    }
+
+    private void requirePost(Long postId) {
+        if (!postRepository.existsById(postId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Post not found.");
+        }
+    }
+
+    static Map<Long, Long> toCountMap(List<CommentCountProjection> counts) {
+        Map<Long, Long> result = new HashMap<>();
+        for (CommentCountProjection count : counts) {
+            result.put(count.getTargetId(), count.getCount());
+        }
+        return result;
+    }
+
+    private static KeysetCursor positionOf(Comment comment) {
+        return new KeysetCursor(comment.getCreatedAt(), comment.getId());
+    }
+}
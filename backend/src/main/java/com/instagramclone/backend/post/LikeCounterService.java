@@ -0,0 +1,141 @@
+package com.instagramclone.backend.post;
+
+import jakarta.annotation.PreDestroy;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Applies like count deltas to {@code posts.likes}. Posts toggled more than {@code hotThreshold} times in one
+ * flush window are treated as hot: their deltas go to striped in-memory counters ({@link LongAdder}) and are
+ * folded into the row by {@link #flush()}, so concurrent likers stop queueing on the same row lock.
+ * Pending deltas are per node, so other nodes see them after the next flush. A buffered delta is only added
+ * once the transaction that changed {@code post_likes} commits, so a rolled back like never reaches the count.
+ */
+@Service
+public class LikeCounterService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LikeCounterService.class);
+
+    private final PostRepository postRepository;
+    private final boolean hotCounterEnabled;
+    private final long hotThreshold;
+
+    private final Map<Long, LongAdder> pendingDeltas = new ConcurrentHashMap<>();
+    private final Map<Long, LongAdder> windowToggles = new ConcurrentHashMap<>();
+    private volatile Set<Long> hotPosts = Set.of();
+
+    public LikeCounterService(
+            PostRepository postRepository,
+            @Value("${post.likes.hot-counter.enabled:true}") boolean hotCounterEnabled,
+            @Value("${post.likes.hot-counter.threshold:50}") long hotThreshold
+    ) {
+        this.postRepository = postRepository;
+        this.hotCounterEnabled = hotCounterEnabled;
+        this.hotThreshold = hotThreshold;
+    }
+
+    public void adjust(Long postId, int delta) {
+        if (!hotCounterEnabled || postId == null) {
+            postRepository.adjustLikes(postId, delta);
+            return;
+        }
+        LongAdder toggles = windowToggles.computeIfAbsent(postId, ignored -> new LongAdder());
+        toggles.increment();
+        if (hotPosts.contains(postId) || toggles.sum() > hotThreshold) {
+            addPendingAfterCommit(postId, delta);
+            return;
+        }
+        postRepository.adjustLikes(postId, delta);
+    }
+
+    public int currentLikes(Long postId, int persistedLikes) {
+        LongAdder pending = postId == null ? null : pendingDeltas.get(postId);
+        if (pending == null) {
+            return persistedLikes;
+        }
+        return (int) Math.max(0, persistedLikes + pending.sum());
+    }
+
+    public boolean isHot(Long postId) {
+        return hotPosts.contains(postId);
+    }
+
+    @Scheduled(fixedDelayString = "${post.likes.hot-counter.flush-delay-ms:1000}")
+    public void flush() {
+        Set<Long> nextHotPosts = new HashSet<>();
+        for (Map.Entry<Long, LongAdder> entry : windowToggles.entrySet()) {
+            if (entry.getValue().sum() > hotThreshold) {
+                nextHotPosts.add(entry.getKey());
+            }
+        }
+        Set<Long> activePosts = new HashSet<>(windowToggles.keySet());
+        windowToggles.clear();
+        hotPosts = Set.copyOf(nextHotPosts);
+
+        for (Map.Entry<Long, LongAdder> entry : pendingDeltas.entrySet()) {
+            Long postId = entry.getKey();
+            long delta = entry.getValue().sumThenReset();
+            if (delta != 0) {
+                applyDelta(postId, entry.getValue(), delta);
+            } else if (!activePosts.contains(postId) && !nextHotPosts.contains(postId)
+                    && pendingDeltas.remove(postId, entry.getValue())) {
+                // Drained only after it is unmapped: an adjust that added before the removal is picked up here,
+                // and one that adds later sees the removal in addPending and moves its delta itself.
+                addPending(postId, entry.getValue().sumThenReset());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void addPendingAfterCommit(Long postId, long delta) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            addPending(postId, delta);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                addPending(postId, delta);
+            }
+        });
+    }
+
+    private void addPending(Long postId, long delta) {
+        while (delta != 0) {
+            LongAdder pending = pendingDeltas.computeIfAbsent(postId, ignored -> new LongAdder());
+            pending.add(delta);
+            if (pendingDeltas.get(postId) == pending) {
+                return;
+            }
+            // Evicted by flush while this adjust held it. Flush drains a retired adder once and may have done so
+            // before this add landed, so move whatever it still holds into the live one.
+            delta = pending.sumThenReset();
+        }
+    }
+
+    private void applyDelta(Long postId, LongAdder pending, long delta) {
+        try {
+            if (postRepository.adjustLikes(postId, (int) delta) == 0) {
+                logger.info("Dropped like counter delta {} for post {}, which no longer exists", delta, postId);
+            }
+        } catch (DataAccessException ex) {
+            pending.add(delta);
+            logger.warn("Failed to flush like counter for post {}: {}", postId, ex.getMessage());
+        }
+    }
+}
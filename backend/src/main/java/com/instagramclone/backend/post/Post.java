@@ -25,14 +25,16 @@ public class Post {
 
     private LocalDateTime createdAt;
 
-    @Column(nullable = false)
+    // Maintained only by PostRepository.adjustLikes so entity updates never overwrite concurrent increments.
+    @Column(nullable = false, updatable = false)
     private int likes = 0;
 
     @ManyToMany
     @JoinTable(
             name = "post_likes",
             joinColumns = @JoinColumn(name = "post_id"),
-            inverseJoinColumns = @JoinColumn(name = "user_id")
+            inverseJoinColumns = @JoinColumn(name = "user_id"),
+            uniqueConstraints = @UniqueConstraint(name = "uk_post_likes_post_user", columnNames = {"post_id", "user_id"})
     )
     private Set<User> likedBy = new HashSet<>();
 
@@ -118,6 +120,6 @@ public class Post {
     }
     
     public int getLikesCount() {
-        return likedBy.size();
+        return likes;
     }
 }
@@ -1,5 +1,6 @@
 package com.instagramclone.backend.post;
 
+import com.instagramclone.backend.pagination.CursorPage;
 import com.instagramclone.backend.storage.FileSystemStorageService;
 import jakarta.annotation.PostConstruct;
 import org.springframework.core.io.Resource;
@@ -16,7 +17,6 @@ import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.security.Principal;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api")
@@ -25,11 +25,21 @@ public class PostController {
     private final PostService postService;
     private final FileSystemStorageService storageService;
     private final CommentReactionService reactionService;
-
-    public PostController(PostService postService, FileSystemStorageService storageService, CommentReactionService reactionService) {
+    private final PostResponseAssembler postResponseAssembler;
+    private final CommentThreadService commentThreadService;
+
+    public PostController(
+            PostService postService,
+            FileSystemStorageService storageService,
+            CommentReactionService reactionService,
+            PostResponseAssembler postResponseAssembler,
+            CommentThreadService commentThreadService
+    ) {
         this.postService = postService;
         this.storageService = storageService;
         this.reactionService = reactionService;
+        this.postResponseAssembler = postResponseAssembler;
+        this.commentThreadService = commentThreadService;
     }
 
     @PostMapping("/posts")
@@ -46,26 +56,25 @@ public class PostController {
                 .toUriString();
         
         Post newPost = postService.createPost(imageUrl, caption, username);
-        return ResponseEntity.ok(convertToPostResponse(newPost, username));
+        return ResponseEntity.ok(postResponseAssembler.toResponse(newPost, username));
     }
 
     @GetMapping("/posts")
-    public ResponseEntity<List<PostResponse>> getAllPosts(Principal principal) {
+    public ResponseEntity<List<PostResponse>> getAllPosts(
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "limit", defaultValue = "20") int limit,
+            Principal principal) {
         String currentUsername = principal.getName();
-        List<Post> posts = postService.getAllPosts(currentUsername);
-        List<PostResponse> postResponses = posts.stream()
-                .map(post -> convertToPostResponse(post, currentUsername))
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(postResponses);
+        CursorPage<Post> page = postService.getFeedPage(currentUsername, cursor, limit);
+        List<PostResponse> postResponses = postResponseAssembler.toResponses(page.items(), currentUsername);
+        return withNextCursor(new CursorPage<>(postResponses, page.nextCursor()));
     }
 
     @GetMapping("/posts/explore")
     public ResponseEntity<List<PostResponse>> getExplorePosts(Principal principal) {
         String currentUsername = principal.getName();
         List<Post> posts = postService.getExplorePosts();
-        List<PostResponse> postResponses = posts.stream()
-                .map(post -> convertToPostResponse(post, currentUsername))
-                .collect(Collectors.toList());
+        List<PostResponse> postResponses = postResponseAssembler.toResponses(posts, currentUsername);
         return ResponseEntity.ok(postResponses);
     }
 
@@ -73,9 +82,7 @@ public class PostController {
     public ResponseEntity<List<PostResponse>> getPostsByUser(@PathVariable String username, Principal principal) {
         String currentUsername = principal.getName();
         List<Post> posts = postService.getPostsByUsername(username);
-        List<PostResponse> postResponses = posts.stream()
-                .map(post -> convertToPostResponse(post, currentUsername))
-                .collect(Collectors.toList());
+        List<PostResponse> postResponses = postResponseAssembler.toResponses(posts, currentUsername);
         return ResponseEntity.ok(postResponses);
     }
 
@@ -83,7 +90,7 @@ public class PostController {
     public ResponseEntity<PostResponse> getPostById(@PathVariable Long id, Principal principal) {
         String currentUsername = principal.getName();
         return postService.getPostById(id)
-                .map(post -> ResponseEntity.ok(convertToPostResponse(post, currentUsername)))
+                .map(post -> ResponseEntity.ok(postResponseAssembler.toResponse(post, currentUsername)))
                 .orElse(ResponseEntity.notFound().build());
     }
 
@@ -91,7 +98,7 @@ public class PostController {
     public ResponseEntity<PostResponse> toggleLike(@PathVariable Long id, Principal principal) {
         String likerUsername = principal.getName();
         Post updatedPost = postService.toggleLike(id, likerUsername);
-        return ResponseEntity.ok(convertToPostResponse(updatedPost, likerUsername));
+        return ResponseEntity.ok(postResponseAssembler.toResponse(updatedPost, likerUsername));
     }
 
     @PostMapping("/posts/{id}/comment")
@@ -113,6 +120,27 @@ public class PostController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/posts/{id}/comments")
+    public ResponseEntity<List<CommentResponse>> getComments(
+            @PathVariable Long id,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "limit", defaultValue = "20") int limit,
+            Principal principal) {
+        CursorPage<CommentResponse> page = commentThreadService.getComments(id, cursor, limit, principal.getName());
+        return withNextCursor(page);
+    }
+
+    @GetMapping("/posts/{postId}/comments/{commentId}/replies")
+    public ResponseEntity<List<CommentResponse>> getReplies(
+            @PathVariable Long postId,
+            @PathVariable Long commentId,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "limit", defaultValue = "20") int limit,
+            Principal principal) {
+        CursorPage<CommentResponse> page = commentThreadService.getReplies(postId, commentId, cursor, limit, principal.getName());
+        return withNextCursor(page);
+    }
+
     @PostMapping("/posts/{postId}/comments/{commentId}/reactions")
     public ResponseEntity<CommentReactionSummaryResponse> toggleReplyReaction(
             @PathVariable Long postId,
@@ -150,7 +178,7 @@ public class PostController {
             Principal principal) {
         String username = principal.getName();
         Post updatedPost = postService.updatePostCaption(id, updateRequest.getCaption(), username);
-        return ResponseEntity.ok(convertToPostResponse(updatedPost, username));
+        return ResponseEntity.ok(postResponseAssembler.toResponse(updatedPost, username));
     }
 
     @DeleteMapping("/posts/{id}")
@@ -162,8 +190,10 @@ public class PostController {
 
     @GetMapping("/uploads/{filename:.+}")
     @ResponseBody
-    public ResponseEntity<Resource> serveFile(@PathVariable String filename) {
-        Resource file = storageService.loadAsResource(filename);
+    public ResponseEntity<Resource> serveFile(
+            @PathVariable String filename,
+            @RequestParam(name = "w", required = false) Integer width) {
+        Resource file = storageService.loadAsResource(filename, width);
         MediaType mediaType = MediaTypeFactory.getMediaType(file).orElse(MediaType.APPLICATION_OCTET_STREAM);
         return ResponseEntity.ok()
                 .contentType(mediaType)
@@ -176,27 +206,12 @@ public class PostController {
     public void init() {
         storageService.init();
     }
-    
-    // Helper method to convert Post to PostResponse
-    private PostResponse convertToPostResponse(Post post, String currentUsername) {
-        boolean likedByCurrentUser = post.getLikedBy().stream()
-                .anyMatch(user -> user.getUsername().equals(currentUsername));
-        
-        // Convert Comments to CommentResponse
-        CommentReactionService.CommentReactionLookup reactionLookup =
-                reactionService.buildLookup(post.getComments(), currentUsername);
-        List<CommentResponse> commentResponses = CommentMapper.toThreadedResponses(post.getComments(), reactionLookup);
-
-        return new PostResponse(
-                post.getId(),
-                post.getImageUrl(),
-                post.getCaption(),
-                post.getUser().getUsername(),
-                post.getUser().getProfilePictureUrl(),
-                post.getCreatedAt(),
-                post.getLikedBy().size(),
-                likedByCurrentUser,
-                commentResponses
-        );
+
+    private static <T> ResponseEntity<List<T>> withNextCursor(CursorPage<T> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.hasNext()) {
+            response.header(CursorPage.NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.items());
     }
 }
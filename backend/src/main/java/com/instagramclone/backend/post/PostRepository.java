@@ -1,12 +1,87 @@
 package com.instagramclone.backend.post;
 
-import com.instagramclone.backend.user.User;
-import org.springframework.data.jpa.repository.JpaRepository;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
-import java.util.Set;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface PostRepository extends JpaRepository<Post, Long> {
-    List<Post> findByUserUsername(String username);
-    List<Post> findByUserInOrderByCreatedAtDesc(Set<User> users);
+    @Query("select p from Post p join fetch p.user u where u.username = :username")
+    List<Post> findByUserUsername(@Param("username") String username);
+
+    @Query("select p from Post p join fetch p.user order by p.createdAt desc")
     List<Post> findAllByOrderByCreatedAtDesc();
+
+    @Query("select p.id from Post p join p.likedBy u where p.id in :postIds and u.username = :username")
+    List<Long> findLikedPostIds(@Param("postIds") Collection<Long> postIds, @Param("username") String username);
+
+    @Modifying
+    @Query(value = "INSERT INTO post_likes (post_id, user_id) VALUES (:postId, :userId) ON CONFLICT DO NOTHING",
+            nativeQuery = true)
+    int insertLike(@Param("postId") Long postId, @Param("userId") Long userId);
+
+    @Modifying
+    @Query(value = "DELETE FROM post_likes WHERE post_id = :postId AND user_id = :userId", nativeQuery = true)
+    int deleteLike(@Param("postId") Long postId, @Param("userId") Long userId);
+
+    @Modifying
+    @Transactional
+    @Query("""
+            update Post p set p.likes = case when p.likes + :delta < 0 then 0 else p.likes + :delta end
+            where p.id = :postId
+            """)
+    int adjustLikes(@Param("postId") Long postId, @Param("delta") int delta);
+
+    @Query("select p.likes from Post p where p.id = :postId")
+    int findLikesById(@Param("postId") Long postId);
+
+    @Query("""
+            select p from Post p join fetch p.user
+            where p.user.id = :viewerId
+               or p.user.id in (select f.id from User u join u.following f where u.id = :viewerId)
+            order by p.createdAt desc, p.id desc
+            """)
+    List<Post> findFeedPage(@Param("viewerId") Long viewerId, Pageable pageable);
+
+    @Query("""
+            select p from Post p join fetch p.user
+            where (p.user.id = :viewerId
+               or p.user.id in (select f.id from User u join u.following f where u.id = :viewerId))
+              and (p.createdAt < :createdAt or (p.createdAt = :createdAt and p.id < :id))
+            order by p.createdAt desc, p.id desc
+            """)
+    List<Post> findFeedPageBefore(
+            @Param("viewerId") Long viewerId,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            Pageable pageable
+    );
+
+    @Query("select p from Post p join fetch p.user where p.id in :ids")
+    List<Post> findWithUserByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("""
+            select p from Post p join fetch p.user
+            where p.user.id in :authorIds
+            order by p.createdAt desc, p.id desc
+            """)
+    List<Post> findAuthorsPage(@Param("authorIds") Collection<Long> authorIds, Pageable pageable);
+
+    @Query("""
+            select p from Post p join fetch p.user
+            where p.user.id in :authorIds
+              and (p.createdAt < :createdAt or (p.createdAt = :createdAt and p.id < :id))
+            order by p.createdAt desc, p.id desc
+            """)
+    List<Post> findAuthorsPageBefore(
+            @Param("authorIds") Collection<Long> authorIds,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            Pageable pageable
+    );
 }
@@ -13,8 +13,13 @@ public class PostResponse {
     private int likesCount;
     private boolean likedByCurrentUser;
     private List<CommentResponse> comments;
+    private long commentCount;
 
     public PostResponse(Long id, String imageUrl, String caption, String username, String profilePictureUrl, LocalDateTime createdAt, int likesCount, boolean likedByCurrentUser, List<CommentResponse> comments) {
+        this(id, imageUrl, caption, username, profilePictureUrl, createdAt, likesCount, likedByCurrentUser, comments, comments == null ? 0 : comments.size());
+    }
+
+    public PostResponse(Long id, String imageUrl, String caption, String username, String profilePictureUrl, LocalDateTime createdAt, int likesCount, boolean likedByCurrentUser, List<CommentResponse> comments, long commentCount) {
         this.id = id;
         this.imageUrl = imageUrl;
         this.caption = caption;
@@ -24,6 +29,7 @@ public class PostResponse {
         this.likesCount = likesCount;
         this.likedByCurrentUser = likedByCurrentUser;
         this.comments = comments;
+        this.commentCount = commentCount;
     }
 
     // Getters
@@ -62,4 +68,8 @@ public class PostResponse {
     public List<CommentResponse> getComments() {
         return comments;
     }
+
+    public long getCommentCount() {
+        return commentCount;
+    }
 }
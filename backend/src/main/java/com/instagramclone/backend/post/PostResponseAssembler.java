@@ -0,0 +1,133 @@
+package com.instagramclone.backend.post;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Builds {@link PostResponse}s for a page of posts with a fixed number of set-based queries
+ * (viewer likes, comment counts, the first few top-level comments and their reply counts)
+ * instead of walking each post's lazy collections. Full threads are served by {@link CommentThreadService}.
+ */
+@Component
+public class PostResponseAssembler {
+
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final LikeCounterService likeCounterService;
+    private final int previewSize;
+
+    public PostResponseAssembler(
+            PostRepository postRepository,
+            CommentRepository commentRepository,
+            LikeCounterService likeCounterService,
+            @Value("${post.comments.preview-size:2}") int previewSize
+    ) {
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.likeCounterService = likeCounterService;
+        this.previewSize = Math.max(0, previewSize);
+    }
+
+    public PostResponse toResponse(Post post, String viewerUsername) {
+        return toResponses(List.of(post), viewerUsername).get(0);
+    }
+
+    @Transactional(readOnly = true)
+    public List<PostResponse> toResponses(List<Post> posts, String viewerUsername) {
+        if (posts == null || posts.isEmpty()) {
+            return List.of();
+        }
+        List<Long> postIds = posts.stream()
+                .map(Post::getId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if (postIds.isEmpty()) {
+            return posts.stream()
+                    .map(post -> buildResponse(post, post.getLikes(), false, List.of(), 0))
+                    .toList();
+        }
+
+        Set<Long> likedPostIds = loadViewerLikes(postIds, viewerUsername);
+        Map<Long, Long> commentCounts = CommentThreadService.toCountMap(commentRepository.countByPostIds(postIds));
+        List<Comment> previews = loadPreviews(postIds, commentCounts);
+        Map<Long, Long> replyCounts = previews.isEmpty()
+                ? Map.of()
+                : CommentThreadService.toCountMap(commentRepository.countRepliesByParentIds(
+                        previews.stream().map(Comment::getId).toList()));
+
+        Map<Long, List<Comment>> previewsByPost = new HashMap<>();
+        for (Comment comment : previews) {
+            if (comment.getPost() != null && comment.getPost().getId() != null) {
+                previewsByPost.computeIfAbsent(comment.getPost().getId(), ignored -> new ArrayList<>()).add(comment);
+            }
+        }
+
+        List<PostResponse> responses = new ArrayList<>(posts.size());
+        for (Post post : posts) {
+            List<CommentResponse> commentResponses = CommentMapper.toThreadedResponses(
+                    previewsByPost.getOrDefault(post.getId(), List.of()),
+                    null
+            );
+            for (CommentResponse commentResponse : commentResponses) {
+                commentResponse.setReplyCount(replyCounts.getOrDefault(commentResponse.getId(), 0L));
+            }
+            responses.add(buildResponse(
+                    post,
+                    likeCounterService.currentLikes(post.getId(), post.getLikes()),
+                    likedPostIds.contains(post.getId()),
+                    commentResponses,
+                    commentCounts.getOrDefault(post.getId(), 0L)
+            ));
+        }
+        return responses;
+    }
+
+    private List<Comment> loadPreviews(List<Long> postIds, Map<Long, Long> commentCounts) {
+        if (previewSize == 0 || commentCounts.isEmpty()) {
+            return List.of();
+        }
+        List<Long> postsWithComments = postIds.stream().filter(commentCounts::containsKey).toList();
+        List<Long> previewIds = commentRepository.findFirstTopLevelIds(postsWithComments, previewSize);
+        if (previewIds.isEmpty()) {
+            return List.of();
+        }
+        return commentRepository.findWithUserByIdIn(previewIds);
+    }
+
+    private Set<Long> loadViewerLikes(List<Long> postIds, String viewerUsername) {
+        if (viewerUsername == null || viewerUsername.isBlank()) {
+            return Set.of();
+        }
+        return new HashSet<>(postRepository.findLikedPostIds(postIds, viewerUsername));
+    }
+
+    private PostResponse buildResponse(
+            Post post,
+            int likesCount,
+            boolean likedByViewer,
+            List<CommentResponse> comments,
+            long commentCount
+    ) {
+        return new PostResponse(
+                post.getId(),
+                post.getImageUrl(),
+                post.getCaption(),
+                post.getUser().getUsername(),
+                post.getUser().getProfilePictureUrl(),
+                post.getCreatedAt(),
+                likesCount,
+                likedByViewer,
+                comments,
+                commentCount
+        );
+    }
+}
@@ -1,9 +1,13 @@
 package com.instagramclone.backend.post;
 
 import com.instagramclone.backend.notification.NotificationService;
+import com.instagramclone.backend.pagination.CursorPage;
+import com.instagramclone.backend.pagination.KeysetCursor;
+import com.instagramclone.backend.timeline.HomeTimelineService;
 import com.instagramclone.backend.user.User;
 import com.instagramclone.backend.user.UserService; // Import UserService
 import com.instagramclone.backend.user.UserRepository;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
@@ -26,13 +30,17 @@ public class PostService {
     private final UserService userService; // Inject UserService
     private final CommentRepository commentRepository;
     private final NotificationService notificationService;
+    private final HomeTimelineService homeTimelineService;
+    private final LikeCounterService likeCounterService;
 
-    public PostService(PostRepository postRepository, UserRepository userRepository, UserService userService, CommentRepository commentRepository, NotificationService notificationService) {
+    public PostService(PostRepository postRepository, UserRepository userRepository, UserService userService, CommentRepository commentRepository, NotificationService notificationService, HomeTimelineService homeTimelineService, LikeCounterService likeCounterService) {
         this.postRepository = postRepository;
         this.userRepository = userRepository;
         this.userService = userService;
         this.commentRepository = commentRepository;
         this.notificationService = notificationService;
+        this.homeTimelineService = homeTimelineService;
+        this.likeCounterService = likeCounterService;
     }
 
     public Post createPost(String imageUrl, String caption, String username) {
@@ -43,18 +51,30 @@ public class PostService {
         User user = userOptional.get();
         Post post = new Post(imageUrl, caption, user);
         post.setLikes(0);
-        return postRepository.save(post);
+        Post savedPost = postRepository.save(post);
+        homeTimelineService.fanOutPost(savedPost.getId(), user.getId(), savedPost.getCreatedAt());
+        return savedPost;
     }
 
-    public List<Post> getAllPosts(String currentUsername) {
+    @Transactional(readOnly = true)
+    public CursorPage<Post> getFeedPage(String currentUsername, String cursor, int limit) {
         User currentUser = userService.findByUsername(currentUsername)
                 .orElseThrow(() -> new IllegalArgumentException("Current user not found"));
 
-        Set<User> followedUsers = currentUser.getFollowing();
-        followedUsers.add(currentUser); // Include current user's own posts
+        int safeLimit = CursorPage.clampLimit(limit);
+        KeysetCursor position = KeysetCursor.decode(cursor);
+        Optional<CursorPage<Post>> timelinePage = homeTimelineService.readFeed(currentUser.getId(), position, safeLimit);
+        if (timelinePage.isPresent()) {
+            return timelinePage.get();
+        }
+
+        // Fetch one extra row to learn whether another page exists without a count query.
+        PageRequest pageRequest = PageRequest.of(0, safeLimit + 1);
+        List<Post> posts = position == null
+                ? postRepository.findFeedPage(currentUser.getId(), pageRequest)
+                : postRepository.findFeedPageBefore(currentUser.getId(), position.createdAt(), position.id(), pageRequest);
 
-        // Fetch posts from current user and followed users
-        return postRepository.findByUserInOrderByCreatedAtDesc(followedUsers);
+        return CursorPage.fromOverfetched(posts, safeLimit, post -> new KeysetCursor(post.getCreatedAt(), post.getId()));
     }
 
     public List<Post> getExplorePosts() {
@@ -76,15 +96,16 @@ public class PostService {
         User liker = userRepository.findByUsername(likerUsername)
                 .orElseThrow(() -> new IllegalArgumentException("User not found with username: " + likerUsername));
 
-        boolean alreadyLiked = post.getLikedBy().contains(liker);
-        if (alreadyLiked) {
-            post.getLikedBy().remove(liker);
-        } else {
-            post.getLikedBy().add(liker);
+        // The unique (post_id, user_id) constraint makes the delete/insert pair the source of truth,
+        // so concurrent taps never load the liker set or double-count.
+        if (postRepository.deleteLike(postId, liker.getId()) > 0) {
+            likeCounterService.adjust(postId, -1);
+        } else if (postRepository.insertLike(postId, liker.getId()) > 0) {
+            likeCounterService.adjust(postId, 1);
             notificationService.createLikeNotification(liker, post);
         }
-        post.setLikes(post.getLikedBy().size());
-        return postRepository.save(post);
+        post.setLikes(postRepository.findLikesById(postId));
+        return post;
     }
 
     @Transactional
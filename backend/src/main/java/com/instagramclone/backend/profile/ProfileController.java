@@ -1,9 +1,8 @@
 package com.instagramclone.backend.profile;
 
-import com.instagramclone.backend.post.CommentMapper;
-import com.instagramclone.backend.post.CommentResponse;
 import com.instagramclone.backend.post.Post;
 import com.instagramclone.backend.post.PostResponse;
+import com.instagramclone.backend.post.PostResponseAssembler;
 import com.instagramclone.backend.post.PostService;
 import com.instagramclone.backend.storage.FileSystemStorageService;
 import com.instagramclone.backend.user.User;
@@ -27,18 +26,18 @@ public class ProfileController {
     private final UserService userService;
     private final PostService postService;
     private final FileSystemStorageService storageService;
-    private final com.instagramclone.backend.post.CommentReactionService reactionService;
+    private final PostResponseAssembler postResponseAssembler;
 
     public ProfileController(
             UserService userService,
             PostService postService,
             FileSystemStorageService storageService,
-            com.instagramclone.backend.post.CommentReactionService reactionService
+            PostResponseAssembler postResponseAssembler
     ) {
         this.userService = userService;
         this.postService = postService;
         this.storageService = storageService;
-        this.reactionService = reactionService;
+        this.postResponseAssembler = postResponseAssembler;
     }
 
     @GetMapping("/{username}")
@@ -53,9 +52,7 @@ public class ProfileController {
             currentUser = userService.findByUsername(principal.getName()).orElse(null);
         }
         String currentUsername = principal != null ? principal.getName() : "";
-        List<PostResponse> postResponses = posts.stream()
-                .map(post -> convertToPostResponse(post, currentUsername))
-                .collect(Collectors.toList());
+        List<PostResponse> postResponses = postResponseAssembler.toResponses(posts, currentUsername);
 
         return ResponseEntity.ok(buildProfileResponse(user, postResponses, currentUser));
     }
@@ -87,9 +84,7 @@ public class ProfileController {
 
         User updatedUser = userService.updateProfile(currentUser, bio, profilePictureUrl);
         List<Post> posts = postService.getPostsByUsername(updatedUser.getUsername());
-        List<PostResponse> postResponses = posts.stream()
-                .map(post -> convertToPostResponse(post, updatedUser.getUsername()))
-                .collect(Collectors.toList());
+        List<PostResponse> postResponses = postResponseAssembler.toResponses(posts, updatedUser.getUsername());
         return ResponseEntity.ok(buildProfileResponse(updatedUser, postResponses, updatedUser));
     }
 
@@ -183,25 +178,4 @@ public class ProfileController {
                 isFollowing
         );
     }
-
-    private PostResponse convertToPostResponse(Post post, String currentUsername) {
-        boolean likedByCurrentUser = post.getLikedBy().stream()
-                .anyMatch(user -> user.getUsername().equals(currentUsername));
-
-        com.instagramclone.backend.post.CommentReactionService.CommentReactionLookup reactionLookup =
-                reactionService.buildLookup(post.getComments(), currentUsername);
-        List<CommentResponse> commentResponses = CommentMapper.toThreadedResponses(post.getComments(), reactionLookup);
-
-        return new PostResponse(
-                post.getId(),
-                post.getImageUrl(),
-                post.getCaption(),
-                post.getUser().getUsername(),
-                post.getUser().getProfilePictureUrl(),
-                post.getCreatedAt(),
-                post.getLikedBy().size(),
-                likedByCurrentUser,
-                commentResponses
-        );
-    }
 }
@@ -0,0 +1,184 @@
+package com.instagramclone.backend.realtime;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Makes {@code convertAndSendToUser} cluster-aware. As a broker channel interceptor it copies every
+ * {@code /user/{name}/...} message, already serialized by the message converter, to the pub/sub channel of
+ * each other node holding sessions for that user; as a Redis listener it replays copies received from other
+ * nodes into the local broker channel, where the regular user destination handling delivers them.
+ * Local delivery is never delayed or blocked by Redis: the node lookup and publishes run on one relay thread
+ * (keeping per-node order) behind a bounded queue, and copies that do not fit are dropped with a warning, the
+ * same way they are when Redis is unreachable.
+ */
+@Component
+public class ClusterUserDestinationRelay implements ChannelInterceptor, MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterUserDestinationRelay.class);
+
+    static final String USER_DESTINATION_PREFIX = "/user/";
+    static final String RELAYED_HEADER = "clusterRelayed";
+
+    private final UserSessionRegistry sessionRegistry;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    // Resolved lazily: the template is built from the broker channel this interceptor is registered on.
+    private final ObjectProvider<SimpMessagingTemplate> messagingTemplate;
+    private final Executor relayExecutor;
+    private final AtomicLong dropped = new AtomicLong();
+
+    @Autowired
+    public ClusterUserDestinationRelay(
+            UserSessionRegistry sessionRegistry,
+            StringRedisTemplate redisTemplate,
+            ObjectMapper objectMapper,
+            ObjectProvider<SimpMessagingTemplate> messagingTemplate,
+            @Value("${realtime.cluster.relay-queue-capacity:10000}") int relayQueueCapacity
+    ) {
+        this(sessionRegistry, redisTemplate, objectMapper, messagingTemplate, new ThreadPoolExecutor(
+                1,
+                1,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, relayQueueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "realtime-relay");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        ));
+    }
+
+    ClusterUserDestinationRelay(
+            UserSessionRegistry sessionRegistry,
+            StringRedisTemplate redisTemplate,
+            ObjectMapper objectMapper,
+            ObjectProvider<SimpMessagingTemplate> messagingTemplate,
+            Executor relayExecutor
+    ) {
+        this.sessionRegistry = sessionRegistry;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.messagingTemplate = messagingTemplate;
+        this.relayExecutor = relayExecutor;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (message.getHeaders().containsKey(RELAYED_HEADER) || !(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        String username = usernameOf(destination);
+        if (username == null) {
+            return message;
+        }
+        Object contentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+        try {
+            relayExecutor.execute(() -> relay(username, destination, contentType, payload));
+        } catch (RejectedExecutionException ex) {
+            long total = dropped.incrementAndGet();
+            logger.warn("Relay queue full, {} not copied to other nodes ({} dropped so far)", destination, total);
+        }
+        return message;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (relayExecutor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+
+    private void relay(String username, String destination, Object contentType, byte[] payload) {
+        Set<String> remoteNodes = sessionRegistry.remoteNodesFor(username);
+        if (remoteNodes.isEmpty()) {
+            return;
+        }
+        try {
+            String envelope = objectMapper.writeValueAsString(new RelayEnvelope(
+                    destination,
+                    contentType == null ? null : contentType.toString(),
+                    payload
+            ));
+            for (String nodeId : remoteNodes) {
+                redisTemplate.convertAndSend(UserSessionRegistry.channelFor(nodeId), envelope);
+            }
+        } catch (IOException | DataAccessException ex) {
+            logger.warn("Failed to relay {} to other nodes: {}", destination, ex.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(org.springframework.data.redis.connection.Message message, byte[] pattern) {
+        RelayEnvelope envelope;
+        try {
+            envelope = objectMapper.readValue(message.getBody(), RelayEnvelope.class);
+        } catch (IOException ex) {
+            logger.warn("Dropping unreadable relayed WebSocket message: {}", ex.getMessage());
+            return;
+        }
+        if (usernameOf(envelope.destination()) == null || envelope.payload() == null) {
+            return;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        if (envelope.contentType() != null) {
+            accessor.setContentType(MimeTypeUtils.parseMimeType(envelope.contentType()));
+        }
+        accessor.setHeader(RELAYED_HEADER, Boolean.TRUE);
+        accessor.setLeaveMutable(true);
+        messagingTemplate.getObject().send(
+                envelope.destination(),
+                MessageBuilder.createMessage(envelope.payload(), accessor.getMessageHeaders())
+        );
+    }
+
+    /**
+     * Extracts the target user of a {@code /user/{name}/...} send destination, or null for anything else.
+     */
+    static String usernameOf(String destination) {
+        if (destination == null || !destination.startsWith(USER_DESTINATION_PREFIX)) {
+            return null;
+        }
+        int end = destination.indexOf('/', USER_DESTINATION_PREFIX.length());
+        if (end <= USER_DESTINATION_PREFIX.length()) {
+            return null;
+        }
+        // DefaultUserDestinationResolver encodes '/' inside user names the same way.
+        return destination.substring(USER_DESTINATION_PREFIX.length(), end).replace("%2F", "/");
+    }
+
+    /**
+     * Wire format on the node channels; the payload keeps the bytes the sending node's converter produced.
+     */
+    record RelayEnvelope(String destination, String contentType, byte[] payload) {
+    }
+}
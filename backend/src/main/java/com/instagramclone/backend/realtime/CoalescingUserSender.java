@@ -0,0 +1,64 @@
+package com.instagramclone.backend.realtime;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Buffers state-style user messages (typing indicators, badge counts) for one short window and sends only the
+ * latest payload per user, destination and key. A burst of keystrokes or notifications then costs one broker
+ * message per window instead of one per event; payloads that must not be dropped do not belong here.
+ */
+@Component
+public class CoalescingUserSender {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoalescingUserSender.class);
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final Map<PendingKey, Object> pending = new ConcurrentHashMap<>();
+
+    public CoalescingUserSender(SimpMessagingTemplate messagingTemplate) {
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    /**
+     * Queues the payload, replacing any payload still pending for the same user, destination and key.
+     */
+    public void send(String username, String destination, String key, Object payload) {
+        if (username == null || username.isBlank() || destination == null || payload == null) {
+            return;
+        }
+        pending.put(new PendingKey(username, destination, key == null ? "" : key), payload);
+    }
+
+    @Scheduled(fixedDelayString = "${realtime.coalesce.window-ms:100}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        for (PendingKey key : List.copyOf(pending.keySet())) {
+            Object payload = pending.remove(key);
+            if (payload == null) {
+                continue;
+            }
+            try {
+                messagingTemplate.convertAndSendToUser(key.username(), key.destination(), payload);
+            } catch (MessagingException ex) {
+                logger.warn("Failed to send {} to {}: {}", key.destination(), key.username(), ex.getMessage());
+            }
+        }
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+
+    private record PendingKey(String username, String destination, String key) {
+    }
+}
@@ -0,0 +1,189 @@
+package com.instagramclone.backend.realtime;
+
+import jakarta.annotation.PreDestroy;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+/**
+ * Cluster-wide map of which nodes hold WebSocket sessions for a user: one sorted set per user whose members
+ * are node ids scored by their last heartbeat. Entries of a node that died without deregistering simply age
+ * out, so lookups never need a separate liveness check.
+ */
+@Component
+public class UserSessionRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserSessionRegistry.class);
+
+    private static final String USER_NODES_KEY_PREFIX = "realtime:user-nodes:";
+    private static final String NODE_CHANNEL_PREFIX = "realtime:node:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final String nodeId;
+    private final long sessionTtlMillis;
+    private final Map<String, Set<String>> sessionIdsByUser = new ConcurrentHashMap<>();
+    private final Map<String, String> usernameBySessionId = new ConcurrentHashMap<>();
+
+    public UserSessionRegistry(
+            StringRedisTemplate redisTemplate,
+            @Value("${realtime.cluster.node-id:}") String nodeId,
+            @Value("${realtime.cluster.session-ttl-seconds:90}") long sessionTtlSeconds
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.nodeId = nodeId == null || nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId.trim();
+        this.sessionTtlMillis = Math.max(1, sessionTtlSeconds) * 1000L;
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Pub/sub channel this node listens on for messages relayed from other nodes.
+     */
+    public String channel() {
+        return channelFor(nodeId);
+    }
+
+    static String channelFor(String nodeId) {
+        return NODE_CHANNEL_PREFIX + nodeId;
+    }
+
+    @EventListener
+    public void onSessionConnected(SessionConnectedEvent event) {
+        Principal user = event.getUser();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (user != null && sessionId != null) {
+            register(user.getName(), sessionId);
+        }
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        unregister(event.getSessionId());
+    }
+
+    void register(String username, String sessionId) {
+        if (username == null || username.isBlank()) {
+            return;
+        }
+        usernameBySessionId.put(sessionId, username);
+        sessionIdsByUser.compute(username, (ignored, sessionIds) -> {
+            Set<String> ids = sessionIds == null ? ConcurrentHashMap.newKeySet() : sessionIds;
+            ids.add(sessionId);
+            return ids;
+        });
+        try {
+            touch(username);
+        } catch (DataAccessException ex) {
+            // The next heartbeat retries; until then other nodes cannot reach this session.
+            logger.warn("Failed to register WebSocket session of {}: {}", username, ex.getMessage());
+        }
+    }
+
+    void unregister(String sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        String username = usernameBySessionId.remove(sessionId);
+        if (username == null) {
+            return;
+        }
+        boolean lastSession = sessionIdsByUser.computeIfPresent(username, (ignored, sessionIds) -> {
+            sessionIds.remove(sessionId);
+            return sessionIds.isEmpty() ? null : sessionIds;
+        }) == null;
+        if (!lastSession) {
+            return;
+        }
+        try {
+            redisTemplate.opsForZSet().remove(key(username), nodeId);
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to deregister WebSocket user {}: {}", username, ex.getMessage());
+        }
+    }
+
+    /**
+     * Returns the other live nodes holding sessions for the user; empty when Redis is unreachable, which
+     * degrades delivery to this node only.
+     */
+    public Set<String> remoteNodesFor(String username) {
+        try {
+            Set<String> nodes = redisTemplate.opsForZSet().rangeByScore(
+                    key(username),
+                    System.currentTimeMillis() - sessionTtlMillis,
+                    Double.POSITIVE_INFINITY
+            );
+            if (nodes == null || nodes.isEmpty()) {
+                return Collections.emptySet();
+            }
+            Set<String> remote = new HashSet<>(nodes);
+            remote.remove(nodeId);
+            return remote;
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to look up WebSocket nodes of {}: {}", username, ex.getMessage());
+            return Collections.emptySet();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${realtime.cluster.heartbeat-ms:30000}")
+    public void heartbeat() {
+        List<String> usernames = List.copyOf(sessionIdsByUser.keySet());
+        if (usernames.isEmpty()) {
+            return;
+        }
+        double now = System.currentTimeMillis();
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                for (String username : usernames) {
+                    stringConnection.zAdd(key(username), now, nodeId);
+                    stringConnection.pExpire(key(username), sessionTtlMillis);
+                }
+                return null;
+            });
+        } catch (DataAccessException ex) {
+            logger.warn("WebSocket session heartbeat failed for {} users: {}", usernames.size(), ex.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void deregisterAll() {
+        for (String username : List.copyOf(sessionIdsByUser.keySet())) {
+            try {
+                redisTemplate.opsForZSet().remove(key(username), nodeId);
+            } catch (DataAccessException ex) {
+                // Entries age out after the session TTL.
+                return;
+            }
+        }
+    }
+
+    private void touch(String username) {
+        redisTemplate.opsForZSet().add(key(username), nodeId, System.currentTimeMillis());
+        redisTemplate.expire(key(username), Duration.ofMillis(sessionTtlMillis));
+    }
+
+    private String key(String username) {
+        return USER_NODES_KEY_PREFIX + username;
+    }
+}
@@ -3,7 +3,18 @@ package com.instagramclone.backend.storage;
 import jakarta.annotation.PostConstruct;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
 import org.springframework.core.io.Resource;
@@ -13,6 +24,11 @@ import org.springframework.stereotype.Service;
 @Service
 public class AttachmentStorageService {
 
+    // Upper bound per transferFrom call; the copy itself goes through the channel's small fixed buffer.
+    private static final long TRANSFER_CHUNK_BYTES = 1024 * 1024;
+    // Parts are mapped at most this much at a time; mapped pages live outside the heap.
+    private static final long MAP_WINDOW_BYTES = 8 * 1024 * 1024;
+
     private final Path rootLocation;
     private final Path tempLocation;
     private final Path quarantineLocation;
@@ -57,31 +73,76 @@ public class AttachmentStorageService {
         }
     }
 
-    public void writeTempFile(String tempKey, InputStream inputStream) {
+    public StoredContent writeTempFile(String tempKey, InputStream inputStream) {
         Path destination = resolveTempPath(tempKey).resolve("upload.bin");
-        writeStream(destination, inputStream, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        return writeStream(destination, inputStream, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
     }
 
-    public void writeChunk(String tempKey, int chunkIndex, InputStream inputStream) {
+    public StoredContent writeChunk(String tempKey, int chunkIndex, InputStream inputStream) {
         ensureTempDirectory(tempKey);
         Path destination = resolveChunkPath(tempKey, chunkIndex);
-        writeStream(destination, inputStream, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        return writeStream(destination, inputStream, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    public void deleteChunk(String tempKey, int chunkIndex) {
+        deleteQuietly(resolveChunkPath(tempKey, chunkIndex));
     }
 
-    public Path assembleChunks(String tempKey, int totalChunks) {
-        Path target = resolveTempPath(tempKey).resolve("upload.bin");
+    /**
+     * Total size of an upload's parts, read from file metadata only, so a size mismatch can be rejected before
+     * any data is copied.
+     */
+    public long uploadSize(String tempKey, int totalChunks) {
+        long total = 0;
         try {
-            Files.deleteIfExists(target);
-            for (int i = 0; i < totalChunks; i++) {
-                Path chunk = resolveChunkPath(tempKey, i);
-                if (!Files.exists(chunk)) {
-                    throw new RuntimeException("Missing chunk " + i);
+            for (Path part : uploadParts(tempKey, totalChunks)) {
+                total += Files.size(part);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read upload size", e);
+        }
+        return total;
+    }
+
+    /**
+     * Moves a finished upload into permanent storage in a single pass and returns its size and SHA-256.
+     * Parts are memory-mapped and written straight into a staging file next to the destination, hashing the
+     * mapped pages on the way, and the staging file is then renamed atomically, so readers never see a
+     * partial attachment. A single-part upload on the same file system is hashed and renamed without copying.
+     */
+    public StoredContent storePermanentFromUpload(String tempKey, int totalChunks, String storageKey) {
+        Path destination = resolvePermanentDestination(storageKey);
+        List<Path> parts = uploadParts(tempKey, totalChunks);
+        MessageDigest digest = newDigest();
+        try {
+            if (parts.size() == 1) {
+                StoredContent moved = moveHashing(parts.get(0), destination, digest);
+                if (moved != null) {
+                    return moved;
+                }
+                digest.reset();
+            }
+            Path staging = destination.resolveSibling(destination.getFileName() + ".part");
+            long size = 0;
+            try (FileChannel target = FileChannel.open(
+                    staging,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE
+            )) {
+                for (Path part : parts) {
+                    try (FileChannel source = FileChannel.open(part, StandardOpenOption.READ)) {
+                        size = copyHashing(source, target, size, digest);
+                    }
                 }
-                Files.write(target, Files.readAllBytes(chunk), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                deleteQuietly(staging);
+                throw e;
             }
-            return target;
+            moveIntoPlace(staging, destination);
+            return new StoredContent(size, HexFormat.of().formatHex(digest.digest()));
         } catch (IOException e) {
-            throw new RuntimeException("Failed to assemble chunks", e);
+            throw new RuntimeException("Failed to assemble upload", e);
         }
     }
 
@@ -90,11 +151,7 @@ public class AttachmentStorageService {
     }
 
     public void storePermanent(InputStream inputStream, String storageKey) {
-        Path destination = rootLocation.resolve(storageKey).normalize().toAbsolutePath();
-        if (!destination.getParent().equals(rootLocation.toAbsolutePath())) {
-            throw new IllegalArgumentException("Cannot store file outside current directory.");
-        }
-        writeStream(destination, inputStream, StandardOpenOption.CREATE_NEW);
+        writeStream(resolvePermanentDestination(storageKey), inputStream, StandardOpenOption.CREATE_NEW);
     }
 
     public String storeThumbnail(InputStream inputStream, String originalFilename) {
@@ -121,8 +178,15 @@ public class AttachmentStorageService {
     }
 
     public Resource loadAsResource(String storageKey) {
+        return loadAsResource(storageKey, null);
+    }
+
+    /**
+     * Loads the narrowest image variant at least {@code width} pixels wide, or the original.
+     */
+    public Resource loadAsResource(String storageKey, Integer width) {
         try {
-            Path file = rootLocation.resolve(storageKey);
+            Path file = ImageDerivatives.select(rootLocation.resolve(storageKey), width);
             Resource resource = new UrlResource(file.toUri());
             if (resource.exists() && resource.isReadable()) {
                 return resource;
@@ -156,7 +220,9 @@ public class AttachmentStorageService {
 
     public void deletePermanent(String storageKey) {
         try {
-            Files.deleteIfExists(rootLocation.resolve(storageKey));
+            Path file = rootLocation.resolve(storageKey);
+            Files.deleteIfExists(file);
+            ImageDerivatives.delete(file);
         } catch (IOException e) {
             throw new RuntimeException("Could not delete attachment", e);
         }
@@ -189,14 +255,119 @@ public class AttachmentStorageService {
         }
     }
 
-    private void writeStream(Path destination, InputStream inputStream, OpenOption... options) {
-        try (InputStream stream = inputStream) {
-            Files.write(destination, stream.readAllBytes(), options);
+    /**
+     * Streams the input to disk and hashes it in the same pass. Heap use is bounded by the channel buffer,
+     * not by the size of the upload; a partially written file is removed if the stream fails.
+     */
+    private StoredContent writeStream(Path destination, InputStream inputStream, OpenOption... options) {
+        MessageDigest digest = newDigest();
+        OpenOption[] writeOptions = Arrays.copyOf(options, options.length + 1);
+        writeOptions[options.length] = StandardOpenOption.WRITE;
+        try (InputStream stream = new DigestInputStream(inputStream, digest);
+             ReadableByteChannel source = Channels.newChannel(stream)) {
+            FileChannel target;
+            try {
+                target = FileChannel.open(destination, writeOptions);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to store file.", e);
+            }
+            try (target) {
+                long position = 0;
+                long transferred;
+                while ((transferred = target.transferFrom(source, position, TRANSFER_CHUNK_BYTES)) > 0) {
+                    position += transferred;
+                }
+                return new StoredContent(position, HexFormat.of().formatHex(digest.digest()));
+            } catch (IOException e) {
+                deleteQuietly(destination);
+                throw new RuntimeException("Failed to store file.", e);
+            }
         } catch (IOException e) {
             throw new RuntimeException("Failed to store file.", e);
         }
     }
 
+    private Path resolvePermanentDestination(String storageKey) {
+        Path destination = rootLocation.resolve(storageKey).normalize().toAbsolutePath();
+        if (!destination.getParent().equals(rootLocation.toAbsolutePath())) {
+            throw new IllegalArgumentException("Cannot store file outside current directory.");
+        }
+        return destination;
+    }
+
+    private List<Path> uploadParts(String tempKey, int totalChunks) {
+        if (totalChunks <= 1) {
+            Path upload = resolveTempPath(tempKey).resolve("upload.bin");
+            if (!Files.exists(upload)) {
+                throw new RuntimeException("Missing upload " + tempKey);
+            }
+            return List.of(upload);
+        }
+        List<Path> parts = new ArrayList<>(totalChunks);
+        for (int i = 0; i < totalChunks; i++) {
+            Path chunk = resolveChunkPath(tempKey, i);
+            if (!Files.exists(chunk)) {
+                throw new RuntimeException("Missing chunk " + i);
+            }
+            parts.add(chunk);
+        }
+        return parts;
+    }
+
+    /**
+     * Hashes the file and renames it into place; returns null when the rename would cross file systems.
+     */
+    private StoredContent moveHashing(Path source, Path destination, MessageDigest digest) throws IOException {
+        long size;
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            size = channel.size();
+            for (long offset = 0; offset < size; offset += MAP_WINDOW_BYTES) {
+                digest.update(channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(MAP_WINDOW_BYTES, size - offset)));
+            }
+        }
+        try {
+            moveIntoPlace(source, destination);
+        } catch (AtomicMoveNotSupportedException e) {
+            return null;
+        }
+        return new StoredContent(size, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    private long copyHashing(FileChannel source, FileChannel target, long position, MessageDigest digest) throws IOException {
+        long size = source.size();
+        for (long offset = 0; offset < size; offset += MAP_WINDOW_BYTES) {
+            MappedByteBuffer window = source.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(MAP_WINDOW_BYTES, size - offset));
+            digest.update(window.duplicate());
+            while (window.hasRemaining()) {
+                position += target.write(window, position);
+            }
+        }
+        return position;
+    }
+
+    private void moveIntoPlace(Path source, Path destination) throws IOException {
+        if (Files.exists(destination)) {
+            throw new FileAlreadyExistsException(destination.toString());
+        }
+        Files.move(source, destination, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // ignore cleanup
+        }
+    }
+
     private String sanitizeFilename(String originalFilename) {
         return Objects.requireNonNullElse(originalFilename, "attachment")
                 .replaceAll("\\s+", "_")
@@ -1,41 +1,63 @@
 package com.instagramclone.backend.storage;
 
 import com.instagramclone.backend.message.VirusScanStatus;
+import jakarta.annotation.PreDestroy;
 import java.io.*;
 import java.net.InetSocketAddress;
-import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+/**
+ * clamd client that keeps a small pool of {@code zIDSESSION} connections, so a scan costs no TCP handshake,
+ * and streams files with {@code zINSTREAM} in large frames read straight from a {@link FileChannel} into a
+ * direct buffer. The pool size also caps concurrent scans; a scan that cannot get a connection within the
+ * timeout is treated like an unreachable scanner. Files larger than clamd's StreamMaxLength are reported by
+ * clamd as an error and therefore fail the scan.
+ */
 @Service
 public class ClamAvVirusScanService implements VirusScanService {
 
     private static final Logger logger = LoggerFactory.getLogger(ClamAvVirusScanService.class);
-    private static final int CHUNK_SIZE = 2048;
+    private static final int CHUNK_SIZE = 256 * 1024;
+    private static final int MAX_REPLY_BYTES = 4096;
+    // clamd closes sessions idle for longer than its IdleTimeout (30 s by default); retire ours before that.
+    private static final long MAX_IDLE_NANOS = TimeUnit.SECONDS.toNanos(20);
 
     private final boolean scanEnabled;
     private final String host;
     private final int port;
     private final Duration timeout;
     private final boolean failClosed;
+    private final Semaphore scanPermits;
+    private final BlockingDeque<ClamdSession> idleSessions = new LinkedBlockingDeque<>();
 
     public ClamAvVirusScanService(
             @Value("${virus.scan.enabled:true}") boolean scanEnabled,
             @Value("${virus.scan.host:clamav}") String host,
             @Value("${virus.scan.port:3310}") int port,
             @Value("${virus.scan.timeout-seconds:30}") long timeoutSeconds,
-            @Value("${virus.scan.fail-closed:true}") boolean failClosed
+            @Value("${virus.scan.fail-closed:true}") boolean failClosed,
+            @Value("${virus.scan.max-connections:4}") int maxConnections
     ) {
         this.scanEnabled = scanEnabled;
         this.host = host;
         this.port = port;
         this.timeout = Duration.ofSeconds(timeoutSeconds);
         this.failClosed = failClosed;
+        this.scanPermits = new Semaphore(Math.max(1, maxConnections), true);
     }
 
     @Override
@@ -44,64 +66,223 @@ public class ClamAvVirusScanService implements VirusScanService {
             return new VirusScanResult(VirusScanStatus.SKIPPED, "Virus scan disabled.");
         }
 
-        try (Socket socket = new Socket()) {
-            socket.connect(new InetSocketAddress(host, port), (int) timeout.toMillis());
-            socket.setSoTimeout((int) timeout.toMillis());
-            try (OutputStream out = socket.getOutputStream();
-                 InputStream in = socket.getInputStream();
-                 InputStream fileStream = new BufferedInputStream(new FileInputStream(filePath.toFile()))) {
+        try {
+            if (!scanPermits.tryAcquire(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                return unavailable("All scanner connections busy.");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return unavailable("Interrupted while waiting for a scanner connection.");
+        }
+        try {
+            String reply = scanWithRetry(filePath);
+            if (reply.endsWith("OK")) {
+                return new VirusScanResult(VirusScanStatus.CLEAN, reply);
+            }
+            if (reply.endsWith("FOUND")) {
+                return new VirusScanResult(VirusScanStatus.INFECTED, reply);
+            }
+            return new VirusScanResult(VirusScanStatus.FAILED, reply);
+        } catch (IOException ex) {
+            logger.warn("Virus scan failed: {}", ex.getMessage());
+            return unavailable(ex.getMessage());
+        } finally {
+            scanPermits.release();
+        }
+    }
 
-                out.write("zINSTREAM\0".getBytes(StandardCharsets.US_ASCII));
-                byte[] buffer = new byte[CHUNK_SIZE];
-                int read;
-                while ((read = fileStream.read(buffer)) >= 0) {
-                    if (read == 0) {
-                        continue;
-                    }
-                    writeLength(out, read);
-                    out.write(buffer, 0, read);
-                }
-                writeLength(out, 0);
-                out.flush();
+    @PreDestroy
+    public void closeSessions() {
+        ClamdSession session;
+        while ((session = idleSessions.pollFirst()) != null) {
+            session.close();
+        }
+    }
 
-                String response = readResponse(in);
-                if (response.contains("OK")) {
-                    return new VirusScanResult(VirusScanStatus.CLEAN, response.trim());
-                }
-                if (response.contains("FOUND")) {
-                    return new VirusScanResult(VirusScanStatus.INFECTED, response.trim());
-                }
-                return new VirusScanResult(VirusScanStatus.FAILED, response.trim());
+    int idleSessionCount() {
+        return idleSessions.size();
+    }
+
+    private String scanWithRetry(Path filePath) throws IOException {
+        ClamdSession pooled = borrowIdleSession();
+        if (pooled != null) {
+            try {
+                String reply = pooled.scan(filePath);
+                idleSessions.offerFirst(pooled);
+                return reply;
+            } catch (StaleSessionException ex) {
+                // clamd dropped the pooled session (idle timeout or restart); retry once on a fresh connection.
+                pooled.close();
+            } catch (IOException ex) {
+                pooled.close();
+                throw ex;
             }
+        }
+        ClamdSession fresh = ClamdSession.open(new InetSocketAddress(host, port), timeout);
+        try {
+            String reply = fresh.scan(filePath);
+            idleSessions.offerFirst(fresh);
+            return reply;
         } catch (IOException ex) {
-            logger.warn("Virus scan failed: {}", ex.getMessage());
-            if (failClosed) {
-                return new VirusScanResult(VirusScanStatus.FAILED, ex.getMessage());
+            fresh.close();
+            throw ex;
+        }
+    }
+
+    private ClamdSession borrowIdleSession() {
+        ClamdSession session;
+        while ((session = idleSessions.pollFirst()) != null) {
+            if (System.nanoTime() - session.lastUsedAt < MAX_IDLE_NANOS) {
+                return session;
             }
-            return new VirusScanResult(VirusScanStatus.SKIPPED, "Scanner unavailable.");
+            session.close();
+        }
+        return null;
+    }
+
+    private VirusScanResult unavailable(String reason) {
+        if (failClosed) {
+            return new VirusScanResult(VirusScanStatus.FAILED, reason);
+        }
+        return new VirusScanResult(VirusScanStatus.SKIPPED, "Scanner unavailable.");
+    }
+
+    /**
+     * Strips the {@code <id>: } prefix clamd puts on replies inside a session and checks it answers the
+     * request that was sent.
+     */
+    static String parseReply(String reply, int expectedRequestId) throws IOException {
+        int separator = reply.indexOf(": ");
+        if (separator <= 0) {
+            throw new IOException("Unexpected clamd reply: " + reply);
+        }
+        int requestId;
+        try {
+            requestId = Integer.parseInt(reply.substring(0, separator));
+        } catch (NumberFormatException ex) {
+            throw new IOException("Unexpected clamd reply: " + reply);
         }
+        if (requestId != expectedRequestId) {
+            throw new IOException("clamd replied to request " + requestId + ", expected " + expectedRequestId);
+        }
+        return reply.substring(separator + 2).trim();
     }
 
-    private void writeLength(OutputStream out, int length) throws IOException {
-        out.write(new byte[] {
-                (byte) ((length >> 24) & 0xFF),
-                (byte) ((length >> 16) & 0xFF),
-                (byte) ((length >> 8) & 0xFF),
-                (byte) (length & 0xFF)
-        });
+    /**
+     * Thrown when a pooled session fails before clamd answered, which is what a session closed on the
+     * server side looks like.
+     */
+    private static final class StaleSessionException extends IOException {
+        private StaleSessionException(String message) {
+            super(message);
+        }
     }
 
-    private String readResponse(InputStream in) throws IOException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        int read;
-        byte[] data = new byte[256];
-        while ((read = in.read(data)) != -1) {
-            buffer.write(data, 0, read);
-            String content = buffer.toString(StandardCharsets.UTF_8);
-            if (content.contains("\n") || content.contains("\0")) {
-                return content;
+    private static final class ClamdSession {
+        private static final byte[] IDSESSION = "zIDSESSION\0".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] INSTREAM = "zINSTREAM\0".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] END = "zEND\0".getBytes(StandardCharsets.US_ASCII);
+
+        private final SocketChannel channel;
+        private final InputStream replies;
+        private final ByteBuffer frame = ByteBuffer.allocateDirect(Integer.BYTES + CHUNK_SIZE);
+        private int nextRequestId = 1;
+        private long lastUsedAt = System.nanoTime();
+
+        private ClamdSession(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            // Reads through the socket adaptor honour SO_TIMEOUT, unlike reads on the channel itself.
+            this.replies = channel.socket().getInputStream();
+        }
+
+        static ClamdSession open(InetSocketAddress address, Duration timeout) throws IOException {
+            SocketChannel channel = SocketChannel.open();
+            try {
+                channel.socket().connect(address, (int) timeout.toMillis());
+                channel.socket().setSoTimeout((int) timeout.toMillis());
+                channel.socket().setTcpNoDelay(true);
+                ClamdSession session = new ClamdSession(channel);
+                session.writeFully(ByteBuffer.wrap(IDSESSION));
+                return session;
+            } catch (IOException ex) {
+                channel.close();
+                throw ex;
+            }
+        }
+
+        String scan(Path filePath) throws IOException {
+            try (FileChannel file = FileChannel.open(filePath, StandardOpenOption.READ)) {
+                int requestId = nextRequestId++;
+                String reply;
+                try {
+                    stream(file);
+                    reply = readReply();
+                } catch (IOException ex) {
+                    // On a reused session, failing before any reply means clamd has dropped the session.
+                    if (requestId > 1) {
+                        throw new StaleSessionException(ex.getMessage());
+                    }
+                    throw ex;
+                }
+                lastUsedAt = System.nanoTime();
+                return parseReply(reply, requestId);
+            }
+        }
+
+        void close() {
+            try {
+                if (channel.isOpen()) {
+                    writeFully(ByteBuffer.wrap(END));
+                }
+            } catch (IOException ignored) {
+                // closing anyway
+            }
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // closing anyway
+            }
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        private void stream(FileChannel file) throws IOException {
+            writeFully(ByteBuffer.wrap(INSTREAM));
+            int length;
+            do {
+                frame.clear();
+                frame.position(Integer.BYTES);
+                while (frame.hasRemaining() && file.read(frame) > 0) {
+                    // fill the frame before sending it
+                }
+                length = frame.position() - Integer.BYTES;
+                frame.putInt(0, length);
+                frame.flip();
+                writeFully(frame);
+            } while (length > 0);
+        }
+
+        private String readReply() throws IOException {
+            // Commands are sent one at a time, so nothing past this reply's terminator can arrive yet.
+            byte[] reply = new byte[MAX_REPLY_BYTES];
+            int length = 0;
+            while (length < reply.length) {
+                int read = replies.read(reply, length, reply.length - length);
+                if (read == -1) {
+                    throw new EOFException("clamd closed the session");
+                }
+                for (int i = length; i < length + read; i++) {
+                    if (reply[i] == 0) {
+                        return new String(reply, 0, i, StandardCharsets.UTF_8);
+                    }
+                }
+                length += read;
             }
+            throw new IOException("clamd reply too long");
         }
-        return buffer.toString(StandardCharsets.UTF_8);
     }
 }
@@ -20,9 +20,14 @@ import java.util.stream.Stream;
 public class FileSystemStorageService {
 
     private final Path rootLocation;
+    private final ImageDerivativeService derivativeService;
 
-    public FileSystemStorageService(@Value("${storage.location:upload-dir}") String path) {
+    public FileSystemStorageService(
+            @Value("${storage.location:upload-dir}") String path,
+            ImageDerivativeService derivativeService
+    ) {
         this.rootLocation = Paths.get(path);
+        this.derivativeService = derivativeService;
     }
 
     public void init() {
@@ -50,6 +55,8 @@ public class FileSystemStorageService {
             try (var inputStream = file.getInputStream()) {
                 Files.copy(inputStream, destinationFile);
             }
+            // Until the resized variants exist, requests for them are served the original.
+            derivativeService.generateInBackground(destinationFile);
             return filename;
         } catch (IOException e) {
             throw new RuntimeException("Failed to store file.", e);
@@ -71,8 +78,15 @@ public class FileSystemStorageService {
     }
 
     public Resource loadAsResource(String filename) {
+        return loadAsResource(filename, null);
+    }
+
+    /**
+     * Loads the narrowest stored variant at least {@code width} pixels wide, or the original.
+     */
+    public Resource loadAsResource(String filename, Integer width) {
         try {
-            Path file = load(filename);
+            Path file = ImageDerivatives.select(load(filename), width);
             Resource resource = new UrlResource(file.toUri());
             if (resource.exists() || resource.isReadable()) {
                 return resource;
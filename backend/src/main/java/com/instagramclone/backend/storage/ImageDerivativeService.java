@@ -0,0 +1,160 @@
+package com.instagramclone.backend.storage;
+
+import jakarta.annotation.PreDestroy;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import net.coobird.thumbnailator.Thumbnails;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Writes downscaled copies of an image at each configured width narrower than the original, in the layout
+ * described by {@link ImageDerivatives}. Images are decoded once, subsampled to what the widest variant
+ * needs, and every width is resized from that decode. Variants are JPEG, or PNG when the image has
+ * transparency; the JDK has no WebP or AVIF encoder. Background generation runs on a small pool of its own
+ * behind a bounded queue; uploads that do not fit are skipped with a warning and keep being served the
+ * original.
+ */
+@Service
+public class ImageDerivativeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDerivativeService.class);
+
+    private final int[] widths;
+    private final double quality;
+    private final Executor executor;
+    private final AtomicLong skipped = new AtomicLong();
+
+    @Autowired
+    public ImageDerivativeService(
+            @Value("${storage.derivatives.widths:320,640,1080}") int[] widths,
+            @Value("${storage.derivatives.quality:0.8}") double quality,
+            @Value("${storage.derivatives.concurrency:2}") int concurrency,
+            @Value("${storage.derivatives.queue-capacity:100}") int queueCapacity
+    ) {
+        this(widths, quality, newExecutor(Math.max(1, concurrency), Math.max(1, queueCapacity)));
+    }
+
+    ImageDerivativeService(int[] widths, double quality, Executor executor) {
+        this.widths = Arrays.stream(widths).filter(width -> width > 0).distinct().sorted().toArray();
+        this.quality = quality;
+        this.executor = executor;
+    }
+
+    /**
+     * The widest variant an image this wide gets, or 0 when it is too narrow for any.
+     */
+    public int widestFor(int originalWidth) {
+        int widest = 0;
+        for (int width : widths) {
+            if (width < originalWidth) {
+                widest = width;
+            }
+        }
+        return widest;
+    }
+
+    public void generateInBackground(Path original) {
+        try {
+            executor.execute(() -> generateQuietly(original));
+        } catch (RejectedExecutionException ex) {
+            long total = skipped.incrementAndGet();
+            logger.warn("Image variant queue full, {} skipped ({} skipped so far)", original.getFileName(), total);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Returns the widths written; files that are not decodable images get none.
+     */
+    public List<Integer> generate(Path original) throws IOException {
+        ImageInspector.ImageInfo info = ImageInspector.inspect(original);
+        if (info == null || widestFor(info.width()) == 0) {
+            return List.of();
+        }
+        BufferedImage image = ImageInspector.decode(original, widestFor(info.width()));
+        return generate(original, image, info.width());
+    }
+
+    /**
+     * Writes the variants from an image that is already decoded, possibly at reduced resolution;
+     * {@code originalWidth} decides which widths apply.
+     */
+    public List<Integer> generate(Path original, BufferedImage image, int originalWidth) throws IOException {
+        String format = image.getColorModel().hasAlpha() ? "png" : "jpg";
+        Path directory = ImageDerivatives.directoryFor(original);
+        List<Integer> written = new ArrayList<>();
+        for (int width : widths) {
+            if (width >= originalWidth) {
+                break;
+            }
+            if (written.isEmpty()) {
+                Files.createDirectories(directory);
+            }
+            Path target = directory.resolve(width + "." + format);
+            Path partial = directory.resolve(width + "." + format + ".part");
+            try (OutputStream outputStream = Files.newOutputStream(partial)) {
+                Thumbnails.of(image)
+                        .width(width)
+                        .outputQuality(quality)
+                        .outputFormat(format)
+                        .toOutputStream(outputStream);
+            } catch (IOException | RuntimeException ex) {
+                Files.deleteIfExists(partial);
+                throw ex;
+            }
+            // Readers only ever see complete variants.
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            written.add(width);
+        }
+        return written;
+    }
+
+    private void generateQuietly(Path original) {
+        try {
+            generate(original);
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("Failed to create image variants for {}: {}", original.getFileName(), ex.getMessage());
+        }
+    }
+
+    private static ThreadPoolExecutor newExecutor(int threads, int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-derivatives-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+    }
+}
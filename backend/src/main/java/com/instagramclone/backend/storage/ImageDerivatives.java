@@ -0,0 +1,70 @@
+package com.instagramclone.backend.storage;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * On-disk layout of resized image variants: {@code <file>.sizes/<width>.<ext>} next to the original. Lookups
+ * go by what is on disk rather than by configuration, so variants written under earlier width settings keep
+ * being served.
+ */
+public final class ImageDerivatives {
+
+    private static final String DIRECTORY_SUFFIX = ".sizes";
+
+    private ImageDerivatives() {
+    }
+
+    public static Path directoryFor(Path original) {
+        return original.resolveSibling(original.getFileName() + DIRECTORY_SUFFIX);
+    }
+
+    /**
+     * Returns the narrowest variant at least {@code requestedWidth} wide, or the original when no width was
+     * requested or no variant is wide enough (variants are only made narrower than the original).
+     */
+    public static Path select(Path original, Integer requestedWidth) {
+        if (requestedWidth == null || requestedWidth <= 0) {
+            return original;
+        }
+        Path best = null;
+        int bestWidth = Integer.MAX_VALUE;
+        try (DirectoryStream<Path> variants = Files.newDirectoryStream(directoryFor(original))) {
+            for (Path variant : variants) {
+                int width = widthOf(variant);
+                if (width >= requestedWidth && width < bestWidth) {
+                    best = variant;
+                    bestWidth = width;
+                }
+            }
+        } catch (IOException ex) {
+            // Includes the common case of an original without variants.
+            return original;
+        }
+        return best == null ? original : best;
+    }
+
+    public static void delete(Path original) {
+        try {
+            FileSystemUtils.deleteRecursively(directoryFor(original));
+        } catch (IOException e) {
+            throw new RuntimeException("Could not delete image variants", e);
+        }
+    }
+
+    private static int widthOf(Path variant) {
+        String name = variant.getFileName().toString();
+        int dot = name.indexOf('.');
+        if (dot <= 0 || name.endsWith(".part")) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(0, dot));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+}
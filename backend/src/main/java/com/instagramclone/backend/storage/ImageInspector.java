@@ -0,0 +1,115 @@
+package com.instagramclone.backend.storage;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Set;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import net.coobird.thumbnailator.util.exif.ExifFilterUtils;
+import net.coobird.thumbnailator.util.exif.ExifUtils;
+import net.coobird.thumbnailator.util.exif.Orientation;
+
+/**
+ * Reads image dimensions from the file header and decodes images at reduced resolution, so large photos
+ * never need a full-resolution raster in memory. Both honour the EXIF orientation, so sizes and pixels are
+ * as the image is displayed.
+ */
+public final class ImageInspector {
+
+    // Decode at least this many times the widest output so downscaling still has pixels to average over.
+    private static final int OVERSAMPLING = 2;
+    private static final Set<Orientation> TRANSPOSED = Set.of(
+            Orientation.LEFT_TOP,
+            Orientation.RIGHT_TOP,
+            Orientation.RIGHT_BOTTOM,
+            Orientation.LEFT_BOTTOM
+    );
+
+    private ImageInspector() {
+    }
+
+    public record ImageInfo(int width, int height) {
+    }
+
+    /**
+     * Returns the displayed dimensions, or null when the file is not a readable image. Only headers and
+     * metadata are read.
+     */
+    public static ImageInfo inspect(Path file) throws IOException {
+        return withReader(file, reader -> {
+            Orientation orientation = orientationOf(reader);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            return isTransposed(orientation) ? new ImageInfo(height, width) : new ImageInfo(width, height);
+        });
+    }
+
+    /**
+     * Decodes the image upright, skipping source pixels while the result stays at least twice
+     * {@code targetWidth} wide; returns null when the file is not a readable image.
+     */
+    public static BufferedImage decode(Path file, int targetWidth) throws IOException {
+        return withReader(file, reader -> {
+            Orientation orientation = orientationOf(reader);
+            int displayedWidth = isTransposed(orientation) ? reader.getHeight(0) : reader.getWidth(0);
+            int step = subsampling(displayedWidth, targetWidth);
+            ImageReadParam param = reader.getDefaultReadParam();
+            if (step > 1) {
+                param.setSourceSubsampling(step, step, 0, 0);
+            }
+            BufferedImage image = reader.read(0, param);
+            if (orientation == null || orientation == Orientation.TOP_LEFT) {
+                return image;
+            }
+            return ExifFilterUtils.getFilterForOrientation(orientation).apply(image);
+        });
+    }
+
+    static int subsampling(int sourceWidth, int targetWidth) {
+        if (targetWidth <= 0) {
+            return 1;
+        }
+        return Math.max(1, sourceWidth / (targetWidth * OVERSAMPLING));
+    }
+
+    private static boolean isTransposed(Orientation orientation) {
+        return orientation != null && TRANSPOSED.contains(orientation);
+    }
+
+    private static Orientation orientationOf(ImageReader reader) {
+        try {
+            return ExifUtils.getExifOrientation(reader, 0);
+        } catch (IOException | RuntimeException ex) {
+            // Unreadable or unusual metadata; treat the image as upright.
+            return null;
+        }
+    }
+
+    private static <T> T withReader(Path file, ReaderTask<T> task) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, false);
+                return task.apply(reader);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ReaderTask<T> {
+        T apply(ImageReader reader) throws IOException;
+    }
+}
@@ -0,0 +1,7 @@
+package com.instagramclone.backend.storage;
+
+/**
+ * Size and hex SHA-256 of content written to storage, computed while it was streamed to disk.
+ */
+public record StoredContent(long sizeBytes, String checksum) {
+}
@@ -0,0 +1,197 @@
+package com.instagramclone.backend.timeline;
+
+import com.instagramclone.backend.pagination.CursorPage;
+import com.instagramclone.backend.pagination.KeysetCursor;
+import com.instagramclone.backend.post.Post;
+import com.instagramclone.backend.post.PostRepository;
+import com.instagramclone.backend.user.UserRepository;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Materialized home timelines. New posts are pushed into each follower's Redis timeline when they are created,
+ * except for authors above the follower threshold, whose posts are merged in at read time instead.
+ * Any Redis failure or cold timeline makes {@link #readFeed} return empty so callers fall back to the database.
+ */
+@Service
+public class HomeTimelineService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HomeTimelineService.class);
+
+    // Extra ids read from Redis to absorb posts sharing the cursor's millisecond.
+    private static final int TIE_OVERFETCH = 10;
+
+    private static final Comparator<Post> FEED_ORDER = Comparator
+            .comparing(Post::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(Post::getId, Comparator.nullsLast(Comparator.reverseOrder()));
+
+    private final TimelineStore timelineStore;
+    private final PostRepository postRepository;
+    private final UserRepository userRepository;
+    private final TimelineProperties properties;
+
+    public HomeTimelineService(
+            TimelineStore timelineStore,
+            PostRepository postRepository,
+            UserRepository userRepository,
+            TimelineProperties properties
+    ) {
+        this.timelineStore = timelineStore;
+        this.postRepository = postRepository;
+        this.userRepository = userRepository;
+        this.properties = properties;
+    }
+
+    @Async
+    public void fanOutPost(Long postId, Long authorId, LocalDateTime createdAt) {
+        if (!properties.isEnabled() || postId == null || authorId == null) {
+            return;
+        }
+        try {
+            boolean fanOutOnRead = userRepository.countFollowers(authorId) > properties.getFanOutFollowerThreshold();
+            timelineStore.setFanOutOnRead(authorId, fanOutOnRead);
+            List<Long> recipients = new ArrayList<>();
+            recipients.add(authorId);
+            if (!fanOutOnRead) {
+                recipients.addAll(userRepository.findFollowerIds(authorId));
+            }
+            timelineStore.push(recipients, postId, toScore(createdAt));
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to fan out post {}: {}", postId, ex.getMessage());
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<CursorPage<Post>> readFeed(Long viewerId, KeysetCursor position, int limit) {
+        if (!properties.isEnabled() || viewerId == null) {
+            return Optional.empty();
+        }
+        try {
+            if (!timelineStore.isReady(viewerId)) {
+                timelineStore.requestRebuild(viewerId);
+                return Optional.empty();
+            }
+            int fetchSize = limit + 1 + TIE_OVERFETCH;
+            double maxScore = position == null ? Double.POSITIVE_INFINITY : toScore(position.createdAt());
+            List<Long> postIds = timelineStore.read(viewerId, maxScore, fetchSize);
+            boolean timelineExhausted = postIds.size() < fetchSize;
+            if (timelineExhausted && timelineStore.size(viewerId) >= properties.getMaxSize()) {
+                // Older entries were trimmed from the timeline; the database serves the tail.
+                return Optional.empty();
+            }
+
+            Map<Long, Post> candidates = new LinkedHashMap<>();
+            if (!postIds.isEmpty()) {
+                for (Post post : postRepository.findWithUserByIdIn(postIds)) {
+                    candidates.put(post.getId(), post);
+                }
+                pruneDeletedPosts(viewerId, postIds, candidates.keySet());
+            }
+            for (Post post : readFanOutOnReadPosts(viewerId, position, limit)) {
+                candidates.putIfAbsent(post.getId(), post);
+            }
+
+            List<Post> ordered = candidates.values().stream()
+                    .filter(post -> isAfterCursor(post, position))
+                    .sorted(FEED_ORDER)
+                    .toList();
+            boolean hasMore = ordered.size() > limit || !timelineExhausted;
+            List<Post> page = ordered.size() > limit ? ordered.subList(0, limit) : ordered;
+            String nextCursor = null;
+            if (hasMore && !page.isEmpty()) {
+                Post last = page.get(page.size() - 1);
+                nextCursor = new KeysetCursor(last.getCreatedAt(), last.getId()).encode();
+            }
+            timelineStore.touch(viewerId);
+            return Optional.of(new CursorPage<>(page, nextCursor));
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to read home timeline for user {}: {}", viewerId, ex.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public void invalidate(Long viewerId) {
+        if (!properties.isEnabled() || viewerId == null) {
+            return;
+        }
+        try {
+            timelineStore.invalidate(viewerId);
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to invalidate home timeline for user {}: {}", viewerId, ex.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${timeline.rebuild-delay-ms:5000}")
+    public void rebuildPendingTimelines() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            for (Long viewerId : timelineStore.pollRebuildRequests(properties.getRebuildBatchSize())) {
+                rebuildTimeline(viewerId);
+            }
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to rebuild home timelines: {}", ex.getMessage());
+        }
+    }
+
+    public void rebuildTimeline(Long viewerId) {
+        List<Post> posts = postRepository.findFeedPage(viewerId, PageRequest.of(0, properties.getMaxSize()));
+        Map<Long, Double> entries = new LinkedHashMap<>();
+        for (Post post : posts) {
+            entries.put(post.getId(), toScore(post.getCreatedAt()));
+        }
+        timelineStore.replace(viewerId, entries);
+    }
+
+    private List<Post> readFanOutOnReadPosts(Long viewerId, KeysetCursor position, int limit) {
+        Set<Long> pullAuthors = timelineStore.fanOutOnReadAuthors();
+        if (pullAuthors.isEmpty()) {
+            return List.of();
+        }
+        // Intersected in SQL so a viewer who follows many accounts never loads the full follow list.
+        List<Long> followedPullAuthors = userRepository.findFollowingIdsAmong(viewerId, pullAuthors);
+        if (followedPullAuthors.isEmpty()) {
+            return List.of();
+        }
+        PageRequest pageRequest = PageRequest.of(0, limit + 1);
+        return position == null
+                ? postRepository.findAuthorsPage(followedPullAuthors, pageRequest)
+                : postRepository.findAuthorsPageBefore(followedPullAuthors, position.createdAt(), position.id(), pageRequest);
+    }
+
+    private void pruneDeletedPosts(Long viewerId, List<Long> postIds, Set<Long> foundIds) {
+        List<Long> missing = postIds.stream()
+                .filter(postId -> !foundIds.contains(postId))
+                .toList();
+        timelineStore.remove(viewerId, missing);
+    }
+
+    private boolean isAfterCursor(Post post, KeysetCursor position) {
+        if (position == null) {
+            return true;
+        }
+        int comparison = post.getCreatedAt().compareTo(position.createdAt());
+        return comparison < 0 || (comparison == 0 && post.getId() < position.id());
+    }
+
+    private double toScore(LocalDateTime createdAt) {
+        LocalDateTime timestamp = createdAt == null ? LocalDateTime.now() : createdAt;
+        return timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
@@ -0,0 +1,52 @@
+package com.instagramclone.backend.timeline;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "timeline")
+public class TimelineProperties {
+    private boolean enabled = true;
+    private int maxSize = 500;
+    private long fanOutFollowerThreshold = 10000;
+    private long ttlHours = 72;
+    private int rebuildBatchSize = 50;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getFanOutFollowerThreshold() {
+        return fanOutFollowerThreshold;
+    }
+
+    public void setFanOutFollowerThreshold(long fanOutFollowerThreshold) {
+        this.fanOutFollowerThreshold = fanOutFollowerThreshold;
+    }
+
+    public long getTtlHours() {
+        return ttlHours;
+    }
+
+    public void setTtlHours(long ttlHours) {
+        this.ttlHours = ttlHours;
+    }
+
+    public int getRebuildBatchSize() {
+        return rebuildBatchSize;
+    }
+
+    public void setRebuildBatchSize(int rebuildBatchSize) {
+        this.rebuildBatchSize = rebuildBatchSize;
+    }
+}
@@ -0,0 +1,160 @@
+package com.instagramclone.backend.timeline;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Redis layout for materialized home timelines: one sorted set of post ids per viewer scored by post time,
+ * plus a marker key telling a fully built timeline apart from one that only received fan-out writes.
+ */
+@Component
+public class TimelineStore {
+
+    private static final String TIMELINE_KEY_PREFIX = "timeline:home:";
+    private static final String READY_KEY_SUFFIX = ":ready";
+    private static final String REBUILD_QUEUE_KEY = "timeline:rebuild-queue";
+    private static final String FAN_OUT_ON_READ_AUTHORS_KEY = "timeline:fan-out-on-read-authors";
+    private static final int PIPELINE_BATCH_SIZE = 1000;
+
+    private final StringRedisTemplate redisTemplate;
+    private final TimelineProperties properties;
+
+    public TimelineStore(StringRedisTemplate redisTemplate, TimelineProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+    }
+
+    public void push(Collection<Long> viewerIds, Long postId, double score) {
+        if (viewerIds == null || viewerIds.isEmpty() || postId == null) {
+            return;
+        }
+        String member = postId.toString();
+        long ttlSeconds = ttlSeconds();
+        long trimEnd = -(properties.getMaxSize() + 1L);
+        List<Long> viewers = new ArrayList<>(viewerIds);
+        for (int start = 0; start < viewers.size(); start += PIPELINE_BATCH_SIZE) {
+            List<Long> batch = viewers.subList(start, Math.min(start + PIPELINE_BATCH_SIZE, viewers.size()));
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = asStringConnection(connection);
+                for (Long viewerId : batch) {
+                    String key = timelineKey(viewerId);
+                    stringConnection.zAdd(key, score, member);
+                    stringConnection.zRemRange(key, 0, trimEnd);
+                    stringConnection.expire(key, ttlSeconds);
+                }
+                return null;
+            });
+        }
+    }
+
+    public List<Long> read(Long viewerId, double maxScore, int count) {
+        Set<String> members = redisTemplate.opsForZSet()
+                .reverseRangeByScore(timelineKey(viewerId), Double.NEGATIVE_INFINITY, maxScore, 0, count);
+        if (members == null || members.isEmpty()) {
+            return List.of();
+        }
+        List<Long> postIds = new ArrayList<>(members.size());
+        for (String member : members) {
+            postIds.add(Long.valueOf(member));
+        }
+        return postIds;
+    }
+
+    public long size(Long viewerId) {
+        Long size = redisTemplate.opsForZSet().zCard(timelineKey(viewerId));
+        return size == null ? 0 : size;
+    }
+
+    public void remove(Long viewerId, Collection<Long> postIds) {
+        if (postIds == null || postIds.isEmpty()) {
+            return;
+        }
+        redisTemplate.opsForZSet().remove(timelineKey(viewerId), postIds.stream().map(String::valueOf).toArray());
+    }
+
+    public boolean isReady(Long viewerId) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(readyKey(viewerId)));
+    }
+
+    public void replace(Long viewerId, Map<Long, Double> scoredPostIds) {
+        String key = timelineKey(viewerId);
+        long ttlSeconds = ttlSeconds();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = asStringConnection(connection);
+            stringConnection.del(key);
+            for (Map.Entry<Long, Double> entry : scoredPostIds.entrySet()) {
+                stringConnection.zAdd(key, entry.getValue(), entry.getKey().toString());
+            }
+            stringConnection.expire(key, ttlSeconds);
+            stringConnection.setEx(readyKey(viewerId), ttlSeconds, "1");
+            return null;
+        });
+    }
+
+    public void touch(Long viewerId) {
+        long ttlSeconds = ttlSeconds();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = asStringConnection(connection);
+            stringConnection.expire(timelineKey(viewerId), ttlSeconds);
+            stringConnection.expire(readyKey(viewerId), ttlSeconds);
+            return null;
+        });
+    }
+
+    public void invalidate(Long viewerId) {
+        redisTemplate.delete(List.of(timelineKey(viewerId), readyKey(viewerId)));
+    }
+
+    public void requestRebuild(Long viewerId) {
+        redisTemplate.opsForSet().add(REBUILD_QUEUE_KEY, viewerId.toString());
+    }
+
+    public List<Long> pollRebuildRequests(int max) {
+        List<String> members = redisTemplate.opsForSet().pop(REBUILD_QUEUE_KEY, max);
+        if (members == null || members.isEmpty()) {
+            return List.of();
+        }
+        return members.stream().map(Long::valueOf).collect(Collectors.toList());
+    }
+
+    public void setFanOutOnRead(Long authorId, boolean fanOutOnRead) {
+        if (fanOutOnRead) {
+            redisTemplate.opsForSet().add(FAN_OUT_ON_READ_AUTHORS_KEY, authorId.toString());
+        } else {
+            redisTemplate.opsForSet().remove(FAN_OUT_ON_READ_AUTHORS_KEY, authorId.toString());
+        }
+    }
+
+    public Set<Long> fanOutOnReadAuthors() {
+        Set<String> members = redisTemplate.opsForSet().members(FAN_OUT_ON_READ_AUTHORS_KEY);
+        if (members == null || members.isEmpty()) {
+            return Set.of();
+        }
+        return members.stream().map(Long::valueOf).collect(Collectors.toSet());
+    }
+
+    private long ttlSeconds() {
+        return Math.max(1, properties.getTtlHours()) * 3600L;
+    }
+
+    private StringRedisConnection asStringConnection(RedisConnection connection) {
+        return (StringRedisConnection) connection;
+    }
+
+    private String timelineKey(Long viewerId) {
+        return TIMELINE_KEY_PREFIX + viewerId;
+    }
+
+    private String readyKey(Long viewerId) {
+        return TIMELINE_KEY_PREFIX + viewerId + READY_KEY_SUFFIX;
+    }
+}
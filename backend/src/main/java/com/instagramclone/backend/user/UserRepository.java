@@ -3,6 +3,8 @@ package com.instagramclone.backend.user;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
@@ -15,4 +17,13 @@ public interface UserRepository extends JpaRepository<User, Long> {
             String username,
             String fullName,
             Pageable pageable);
+
+    @Query("select u.id from User u join u.following f where f.id = :userId")
+    List<Long> findFollowerIds(@Param("userId") Long userId);
+
+    @Query("select count(u) from User u join u.following f where f.id = :userId")
+    long countFollowers(@Param("userId") Long userId);
+
+    @Query("select f.id from User u join u.following f where u.id = :userId and f.id in :candidateIds")
+    List<Long> findFollowingIdsAmong(@Param("userId") Long userId, @Param("candidateIds") Collection<Long> candidateIds);
 }
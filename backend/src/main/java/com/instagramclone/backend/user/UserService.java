@@ -1,6 +1,7 @@
 package com.instagramclone.backend.user;
 
 import com.instagramclone.backend.notification.NotificationService;
+import com.instagramclone.backend.timeline.HomeTimelineService;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -19,11 +20,18 @@ public class UserService implements UserDetailsService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final NotificationService notificationService;
+    private final HomeTimelineService homeTimelineService;
 
-    public UserService(UserRepository userRepository, @Lazy PasswordEncoder passwordEncoder, NotificationService notificationService) {
+    public UserService(
+            UserRepository userRepository,
+            @Lazy PasswordEncoder passwordEncoder,
+            NotificationService notificationService,
+            HomeTimelineService homeTimelineService
+    ) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.notificationService = notificationService;
+        this.homeTimelineService = homeTimelineService;
     }
 
     @Override
@@ -89,6 +97,7 @@ public class UserService implements UserDetailsService {
             following.getFollowers().add(follower);
             userRepository.save(follower);
             userRepository.save(following);
+            homeTimelineService.invalidate(follower.getId());
             notificationService.createFollowNotification(follower, following);
         }
     }
@@ -104,6 +113,7 @@ public class UserService implements UserDetailsService {
             following.getFollowers().remove(follower);
             userRepository.save(follower);
             userRepository.save(following);
+            homeTimelineService.invalidate(follower.getId());
         }
     }
 }
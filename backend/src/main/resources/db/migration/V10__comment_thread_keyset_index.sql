@@ -0,0 +1,14 @@
+DO $$
+BEGIN
+    IF to_regclass('public.comments') IS NOT NULL THEN
+        IF NOT EXISTS (
+            SELECT 1
+            FROM pg_indexes
+            WHERE indexname = 'idx_comments_post_parent_created_at_id'
+        ) THEN
+            CREATE INDEX idx_comments_post_parent_created_at_id
+                ON comments(post_id, parent_comment_id, created_at, id);
+        END IF;
+    END IF;
+END
+$$;
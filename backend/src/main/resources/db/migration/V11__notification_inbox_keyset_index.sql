@@ -0,0 +1,14 @@
+DO $$
+BEGIN
+    IF to_regclass('public.notifications') IS NOT NULL THEN
+        IF NOT EXISTS (
+            SELECT 1
+            FROM pg_indexes
+            WHERE indexname = 'idx_notifications_recipient_created_at_id'
+        ) THEN
+            CREATE INDEX idx_notifications_recipient_created_at_id
+                ON notifications(recipient_id, created_at DESC, id DESC);
+        END IF;
+    END IF;
+END
+$$;
@@ -0,0 +1,23 @@
+DO $$
+BEGIN
+    IF to_regclass('public.notifications') IS NOT NULL THEN
+        ALTER TABLE notifications
+            ADD COLUMN IF NOT EXISTS group_key VARCHAR(120);
+
+        ALTER TABLE notifications
+            ADD COLUMN IF NOT EXISTS actor_count INTEGER NOT NULL DEFAULT 1;
+
+        ALTER TABLE notifications
+            ADD COLUMN IF NOT EXISTS recent_actor_ids VARCHAR(255);
+
+        IF NOT EXISTS (
+            SELECT 1
+            FROM pg_constraint
+            WHERE conname = 'uk_notifications_recipient_group'
+        ) THEN
+            ALTER TABLE notifications
+                ADD CONSTRAINT uk_notifications_recipient_group UNIQUE (recipient_id, group_key);
+        END IF;
+    END IF;
+END
+$$;
@@ -0,0 +1,45 @@
+DO $$
+BEGIN
+    IF to_regclass('public.conversations') IS NOT NULL THEN
+        ALTER TABLE conversations
+            ADD COLUMN IF NOT EXISTS user_one_unread_count INTEGER NOT NULL DEFAULT 0;
+
+        ALTER TABLE conversations
+            ADD COLUMN IF NOT EXISTS user_two_unread_count INTEGER NOT NULL DEFAULT 0;
+
+        UPDATE conversations
+        SET last_message_at = created_at
+        WHERE last_message_at IS NULL;
+
+        IF to_regclass('public.messages') IS NOT NULL THEN
+            UPDATE conversations c
+            SET user_one_unread_count = COALESCE((
+                    SELECT COUNT(*) FROM messages m
+                    WHERE m.conversation_id = c.id AND m.recipient_id = c.user_one_id AND m.is_read = false
+                ), 0),
+                user_two_unread_count = COALESCE((
+                    SELECT COUNT(*) FROM messages m
+                    WHERE m.conversation_id = c.id AND m.recipient_id = c.user_two_id AND m.is_read = false
+                ), 0);
+        END IF;
+
+        IF NOT EXISTS (
+            SELECT 1
+            FROM pg_indexes
+            WHERE indexname = 'idx_conversations_user_one_last_message'
+        ) THEN
+            CREATE INDEX idx_conversations_user_one_last_message
+                ON conversations(user_one_id, last_message_at DESC, id DESC);
+        END IF;
+
+        IF NOT EXISTS (
+            SELECT 1
+            FROM pg_indexes
+            WHERE indexname = 'idx_conversations_user_two_last_message'
+        ) THEN
+            CREATE INDEX idx_conversations_user_two_last_message
+                ON conversations(user_two_id, last_message_at DESC, id DESC);
+        END IF;
+    END IF;
+END
+$$;
@@ -0,0 +1,8 @@
+DO $$
+BEGIN
+    IF to_regclass('public.attachment_upload_sessions') IS NOT NULL THEN
+        ALTER TABLE attachment_upload_sessions
+            ADD COLUMN IF NOT EXISTS received_chunks BYTEA;
+    END IF;
+END
+$$;
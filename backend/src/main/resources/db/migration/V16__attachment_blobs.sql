@@ -0,0 +1,22 @@
+CREATE TABLE IF NOT EXISTS attachment_blobs (
+    id BIGSERIAL PRIMARY KEY,
+    checksum VARCHAR(128) NOT NULL UNIQUE,
+    size_bytes BIGINT NOT NULL,
+    mime_type VARCHAR(150) NOT NULL,
+    storage_key VARCHAR(400) NOT NULL,
+    thumbnail_key VARCHAR(400),
+    width INTEGER,
+    height INTEGER,
+    status VARCHAR(20) NOT NULL,
+    ref_count INTEGER NOT NULL DEFAULT 0,
+    created_at TIMESTAMP
+);
+
+DO $$
+BEGIN
+    IF to_regclass('public.message_attachments') IS NOT NULL THEN
+        ALTER TABLE message_attachments
+            ADD COLUMN IF NOT EXISTS blob_id BIGINT REFERENCES attachment_blobs(id) ON DELETE SET NULL;
+    END IF;
+END
+$$;
@@ -0,0 +1,26 @@
+DO $$
+BEGIN
+    IF to_regclass('public.notifications') IS NOT NULL THEN
+        CREATE TABLE IF NOT EXISTS notification_actors (
+            notification_id BIGINT NOT NULL REFERENCES notifications(id) ON DELETE CASCADE,
+            actor_id BIGINT NOT NULL,
+            PRIMARY KEY (notification_id, actor_id)
+        );
+
+        -- Seed from the recent actors so folds into existing groups keep counting from where they are.
+        INSERT INTO notification_actors (notification_id, actor_id)
+        SELECT n.id, recent.actor_id::BIGINT
+        FROM notifications n
+        CROSS JOIN LATERAL unnest(string_to_array(n.recent_actor_ids, ',')) AS recent(actor_id)
+        WHERE n.group_key IS NOT NULL
+          AND recent.actor_id <> ''
+        ON CONFLICT DO NOTHING;
+
+        INSERT INTO notification_actors (notification_id, actor_id)
+        SELECT n.id, n.actor_id
+        FROM notifications n
+        WHERE n.group_key IS NOT NULL
+        ON CONFLICT DO NOTHING;
+    END IF;
+END
+$$;
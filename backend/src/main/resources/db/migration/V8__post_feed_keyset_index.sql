@@ -0,0 +1,21 @@
+DO $$
+BEGIN
+    IF to_regclass('public.posts') IS NOT NULL THEN
+        IF NOT EXISTS (
+            SELECT 1
+            FROM pg_indexes
+            WHERE indexname = 'idx_posts_user_created_at_id'
+        ) THEN
+            CREATE INDEX idx_posts_user_created_at_id ON posts(user_id, created_at DESC, id DESC);
+        END IF;
+
+        IF NOT EXISTS (
+            SELECT 1
+            FROM pg_indexes
+            WHERE indexname = 'idx_posts_created_at_id'
+        ) THEN
+            CREATE INDEX idx_posts_created_at_id ON posts(created_at DESC, id DESC);
+        END IF;
+    END IF;
+END
+$$;
@@ -0,0 +1,25 @@
+DO $$
+BEGIN
+    IF to_regclass('public.post_likes') IS NOT NULL THEN
+        DELETE FROM post_likes a
+            USING post_likes b
+            WHERE a.ctid < b.ctid
+              AND a.post_id = b.post_id
+              AND a.user_id = b.user_id;
+
+        IF NOT EXISTS (
+            SELECT 1
+            FROM pg_constraint
+            WHERE conname = 'uk_post_likes_post_user'
+        ) THEN
+            ALTER TABLE post_likes
+                ADD CONSTRAINT uk_post_likes_post_user UNIQUE (post_id, user_id);
+        END IF;
+
+        IF to_regclass('public.posts') IS NOT NULL THEN
+            UPDATE posts p
+            SET likes = COALESCE((SELECT COUNT(*) FROM post_likes pl WHERE pl.post_id = p.id), 0);
+        END IF;
+    END IF;
+END
+$$;
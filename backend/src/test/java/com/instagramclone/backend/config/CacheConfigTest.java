@@ -19,7 +19,6 @@ class CacheConfigTest {
         RedisCacheManager cacheManager = config.redisCacheManager(connectionFactory, mapper);
 
         assertNotNull(cacheManager);
-        assertNotNull(cacheManager.getCache("notificationUnreadCount"));
         assertNotNull(cacheManager.getCache("generic"));
     }
 }
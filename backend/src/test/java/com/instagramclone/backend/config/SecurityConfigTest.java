@@ -42,6 +42,7 @@ class SecurityConfigTest {
         assertNotNull(cors);
         assertTrue(cors.getAllowedOrigins().contains("http://example.com"));
         assertTrue(cors.getAllowedOriginPatterns().contains("http://localhost:*"));
+        assertTrue(cors.getExposedHeaders().contains("X-Next-Cursor"));
 
         WebSecurityCustomizer customizer = config.webSecurityCustomizer();
         assertNotNull(customizer);
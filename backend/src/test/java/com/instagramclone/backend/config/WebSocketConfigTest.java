@@ -1,5 +1,6 @@
 package com.instagramclone.backend.config;
 
+import com.instagramclone.backend.realtime.ClusterUserDestinationRelay;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -25,22 +26,28 @@ class WebSocketConfigTest {
     @Mock
     private WebSocketHandshakeHandler handshakeHandler;
 
+    @Mock
+    private ClusterUserDestinationRelay clusterRelay;
+
     private WebSocketConfig config;
 
     @BeforeEach
     void setUp() {
-        config = new WebSocketConfig(interceptor, handshakeHandler, "http://example.com");
+        config = new WebSocketConfig(interceptor, handshakeHandler, clusterRelay, "http://example.com");
     }
 
     @Test
     void configureMessageBrokerRegistersDestinations() {
         MessageBrokerRegistry registry = mock(MessageBrokerRegistry.class);
+        ChannelRegistration brokerChannel = mock(ChannelRegistration.class);
+        when(registry.configureBrokerChannel()).thenReturn(brokerChannel);
 
         config.configureMessageBroker(registry);
 
         verify(registry).enableSimpleBroker("/queue", "/topic");
         verify(registry).setApplicationDestinationPrefixes("/app");
         verify(registry).setUserDestinationPrefix("/user");
+        verify(brokerChannel).interceptors(clusterRelay);
     }
 
     @Test
@@ -0,0 +1,129 @@
+package com.instagramclone.backend.message;
+
+import com.instagramclone.backend.storage.AttachmentStorageService;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AttachmentBlobServiceTest {
+
+    @Mock
+    private AttachmentBlobRepository blobRepository;
+
+    @Mock
+    private AttachmentStorageService storageService;
+
+    private AttachmentBlobService blobService;
+
+    @BeforeEach
+    void setUp() {
+        blobService = new AttachmentBlobService(blobRepository, storageService);
+    }
+
+    @Test
+    void share_pointsAttachmentAtBlobAndDeletesOwnCopy() {
+        AttachmentBlob blob = blob(5L);
+        MessageAttachment attachment = attachment("own.bin");
+        when(blobRepository.acquire(5L)).thenReturn(1);
+
+        assertTrue(blobService.share(blob, attachment));
+
+        assertEquals(5L, attachment.getBlobId());
+        assertEquals("blob.png", attachment.getStorageKey());
+        assertEquals("blob-thumb.jpg", attachment.getThumbnailKey());
+        assertEquals(640, attachment.getWidth());
+        verify(storageService).deletePermanent("own.bin");
+    }
+
+    @Test
+    void share_keepsOwnCopyWhenBlobIsGone() {
+        AttachmentBlob blob = blob(5L);
+        MessageAttachment attachment = attachment("own.bin");
+        when(blobRepository.acquire(5L)).thenReturn(0);
+
+        assertFalse(blobService.share(blob, attachment));
+
+        assertNull(attachment.getBlobId());
+        assertEquals("own.bin", attachment.getStorageKey());
+        verifyNoInteractions(storageService);
+    }
+
+    @Test
+    void register_linksAttachmentThatCreatedTheBlob() {
+        MessageAttachment attachment = attachment("own.bin");
+        attachment.setChecksum("ABC");
+        when(blobRepository.insertIfAbsent(
+                "abc", 10L, "image/png", "own.bin", null, null, null, "UPLOADING", 1
+        )).thenReturn(1);
+        when(blobRepository.findByChecksum("abc")).thenReturn(Optional.of(blob(9L)));
+
+        blobService.register(attachment, AttachmentStatus.UPLOADING);
+
+        assertEquals(9L, attachment.getBlobId());
+    }
+
+    @Test
+    void register_leavesAttachmentUnlinkedForQuarantinedContent() {
+        MessageAttachment attachment = attachment("own.bin");
+        attachment.setChecksum("abc");
+        when(blobRepository.insertIfAbsent(
+                "abc", 10L, "image/png", "own.bin", null, null, null, "QUARANTINED", 0
+        )).thenReturn(1);
+
+        blobService.register(attachment, AttachmentStatus.QUARANTINED);
+
+        assertNull(attachment.getBlobId());
+        verify(blobRepository, never()).findByChecksum(anyString());
+    }
+
+    @Test
+    void findByContent_ignoresChecksumCollisionWithDifferentSize() {
+        when(blobRepository.findByChecksum("abc")).thenReturn(Optional.of(blob(5L)));
+
+        assertTrue(blobService.findByContent("abc", 10L).isPresent());
+        assertFalse(blobService.findByContent("abc", 11L).isPresent());
+        assertFalse(blobService.findByContent(null, 10L).isPresent());
+        verify(blobRepository, times(2)).findByChecksum("abc");
+    }
+
+    private AttachmentBlob blob(Long id) {
+        AttachmentBlob blob = new AttachmentBlob();
+        ReflectionTestUtils.setField(blob, "id", id);
+        blob.setChecksum("abc");
+        blob.setSizeBytes(10L);
+        blob.setMimeType("image/png");
+        blob.setStorageKey("blob.png");
+        blob.setThumbnailKey("blob-thumb.jpg");
+        blob.setWidth(640);
+        blob.setHeight(480);
+        blob.setStatus(AttachmentStatus.READY);
+        blob.setRefCount(1);
+        return blob;
+    }
+
+    private MessageAttachment attachment(String storageKey) {
+        MessageAttachment attachment = new MessageAttachment();
+        attachment.setStatus(AttachmentStatus.UPLOADING);
+        attachment.setType(AttachmentType.IMAGE);
+        attachment.setMimeType("image/png");
+        attachment.setSizeBytes(10L);
+        attachment.setStorageKey(storageKey);
+        return attachment;
+    }
+}
@@ -10,9 +10,11 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -28,13 +30,16 @@ class AttachmentExpiryServiceTest {
     @Mock
     private MessageService messageService;
 
+    @Mock
+    private AttachmentBlobRepository blobRepository;
+
     private AttachmentExpiryService expiryService;
 
     @BeforeEach
     void setUp() {
         expiryService = new AttachmentExpiryService(
                 attachmentRepository,
-                storageService,
+                new AttachmentBlobService(blobRepository, storageService),
                 messageService,
                 new MessageAttachmentProperties()
         );
@@ -60,4 +65,34 @@ class AttachmentExpiryServiceTest {
         verify(storageService).deleteThumbnail("thumb");
         verify(messageService).notifyMessageUpdated(attachment.getMessage());
     }
+
+    @Test
+    void expireAttachments_keepsSharedFilesUntilLastReference() {
+        MessageAttachment first = sharedAttachment();
+        MessageAttachment second = sharedAttachment();
+
+        when(attachmentRepository.findByStatusInAndExpiresAtBefore(anyList(), any(LocalDateTime.class)))
+                .thenReturn(List.of(first, second));
+        when(attachmentRepository.save(any(MessageAttachment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(blobRepository.deleteIfUnreferenced(7L)).thenReturn(0, 1);
+
+        expiryService.expireAttachments();
+
+        verify(blobRepository, times(2)).release(7L);
+        verify(storageService, times(1)).deletePermanent("shared");
+        verify(storageService, times(1)).deleteThumbnail("shared-thumb");
+        assertNull(first.getBlobId());
+        assertNull(second.getBlobId());
+    }
+
+    private MessageAttachment sharedAttachment() {
+        MessageAttachment attachment = new MessageAttachment();
+        attachment.setStatus(AttachmentStatus.READY);
+        attachment.setStorageKey("shared");
+        attachment.setThumbnailKey("shared-thumb");
+        attachment.setBlobId(7L);
+        attachment.setExpiresAt(LocalDateTime.now().minusMinutes(10));
+        attachment.setMessage(new Message());
+        return attachment;
+    }
 }
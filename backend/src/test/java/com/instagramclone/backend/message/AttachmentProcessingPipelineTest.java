@@ -0,0 +1,156 @@
+package com.instagramclone.backend.message;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AttachmentProcessingPipelineTest {
+
+    @Mock
+    private AttachmentProcessingService processingService;
+
+    @Mock
+    private MessageAttachmentRepository attachmentRepository;
+
+    @Mock
+    private AttachmentUploadSessionRepository uploadSessionRepository;
+
+    private AttachmentProcessingPipeline pipeline;
+
+    @AfterEach
+    void tearDown() {
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void enqueue_runsImagesBeforeDocumentsBeforeVideos() throws Exception {
+        pipeline = new AttachmentProcessingPipeline(processingService, attachmentRepository, uploadSessionRepository, 1, 1, 10, 300);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(5);
+        List<Long> order = new CopyOnWriteArrayList<>();
+        when(processingService.scanAttachment(anyLong())).thenAnswer(invocation -> {
+            Long id = invocation.getArgument(0);
+            if (id == 1L) {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            order.add(id);
+            done.countDown();
+            return false;
+        });
+
+        pipeline.enqueue(1L, AttachmentType.VIDEO, 1000);
+        pipeline.enqueue(2L, AttachmentType.VIDEO, 5000);
+        pipeline.enqueue(3L, AttachmentType.DOCUMENT, 100);
+        pipeline.enqueue(4L, AttachmentType.IMAGE, 900);
+        pipeline.enqueue(5L, AttachmentType.IMAGE, 300);
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1L, 5L, 4L, 3L, 2L), order);
+    }
+
+    @Test
+    void enqueue_rejectsWhenQueueIsFull() throws Exception {
+        pipeline = new AttachmentProcessingPipeline(processingService, attachmentRepository, uploadSessionRepository, 1, 1, 1, 300);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(processingService.scanAttachment(anyLong())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return false;
+        });
+
+        assertTrue(pipeline.enqueue(1L, AttachmentType.IMAGE, 10));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(pipeline.enqueue(2L, AttachmentType.IMAGE, 10));
+        assertFalse(pipeline.hasCapacity());
+        assertFalse(pipeline.enqueue(3L, AttachmentType.IMAGE, 10));
+        assertFalse(pipeline.enqueue(2L, AttachmentType.IMAGE, 10));
+
+        AttachmentProcessingPipeline.StageStats scan = pipeline.stats().get(0);
+        assertEquals(1, scan.queued());
+        assertEquals(1, scan.active());
+        assertEquals(1, scan.rejected());
+        release.countDown();
+    }
+
+    @Test
+    void enqueue_handsScannedImagesToThumbnailStage() {
+        pipeline = new AttachmentProcessingPipeline(processingService, attachmentRepository, uploadSessionRepository, 1, 1, 10, 300);
+        when(processingService.scanAttachment(7L)).thenReturn(true);
+
+        pipeline.enqueue(7L, AttachmentType.IMAGE, 10);
+
+        verify(processingService, timeout(5000)).thumbnailAttachment(7L);
+    }
+
+    @Test
+    void resubmitStalled_requeuesFinalizedAttachments() {
+        pipeline = new AttachmentProcessingPipeline(processingService, attachmentRepository, uploadSessionRepository, 1, 1, 10, 300);
+        MessageAttachment attachment = new MessageAttachment();
+        attachment.setType(AttachmentType.DOCUMENT);
+        ReflectionTestUtils.setField(attachment, "id", 9L);
+        when(uploadSessionRepository.claimStalled(any(), eq(10))).thenReturn(List.of(9L));
+        when(attachmentRepository.findAllById(List.of(9L))).thenReturn(List.of(attachment));
+
+        pipeline.resubmitStalled();
+
+        verify(processingService, timeout(5000)).scanAttachment(9L);
+    }
+
+    @Test
+    void resubmitStalled_renewsClaimsOnWorkStillHeldHere() throws Exception {
+        pipeline = new AttachmentProcessingPipeline(processingService, attachmentRepository, uploadSessionRepository, 1, 1, 1, 300);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(processingService.scanAttachment(anyLong())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return false;
+        });
+        pipeline.enqueue(1L, AttachmentType.IMAGE, 10);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        pipeline.enqueue(2L, AttachmentType.VIDEO, 10);
+
+        pipeline.resubmitStalled();
+
+        verify(uploadSessionRepository).renewClaims(argThat(ids -> Set.copyOf(ids).equals(Set.of(1L, 2L))));
+        verify(uploadSessionRepository, never()).claimStalled(any(), anyInt());
+        release.countDown();
+    }
+
+    @Test
+    void resubmitStalled_onlyRequeuesRowsThisNodeClaimed() {
+        pipeline = new AttachmentProcessingPipeline(processingService, attachmentRepository, uploadSessionRepository, 1, 1, 10, 300);
+        when(uploadSessionRepository.claimStalled(any(), eq(10))).thenReturn(List.of());
+
+        pipeline.resubmitStalled();
+
+        verifyNoInteractions(attachmentRepository, processingService);
+    }
+}
@@ -1,6 +1,8 @@
 package com.instagramclone.backend.message;
 
 import com.instagramclone.backend.storage.AttachmentStorageService;
+import com.instagramclone.backend.storage.ImageDerivativeService;
+import com.instagramclone.backend.storage.ImageDerivatives;
 import com.instagramclone.backend.storage.StorageProperties;
 import com.instagramclone.backend.storage.VirusScanResult;
 import com.instagramclone.backend.storage.VirusScanService;
@@ -19,6 +21,7 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -38,6 +41,12 @@ class AttachmentProcessingServiceTest {
     @Mock
     private MessageService messageService;
 
+    @Mock
+    private AttachmentBlobService blobService;
+
+    @Mock
+    private ImageDerivativeService derivativeService;
+
     private AttachmentProcessingService processingService;
 
     @TempDir
@@ -49,47 +58,51 @@ class AttachmentProcessingServiceTest {
                 attachmentRepository,
                 storageService,
                 virusScanService,
-                messageService
+                messageService,
+                blobService,
+                derivativeService
         );
     }
 
     @Test
-    void processAttachmentAsync_quarantinesInfectedFiles() {
+    void scanAttachment_quarantinesInfectedFiles() {
         MessageAttachment attachment = baseAttachment();
         when(attachmentRepository.findById(99L)).thenReturn(Optional.of(attachment));
         when(storageService.resolvePermanentPath("file")).thenReturn(Path.of("file"));
         when(virusScanService.scan(any(Path.class))).thenReturn(new VirusScanResult(VirusScanStatus.INFECTED, "virus"));
 
-        processingService.processAttachmentAsync(99L);
+        processingService.scanAttachment(99L);
 
         assertEquals(AttachmentStatus.QUARANTINED, attachment.getStatus());
         verify(storageService).moveToQuarantine("file");
+        verify(blobService).register(attachment, AttachmentStatus.QUARANTINED);
         verify(messageService).notifyMessageUpdated(attachment.getMessage());
     }
 
     @Test
-    void processAttachmentAsync_marksCleanDocumentsReady() {
+    void scanAttachment_marksCleanDocumentsReady() {
         MessageAttachment attachment = baseAttachment();
         attachment.setType(AttachmentType.DOCUMENT);
         when(attachmentRepository.findById(100L)).thenReturn(Optional.of(attachment));
         when(storageService.resolvePermanentPath("file")).thenReturn(Path.of("file"));
         when(virusScanService.scan(any(Path.class))).thenReturn(new VirusScanResult(VirusScanStatus.CLEAN, "clean"));
 
-        processingService.processAttachmentAsync(100L);
+        processingService.scanAttachment(100L);
 
         assertEquals(AttachmentStatus.READY, attachment.getStatus());
+        verify(blobService).register(attachment, AttachmentStatus.READY);
         verify(messageService).notifyMessageUpdated(attachment.getMessage());
     }
 
     @Test
-    void processAttachmentAsync_marksFailedWhenScanFails() {
+    void scanAttachment_marksFailedWhenScanFails() {
         MessageAttachment attachment = baseAttachment();
         attachment.setType(AttachmentType.DOCUMENT);
         when(attachmentRepository.findById(101L)).thenReturn(Optional.of(attachment));
         when(storageService.resolvePermanentPath("file")).thenReturn(Path.of("file"));
         when(virusScanService.scan(any(Path.class))).thenReturn(new VirusScanResult(VirusScanStatus.FAILED, "fail"));
 
-        processingService.processAttachmentAsync(101L);
+        processingService.scanAttachment(101L);
 
         assertEquals(AttachmentStatus.FAILED, attachment.getStatus());
         verify(storageService).deletePermanent("file");
@@ -97,12 +110,12 @@ class AttachmentProcessingServiceTest {
     }
 
     @Test
-    void processAttachmentAsync_expiresAttachments() {
+    void scanAttachment_expiresAttachments() {
         MessageAttachment attachment = baseAttachment();
         attachment.setExpiresAt(java.time.LocalDateTime.now().minusMinutes(1));
         when(attachmentRepository.findById(102L)).thenReturn(Optional.of(attachment));
 
-        processingService.processAttachmentAsync(102L);
+        processingService.scanAttachment(102L);
 
         assertEquals(AttachmentStatus.EXPIRED, attachment.getStatus());
         verify(storageService).deletePermanent("file");
@@ -110,27 +123,27 @@ class AttachmentProcessingServiceTest {
     }
 
     @Test
-    void processAttachmentAsync_returnsWhenMissingAttachment() {
+    void scanAttachment_returnsWhenMissingAttachment() {
         when(attachmentRepository.findById(150L)).thenReturn(Optional.empty());
 
-        processingService.processAttachmentAsync(150L);
+        processingService.scanAttachment(150L);
 
         verifyNoInteractions(storageService, virusScanService, messageService);
     }
 
     @Test
-    void processAttachmentAsync_returnsWhenNotUploading() {
+    void scanAttachment_returnsWhenNotUploading() {
         MessageAttachment attachment = baseAttachment();
         attachment.setStatus(AttachmentStatus.READY);
         when(attachmentRepository.findById(151L)).thenReturn(Optional.of(attachment));
 
-        processingService.processAttachmentAsync(151L);
+        processingService.scanAttachment(151L);
 
         verifyNoInteractions(storageService, virusScanService, messageService);
     }
 
     @Test
-    void processAttachmentAsync_handlesNotificationFailure() {
+    void scanAttachment_handlesNotificationFailure() {
         MessageAttachment attachment = baseAttachment();
         attachment.setType(AttachmentType.DOCUMENT);
         when(attachmentRepository.findById(152L)).thenReturn(Optional.of(attachment));
@@ -138,13 +151,13 @@ class AttachmentProcessingServiceTest {
         when(virusScanService.scan(any(Path.class))).thenReturn(new VirusScanResult(VirusScanStatus.CLEAN, "clean"));
         doThrow(new RuntimeException("fail")).when(messageService).notifyMessageUpdated(any(Message.class));
 
-        processingService.processAttachmentAsync(152L);
+        processingService.scanAttachment(152L);
 
         assertEquals(AttachmentStatus.READY, attachment.getStatus());
     }
 
     @Test
-    void processAttachmentAsync_generatesThumbnailForImages() throws Exception {
+    void scanAndThumbnailAttachment_generatesThumbnailForImages() throws Exception {
         StorageProperties properties = new StorageProperties();
         properties.setMessageAttachmentsLocation(tempDir.resolve("attachments").toString());
         properties.setMessageAttachmentsTempLocation(tempDir.resolve("tmp").toString());
@@ -157,7 +170,9 @@ class AttachmentProcessingServiceTest {
                 attachmentRepository,
                 realStorage,
                 virusScanService,
-                messageService
+                messageService,
+                blobService,
+                new ImageDerivativeService(new int[] {16, 640}, 0.8, 1, 1)
         );
 
         byte[] image = createPngBytes(32, 24);
@@ -169,12 +184,19 @@ class AttachmentProcessingServiceTest {
         when(attachmentRepository.findById(160L)).thenReturn(Optional.of(attachment));
         when(virusScanService.scan(any(Path.class))).thenReturn(new VirusScanResult(VirusScanStatus.SKIPPED, "skip"));
 
-        service.processAttachmentAsync(160L);
+        assertTrue(service.scanAttachment(160L));
+        assertEquals(AttachmentStatus.UPLOADING, attachment.getStatus());
+        service.thumbnailAttachment(160L);
 
         assertEquals(AttachmentStatus.READY, attachment.getStatus());
         assertNotNull(attachment.getThumbnailKey());
         assertTrue(attachment.getWidth() > 0);
         assertTrue(attachment.getHeight() > 0);
+        Path original = realStorage.resolvePermanentPath("image.png");
+        assertEquals(original.resolveSibling("image.png.sizes").resolve("16.jpg"), ImageDerivatives.select(original, 10));
+        // A skipped scan is no verdict, so the image is not offered for reuse.
+        verify(blobService, never()).register(any(MessageAttachment.class), any(AttachmentStatus.class));
+        verify(blobService).completeThumbnail(attachment);
     }
 
     private MessageAttachment baseAttachment() {
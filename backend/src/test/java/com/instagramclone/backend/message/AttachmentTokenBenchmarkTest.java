@@ -0,0 +1,121 @@
+package com.instagramclone.backend.message;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Link minting for a chat history page rendered repeatedly: 200 image attachments, both participants,
+ * 20 renders. The baseline signs a fresh JWT per link the way the service used to; the bucketed scheme
+ * signs each (attachment, viewer) pair once and serves the rest from its cache.
+ */
+class AttachmentTokenBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttachmentTokenBenchmarkTest.class);
+
+    private static final int ATTACHMENTS = 200;
+    private static final long[] VIEWERS = {1L, 2L};
+    private static final int RENDERS = 20;
+    private static final String SECRET = "benchmark-secret-attachment-token";
+
+    @Test
+    void bucketedTokensAreSignedOncePerAttachmentAndViewerWithinABucket() {
+        Clock clock = Clock.fixed(Instant.parse("2024-05-01T12:00:00Z"), ZoneOffset.UTC);
+        AttachmentTokenService tokenService = new AttachmentTokenService(SECRET, new MessageAttachmentProperties(), clock);
+
+        Set<String> distinct = new HashSet<>();
+        int count = mintBucketed(tokenService, distinct, RENDERS);
+
+        assertEquals(ATTACHMENTS * VIEWERS.length * RENDERS, count);
+        assertEquals(ATTACHMENTS * VIEWERS.length, distinct.size());
+        // A repeat render is served from the cache: the very same instance, not an equal re-signed string.
+        assertSame(tokenService.generateToken(1L, 1L), tokenService.generateToken(1L, 1L));
+    }
+
+    /**
+     * Wall-clock comparison; excluded from the default build (see the {@code benchmark} profile in the pom)
+     * because timings on a shared CI machine are not reliable enough to assert on.
+     */
+    @Test
+    @Tag("benchmark")
+    void bucketedTokensMintFasterThanJwts() {
+        Key key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        AttachmentTokenService tokenService = new AttachmentTokenService(SECRET, new MessageAttachmentProperties());
+
+        // Warm both paths so class loading and JIT do not dominate either measurement.
+        mintJwts(key, 2);
+        mintBucketed(tokenService, new HashSet<>(), 2);
+
+        long jwtStart = System.nanoTime();
+        int jwtCount = mintJwts(key, RENDERS);
+        long jwtNanos = System.nanoTime() - jwtStart;
+
+        Set<String> distinct = new HashSet<>();
+        long bucketedStart = System.nanoTime();
+        int bucketedCount = mintBucketed(tokenService, distinct, RENDERS);
+        long bucketedNanos = System.nanoTime() - bucketedStart;
+
+        logger.info("{} links: JWT {} links/s, bucketed HMAC {} links/s, {} distinct tokens",
+                jwtCount,
+                opsPerSecond(jwtCount, jwtNanos),
+                opsPerSecond(bucketedCount, bucketedNanos),
+                distinct.size());
+
+        assertEquals(jwtCount, bucketedCount);
+        assertTrue(bucketedNanos < jwtNanos, "cached signatures should beat per-link JWT signing");
+    }
+
+    private int mintJwts(Key key, int renders) {
+        int count = 0;
+        for (int render = 0; render < renders; render++) {
+            for (long viewer : VIEWERS) {
+                for (long attachmentId = 1; attachmentId <= ATTACHMENTS; attachmentId++) {
+                    Instant now = Instant.now();
+                    String token = Jwts.builder()
+                            .setSubject("attachment")
+                            .setIssuedAt(Date.from(now))
+                            .setExpiration(Date.from(now.plusSeconds(900)))
+                            .claim("attachmentId", attachmentId)
+                            .claim("userId", viewer)
+                            .signWith(key, SignatureAlgorithm.HS256)
+                            .compact();
+                    count += token.isEmpty() ? 0 : 1;
+                }
+            }
+        }
+        return count;
+    }
+
+    private int mintBucketed(AttachmentTokenService tokenService, Set<String> distinct, int renders) {
+        int count = 0;
+        for (int render = 0; render < renders; render++) {
+            for (long viewer : VIEWERS) {
+                for (long attachmentId = 1; attachmentId <= ATTACHMENTS; attachmentId++) {
+                    distinct.add(tokenService.generateToken(attachmentId, viewer));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private long opsPerSecond(int ops, long nanos) {
+        return nanos == 0 ? ops : ops * 1_000_000_000L / nanos;
+    }
+}
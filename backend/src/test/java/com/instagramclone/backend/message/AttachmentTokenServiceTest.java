@@ -1,16 +1,29 @@
 package com.instagramclone.backend.message;
 
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Date;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class AttachmentTokenServiceTest {
 
+    private static final String SECRET = "test-secret-attachment-token";
+    private static final Instant NOW = Instant.parse("2024-05-01T12:00:10Z");
+
     @Test
     void generateAndParseToken_roundTripsIds() {
-        MessageAttachmentProperties properties = new MessageAttachmentProperties();
-        properties.setDownloadTokenTtlSeconds(600);
-        AttachmentTokenService tokenService = new AttachmentTokenService("test-secret-attachment-token", properties);
+        AttachmentTokenService tokenService = tokenServiceAt(NOW);
 
         String token = tokenService.generateToken(44L, 7L);
         AttachmentTokenPayload payload = tokenService.parseToken(token);
@@ -18,4 +31,63 @@ class AttachmentTokenServiceTest {
         assertEquals(44L, payload.attachmentId());
         assertEquals(7L, payload.userId());
     }
+
+    @Test
+    void generateToken_reusesTokenWithinBucket() {
+        AttachmentTokenService early = tokenServiceAt(NOW);
+        AttachmentTokenService later = tokenServiceAt(NOW.plusSeconds(200));
+        AttachmentTokenService nextBucket = tokenServiceAt(NOW.plusSeconds(300));
+
+        String token = early.generateToken(44L, 7L);
+
+        assertEquals(token, early.generateToken(44L, 7L));
+        assertEquals(token, later.generateToken(44L, 7L));
+        assertNotEquals(token, nextBucket.generateToken(44L, 7L));
+        assertNotEquals(token, early.generateToken(44L, 8L));
+    }
+
+    @Test
+    void parseToken_rejectsExpiredToken() {
+        String token = tokenServiceAt(NOW).generateToken(44L, 7L);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () ->
+                tokenServiceAt(NOW.plusSeconds(1300)).parseToken(token));
+
+        assertEquals(HttpStatus.UNAUTHORIZED, ex.getStatusCode());
+    }
+
+    @Test
+    void parseToken_rejectsTamperedToken() {
+        AttachmentTokenService tokenService = tokenServiceAt(NOW);
+        String token = tokenService.generateToken(44L, 7L);
+        String otherViewer = token.replaceFirst("^44\\.7\\.", "44.8.");
+
+        assertThrows(ResponseStatusException.class, () -> tokenService.parseToken(otherViewer));
+        assertThrows(ResponseStatusException.class, () -> tokenService.parseToken("44.7.notanumber.abc"));
+        assertThrows(ResponseStatusException.class, () -> tokenService.parseToken("garbage"));
+    }
+
+    @Test
+    void parseToken_acceptsLegacyJwt() {
+        String secret = String.format("%-32s", SECRET).replace(' ', '0');
+        String legacy = Jwts.builder()
+                .setSubject("attachment")
+                .setExpiration(Date.from(Instant.now().plusSeconds(600)))
+                .claim("attachmentId", 44L)
+                .claim("userId", 7L)
+                .signWith(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)), SignatureAlgorithm.HS256)
+                .compact();
+
+        AttachmentTokenPayload payload = tokenServiceAt(Instant.now()).parseToken(legacy);
+
+        assertEquals(44L, payload.attachmentId());
+        assertEquals(7L, payload.userId());
+    }
+
+    private AttachmentTokenService tokenServiceAt(Instant instant) {
+        MessageAttachmentProperties properties = new MessageAttachmentProperties();
+        properties.setDownloadTokenTtlSeconds(900);
+        properties.setDownloadTokenBucketSeconds(300);
+        return new AttachmentTokenService(SECRET, properties, Clock.fixed(instant, ZoneOffset.UTC));
+    }
 }
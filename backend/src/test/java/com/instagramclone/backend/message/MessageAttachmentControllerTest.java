@@ -90,7 +90,7 @@ class MessageAttachmentControllerTest {
         doNothing().when(accessService).assertUserCanAccess(attachment, user);
         when(storageService.loadAsResource("file.bin")).thenReturn(new ByteArrayResource("data".getBytes()));
 
-        ResponseEntity<?> response = controller.downloadAttachment(1L, new HttpHeaders(), "token", () -> "alice");
+        ResponseEntity<?> response = controller.downloadAttachment(1L, new HttpHeaders(), "token", null, () -> "alice");
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getBody());
@@ -112,7 +112,7 @@ class MessageAttachmentControllerTest {
 
         HttpHeaders headers = new HttpHeaders();
         headers.setRange(List.of(HttpRange.createByteRange(0, 1)));
-        ResponseEntity<?> response = controller.downloadAttachment(4L, headers, "token", () -> "alice");
+        ResponseEntity<?> response = controller.downloadAttachment(4L, headers, "token", null, () -> "alice");
 
         assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
         assertNotNull(response.getBody());
@@ -156,7 +156,7 @@ class MessageAttachmentControllerTest {
         when(attachmentRepository.findById(2L)).thenReturn(Optional.of(attachment));
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () ->
-                controller.downloadAttachment(2L, new HttpHeaders(), null, () -> "alice")
+                controller.downloadAttachment(2L, new HttpHeaders(), null, null, () -> "alice")
         );
 
         assertEquals(HttpStatus.GONE, ex.getStatusCode());
@@ -171,7 +171,7 @@ class MessageAttachmentControllerTest {
         when(attachmentRepository.findById(3L)).thenReturn(Optional.of(attachment));
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () ->
-                controller.downloadAttachment(3L, new HttpHeaders(), null, () -> "alice")
+                controller.downloadAttachment(3L, new HttpHeaders(), null, null, () -> "alice")
         );
 
         assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
@@ -187,7 +187,7 @@ class MessageAttachmentControllerTest {
         when(attachmentRepository.findById(6L)).thenReturn(Optional.of(attachment));
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () ->
-                controller.downloadAttachment(6L, new HttpHeaders(), null, () -> "alice")
+                controller.downloadAttachment(6L, new HttpHeaders(), null, null, () -> "alice")
         );
 
         assertEquals(HttpStatus.GONE, ex.getStatusCode());
@@ -10,6 +10,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.AfterEach;
@@ -21,9 +22,16 @@ import org.mockito.Mock;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aop.framework.ProxyFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.server.ResponseStatusException;
@@ -55,7 +63,10 @@ class MessageAttachmentServiceTest {
     private AttachmentUploadSessionRepository uploadSessionRepository;
 
     @Mock
-    private AttachmentProcessingService processingService;
+    private AttachmentProcessingPipeline processingPipeline;
+
+    @Mock
+    private AttachmentBlobService blobService;
 
     @Mock
     private UserRepository userRepository;
@@ -116,7 +127,8 @@ class MessageAttachmentServiceTest {
                 uploadSessionRepository,
                 realValidation,
                 storageService,
-                processingService,
+                processingPipeline,
+                blobService,
                 userRepository,
                 properties
         );
@@ -141,6 +153,57 @@ class MessageAttachmentServiceTest {
         verify(messageService).notifyMessageCreated(any(Message.class));
     }
 
+    @Test
+    void createUploadSessions_skipsUploadForContentSenderAlreadyHas() {
+        AttachmentStorageService storageService = org.mockito.Mockito.mock(AttachmentStorageService.class);
+        when(storageService.generateStorageKey(anyString())).thenReturn("storage-key");
+        when(storageService.createTempKey()).thenReturn("temp-key");
+        ArgumentCaptor<AttachmentUploadSession> sessionCaptor = ArgumentCaptor.forClass(AttachmentUploadSession.class);
+        when(uploadSessionRepository.save(sessionCaptor.capture())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        User sender = buildUser(1L, "alice");
+        User recipient = buildUser(2L, "bob");
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(sender));
+        when(userRepository.findByUsername("bob")).thenReturn(Optional.of(recipient));
+        when(validationService.resolveType("video/mp4")).thenReturn(AttachmentType.VIDEO);
+        when(validationService.isMimeAllowed(AttachmentType.VIDEO, "video/mp4")).thenReturn(true);
+
+        AttachmentBlob blob = new AttachmentBlob();
+        org.springframework.test.util.ReflectionTestUtils.setField(blob, "id", 4L);
+        blob.setStatus(AttachmentStatus.READY);
+        blob.setMimeType("video/mp4");
+        when(blobService.findByContent("abc123", 50_000_000L)).thenReturn(Optional.of(blob));
+        when(attachmentRepository.existsAccessibleCopy(4L, 1L, AttachmentStatus.READY)).thenReturn(true);
+        when(blobService.share(eq(blob), any(MessageAttachment.class))).thenReturn(true);
+        when(messageService.createMessageWithAttachments(eq(sender), eq(recipient), anyString(), anyList()))
+                .thenAnswer(invocation -> {
+                    @SuppressWarnings("unchecked")
+                    List<MessageAttachment> attachments = (List<MessageAttachment>) invocation.getArgument(3);
+                    Message message = new Message(new Conversation(sender, recipient), sender, recipient, "");
+                    attachments.forEach(attachment -> attachment.setMessage(message));
+                    message.setAttachments(attachments);
+                    return message;
+                });
+
+        MessageAttachmentService service = buildService(storageService);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+
+        CreateAttachmentUploadSessionRequest uploadRequest = new CreateAttachmentUploadSessionRequest();
+        uploadRequest.setRecipientUsername("bob");
+        AttachmentUploadRequest attachmentRequest = new AttachmentUploadRequest();
+        attachmentRequest.setFileName("clip.mp4");
+        attachmentRequest.setMimeType("video/mp4");
+        attachmentRequest.setSizeBytes(50_000_000L);
+        attachmentRequest.setChecksum("abc123");
+        uploadRequest.setAttachments(List.of(attachmentRequest));
+
+        CreateAttachmentUploadSessionResponse response = service.createUploadSessions("alice", uploadRequest);
+
+        assertTrue(response.getUploads().get(0).isSkipUpload());
+        assertTrue(sessionCaptor.getValue().isCompleted());
+        assertEquals(AttachmentStatus.READY, sessionCaptor.getValue().getAttachment().getStatus());
+    }
+
     @Test
     void finalizeUpload_storesAndValidatesAttachment() {
         StorageProperties storageProperties = new StorageProperties();
@@ -157,7 +220,8 @@ class MessageAttachmentServiceTest {
                 uploadSessionRepository,
                 validationService,
                 storageService,
-                processingService,
+                processingPipeline,
+                blobService,
                 userRepository,
                 properties
         );
@@ -169,7 +233,7 @@ class MessageAttachmentServiceTest {
         when(uploadSessionRepository.save(any(AttachmentUploadSession.class))).thenAnswer(invocation -> invocation.getArgument(0));
         when(messageService.toAttachmentResponse(any(MessageAttachment.class), eq(user)))
                 .thenReturn(new MessageAttachmentResponse(1L, AttachmentType.DOCUMENT, "application/pdf", 4L, null, null, null, null, null, null, null, AttachmentStatus.UPLOADING, null, "doc.pdf"));
-        doNothing().when(processingService).processAttachmentAsync(any(Long.class));
+        doNothing().when(processingPipeline).submit(any(MessageAttachment.class));
 
         byte[] data = "data".getBytes(StandardCharsets.UTF_8);
         String tempKey = storageService.createTempKey();
@@ -195,6 +259,7 @@ class MessageAttachmentServiceTest {
         when(uploadSessionRepository.findByIdAndOwnerUsername(session.getId(), "alice"))
                 .thenReturn(Optional.of(session));
 
+        when(processingPipeline.hasCapacity()).thenReturn(true);
         MessageAttachmentResponse response = service.finalizeUpload(session.getId(), "alice");
 
         assertNotNull(response);
@@ -212,7 +277,8 @@ class MessageAttachmentServiceTest {
                 uploadSessionRepository,
                 realValidation,
                 org.mockito.Mockito.mock(AttachmentStorageService.class),
-                processingService,
+                processingPipeline,
+                blobService,
                 userRepository,
                 properties
         );
@@ -268,7 +334,8 @@ class MessageAttachmentServiceTest {
                 uploadSessionRepository,
                 realValidation,
                 storageService,
-                processingService,
+                processingPipeline,
+                blobService,
                 userRepository,
                 properties
         );
@@ -311,12 +378,12 @@ class MessageAttachmentServiceTest {
                 uploadSessionRepository,
                 validationService,
                 storageService,
-                processingService,
+                processingPipeline,
+                blobService,
                 userRepository,
                 properties
         );
 
-        when(uploadSessionRepository.save(any(AttachmentUploadSession.class))).thenAnswer(invocation -> invocation.getArgument(0));
         doNothing().when(messageService).notifyMessageUpdated(any(Message.class));
 
         User user = buildUser(1L, "alice");
@@ -332,13 +399,202 @@ class MessageAttachmentServiceTest {
 
         when(uploadSessionRepository.findByIdAndOwnerUsername(session.getId(), "alice"))
                 .thenReturn(Optional.of(session));
+        when(uploadSessionRepository.findChunkProgress(session.getId()))
+                .thenReturn(Optional.of(progress(1, 0, new byte[] {0})), Optional.of(progress(1, 1, new byte[] {1})));
 
         MockMultipartFile file = new MockMultipartFile("file", "hello.txt", "text/plain", "data".getBytes());
-        UploadChunkResponse response = service.uploadChunk(session.getId(), file, null, null, "alice");
+        UploadChunkResponse response = service.uploadChunk(session.getId(), file, null, null, null, "alice");
 
         assertEquals(1, response.getUploadedChunks());
+        assertTrue(response.getMissingChunks().isEmpty());
         assertEquals(AttachmentStatus.UPLOADING, attachment.getStatus());
         assertTrue(Files.exists(storageService.resolveTempPath(session.getTempKey()).resolve("upload.bin")));
+        verify(uploadSessionRepository).startChunkTracking(session.getId(), 1);
+        verify(uploadSessionRepository).markChunkReceived(session.getId(), 0);
+    }
+
+    @Test
+    void uploadChunk_acceptsOutOfOrderChunkAndReportsMissing() {
+        AttachmentStorageService storageService = buildStorageService();
+        MessageAttachmentService service = buildService(storageService);
+
+        AttachmentUploadSession session = chunkedSession(storageService, 3, new byte[] {0});
+        when(uploadSessionRepository.findChunkProgress(session.getId()))
+                .thenReturn(Optional.of(progress(3, 0, new byte[] {0})), Optional.of(progress(3, 1, new byte[] {0b100})));
+
+        MockMultipartFile file = new MockMultipartFile("file", "part", "application/octet-stream", "ld".getBytes());
+        UploadChunkResponse response = service.uploadChunk(
+                session.getId(), file, 2, 3, sha256("ld"), "alice");
+
+        assertEquals(List.of(0, 1), response.getMissingChunks());
+        assertTrue(Files.exists(storageService.resolveChunkPath(session.getTempKey(), 2)));
+        verify(uploadSessionRepository, Mockito.never()).startChunkTracking(anyString(), Mockito.anyInt());
+        verify(uploadSessionRepository).markChunkReceived(session.getId(), 2);
+    }
+
+    @Test
+    void uploadChunk_checksumMismatchMarksChunkMissing() {
+        AttachmentStorageService storageService = buildStorageService();
+        MessageAttachmentService service = buildService(storageService);
+        when(uploadSessionRepository.save(any(AttachmentUploadSession.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        AttachmentUploadSession session = chunkedSession(storageService, 3, new byte[] {0b010});
+        when(uploadSessionRepository.findChunkProgress(session.getId()))
+                .thenReturn(Optional.of(progress(3, 1, new byte[] {0b010})));
+
+        MockMultipartFile file = new MockMultipartFile("file", "part", "application/octet-stream", "lo".getBytes());
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () ->
+                service.uploadChunk(session.getId(), file, 1, 3, "deadbeef", "alice"));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        assertFalse(Files.exists(storageService.resolveChunkPath(session.getTempKey(), 1)));
+        verify(uploadSessionRepository).markChunkMissing(session.getId(), 1);
+        verify(uploadSessionRepository, Mockito.never()).markChunkReceived(anyString(), Mockito.anyInt());
+    }
+
+    @Test
+    void uploadChunk_checksumMismatchCommitsClearedBit() {
+        AttachmentStorageService storageService = buildStorageService();
+        RecordingTransactionManager transactionManager = new RecordingTransactionManager();
+        // Goes through the real @Transactional attributes, so a rollback of markChunkMissing would show.
+        ProxyFactory proxyFactory = new ProxyFactory(buildService(storageService));
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new TransactionInterceptor(
+                (TransactionManager) transactionManager, new AnnotationTransactionAttributeSource()));
+        MessageAttachmentService service = (MessageAttachmentService) proxyFactory.getProxy();
+        when(uploadSessionRepository.save(any(AttachmentUploadSession.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        AttachmentUploadSession session = chunkedSession(storageService, 3, new byte[] {0b010});
+        when(uploadSessionRepository.findChunkProgress(session.getId()))
+                .thenReturn(Optional.of(progress(3, 1, new byte[] {0b010})));
+
+        MockMultipartFile file = new MockMultipartFile("file", "part", "application/octet-stream", "lo".getBytes());
+        assertThrows(ResponseStatusException.class, () ->
+                service.uploadChunk(session.getId(), file, 1, 3, "deadbeef", "alice"));
+
+        verify(uploadSessionRepository).markChunkMissing(session.getId(), 1);
+        assertEquals(List.of("commit"), transactionManager.outcomes);
+    }
+
+    @Test
+    void uploadChunk_rejectsDifferentChunkCount() {
+        AttachmentStorageService storageService = buildStorageService();
+        MessageAttachmentService service = buildService(storageService);
+
+        AttachmentUploadSession session = chunkedSession(storageService, 3, new byte[] {0});
+        when(uploadSessionRepository.findChunkProgress(session.getId()))
+                .thenReturn(Optional.of(progress(3, 0, new byte[] {0})));
+
+        MockMultipartFile file = new MockMultipartFile("file", "part", "application/octet-stream", "he".getBytes());
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () ->
+                service.uploadChunk(session.getId(), file, 0, 2, null, "alice"));
+
+        assertEquals(HttpStatus.CONFLICT, ex.getStatusCode());
+    }
+
+    @Test
+    void uploadChunk_rejectsMoreChunksThanTheChunkSizeAllows() {
+        AttachmentStorageService storageService = buildStorageService();
+        MessageAttachmentService service = buildService(storageService);
+
+        AttachmentUploadSession session = chunkedSession(storageService, 3, null);
+
+        MockMultipartFile file = new MockMultipartFile("file", "part", "application/octet-stream", "h".getBytes());
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () ->
+                service.uploadChunk(session.getId(), file, 0, 4, null, "alice"));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verify(uploadSessionRepository, Mockito.never()).startChunkTracking(anyString(), Mockito.anyInt());
+    }
+
+    @Test
+    void finalizeUpload_rejectsIncompleteUploadAndKeepsChunks() {
+        AttachmentStorageService storageService = buildStorageService();
+        MessageAttachmentService service = buildService(storageService);
+
+        AttachmentUploadSession session = chunkedSession(storageService, 3, new byte[] {0b101});
+        storageService.writeChunk(session.getTempKey(), 0, new ByteArrayInputStream("he".getBytes(StandardCharsets.UTF_8)));
+
+        when(processingPipeline.hasCapacity()).thenReturn(true);
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () ->
+                service.finalizeUpload(session.getId(), "alice"));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        assertEquals(AttachmentStatus.UPLOADING, session.getAttachment().getStatus());
+        assertTrue(Files.exists(storageService.resolveChunkPath(session.getTempKey(), 0)));
+    }
+
+    @Test
+    void finalizeUpload_pushesBackWhenProcessingIsBusy() {
+        AttachmentStorageService storageService = buildStorageService();
+        MessageAttachmentService service = buildService(storageService);
+
+        AttachmentUploadSession session = chunkedSession(storageService, 1, new byte[] {1});
+        when(processingPipeline.hasCapacity()).thenReturn(false);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () ->
+                service.finalizeUpload(session.getId(), "alice"));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ex.getStatusCode());
+        assertFalse(session.isCompleted());
+        assertEquals(AttachmentStatus.UPLOADING, session.getAttachment().getStatus());
+    }
+
+    @Test
+    void finalizeUpload_sharesExistingBlobAndSkipsProcessing() {
+        AttachmentStorageService storageService = buildStorageService();
+        MessageAttachmentService service = buildService(storageService);
+
+        AttachmentUploadSession session = chunkedSession(storageService, 1, new byte[] {1});
+        MessageAttachment attachment = session.getAttachment();
+        attachment.setType(AttachmentType.DOCUMENT);
+        storageService.ensureTempDirectory(session.getTempKey());
+        storageService.writeTempFile(session.getTempKey(), new ByteArrayInputStream("hello!".getBytes(StandardCharsets.UTF_8)));
+
+        AttachmentBlob blob = new AttachmentBlob();
+        blob.setStatus(AttachmentStatus.READY);
+        blob.setMimeType("application/pdf");
+        when(processingPipeline.hasCapacity()).thenReturn(true);
+        when(blobService.findByContent(sha256("hello!"), 6L)).thenReturn(Optional.of(blob));
+        when(validationService.isMimeAllowed(AttachmentType.DOCUMENT, "application/pdf")).thenReturn(true);
+        when(blobService.share(blob, attachment)).thenReturn(true);
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(buildUser(1L, "alice")));
+
+        service.finalizeUpload(session.getId(), "alice");
+
+        assertEquals(AttachmentStatus.READY, attachment.getStatus());
+        assertTrue(session.isCompleted());
+        verify(messageService).notifyMessageUpdated(attachment.getMessage());
+        verify(processingPipeline, Mockito.never()).submit(any(MessageAttachment.class));
+    }
+
+    @Test
+    void finalizeUpload_quarantinesContentKnownToBeInfected() {
+        AttachmentStorageService storageService = buildStorageService();
+        MessageAttachmentService service = buildService(storageService);
+
+        AttachmentUploadSession session = chunkedSession(storageService, 1, new byte[] {1});
+        MessageAttachment attachment = session.getAttachment();
+        storageService.ensureTempDirectory(session.getTempKey());
+        storageService.writeTempFile(session.getTempKey(), new ByteArrayInputStream("hello!".getBytes(StandardCharsets.UTF_8)));
+
+        AttachmentBlob blob = new AttachmentBlob();
+        blob.setStatus(AttachmentStatus.QUARANTINED);
+        when(processingPipeline.hasCapacity()).thenReturn(true);
+        when(blobService.findByContent(sha256("hello!"), 6L)).thenReturn(Optional.of(blob));
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(buildUser(1L, "alice")));
+
+        service.finalizeUpload(session.getId(), "alice");
+
+        assertEquals(AttachmentStatus.QUARANTINED, attachment.getStatus());
+        assertFalse(Files.exists(storageService.resolvePermanentPath("chunked.bin")));
+        verify(processingPipeline, Mockito.never()).submit(any(MessageAttachment.class));
+    }
+
+    @Test
+    void missingChunks_readsBitmapLeastSignificantBitFirst() {
+        assertEquals(List.of(1, 8), MessageAttachmentService.missingChunks(10, 0, new byte[] {(byte) 0b1111_1101, 0b10}));
+        assertEquals(List.of(2, 3), MessageAttachmentService.missingChunks(4, 2, null));
     }
 
     @Test
@@ -357,7 +613,8 @@ class MessageAttachmentServiceTest {
                 uploadSessionRepository,
                 validationService,
                 storageService,
-                processingService,
+                processingPipeline,
+                blobService,
                 userRepository,
                 properties
         );
@@ -367,7 +624,7 @@ class MessageAttachmentServiceTest {
 
         MockMultipartFile file = new MockMultipartFile("file", "hello.txt", "text/plain", "data".getBytes());
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () ->
-                service.uploadChunk("upload", file, 5, 1, "alice")
+                service.uploadChunk("upload", file, 5, 1, null, "alice")
         );
 
         assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
@@ -389,7 +646,8 @@ class MessageAttachmentServiceTest {
                 uploadSessionRepository,
                 validationService,
                 storageService,
-                processingService,
+                processingPipeline,
+                blobService,
                 userRepository,
                 properties
         );
@@ -417,11 +675,13 @@ class MessageAttachmentServiceTest {
         session.setOwner(user);
         session.setExpectedBytes(data.length);
         session.setTotalChunks(1);
+        session.setReceivedChunks(new byte[] {1});
         session.setTempKey(tempKey);
 
         when(uploadSessionRepository.findByIdAndOwnerUsername(session.getId(), "alice"))
                 .thenReturn(Optional.of(session));
 
+        when(processingPipeline.hasCapacity()).thenReturn(true);
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () ->
                 service.finalizeUpload(session.getId(), "alice")
         );
@@ -449,7 +709,8 @@ class MessageAttachmentServiceTest {
                 uploadSessionRepository,
                 validation,
                 storageService,
-                processingService,
+                processingPipeline,
+                blobService,
                 userRepository,
                 properties
         );
@@ -476,11 +737,13 @@ class MessageAttachmentServiceTest {
         session.setOwner(user);
         session.setExpectedBytes(data.length);
         session.setTotalChunks(1);
+        session.setReceivedChunks(new byte[] {1});
         session.setTempKey(tempKey);
 
         when(uploadSessionRepository.findByIdAndOwnerUsername(session.getId(), "alice"))
                 .thenReturn(Optional.of(session));
 
+        when(processingPipeline.hasCapacity()).thenReturn(true);
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () ->
                 service.finalizeUpload(session.getId(), "alice")
         );
@@ -509,7 +772,8 @@ class MessageAttachmentServiceTest {
                 uploadSessionRepository,
                 validation,
                 storageService,
-                processingService,
+                processingPipeline,
+                blobService,
                 userRepository,
                 properties
         );
@@ -520,7 +784,7 @@ class MessageAttachmentServiceTest {
         when(uploadSessionRepository.save(any(AttachmentUploadSession.class))).thenAnswer(invocation -> invocation.getArgument(0));
         when(messageService.toAttachmentResponse(any(MessageAttachment.class), eq(user)))
                 .thenReturn(new MessageAttachmentResponse(1L, AttachmentType.IMAGE, "image/png", 10L, null, 10, 8, null, null, null, null, AttachmentStatus.READY, null, "image.png"));
-        doNothing().when(processingService).processAttachmentAsync(any(Long.class));
+        doNothing().when(processingPipeline).submit(any(MessageAttachment.class));
 
         byte[] data = createPngBytes(12, 8);
         String tempKey = storageService.createTempKey();
@@ -540,17 +804,19 @@ class MessageAttachmentServiceTest {
         session.setOwner(user);
         session.setExpectedBytes(data.length);
         session.setTotalChunks(1);
+        session.setReceivedChunks(new byte[] {1});
         session.setTempKey(tempKey);
 
         when(uploadSessionRepository.findByIdAndOwnerUsername(session.getId(), "alice"))
                 .thenReturn(Optional.of(session));
 
+        when(processingPipeline.hasCapacity()).thenReturn(true);
         MessageAttachmentResponse response = service.finalizeUpload(session.getId(), "alice");
 
         assertNotNull(response);
         assertEquals(12, attachment.getWidth());
         assertEquals(8, attachment.getHeight());
-        verify(processingService).processAttachmentAsync(1L);
+        verify(processingPipeline).submit(attachment);
     }
 
     @Test
@@ -569,7 +835,8 @@ class MessageAttachmentServiceTest {
                 uploadSessionRepository,
                 validationService,
                 storageService,
-                processingService,
+                processingPipeline,
+                blobService,
                 userRepository,
                 properties
         );
@@ -607,6 +874,78 @@ class MessageAttachmentServiceTest {
         return user;
     }
 
+    private AttachmentStorageService buildStorageService() {
+        StorageProperties storageProperties = new StorageProperties();
+        storageProperties.setMessageAttachmentsLocation(tempDir.resolve("attachments").toString());
+        storageProperties.setMessageAttachmentsTempLocation(tempDir.resolve("tmp").toString());
+        storageProperties.setMessageAttachmentsQuarantineLocation(tempDir.resolve("quarantine").toString());
+        storageProperties.setMessageAttachmentsThumbnailLocation(tempDir.resolve("thumbs").toString());
+        AttachmentStorageService storageService = new AttachmentStorageService(storageProperties);
+        storageService.init();
+        return storageService;
+    }
+
+    private MessageAttachmentService buildService(AttachmentStorageService storageService) {
+        return new MessageAttachmentService(
+                messageService,
+                attachmentRepository,
+                uploadSessionRepository,
+                validationService,
+                storageService,
+                processingPipeline,
+                blobService,
+                userRepository,
+                properties
+        );
+    }
+
+    private AttachmentUploadSession chunkedSession(AttachmentStorageService storageService, int totalChunks, byte[] receivedChunks) {
+        MessageAttachment attachment = new MessageAttachment();
+        attachment.setStatus(AttachmentStatus.UPLOADING);
+        attachment.setStorageKey("chunked.bin");
+        attachment.setMessage(new Message());
+
+        AttachmentUploadSession session = new AttachmentUploadSession();
+        session.setOwner(buildUser(1L, "alice"));
+        session.setAttachment(attachment);
+        session.setTempKey(storageService.createTempKey());
+        session.setExpectedBytes(6L);
+        session.setTotalChunks(totalChunks);
+        properties.setChunkSizeBytes(2L);
+        session.setReceivedChunks(receivedChunks);
+        when(uploadSessionRepository.findByIdAndOwnerUsername(session.getId(), "alice"))
+                .thenReturn(Optional.of(session));
+        return session;
+    }
+
+    private static UploadChunkProgress progress(int totalChunks, int uploadedChunks, byte[] receivedChunks) {
+        return new UploadChunkProgress() {
+            @Override
+            public int getTotalChunks() {
+                return totalChunks;
+            }
+
+            @Override
+            public int getUploadedChunks() {
+                return uploadedChunks;
+            }
+
+            @Override
+            public byte[] getReceivedChunks() {
+                return receivedChunks;
+            }
+        };
+    }
+
+    private static String sha256(String value) {
+        try {
+            return java.util.HexFormat.of().formatHex(
+                    java.security.MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (java.security.NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
     private void setAttachmentId(MessageAttachment attachment, Long id) {
         try {
             var field = MessageAttachment.class.getDeclaredField("id");
@@ -623,4 +962,27 @@ class MessageAttachmentServiceTest {
         javax.imageio.ImageIO.write(image, "png", outputStream);
         return outputStream.toByteArray();
     }
+
+    private static final class RecordingTransactionManager extends AbstractPlatformTransactionManager {
+        private final List<String> outcomes = new ArrayList<>();
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            outcomes.add("commit");
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+            outcomes.add("rollback");
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package com.instagramclone.backend.message;
 
+import com.instagramclone.backend.pagination.CursorPage;
 import java.security.Principal;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -11,6 +12,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.ResponseEntity;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -41,18 +43,20 @@ class MessageControllerTest {
                 "alice",
                 0
         );
-        when(messageService.getConversations("alice")).thenReturn(List.of(response));
+        when(messageService.getConversationsPage("alice", null, 20))
+                .thenReturn(new CursorPage<>(List.of(response), null));
 
-        ResponseEntity<List<ConversationResponse>> result = controller.getConversations(principal);
+        ResponseEntity<List<ConversationResponse>> result = controller.getConversations(null, 20, principal);
 
         assertEquals(1, result.getBody().size());
         assertEquals("bob", result.getBody().get(0).getParticipantUsername());
+        assertNull(result.getHeaders().getFirst(CursorPage.NEXT_CURSOR_HEADER));
     }
 
     @Test
     void getConversationsRequiresAuthentication() {
         assertThrows(org.springframework.web.server.ResponseStatusException.class, () ->
-                controller.getConversations(null)
+                controller.getConversations(null, 20, null)
         );
     }
 
@@ -70,12 +74,14 @@ class MessageControllerTest {
                 false,
                 null
         );
-        when(messageService.getMessages(3L, "alice")).thenReturn(List.of(response));
+        when(messageService.getMessagesPage(3L, "alice", "cursor", 20))
+                .thenReturn(new CursorPage<>(List.of(response), "next-token"));
 
-        ResponseEntity<List<MessageResponse>> result = controller.getMessages(3L, principal);
+        ResponseEntity<List<MessageResponse>> result = controller.getMessages(3L, "cursor", 20, principal);
 
         assertEquals(1, result.getBody().size());
         assertEquals("Hi", result.getBody().get(0).getContent());
+        assertEquals("next-token", result.getHeaders().getFirst(CursorPage.NEXT_CURSOR_HEADER));
     }
 
     @Test
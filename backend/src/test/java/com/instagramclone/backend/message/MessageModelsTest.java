@@ -55,10 +55,11 @@ class MessageModelsTest {
         assertEquals(3L, typingResponse.getConversationId());
         assertEquals("alice", typingResponse.getSenderUsername());
 
-        UploadChunkResponse uploadResponse = new UploadChunkResponse("upload", 1, 2);
+        UploadChunkResponse uploadResponse = new UploadChunkResponse("upload", 1, 2, List.of(0));
         assertEquals("upload", uploadResponse.getUploadId());
         assertEquals(1, uploadResponse.getUploadedChunks());
         assertEquals(2, uploadResponse.getTotalChunks());
+        assertEquals(List.of(0), uploadResponse.getMissingChunks());
     }
 
     @Test
@@ -87,13 +88,15 @@ class MessageModelsTest {
                 9L,
                 "uploadUrl",
                 "finalizeUrl",
-                2048
+                2048,
+                true
         );
         assertEquals("upload", sessionResponse.getUploadId());
         assertEquals(9L, sessionResponse.getAttachmentId());
         assertEquals("uploadUrl", sessionResponse.getUploadUrl());
         assertEquals("finalizeUrl", sessionResponse.getFinalizeUrl());
         assertEquals(2048, sessionResponse.getChunkSizeBytes());
+        assertTrue(sessionResponse.isSkipUpload());
 
         MessageAttachmentResponse attachmentResponse = new MessageAttachmentResponse(
                 1L,
@@ -1,5 +1,7 @@
 package com.instagramclone.backend.message;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.instagramclone.backend.realtime.CoalescingUserSender;
 import com.instagramclone.backend.user.User;
 import com.instagramclone.backend.user.UserRepository;
 import java.time.LocalDateTime;
@@ -33,6 +35,9 @@ class MessageServiceAttachmentTest {
     @Mock
     private AttachmentTokenService attachmentTokenService;
 
+    @Mock
+    private CoalescingUserSender coalescingUserSender;
+
     private MessageService messageService;
 
     @BeforeEach
@@ -43,6 +48,8 @@ class MessageServiceAttachmentTest {
                 userRepository,
                 messagingTemplate,
                 attachmentTokenService,
+                new ObjectMapper().findAndRegisterModules(),
+                coalescingUserSender,
                 "http://example.com"
         );
     }
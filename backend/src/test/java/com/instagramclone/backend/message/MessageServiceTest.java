@@ -1,27 +1,37 @@
 package com.instagramclone.backend.message;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.instagramclone.backend.pagination.CursorPage;
+import com.instagramclone.backend.pagination.KeysetCursor;
+import com.instagramclone.backend.realtime.CoalescingUserSender;
 import com.instagramclone.backend.user.User;
 import com.instagramclone.backend.user.UserRepository;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -43,6 +53,9 @@ class MessageServiceTest {
     @Mock
     private AttachmentTokenService attachmentTokenService;
 
+    @Mock
+    private CoalescingUserSender coalescingUserSender;
+
     private MessageService messageService;
 
     @BeforeEach
@@ -53,32 +66,55 @@ class MessageServiceTest {
                 userRepository,
                 messagingTemplate,
                 attachmentTokenService,
+                new ObjectMapper().findAndRegisterModules(),
+                coalescingUserSender,
                 "http://example.com"
         );
     }
 
     @Test
-    void getConversationsBuildsResponses() {
+    void getConversationsPageUsesStoredUnreadCounts() {
         User alice = buildUser(1L, "alice");
         User bob = buildUser(2L, "bob");
         Conversation conversation = new Conversation(alice, bob);
         conversation.setLastMessagePreview("Hello");
         conversation.setLastMessageAt(LocalDateTime.now());
         conversation.setLastMessageSender(bob);
+        conversation.setUserOneUnreadCount(3);
+        conversation.setUserTwoUnreadCount(7);
 
         when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
-        when(conversationRepository.findByParticipant(alice)).thenReturn(List.of(conversation));
-        when(messageRepository.countByConversationAndRecipientAndReadIsFalse(conversation, alice)).thenReturn(3L);
+        when(conversationRepository.findPageByParticipant(1L, PageRequest.of(0, 21))).thenReturn(List.of(conversation));
 
-        List<ConversationResponse> responses = messageService.getConversations("alice");
+        CursorPage<ConversationResponse> page = messageService.getConversationsPage("alice", null, 20);
 
-        assertEquals(1, responses.size());
-        assertEquals("bob", responses.get(0).getParticipantUsername());
-        assertEquals(3L, responses.get(0).getUnreadCount());
+        assertEquals(1, page.items().size());
+        assertEquals("bob", page.items().get(0).getParticipantUsername());
+        assertEquals("bob", page.items().get(0).getLastMessageSenderUsername());
+        assertEquals(3L, page.items().get(0).getUnreadCount());
+        assertNull(page.nextCursor());
     }
 
     @Test
-    void getMessagesReturnsMessageResponses() {
+    void getConversationsPageSeeksPastCursor() {
+        User alice = buildUser(1L, "alice");
+        User bob = buildUser(2L, "bob");
+        Conversation conversation = new Conversation(bob, alice);
+        conversation.setUserTwoUnreadCount(2);
+        KeysetCursor before = new KeysetCursor(LocalDateTime.of(2024, 5, 1, 12, 0), 40L);
+
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
+        when(conversationRepository.findPageByParticipantBefore(
+                1L, before.createdAt(), before.id(), PageRequest.of(0, 11)))
+                .thenReturn(List.of(conversation));
+
+        CursorPage<ConversationResponse> page = messageService.getConversationsPage("alice", before.encode(), 10);
+
+        assertEquals(2L, page.items().get(0).getUnreadCount());
+    }
+
+    @Test
+    void getMessagesPageReturnsMessageResponses() {
         User alice = buildUser(1L, "alice");
         User bob = buildUser(2L, "bob");
         Conversation conversation = new Conversation(alice, bob);
@@ -90,19 +126,49 @@ class MessageServiceTest {
         setAttachmentId(attachment, 10L);
 
         Message message = new Message(conversation, alice, bob, "hi");
-        message.setAttachments(List.of(attachment));
         setMessageId(message, 5L);
+        // The response must come from the entity the attachment fetch returned, not from the page row.
+        Message withAttachments = new Message(conversation, alice, bob, "hi");
+        withAttachments.setAttachments(List.of(attachment));
+        setMessageId(withAttachments, 5L);
 
         when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
         when(conversationRepository.findById(1L)).thenReturn(Optional.of(conversation));
-        when(messageRepository.findByConversationOrderByCreatedAtAsc(conversation)).thenReturn(List.of(message));
+        when(messageRepository.findPageByConversation(conversation.getId(), PageRequest.of(0, 21)))
+                .thenReturn(List.of(message));
+        when(messageRepository.findWithAttachmentsByIdIn(List.of(5L))).thenReturn(List.of(withAttachments));
         when(attachmentTokenService.generateToken(10L, 1L)).thenReturn("token");
 
-        List<MessageResponse> responses = messageService.getMessages(1L, "alice");
+        CursorPage<MessageResponse> page = messageService.getMessagesPage(1L, "alice", null, 20);
 
-        assertEquals(1, responses.size());
-        assertEquals("hi", responses.get(0).getContent());
-        assertEquals(1, responses.get(0).getAttachments().size());
+        assertEquals(1, page.items().size());
+        assertEquals("hi", page.items().get(0).getContent());
+        assertEquals(1, page.items().get(0).getAttachments().size());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void getMessagesPageReturnsOldestFirstWithCursorAtOldest() {
+        User alice = buildUser(1L, "alice");
+        User bob = buildUser(2L, "bob");
+        Conversation conversation = new Conversation(alice, bob);
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+        Message newest = buildMessage(conversation, alice, bob, 9L, now);
+        Message middle = buildMessage(conversation, bob, alice, 8L, now.minusMinutes(1));
+        Message oldest = buildMessage(conversation, alice, bob, 7L, now.minusMinutes(2));
+        KeysetCursor before = new KeysetCursor(now.plusMinutes(1), 10L);
+
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
+        when(conversationRepository.findById(1L)).thenReturn(Optional.of(conversation));
+        when(messageRepository.findPageByConversationBefore(
+                conversation.getId(), before.createdAt(), before.id(), PageRequest.of(0, 3)))
+                .thenReturn(List.of(newest, middle, oldest));
+        when(messageRepository.findWithAttachmentsByIdIn(List.of(9L, 8L))).thenReturn(List.of(middle, newest));
+
+        CursorPage<MessageResponse> page = messageService.getMessagesPage(1L, "alice", before.encode(), 2);
+
+        assertEquals(List.of(8L, 9L), page.items().stream().map(MessageResponse::getId).toList());
+        assertEquals(new KeysetCursor(middle.getCreatedAt(), 8L), KeysetCursor.decode(page.nextCursor()));
     }
 
     @Test
@@ -134,6 +200,7 @@ class MessageServiceTest {
         when(conversationRepository.findBetweenUsers(alice, bob)).thenReturn(Optional.empty());
         when(conversationRepository.save(any(Conversation.class))).thenAnswer(invocation -> invocation.getArgument(0));
         when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(messagingTemplate.getUserDestinationPrefix()).thenReturn("/user/");
 
         SendMessageRequest request = new SendMessageRequest();
         request.setRecipientUsername("bob");
@@ -142,7 +209,8 @@ class MessageServiceTest {
         MessageResponse response = messageService.sendMessage("alice", request);
 
         assertEquals("hello", response.getContent());
-        verify(messagingTemplate).convertAndSendToUser(eq("alice"), eq("/queue/messages"), any(MessageResponse.class));
+        verify(messagingTemplate).send(eq("/user/alice/queue/messages"), any(org.springframework.messaging.Message.class));
+        verify(messagingTemplate).send(eq("/user/bob/queue/messages"), any(org.springframework.messaging.Message.class));
     }
 
     @Test
@@ -160,6 +228,7 @@ class MessageServiceTest {
 
         assertNotNull(message);
         assertEquals("Photo", conversation.getLastMessagePreview());
+        verify(conversationRepository).incrementUnread(conversation.getId(), 2L);
     }
 
     @Test
@@ -174,6 +243,7 @@ class MessageServiceTest {
         messageService.markConversationRead(1L, "alice");
 
         verify(messageRepository).markConversationRead(eq(conversation), eq(alice), any(LocalDateTime.class));
+        verify(conversationRepository).refreshUnread(conversation.getId(), 1L);
     }
 
     @Test
@@ -191,7 +261,43 @@ class MessageServiceTest {
 
         messageService.sendTypingIndicator("alice", request);
 
-        verify(messagingTemplate).convertAndSendToUser(eq("bob"), eq("/queue/typing"), any(TypingEventResponse.class));
+        verify(coalescingUserSender).send(eq("bob"), eq("/queue/typing"), eq("null:alice"), any(TypingEventResponse.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void notifyMessageCreatedSerializesOnceAndFillsViewerLinks() {
+        User alice = buildUser(1L, "alice");
+        User bob = buildUser(2L, "bob");
+        Conversation conversation = new Conversation(alice, bob);
+        MessageAttachment attachment = new MessageAttachment();
+        attachment.setType(AttachmentType.IMAGE);
+        attachment.setStatus(AttachmentStatus.READY);
+        attachment.setThumbnailKey("thumb");
+        setAttachmentId(attachment, 10L);
+        Message message = new Message(conversation, alice, bob, "say \"@@attachment-url:10@@\"");
+        message.setAttachments(List.of(attachment));
+        setMessageId(message, 5L);
+        when(messagingTemplate.getUserDestinationPrefix()).thenReturn("/user/");
+        when(attachmentTokenService.generateToken(10L, 1L)).thenReturn("alice-token");
+        when(attachmentTokenService.generateToken(10L, 2L)).thenReturn("bob-token");
+
+        messageService.notifyMessageCreated(message);
+
+        ArgumentCaptor<org.springframework.messaging.Message<byte[]>> sent =
+                ArgumentCaptor.forClass(org.springframework.messaging.Message.class);
+        verify(messagingTemplate).send(eq("/user/alice/queue/messages"), sent.capture());
+        verify(messagingTemplate).send(eq("/user/bob/queue/messages"), sent.capture());
+        String alicePayload = new String(sent.getAllValues().get(0).getPayload(), StandardCharsets.UTF_8);
+        String bobPayload = new String(sent.getAllValues().get(1).getPayload(), StandardCharsets.UTF_8);
+        assertTrue(alicePayload.contains("/api/messages/attachments/10?token=alice-token"));
+        assertTrue(alicePayload.contains("/api/messages/attachments/10/thumbnail?token=alice-token"));
+        assertTrue(bobPayload.contains("/api/messages/attachments/10?token=bob-token"));
+        assertFalse(bobPayload.contains("alice-token"));
+        // Placeholder-looking user text is left alone.
+        assertTrue(bobPayload.contains("@@attachment-url:10@@"));
+        verify(attachmentTokenService, times(1)).generateToken(10L, 2L);
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any());
     }
 
     @Test
@@ -205,7 +311,7 @@ class MessageServiceTest {
         when(conversationRepository.findById(1L)).thenReturn(Optional.of(conversation));
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class, () ->
-                messageService.getMessages(1L, "charlie")
+                messageService.getMessagesPage(1L, "charlie", null, 20)
         );
 
         assertEquals(HttpStatus.FORBIDDEN, ex.getStatusCode());
@@ -277,6 +383,13 @@ class MessageServiceTest {
         }
     }
 
+    private Message buildMessage(Conversation conversation, User sender, User recipient, Long id, LocalDateTime createdAt) {
+        Message message = new Message(conversation, sender, recipient, "message " + id);
+        message.setCreatedAt(createdAt);
+        setMessageId(message, id);
+        return message;
+    }
+
     private void setMessageId(Message message, Long id) {
         try {
             var field = Message.class.getDeclaredField("id");
@@ -0,0 +1,64 @@
+package com.instagramclone.backend.notification;
+
+import com.instagramclone.backend.user.User;
+import java.time.LocalDateTime;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NotificationAggregatorTest {
+
+    private static final LocalDateTime NOON = LocalDateTime.of(2024, 3, 10, 12, 0);
+
+    @Test
+    void groupKeyFor_groupsPostNotificationsOfConfiguredTypes() {
+        NotificationAggregator aggregator = new NotificationAggregator(true, 60, Set.of(NotificationType.LIKE));
+
+        String key = aggregator.groupKeyFor(buildLike(NOON.plusMinutes(5)));
+
+        assertNotNull(key);
+        assertTrue(key.startsWith("LIKE:99:"));
+    }
+
+    @Test
+    void groupKey_isStableWithinWindowAndChangesAcrossWindows() {
+        NotificationAggregator aggregator = new NotificationAggregator(true, 60, Set.of(NotificationType.LIKE));
+
+        String first = aggregator.groupKeyFor(buildLike(NOON.plusMinutes(1)));
+        String sameWindow = aggregator.groupKeyFor(buildLike(NOON.plusMinutes(59)));
+        String nextWindow = aggregator.groupKeyFor(buildLike(NOON.plusMinutes(61)));
+
+        assertEquals(first, sameWindow);
+        assertNotEquals(first, nextWindow);
+    }
+
+    @Test
+    void groupKeyFor_leavesUngroupedTypesAndDisabledAggregationAlone() {
+        NotificationAggregator aggregator = new NotificationAggregator(true, 60, Set.of(NotificationType.LIKE));
+        Notification follow = new Notification(buildUser(2L), buildUser(1L), NotificationType.FOLLOW);
+        NotificationAggregator disabled = new NotificationAggregator(false, 60, Set.of(NotificationType.LIKE));
+
+        assertNull(aggregator.groupKeyFor(follow));
+        assertNull(disabled.groupKeyFor(buildLike(NOON)));
+    }
+
+    private Notification buildLike(LocalDateTime createdAt) {
+        Notification notification = new Notification(buildUser(2L), buildUser(1L), NotificationType.LIKE);
+        notification.setPostId(99L);
+        notification.setPostImageUrl("image");
+        notification.setCreatedAt(createdAt);
+        return notification;
+    }
+
+    private User buildUser(Long id) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername("user" + id);
+        return user;
+    }
+}
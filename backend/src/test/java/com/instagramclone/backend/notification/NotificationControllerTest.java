@@ -1,5 +1,6 @@
 package com.instagramclone.backend.notification;
 
+import com.instagramclone.backend.pagination.CursorPage;
 import java.security.Principal;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -34,13 +35,15 @@ class NotificationControllerTest {
                 false,
                 true
         );
-        when(notificationService.getNotificationsForUser("bob")).thenReturn(List.of(response));
+        when(notificationService.getNotificationsPage("bob", "cursor", 20))
+                .thenReturn(new CursorPage<>(List.of(response), "next-token"));
 
-        ResponseEntity<List<NotificationResponse>> result = controller.getNotifications(principal);
+        ResponseEntity<List<NotificationResponse>> result = controller.getNotifications("cursor", 20, principal);
 
         assertNotNull(result.getBody());
         assertEquals(1, result.getBody().size());
         assertEquals("alice", result.getBody().get(0).getActorUsername());
+        assertEquals("next-token", result.getHeaders().getFirst(CursorPage.NEXT_CURSOR_HEADER));
     }
 
     @Test
@@ -1,13 +1,14 @@
 package com.instagramclone.backend.notification;
 
+import com.instagramclone.backend.realtime.CoalescingUserSender;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
@@ -15,30 +16,32 @@ import static org.mockito.Mockito.verify;
 class NotificationRealtimePublisherTest {
 
     @Mock
-    private SimpMessagingTemplate messagingTemplate;
+    private CoalescingUserSender coalescingUserSender;
 
     @Test
     void onNotificationCountChanged_sendsWhenValid() {
-        NotificationRealtimePublisher publisher = new NotificationRealtimePublisher(messagingTemplate);
+        NotificationRealtimePublisher publisher = new NotificationRealtimePublisher(coalescingUserSender);
 
         publisher.onNotificationCountChanged(new NotificationCountChangedEvent("alice", 3));
 
-        verify(messagingTemplate).convertAndSendToUser(
+        verify(coalescingUserSender).send(
                 eq("alice"),
                 eq("/queue/notification-count"),
+                isNull(),
                 argThat(payload -> payload instanceof NotificationCountResponse response && response.getCount() == 3)
         );
     }
 
     @Test
     void onNotificationCountChanged_ignoresInvalid() {
-        NotificationRealtimePublisher publisher = new NotificationRealtimePublisher(messagingTemplate);
+        NotificationRealtimePublisher publisher = new NotificationRealtimePublisher(coalescingUserSender);
 
         publisher.onNotificationCountChanged(new NotificationCountChangedEvent(" ", 2));
 
-        verify(messagingTemplate, never()).convertAndSendToUser(
+        verify(coalescingUserSender, never()).send(
                 org.mockito.ArgumentMatchers.anyString(),
                 org.mockito.ArgumentMatchers.anyString(),
+                org.mockito.ArgumentMatchers.any(),
                 org.mockito.ArgumentMatchers.any()
         );
     }
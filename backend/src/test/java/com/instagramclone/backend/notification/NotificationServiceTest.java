@@ -1,11 +1,15 @@
 package com.instagramclone.backend.notification;
 
+import com.instagramclone.backend.pagination.CursorPage;
+import com.instagramclone.backend.pagination.KeysetCursor;
 import com.instagramclone.backend.post.Comment;
 import com.instagramclone.backend.post.Post;
 import com.instagramclone.backend.user.User;
 import com.instagramclone.backend.user.UserRepository;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,12 +17,15 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -35,11 +42,18 @@ class NotificationServiceTest {
     @Mock
     private ApplicationEventPublisher eventPublisher;
 
+    @Mock
+    private NotificationWriter notificationWriter;
+
+    @Mock
+    private UnreadNotificationCounter unreadCounter;
+
     private NotificationService notificationService;
 
     @BeforeEach
     void setUp() {
-        notificationService = new NotificationService(notificationRepository, userRepository, eventPublisher);
+        notificationService = new NotificationService(
+                notificationRepository, userRepository, eventPublisher, notificationWriter, unreadCounter);
     }
 
     @Test
@@ -48,7 +62,7 @@ class NotificationServiceTest {
 
         notificationService.createFollowNotification(user, user);
 
-        verify(notificationRepository, never()).save(any(Notification.class));
+        verify(notificationWriter, never()).enqueue(any(Notification.class));
     }
 
     @Test
@@ -56,7 +70,7 @@ class NotificationServiceTest {
         notificationService.createFollowNotification(null, buildUser("bob"));
         notificationService.createFollowNotification(buildUser("alice"), null);
 
-        verify(notificationRepository, never()).save(any(Notification.class));
+        verify(notificationWriter, never()).enqueue(any(Notification.class));
     }
 
     @Test
@@ -67,7 +81,7 @@ class NotificationServiceTest {
         notificationService.createFollowNotification(actor, recipient);
 
         ArgumentCaptor<Notification> captor = ArgumentCaptor.forClass(Notification.class);
-        verify(notificationRepository).save(captor.capture());
+        verify(notificationWriter).enqueue(captor.capture());
         Notification saved = captor.getValue();
         assertEquals(NotificationType.FOLLOW, saved.getType());
         assertEquals(actor, saved.getActor());
@@ -84,7 +98,7 @@ class NotificationServiceTest {
         notificationService.createLikeNotification(actor, post);
 
         ArgumentCaptor<Notification> captor = ArgumentCaptor.forClass(Notification.class);
-        verify(notificationRepository).save(captor.capture());
+        verify(notificationWriter).enqueue(captor.capture());
         Notification saved = captor.getValue();
         assertEquals(NotificationType.LIKE, saved.getType());
         assertEquals(post.getId(), saved.getPostId());
@@ -104,7 +118,7 @@ class NotificationServiceTest {
         Post selfPost = new Post("image-url", "caption", sameUser);
         notificationService.createLikeNotification(sameUser, selfPost);
 
-        verify(notificationRepository, never()).save(any(Notification.class));
+        verify(notificationWriter, never()).enqueue(any(Notification.class));
     }
 
     @Test
@@ -118,7 +132,7 @@ class NotificationServiceTest {
         notificationService.createCommentNotification(actor, post, comment);
 
         ArgumentCaptor<Notification> captor = ArgumentCaptor.forClass(Notification.class);
-        verify(notificationRepository).save(captor.capture());
+        verify(notificationWriter).enqueue(captor.capture());
         Notification saved = captor.getValue();
         assertEquals("hello world", saved.getCommentPreview());
     }
@@ -133,7 +147,7 @@ class NotificationServiceTest {
         notificationService.createCommentNotification(actor, post, comment);
 
         ArgumentCaptor<Notification> captor = ArgumentCaptor.forClass(Notification.class);
-        verify(notificationRepository).save(captor.capture());
+        verify(notificationWriter).enqueue(captor.capture());
         Notification saved = captor.getValue();
         assertNull(saved.getCommentPreview());
     }
@@ -149,7 +163,7 @@ class NotificationServiceTest {
         notificationService.createCommentNotification(actor, post, comment);
 
         ArgumentCaptor<Notification> captor = ArgumentCaptor.forClass(Notification.class);
-        verify(notificationRepository).save(captor.capture());
+        verify(notificationWriter).enqueue(captor.capture());
         Notification saved = captor.getValue();
         assertTrue(saved.getCommentPreview().endsWith("..."));
     }
@@ -170,7 +184,7 @@ class NotificationServiceTest {
         Comment selfComment = new Comment("content", sameUser, selfPost);
         notificationService.createCommentNotification(sameUser, selfPost, selfComment);
 
-        verify(notificationRepository, never()).save(any(Notification.class));
+        verify(notificationWriter, never()).enqueue(any(Notification.class));
     }
 
     @Test
@@ -185,7 +199,7 @@ class NotificationServiceTest {
         notificationService.createCommentNotification(actor, post, comment, recipient);
 
         ArgumentCaptor<Notification> captor = ArgumentCaptor.forClass(Notification.class);
-        verify(notificationRepository).save(captor.capture());
+        verify(notificationWriter).enqueue(captor.capture());
         Notification saved = captor.getValue();
         assertEquals(NotificationType.REPLY, saved.getType());
         assertEquals(recipient, saved.getRecipient());
@@ -201,7 +215,7 @@ class NotificationServiceTest {
 
         notificationService.createCommentNotification(actor, post, comment, actor);
 
-        verify(notificationRepository, never()).save(any(Notification.class));
+        verify(notificationWriter, never()).enqueue(any(Notification.class));
     }
 
     @Test
@@ -216,7 +230,7 @@ class NotificationServiceTest {
         notificationService.createMentionNotification(actor, post, comment, recipient);
 
         ArgumentCaptor<Notification> captor = ArgumentCaptor.forClass(Notification.class);
-        verify(notificationRepository).save(captor.capture());
+        verify(notificationWriter).enqueue(captor.capture());
         Notification saved = captor.getValue();
         assertEquals(NotificationType.MENTION, saved.getType());
         assertEquals(recipient, saved.getRecipient());
@@ -225,33 +239,93 @@ class NotificationServiceTest {
     }
 
     @Test
-    void getNotificationsForUser_mapsFollowedActors() {
+    void getNotificationsPage_resolvesFollowedActorsForPageOnly() {
         User actor = buildUser("alice");
+        actor.setId(7L);
+        User stranger = buildUser("carol");
+        stranger.setId(8L);
         User recipient = buildUser("bob");
-        recipient.getFollowing().add(actor);
+        recipient.setId(1L);
 
         Notification notification = new Notification(recipient, actor, NotificationType.FOLLOW);
         notification.setPostId(99L);
         notification.setPostImageUrl("post-image");
+        Notification other = new Notification(recipient, stranger, NotificationType.LIKE);
 
         when(userRepository.findByUsername("bob")).thenReturn(Optional.of(recipient));
-        when(notificationRepository.findByRecipientWithActor(recipient)).thenReturn(List.of(notification));
+        when(notificationRepository.findPageByRecipient(1L, PageRequest.of(0, 21)))
+                .thenReturn(List.of(notification, other));
+        when(userRepository.findFollowingIdsAmong(1L, Set.of(7L, 8L))).thenReturn(List.of(7L));
 
-        List<NotificationResponse> responses = notificationService.getNotificationsForUser("bob");
+        CursorPage<NotificationResponse> page = notificationService.getNotificationsPage("bob", null, 20);
 
-        assertEquals(1, responses.size());
-        NotificationResponse response = responses.get(0);
+        assertEquals(2, page.items().size());
+        NotificationResponse response = page.items().get(0);
         assertEquals("FOLLOW", response.getType());
         assertEquals(actor.getUsername(), response.getActorUsername());
         assertEquals(notification.getPostId(), response.getPostId());
         assertTrue(response.getActorFollowed());
+        assertFalse(page.items().get(1).getActorFollowed());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void getNotificationsPage_continuesBeforeCursorAndReturnsNextCursor() {
+        User actor = buildUser("alice");
+        actor.setId(7L);
+        User recipient = buildUser("bob");
+        recipient.setId(1L);
+        LocalDateTime cursorTime = LocalDateTime.of(2024, 5, 1, 10, 0);
+        Notification first = new Notification(recipient, actor, NotificationType.LIKE);
+        first.setCreatedAt(cursorTime.minusMinutes(1));
+        ReflectionTestUtils.setField(first, "id", 40L);
+        Notification extra = new Notification(recipient, actor, NotificationType.LIKE);
+
+        when(userRepository.findByUsername("bob")).thenReturn(Optional.of(recipient));
+        when(notificationRepository.findPageByRecipientBefore(1L, cursorTime, 50L, PageRequest.of(0, 2)))
+                .thenReturn(List.of(first, extra));
+        when(userRepository.findFollowingIdsAmong(1L, Set.of(7L))).thenReturn(List.of());
+
+        CursorPage<NotificationResponse> page = notificationService.getNotificationsPage(
+                "bob",
+                new KeysetCursor(cursorTime, 50L).encode(),
+                1
+        );
+
+        assertEquals(1, page.items().size());
+        assertEquals(new KeysetCursor(first.getCreatedAt(), 40L).encode(), page.nextCursor());
     }
 
     @Test
-    void getUnreadCount_returnsRepositoryValue() {
+    void getNotificationsPage_mapsGroupedActors() {
+        User latest = buildUser("alice");
+        latest.setId(7L);
+        User earlier = buildUser("carol");
+        earlier.setId(8L);
         User recipient = buildUser("bob");
+        recipient.setId(1L);
+        Notification grouped = new Notification(recipient, latest, NotificationType.LIKE);
+        grouped.setPostId(99L);
+        grouped.setActorCount(43);
+        grouped.setRecentActorIds("7,8");
+
         when(userRepository.findByUsername("bob")).thenReturn(Optional.of(recipient));
-        when(notificationRepository.countByRecipientAndReadIsFalse(recipient)).thenReturn(3L);
+        when(notificationRepository.findPageByRecipient(1L, PageRequest.of(0, 21))).thenReturn(List.of(grouped));
+        when(userRepository.findFollowingIdsAmong(1L, Set.of(7L))).thenReturn(List.of());
+        when(userRepository.findAllById(Set.of(7L, 8L))).thenReturn(List.of(earlier, latest));
+
+        NotificationResponse response = notificationService.getNotificationsPage("bob", null, 20).items().get(0);
+
+        assertEquals(43, response.getActorCount());
+        assertEquals(List.of("alice", "carol"), response.getRecentActorUsernames());
+    }
+
+    @Test
+    void getUnreadCount_readsCounter() {
+        User recipient = buildUser("bob");
+        recipient.setId(2L);
+        when(userRepository.findByUsername("bob")).thenReturn(Optional.of(recipient));
+        when(unreadCounter.get(2L)).thenReturn(3L);
 
         long count = notificationService.getUnreadCount("bob");
 
@@ -259,29 +333,52 @@ class NotificationServiceTest {
     }
 
     @Test
-    void markRead_updatesNotification() {
+    void markRead_updatesNotificationAndDecrementsCounter() {
         User actor = buildUser("alice");
         User recipient = buildUser("bob");
+        recipient.setId(2L);
         Notification notification = new Notification(recipient, actor, NotificationType.LIKE);
         notification.setRead(false);
 
         when(userRepository.findByUsername("bob")).thenReturn(Optional.of(recipient));
         when(notificationRepository.findByIdAndRecipient(1L, recipient)).thenReturn(Optional.of(notification));
+        when(unreadCounter.adjust(2L, -1)).thenReturn(4L);
 
         notificationService.markRead("bob", 1L);
 
         assertTrue(notification.isRead());
         verify(notificationRepository).save(notification);
+        verify(eventPublisher).publishEvent(new NotificationCountChangedEvent("bob", 4L));
+    }
+
+    @Test
+    void markRead_alreadyReadLeavesCounter() {
+        User actor = buildUser("alice");
+        User recipient = buildUser("bob");
+        recipient.setId(2L);
+        Notification notification = new Notification(recipient, actor, NotificationType.LIKE);
+        notification.setRead(true);
+
+        when(userRepository.findByUsername("bob")).thenReturn(Optional.of(recipient));
+        when(notificationRepository.findByIdAndRecipient(1L, recipient)).thenReturn(Optional.of(notification));
+        when(unreadCounter.get(2L)).thenReturn(0L);
+
+        notificationService.markRead("bob", 1L);
+
+        verify(unreadCounter, never()).adjust(any(), anyLong());
     }
 
     @Test
-    void markAllRead_marksUnread() {
+    void markAllRead_marksUnreadAndResetsCounter() {
         User recipient = buildUser("bob");
+        recipient.setId(2L);
         when(userRepository.findByUsername("bob")).thenReturn(Optional.of(recipient));
 
         notificationService.markAllRead("bob");
 
         verify(notificationRepository).markAllRead(recipient);
+        verify(unreadCounter).reset(2L);
+        verify(eventPublisher).publishEvent(new NotificationCountChangedEvent("bob", 0L));
     }
 
     private User buildUser(String username) {
@@ -0,0 +1,164 @@
+package com.instagramclone.backend.notification;
+
+import com.instagramclone.backend.user.User;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationWriterTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private UnreadNotificationCounter unreadCounter;
+
+    private NotificationWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        NotificationAggregator aggregator = new NotificationAggregator(true, 60, Set.of(NotificationType.LIKE));
+        writer = new NotificationWriter(
+                jdbcTemplate, aggregator, eventPublisher, unreadCounter, 100, 50);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void enqueue_waitsForCommitInsideTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        writer.enqueue(buildNotification(NotificationType.FOLLOW, null));
+
+        assertEquals(0, writer.pendingCount());
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        assertEquals(1, writer.pendingCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void drain_batchesWritesAndPublishesOneCountPerRecipient() {
+        when(unreadCounter.adjust(2L, 2L)).thenReturn(3L);
+
+        writer.enqueue(buildNotification(NotificationType.FOLLOW, null));
+        writer.enqueue(buildNotification(NotificationType.LIKE, 99L));
+        writer.enqueue(buildNotification(NotificationType.LIKE, 99L));
+        writer.drain();
+
+        ArgumentCaptor<List<NotificationWriter.PendingNotification>> plain = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<NotificationWriter.PendingNotification>> grouped = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(NotificationWriter.INSERT_SQL), plain.capture(), eq(1),
+                any(ParameterizedPreparedStatementSetter.class));
+        verify(jdbcTemplate).batchUpdate(eq(NotificationWriter.UPSERT_GROUPED_SQL), grouped.capture(), eq(2),
+                any(ParameterizedPreparedStatementSetter.class));
+        assertEquals(1, plain.getValue().size());
+        assertEquals(2, grouped.getValue().size());
+        // Both folds record their actor; only a newly recorded actor grows actor_count.
+        verify(jdbcTemplate).batchUpdate(eq(NotificationWriter.ADD_GROUP_ACTOR_SQL), eq(grouped.getValue()), eq(2),
+                any(ParameterizedPreparedStatementSetter.class));
+
+        // One plain insert plus one new group; the second like folds into the group it just opened.
+        verify(unreadCounter, times(1)).adjust(2L, 2L);
+        verify(eventPublisher).publishEvent(new NotificationCountChangedEvent("bob", 3L));
+        assertEquals(0, writer.pendingCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void drain_retriesRowByRowWhenBatchFails() {
+        when(jdbcTemplate.batchUpdate(eq(NotificationWriter.INSERT_SQL), anyList(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DataIntegrityViolationException("fk"));
+        when(jdbcTemplate.update(eq(NotificationWriter.INSERT_SQL), any(PreparedStatementSetter.class)))
+                .thenThrow(new DataIntegrityViolationException("fk"))
+                .thenReturn(1);
+
+        writer.enqueue(buildNotification(NotificationType.FOLLOW, null));
+        writer.enqueue(buildNotification(NotificationType.FOLLOW, null));
+        writer.drain();
+
+        verify(jdbcTemplate, times(2)).update(eq(NotificationWriter.INSERT_SQL), any(PreparedStatementSetter.class));
+        verify(unreadCounter).adjust(2L, 1L);
+        verify(eventPublisher).publishEvent(any(NotificationCountChangedEvent.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void drain_foldIntoUnreadGroupLeavesCountUnchanged() {
+        doAnswer(invocation -> {
+            // Varargs arrive expanded: sql, handler, recipient id, group key.
+            String groupKey = invocation.getArgument(3);
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getLong("recipient_id")).thenReturn(2L);
+            when(rs.getString("group_key")).thenReturn(groupKey);
+            invocation.getArgument(1, RowCallbackHandler.class).processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+        when(unreadCounter.get(2L)).thenReturn(5L);
+
+        writer.enqueue(buildNotification(NotificationType.LIKE, 99L));
+        writer.drain();
+
+        verify(unreadCounter, never()).adjust(any(), anyLong());
+        verify(eventPublisher).publishEvent(new NotificationCountChangedEvent("bob", 5L));
+    }
+
+    @Test
+    void drain_withEmptyQueueDoesNothing() {
+        writer.drain();
+
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    private Notification buildNotification(NotificationType type, Long postId) {
+        User actor = new User();
+        actor.setId(1L);
+        actor.setUsername("alice");
+        User recipient = new User();
+        recipient.setId(2L);
+        recipient.setUsername("bob");
+        Notification notification = new Notification(recipient, actor, type);
+        notification.setPostId(postId);
+        return notification;
+    }
+}
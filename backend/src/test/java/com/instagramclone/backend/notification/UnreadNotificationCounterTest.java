@@ -0,0 +1,126 @@
+package com.instagramclone.backend.notification;
+
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UnreadNotificationCounterTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private NotificationRepository notificationRepository;
+
+    private UnreadNotificationCounter counter;
+
+    @BeforeEach
+    void setUp() {
+        counter = new UnreadNotificationCounter(redisTemplate, notificationRepository, 1);
+    }
+
+    @Test
+    void get_returnsCachedCounterWithoutQueryingDatabase() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.getAndExpire("notifications:unread:2", Duration.ofHours(1))).thenReturn("4");
+
+        assertEquals(4L, counter.get(2L));
+        verify(notificationRepository, never()).countByRecipientIdAndReadIsFalse(any());
+    }
+
+    @Test
+    void get_loadsMissingCounterFromDatabase() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(notificationRepository.countByRecipientIdAndReadIsFalse(2L)).thenReturn(6L);
+
+        assertEquals(6L, counter.get(2L));
+        verify(valueOperations).setIfAbsent("notifications:unread:2", "6", Duration.ofHours(1));
+    }
+
+    @Test
+    void get_fallsBackToDatabaseWhenRedisIsDown() {
+        when(redisTemplate.opsForValue()).thenThrow(new RedisConnectionFailureException("down"));
+        when(notificationRepository.countByRecipientIdAndReadIsFalse(2L)).thenReturn(1L);
+
+        assertEquals(1L, counter.get(2L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void adjust_incrementsLoadedCounter() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of("notifications:unread:2")), eq("-1"), eq("3600")))
+                .thenReturn(2L);
+
+        assertEquals(2L, counter.adjust(2L, -1));
+        verify(notificationRepository, never()).countByRecipientIdAndReadIsFalse(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void adjust_loadsCounterWhenMissing() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString())).thenReturn(null);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(notificationRepository.countByRecipientIdAndReadIsFalse(2L)).thenReturn(5L);
+
+        assertEquals(5L, counter.adjust(2L, 1));
+        verify(valueOperations).setIfAbsent("notifications:unread:2", "5", Duration.ofHours(1));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reconcile_overwritesOnlyDriftedCounters() {
+        Cursor<String> keys = mock(Cursor.class);
+        when(keys.hasNext()).thenReturn(true, true, false);
+        when(keys.next()).thenReturn("notifications:unread:2", "notifications:unread:3");
+        when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(keys);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(notificationRepository.countUnreadByRecipientIds(List.of(2L, 3L)))
+                .thenReturn(List.of(projection(2L, 4L)));
+        when(valueOperations.multiGet(List.of("notifications:unread:2", "notifications:unread:3")))
+                .thenReturn(List.of("4", "7"));
+
+        counter.reconcile();
+
+        verify(valueOperations).set("notifications:unread:3", "0", Duration.ofHours(1));
+        verify(valueOperations, never()).set(eq("notifications:unread:2"), anyString(), any(Duration.class));
+        verify(keys).close();
+    }
+
+    private UnreadCountProjection projection(Long recipientId, long count) {
+        return new UnreadCountProjection() {
+            @Override
+            public Long getRecipientId() {
+                return recipientId;
+            }
+
+            @Override
+            public long getCount() {
+                return count;
+            }
+        };
+    }
+}
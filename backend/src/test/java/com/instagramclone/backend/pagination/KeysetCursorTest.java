@@ -0,0 +1,40 @@
+package com.instagramclone.backend.pagination;
+
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class KeysetCursorTest {
+
+    @Test
+    void encodeAndDecodeRoundTrip() {
+        KeysetCursor cursor = new KeysetCursor(LocalDateTime.of(2024, 1, 2, 3, 4, 5, 123456000), 42L);
+
+        KeysetCursor decoded = KeysetCursor.decode(cursor.encode());
+
+        assertEquals(cursor, decoded);
+    }
+
+    @Test
+    void decodeReturnsNullForBlankCursor() {
+        assertNull(KeysetCursor.decode(null));
+        assertNull(KeysetCursor.decode("  "));
+    }
+
+    @Test
+    void decodeRejectsMalformedCursor() {
+        assertThrows(ResponseStatusException.class, () -> KeysetCursor.decode("not-a-cursor"));
+        assertThrows(ResponseStatusException.class, () -> KeysetCursor.decode(new KeysetCursor(null, 1L).encode()));
+    }
+
+    @Test
+    void clampLimitKeepsLimitWithinBounds() {
+        assertEquals(1, CursorPage.clampLimit(0));
+        assertEquals(20, CursorPage.clampLimit(20));
+        assertEquals(CursorPage.MAX_LIMIT, CursorPage.clampLimit(500));
+    }
+}
@@ -0,0 +1,89 @@
+package com.instagramclone.backend.post;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CommentReactionCountCacheTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    private StringRedisConnection connection;
+
+    private CommentReactionCountCache cache;
+
+    @BeforeEach
+    void setUp() {
+        connection = mock(StringRedisConnection.class);
+        cache = new CommentReactionCountCache(redisTemplate, 1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getAll_returnsOnlyLoadedHashesAndRemembersMissVersions() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            RedisCallback<Object> callback = invocation.getArgument(0);
+            callback.doInRedis(connection);
+            return List.of(
+                    Map.of(CommentReactionCountCache.LOADED_FIELD, "1", CommentReactionCountCache.VERSION_FIELD, "3",
+                            "x", "2", "y", "0"),
+                    Map.of(CommentReactionCountCache.VERSION_FIELD, "5"),
+                    Map.of()
+            );
+        });
+
+        CommentReactionCountCache.CachedCounts cached = cache.getAll(List.of(1L, 2L, 3L));
+
+        assertEquals(Map.of(1L, Map.of("x", 2L)), cached.counts());
+        assertEquals(Map.of(2L, "5"), cached.missVersions());
+        verify(connection).hGetAll("comment:reactions:2");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void putAll_writesEachCommentOnlyIfUnchanged() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            RedisCallback<Object> callback = invocation.getArgument(0);
+            callback.doInRedis(connection);
+            return List.of();
+        });
+
+        cache.putAll(List.of(1L, 2L), Map.of(1L, Map.of("x", 4L)), Map.of(2L, "7"));
+
+        verify(connection).eval(anyString(), eq(ReturnType.INTEGER), eq(1),
+                eq("comment:reactions:1"), eq("3600"), eq(""), eq("x"), eq("4"));
+        verify(connection).eval(anyString(), eq(ReturnType.INTEGER), eq(1),
+                eq("comment:reactions:2"), eq("3600"), eq("7"));
+    }
+
+    @Test
+    void increment_reportsWhetherHashWasLoaded() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of("comment:reactions:5")), any(Object[].class)))
+                .thenReturn(0L);
+
+        assertFalse(cache.increment(5L, Map.of("x", 1L)));
+
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of("comment:reactions:5")),
+                eq("3600"), eq("x"), eq("1"));
+    }
+}
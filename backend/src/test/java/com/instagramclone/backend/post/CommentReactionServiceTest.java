@@ -10,13 +10,17 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.server.ResponseStatusException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
@@ -38,9 +42,12 @@ class CommentReactionServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private CommentReactionCountCache countCache;
+
     @Test
     void toggleReaction_rejectsUnsupportedEmoji() {
-        CommentReactionService service = new CommentReactionService(reactionRepository, commentRepository, userRepository);
+        CommentReactionService service = new CommentReactionService(reactionRepository, commentRepository, userRepository, countCache);
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class,
                 () -> service.toggleReaction(1L, 2L, "bad", "user"));
@@ -51,7 +58,7 @@ class CommentReactionServiceTest {
 
     @Test
     void toggleReaction_requiresReply() {
-        CommentReactionService service = new CommentReactionService(reactionRepository, commentRepository, userRepository);
+        CommentReactionService service = new CommentReactionService(reactionRepository, commentRepository, userRepository, countCache);
         Comment reply = buildTopLevelComment();
 
         when(commentRepository.findById(2L)).thenReturn(Optional.of(reply));
@@ -64,7 +71,7 @@ class CommentReactionServiceTest {
 
     @Test
     void toggleReaction_deletesWhenSameEmoji() {
-        CommentReactionService service = new CommentReactionService(reactionRepository, commentRepository, userRepository);
+        CommentReactionService service = new CommentReactionService(reactionRepository, commentRepository, userRepository, countCache);
         Comment reply = buildReply(1L);
         User user = new User();
         user.setUsername("user");
@@ -74,19 +81,97 @@ class CommentReactionServiceTest {
         when(userRepository.findByUsername("user")).thenReturn(Optional.of(user));
         when(reactionRepository.findByCommentIdAndUserUsername(2L, "user")).thenReturn(Optional.of(existing));
 
-        service.toggleReaction(1L, 2L, EMOJI_THUMBS_UP, "user");
+        when(countCache.getAll(Set.of(2L))).thenReturn(cached(Map.of(2L, Map.of(EMOJI_THUMBS_UP, 1L)), Map.of()));
+
+        CommentReactionSummaryResponse summary = service.toggleReaction(1L, 2L, EMOJI_THUMBS_UP, "user");
 
         verify(reactionRepository).delete(existing);
         verify(reactionRepository, never()).save(existing);
+        assertNull(summary.getViewerReaction());
+        assertTrue(summary.getReactions().isEmpty());
+        verify(reactionRepository, never()).findReactionCountsByCommentIds(any());
+        verify(countCache).increment(2L, Map.of(EMOJI_THUMBS_UP, -1L));
     }
 
     @Test
-    void buildLookup_mapsReactionsAndViewer() {
-        CommentReactionService service = new CommentReactionService(reactionRepository, commentRepository, userRepository);
+    void toggleReaction_switchingEmojiMovesCountsInCache() {
+        CommentReactionService service = new CommentReactionService(reactionRepository, commentRepository, userRepository, countCache);
+        Comment reply = buildReply(1L);
+        User user = new User();
+        user.setUsername("user");
+        CommentReaction existing = new CommentReaction(reply, user, EMOJI_THUMBS_UP);
+
+        when(commentRepository.findById(2L)).thenReturn(Optional.of(reply));
+        when(userRepository.findByUsername("user")).thenReturn(Optional.of(user));
+        when(reactionRepository.findByCommentIdAndUserUsername(2L, "user")).thenReturn(Optional.of(existing));
+        when(countCache.getAll(Set.of(2L)))
+                .thenReturn(cached(Map.of(2L, Map.of(EMOJI_THUMBS_UP, 2L, EMOJI_LAUGH, 2L)), Map.of()));
+
+        CommentReactionSummaryResponse summary = service.toggleReaction(1L, 2L, EMOJI_LAUGH, "user");
+
+        assertEquals(EMOJI_LAUGH, summary.getViewerReaction());
+        assertEquals(EMOJI_LAUGH, summary.getReactions().get(0).getEmoji());
+        assertEquals(3, summary.getReactions().get(0).getCount());
+        assertEquals(1, summary.getReactions().get(1).getCount());
+        verify(reactionRepository, never()).findReactionCountsByCommentIds(any());
+        verify(countCache).increment(2L, Map.of(EMOJI_THUMBS_UP, -1L, EMOJI_LAUGH, 1L));
+    }
+
+    @Test
+    void toggleReaction_readsDatabaseWithoutCachingWhenCacheNotLoaded() {
+        CommentReactionService service = new CommentReactionService(reactionRepository, commentRepository, userRepository, countCache);
         Comment reply = buildReply(1L);
+        User user = new User();
+        user.setUsername("user");
 
+        when(commentRepository.findById(2L)).thenReturn(Optional.of(reply));
+        when(userRepository.findByUsername("user")).thenReturn(Optional.of(user));
+        when(reactionRepository.findByCommentIdAndUserUsername(2L, "user")).thenReturn(Optional.empty());
+        when(countCache.getAll(Set.of(2L))).thenReturn(cached(Map.of(), Map.of()));
         when(reactionRepository.findReactionCountsByCommentIds(Set.of(2L)))
-                .thenReturn(List.of(new StubProjection(2L, EMOJI_THUMBS_UP, 2)));
+                .thenReturn(List.of(new StubProjection(2L, EMOJI_LAUGH, 1)));
+
+        CommentReactionSummaryResponse summary = service.toggleReaction(1L, 2L, EMOJI_LAUGH, "user");
+
+        assertEquals(1, summary.getReactions().size());
+        // Uncommitted state never reaches the cache; the next read rebuilds it.
+        verify(countCache, never()).putAll(any(), any(), any());
+        verify(countCache).increment(2L, Map.of(EMOJI_LAUGH, 1L));
+    }
+
+    @Test
+    void toggleReaction_incrementsCacheOnlyAfterCommit() {
+        CommentReactionService service = new CommentReactionService(reactionRepository, commentRepository, userRepository, countCache);
+        Comment reply = buildReply(1L);
+        User user = new User();
+        user.setUsername("user");
+
+        when(commentRepository.findById(2L)).thenReturn(Optional.of(reply));
+        when(userRepository.findByUsername("user")).thenReturn(Optional.of(user));
+        when(reactionRepository.findByCommentIdAndUserUsername(2L, "user")).thenReturn(Optional.empty());
+        when(countCache.getAll(Set.of(2L))).thenReturn(cached(Map.of(2L, Map.of()), Map.of()));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            CommentReactionSummaryResponse summary = service.toggleReaction(1L, 2L, EMOJI_LAUGH, "user");
+
+            assertEquals(1, summary.getReactions().get(0).getCount());
+            verify(countCache, never()).increment(any(), any());
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+            verify(countCache).increment(2L, Map.of(EMOJI_LAUGH, 1L));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void buildLookup_mapsReactionsAndViewer() {
+        CommentReactionService service = new CommentReactionService(reactionRepository, commentRepository, userRepository, countCache);
+        Comment reply = buildReply(1L);
+
+        when(countCache.getAll(Set.of(2L))).thenReturn(cached(Map.of(2L, Map.of(EMOJI_THUMBS_UP, 2L)), Map.of()));
         when(reactionRepository.findByCommentIdInAndUserUsername(Set.of(2L), "user"))
                 .thenReturn(List.of(new CommentReaction(reply, new User(), EMOJI_THUMBS_UP)));
 
@@ -94,13 +179,30 @@ class CommentReactionServiceTest {
 
         assertEquals(1, lookup.reactionsByComment().get(2L).size());
         assertEquals(EMOJI_THUMBS_UP, lookup.viewerReactions().get(2L));
+        verify(reactionRepository, never()).findReactionCountsByCommentIds(any());
+    }
+
+    @Test
+    void buildLookup_fallsBackToDatabaseWhenCacheUnavailable() {
+        CommentReactionService service = new CommentReactionService(reactionRepository, commentRepository, userRepository, countCache);
+        Comment reply = buildReply(1L);
+
+        when(countCache.getAll(Set.of(2L))).thenThrow(new RedisConnectionFailureException("down"));
+        when(reactionRepository.findReactionCountsByCommentIds(Set.of(2L)))
+                .thenReturn(List.of(new StubProjection(2L, EMOJI_THUMBS_UP, 2)));
+
+        CommentReactionService.CommentReactionLookup lookup = service.buildLookup(Set.of(reply), "");
+
+        assertEquals(2, lookup.reactionsByComment().get(2L).get(0).getCount());
+        verify(countCache, never()).putAll(any(), any(), any());
     }
 
     @Test
     void buildSummary_handlesEmptyViewer() {
-        CommentReactionService service = new CommentReactionService(reactionRepository, commentRepository, userRepository);
+        CommentReactionService service = new CommentReactionService(reactionRepository, commentRepository, userRepository, countCache);
 
-        when(reactionRepository.findReactionCountsByCommentId(2L))
+        when(countCache.getAll(Set.of(2L))).thenReturn(cached(Map.of(), Map.of(2L, "4")));
+        when(reactionRepository.findReactionCountsByCommentIds(Set.of(2L)))
                 .thenReturn(List.of(new StubProjection(2L, EMOJI_LAUGH, 1)));
 
         CommentReactionSummaryResponse summary = service.buildSummary(2L, "");
@@ -108,6 +210,14 @@ class CommentReactionServiceTest {
         assertNotNull(summary);
         assertNull(summary.getViewerReaction());
         assertEquals(1, summary.getReactions().size());
+        verify(countCache).putAll(Set.of(2L), Map.of(2L, Map.of(EMOJI_LAUGH, 1L)), Map.of(2L, "4"));
+    }
+
+    private CommentReactionCountCache.CachedCounts cached(
+            Map<Long, Map<String, Long>> counts,
+            Map<Long, String> missVersions
+    ) {
+        return new CommentReactionCountCache.CachedCounts(counts, missVersions);
     }
 
     private Comment buildReply(Long postId) {
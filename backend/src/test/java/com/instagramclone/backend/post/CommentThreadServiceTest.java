@@ -0,0 +1,185 @@
+package com.instagramclone.backend.post;
+
+import com.instagramclone.backend.pagination.CursorPage;
+import com.instagramclone.backend.pagination.KeysetCursor;
+import com.instagramclone.backend.user.User;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CommentThreadServiceTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Mock
+    private PostRepository postRepository;
+
+    @Mock
+    private CommentRepository commentRepository;
+
+    @Mock
+    private CommentReactionService reactionService;
+
+    private CommentThreadService service;
+
+    private Post post;
+    private User author;
+
+    @BeforeEach
+    void setUp() {
+        service = new CommentThreadService(postRepository, commentRepository, reactionService, 2);
+        author = new User();
+        author.setUsername("author");
+        post = new Post("image", "caption", author);
+        post.setId(1L);
+    }
+
+    @Test
+    void getComments_pagesTopLevelAndInlinesFirstReplies() {
+        Comment first = comment(10L, null, 0);
+        Comment second = comment(11L, null, 1);
+        Comment extra = comment(12L, null, 2);
+        Comment firstReply = comment(20L, first, 3);
+        Comment secondReply = comment(21L, first, 4);
+        List<Comment> replies = List.of(firstReply, secondReply);
+
+        when(postRepository.existsById(1L)).thenReturn(true);
+        when(commentRepository.findTopLevelPage(1L, PageRequest.of(0, 3))).thenReturn(List.of(first, second, extra));
+        when(commentRepository.countRepliesByParentIds(List.of(10L, 11L))).thenReturn(List.of(count(10L, 5)));
+        when(commentRepository.findFirstReplyIds(1L, List.of(10L), 2)).thenReturn(List.of(20L, 21L));
+        when(commentRepository.findWithUserByIdIn(List.of(20L, 21L))).thenReturn(replies);
+        when(reactionService.buildLookup(replies, "viewer")).thenReturn(new CommentReactionService.CommentReactionLookup(
+                Map.of(21L, List.of(new CommentReactionCountResponse("x", 1))),
+                Map.of()
+        ));
+
+        CursorPage<CommentResponse> page = service.getComments(1L, null, 2, "viewer");
+
+        assertEquals(List.of(10L, 11L), page.items().stream().map(CommentResponse::getId).toList());
+        assertEquals(new KeysetCursor(second.getCreatedAt(), 11L).encode(), page.nextCursor());
+
+        CommentResponse thread = page.items().get(0);
+        assertEquals(5, thread.getReplyCount());
+        assertEquals(List.of(20L, 21L), thread.getReplies().stream().map(CommentResponse::getId).toList());
+        assertEquals(1, thread.getReplies().get(1).getReactions().size());
+        assertEquals(new KeysetCursor(secondReply.getCreatedAt(), 21L).encode(), thread.getRepliesNextCursor());
+
+        CommentResponse quiet = page.items().get(1);
+        assertEquals(0, quiet.getReplyCount());
+        assertNull(quiet.getRepliesNextCursor());
+    }
+
+    @Test
+    void getComments_resumesAfterCursor() {
+        KeysetCursor cursor = new KeysetCursor(BASE, 11L);
+        when(postRepository.existsById(1L)).thenReturn(true);
+        when(commentRepository.findTopLevelPageAfter(1L, BASE, 11L, PageRequest.of(0, 21))).thenReturn(List.of());
+
+        CursorPage<CommentResponse> page = service.getComments(1L, cursor.encode(), 20, "viewer");
+
+        assertTrue(page.items().isEmpty());
+        assertNull(page.nextCursor());
+        verify(commentRepository, never()).countRepliesByParentIds(any());
+    }
+
+    @Test
+    void getComments_rejectsUnknownPost() {
+        when(postRepository.existsById(1L)).thenReturn(false);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> service.getComments(1L, null, 20, "viewer"));
+
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
+    }
+
+    @Test
+    void getReplies_pagesRepliesOfTopLevelComment() {
+        Comment parent = comment(10L, null, 0);
+        Comment reply = comment(20L, parent, 1);
+        List<Comment> rows = List.of(reply);
+
+        when(commentRepository.findById(10L)).thenReturn(Optional.of(parent));
+        when(commentRepository.findReplyPage(1L, 10L, PageRequest.of(0, 21))).thenReturn(rows);
+        when(reactionService.buildLookup(rows, "viewer")).thenReturn(new CommentReactionService.CommentReactionLookup(
+                Map.of(),
+                Map.of(20L, "x")
+        ));
+
+        CursorPage<CommentResponse> page = service.getReplies(1L, 10L, null, 20, "viewer");
+
+        assertEquals(1, page.items().size());
+        assertEquals(10L, page.items().get(0).getParentId());
+        assertEquals("x", page.items().get(0).getViewerReaction());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void getReplies_rejectsReplyAsParent() {
+        Comment parent = comment(10L, null, 0);
+        Comment reply = comment(20L, parent, 1);
+        when(commentRepository.findById(20L)).thenReturn(Optional.of(reply));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> service.getReplies(1L, 20L, null, 20, "viewer"));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verify(commentRepository, never()).findReplyPage(eq(1L), eq(20L), any());
+    }
+
+    @Test
+    void getReplies_rejectsCommentFromAnotherPost() {
+        Post other = new Post("image", "caption", author);
+        other.setId(2L);
+        Comment parent = new Comment("hi", author, other);
+        parent.setId(10L);
+        when(commentRepository.findById(10L)).thenReturn(Optional.of(parent));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> service.getReplies(1L, 10L, null, 20, "viewer"));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verify(commentRepository, never()).findFirstReplyIds(any(), any(), anyInt());
+    }
+
+    private Comment comment(Long id, Comment parent, int minutesAfterBase) {
+        Comment comment = parent == null ? new Comment("c" + id, author, post) : new Comment("c" + id, author, post, parent);
+        comment.setId(id);
+        comment.setCreatedAt(BASE.plusMinutes(minutesAfterBase));
+        return comment;
+    }
+
+    private CommentCountProjection count(Long targetId, long count) {
+        return new CommentCountProjection() {
+            @Override
+            public Long getTargetId() {
+                return targetId;
+            }
+
+            @Override
+            public long getCount() {
+                return count;
+            }
+        };
+    }
+}
@@ -0,0 +1,109 @@
+package com.instagramclone.backend.post;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Throughput of 500 concurrent likers on one post. The repository stand-in serializes every
+ * {@code adjustLikes} call behind a lock held for ~100µs, the way an UPDATE holds the post's row lock.
+ */
+class LikeCounterBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(LikeCounterBenchmarkTest.class);
+
+    private static final int LIKERS = 500;
+    private static final int TOGGLES_PER_LIKER = 4;
+    private static final long ROW_LOCK_HOLD_NANOS = 100_000;
+    private static final Long POST_ID = 1L;
+
+    @Test
+    void hotCounterKeepsCountExactAndTakesRowLockFarLessOften() throws Exception {
+        RowLockedCounter directRow = new RowLockedCounter();
+        long directNanos = runLikers(new LikeCounterService(directRow.repository(), false, 0));
+
+        RowLockedCounter stripedRow = new RowLockedCounter();
+        LikeCounterService striped = new LikeCounterService(stripedRow.repository(), true, 50);
+        long stripedNanos = runLikers(striped);
+        striped.flush();
+
+        int expected = LIKERS * TOGGLES_PER_LIKER;
+        logger.info("500 likers, {} likes: direct {} ops/s ({} row updates), striped {} ops/s ({} row updates)",
+                expected,
+                opsPerSecond(expected, directNanos), directRow.updates.get(),
+                opsPerSecond(expected, stripedNanos), stripedRow.updates.get());
+
+        assertEquals(expected, directRow.likes.get());
+        assertEquals(expected, stripedRow.likes.get());
+        assertEquals(expected, directRow.updates.get());
+        assertTrue(stripedRow.updates.get() <= 51, "hot counter should take the row lock at most threshold + 1 times");
+    }
+
+    private long runLikers(LikeCounterService counterService) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(LIKERS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < LIKERS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int toggle = 0; toggle < TOGGLES_PER_LIKER; toggle++) {
+                        counterService.adjust(POST_ID, 1);
+                    }
+                    return null;
+                }));
+            }
+            long startedAt = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            return System.nanoTime() - startedAt;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long opsPerSecond(int operations, long nanos) {
+        return operations * TimeUnit.SECONDS.toNanos(1) / Math.max(1, nanos);
+    }
+
+    private static final class RowLockedCounter {
+        private final ReentrantLock rowLock = new ReentrantLock();
+        private final AtomicInteger likes = new AtomicInteger();
+        private final AtomicInteger updates = new AtomicInteger();
+
+        PostRepository repository() {
+            PostRepository repository = mock(PostRepository.class);
+            when(repository.adjustLikes(anyLong(), anyInt())).thenAnswer(invocation -> {
+                rowLock.lock();
+                try {
+                    LockSupport.parkNanos(ROW_LOCK_HOLD_NANOS);
+                    likes.addAndGet(invocation.getArgument(1));
+                    updates.incrementAndGet();
+                    return 1;
+                } finally {
+                    rowLock.unlock();
+                }
+            });
+            return repository;
+        }
+    }
+}
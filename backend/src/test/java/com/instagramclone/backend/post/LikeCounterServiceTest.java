@@ -0,0 +1,169 @@
+package com.instagramclone.backend.post;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LikeCounterServiceTest {
+
+    @Mock
+    private PostRepository postRepository;
+
+    private LikeCounterService likeCounterService;
+
+    @BeforeEach
+    void setUp() {
+        likeCounterService = new LikeCounterService(postRepository, true, 2);
+    }
+
+    @Test
+    void adjust_writesDirectlyWhilePostIsCold() {
+        likeCounterService.adjust(1L, 1);
+        likeCounterService.adjust(1L, 1);
+
+        verify(postRepository, times(2)).adjustLikes(1L, 1);
+        assertEquals(5, likeCounterService.currentLikes(1L, 5));
+    }
+
+    @Test
+    void adjust_buffersDeltasOnceThresholdIsExceeded() {
+        likeCounterService.adjust(1L, 1);
+        likeCounterService.adjust(1L, 1);
+        likeCounterService.adjust(1L, 1);
+        likeCounterService.adjust(1L, -1);
+        likeCounterService.adjust(1L, 1);
+
+        verify(postRepository, times(2)).adjustLikes(1L, 1);
+        assertEquals(7, likeCounterService.currentLikes(1L, 6));
+
+        likeCounterService.flush();
+
+        verify(postRepository, times(3)).adjustLikes(1L, 1);
+        assertTrue(likeCounterService.isHot(1L));
+        assertEquals(6, likeCounterService.currentLikes(1L, 6));
+    }
+
+    @Test
+    void adjust_buffersHotDeltasOnlyOnceTheLikeCommits() {
+        LikeCounterService allHot = new LikeCounterService(postRepository, true, 0);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            allHot.adjust(1L, 1);
+
+            assertEquals(4, allHot.currentLikes(1L, 4));
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+            assertEquals(5, allHot.currentLikes(1L, 4));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void adjust_dropsHotDeltasOfRolledBackLikes() {
+        LikeCounterService allHot = new LikeCounterService(postRepository, true, 0);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            allHot.adjust(1L, 1);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        allHot.flush();
+
+        assertEquals(4, allHot.currentLikes(1L, 4));
+        verify(postRepository, never()).adjustLikes(anyLong(), anyInt());
+    }
+
+    @Test
+    void flush_coolsDownAndEvictsIdlePosts() {
+        for (int i = 0; i < 3; i++) {
+            likeCounterService.adjust(1L, 1);
+        }
+        likeCounterService.flush();
+        likeCounterService.flush();
+        likeCounterService.flush();
+
+        assertFalse(likeCounterService.isHot(1L));
+        likeCounterService.adjust(1L, 1);
+        verify(postRepository, times(4)).adjustLikes(1L, 1);
+    }
+
+    @Test
+    void flush_keepsDeltaWhenDatabaseWriteFails() {
+        for (int i = 0; i < 4; i++) {
+            likeCounterService.adjust(1L, 1);
+        }
+        when(postRepository.adjustLikes(1L, 2)).thenThrow(new QueryTimeoutException("timeout"));
+
+        likeCounterService.flush();
+
+        assertEquals(2, likeCounterService.currentLikes(1L, 0));
+    }
+
+    @Test
+    void flush_neverLosesDeltasAddedWhileEvicting() throws InterruptedException {
+        LikeCounterService allHot = new LikeCounterService(postRepository, true, 0);
+        AtomicLong applied = new AtomicLong();
+        when(postRepository.adjustLikes(anyLong(), anyInt())).thenAnswer(invocation -> {
+            applied.addAndGet(invocation.getArgument(1, Integer.class));
+            return 1;
+        });
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread flusher = new Thread(() -> {
+            while (running.get()) {
+                allHot.flush();
+            }
+        });
+        flusher.start();
+        Thread[] likers = new Thread[4];
+        for (int t = 0; t < likers.length; t++) {
+            likers[t] = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    allHot.adjust((long) (i % 64), 1);
+                }
+            });
+            likers[t].start();
+        }
+        for (Thread liker : likers) {
+            liker.join();
+        }
+        running.set(false);
+        flusher.join();
+
+        allHot.flush();
+
+        assertEquals(80_000, applied.get());
+    }
+
+    @Test
+    void adjust_alwaysWritesDirectlyWhenDisabled() {
+        LikeCounterService disabled = new LikeCounterService(postRepository, false, 0);
+
+        disabled.adjust(1L, 1);
+        disabled.adjust(1L, 1);
+        disabled.flush();
+
+        verify(postRepository, times(2)).adjustLikes(1L, 1);
+    }
+}
@@ -1,5 +1,6 @@
 package com.instagramclone.backend.post;
 
+import com.instagramclone.backend.pagination.CursorPage;
 import com.instagramclone.backend.storage.FileSystemStorageService;
 import com.instagramclone.backend.user.User;
 import java.security.Principal;
@@ -13,7 +14,7 @@ import org.springframework.http.HttpStatus;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.verify;
 
@@ -29,47 +30,85 @@ class PostControllerTest {
     @Mock
     private CommentReactionService reactionService;
 
+    @Mock
+    private PostResponseAssembler postResponseAssembler;
+
+    @Mock
+    private CommentThreadService commentThreadService;
+
     @Test
-    void getExplorePosts_mapsPostResponse() {
-        PostController controller = new PostController(postService, storageService, reactionService);
+    void getExplorePosts_assemblesResponsesForWholePage() {
+        PostController controller = new PostController(postService, storageService, reactionService, postResponseAssembler, commentThreadService);
         Principal principal = () -> "viewer";
 
         User owner = new User();
         owner.setUsername("owner");
-        owner.setProfilePictureUrl("owner-pic");
-
-        User liker = new User();
-        liker.setUsername("viewer");
-
         Post post = new Post("image", "caption", owner);
         post.setId(3L);
-        post.getLikedBy().add(liker);
-
-        Comment comment = new Comment("hi", liker, post);
-        comment.setId(7L);
-        post.getComments().add(comment);
-
-        Comment reply = new Comment("reply", owner, post, comment);
-        reply.setId(8L);
-        post.getComments().add(reply);
+        PostResponse postResponse = new PostResponse(3L, "image", "caption", "owner", null, post.getCreatedAt(), 1, true, List.of());
 
         when(postService.getExplorePosts()).thenReturn(List.of(post));
-        when(reactionService.buildLookup(post.getComments(), "viewer"))
-                .thenReturn(new CommentReactionService.CommentReactionLookup(java.util.Map.of(), java.util.Map.of()));
+        when(postResponseAssembler.toResponses(List.of(post), "viewer")).thenReturn(List.of(postResponse));
 
         ResponseEntity<List<PostResponse>> response = controller.getExplorePosts(principal);
 
+        assertNotNull(response.getBody());
+        assertEquals(List.of(postResponse), response.getBody());
+    }
+
+    @Test
+    void getAllPosts_exposesNextCursorHeader() {
+        PostController controller = new PostController(postService, storageService, reactionService, postResponseAssembler, commentThreadService);
+        Principal principal = () -> "viewer";
+
+        User owner = new User();
+        owner.setUsername("owner");
+        Post post = new Post("image", "caption", owner);
+        post.setId(4L);
+
+        when(postService.getFeedPage("viewer", null, 20)).thenReturn(new CursorPage<>(List.of(post), "next-token"));
+        when(postResponseAssembler.toResponses(List.of(post), "viewer")).thenReturn(List.of(
+                new PostResponse(4L, "image", "caption", "owner", null, post.getCreatedAt(), 0, false, List.of())
+        ));
+
+        ResponseEntity<List<PostResponse>> response = controller.getAllPosts(null, 20, principal);
+
         assertNotNull(response.getBody());
         assertEquals(1, response.getBody().size());
-        PostResponse postResponse = response.getBody().get(0);
-        assertTrue(postResponse.isLikedByCurrentUser());
-        assertEquals(1, postResponse.getComments().size());
-        assertEquals(1, postResponse.getComments().get(0).getReplies().size());
+        assertEquals("next-token", response.getHeaders().getFirst(CursorPage.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void getComments_returnsPageAndNextCursorHeader() {
+        PostController controller = new PostController(postService, storageService, reactionService, postResponseAssembler, commentThreadService);
+        Principal principal = () -> "viewer";
+        CommentResponse comment = new CommentResponse(10L, "hi", "owner", null, null, null, List.of());
+
+        when(commentThreadService.getComments(4L, "cursor", 10, "viewer"))
+                .thenReturn(new CursorPage<>(List.of(comment), "next-token"));
+
+        ResponseEntity<List<CommentResponse>> response = controller.getComments(4L, "cursor", 10, principal);
+
+        assertEquals(List.of(comment), response.getBody());
+        assertEquals("next-token", response.getHeaders().getFirst(CursorPage.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void getReplies_omitsHeaderOnLastPage() {
+        PostController controller = new PostController(postService, storageService, reactionService, postResponseAssembler, commentThreadService);
+        Principal principal = () -> "viewer";
+
+        when(commentThreadService.getReplies(4L, 10L, null, 20, "viewer")).thenReturn(new CursorPage<>(List.of(), null));
+
+        ResponseEntity<List<CommentResponse>> response = controller.getReplies(4L, 10L, null, 20, principal);
+
+        assertNotNull(response.getBody());
+        assertNull(response.getHeaders().getFirst(CursorPage.NEXT_CURSOR_HEADER));
     }
 
     @Test
     void deleteReply_delegatesToService() {
-        PostController controller = new PostController(postService, storageService, reactionService);
+        PostController controller = new PostController(postService, storageService, reactionService, postResponseAssembler, commentThreadService);
         Principal principal = () -> "alice";
 
         ResponseEntity<Void> response = controller.deleteReply(5L, 9L, principal);
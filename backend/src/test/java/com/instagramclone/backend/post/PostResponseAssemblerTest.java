@@ -0,0 +1,143 @@
+package com.instagramclone.backend.post;
+
+import com.instagramclone.backend.user.User;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PostResponseAssemblerTest {
+
+    @Mock
+    private PostRepository postRepository;
+
+    @Mock
+    private CommentRepository commentRepository;
+
+    private LikeCounterService likeCounterService;
+
+    private PostResponseAssembler assembler;
+
+    @BeforeEach
+    void setUp() {
+        likeCounterService = new LikeCounterService(postRepository, true, 1);
+        assembler = new PostResponseAssembler(postRepository, commentRepository, likeCounterService, 2);
+    }
+
+    @Test
+    void toResponses_servesCounterAndCommentPreviewsWithSetBasedQueries() {
+        User owner = buildUser("owner");
+        User viewer = buildUser("viewer");
+        Post first = buildPost(1L, owner);
+        first.setLikes(3);
+        Post second = buildPost(2L, owner);
+
+        Comment comment = new Comment("hi", viewer, first);
+        comment.setId(10L);
+
+        when(postRepository.findLikedPostIds(List.of(1L, 2L), "viewer")).thenReturn(List.of(1L));
+        when(commentRepository.countByPostIds(List.of(1L, 2L))).thenReturn(List.of(count(1L, 7)));
+        when(commentRepository.findFirstTopLevelIds(List.of(1L), 2)).thenReturn(List.of(10L));
+        when(commentRepository.findWithUserByIdIn(List.of(10L))).thenReturn(List.of(comment));
+        when(commentRepository.countRepliesByParentIds(List.of(10L))).thenReturn(List.of(count(10L, 5)));
+
+        List<PostResponse> responses = assembler.toResponses(List.of(first, second), "viewer");
+
+        assertEquals(2, responses.size());
+        PostResponse firstResponse = responses.get(0);
+        assertEquals(3, firstResponse.getLikesCount());
+        assertTrue(firstResponse.isLikedByCurrentUser());
+        assertEquals(7, firstResponse.getCommentCount());
+        assertEquals(1, firstResponse.getComments().size());
+        CommentResponse preview = firstResponse.getComments().get(0);
+        assertEquals(5, preview.getReplyCount());
+        assertTrue(preview.getReplies().isEmpty());
+
+        PostResponse secondResponse = responses.get(1);
+        assertEquals(0, secondResponse.getLikesCount());
+        assertFalse(secondResponse.isLikedByCurrentUser());
+        assertEquals(0, secondResponse.getCommentCount());
+        assertTrue(secondResponse.getComments().isEmpty());
+    }
+
+    @Test
+    void toResponses_skipsPreviewQueriesWhenNoPostHasComments() {
+        Post post = buildPost(1L, buildUser("owner"));
+        when(commentRepository.countByPostIds(List.of(1L))).thenReturn(List.of());
+
+        PostResponse response = assembler.toResponse(post, "viewer");
+
+        assertTrue(response.getComments().isEmpty());
+        verify(commentRepository, never()).findFirstTopLevelIds(any(), anyInt());
+        verify(commentRepository, never()).countRepliesByParentIds(any());
+    }
+
+    @Test
+    void toResponses_mergesPendingHotCounterDeltas() {
+        Post post = buildPost(1L, buildUser("owner"));
+        post.setLikes(10);
+        likeCounterService.adjust(1L, 1);
+        likeCounterService.adjust(1L, 1);
+        likeCounterService.adjust(1L, 1);
+
+        PostResponse response = assembler.toResponse(post, "viewer");
+
+        // The first toggle went straight to the row; the next two are buffered until the flush.
+        assertEquals(12, response.getLikesCount());
+    }
+
+    @Test
+    void toResponses_skipsViewerLikesForAnonymousViewer() {
+        Post post = buildPost(1L, buildUser("owner"));
+
+        PostResponse response = assembler.toResponse(post, "");
+
+        assertFalse(response.isLikedByCurrentUser());
+        verify(postRepository, never()).findLikedPostIds(any(), any());
+    }
+
+    @Test
+    void toResponses_returnsEmptyForEmptyPage() {
+        assertTrue(assembler.toResponses(List.of(), "viewer").isEmpty());
+        verify(commentRepository, never()).countByPostIds(any());
+    }
+
+    private Post buildPost(Long id, User owner) {
+        Post post = new Post("image-" + id, "caption", owner);
+        post.setId(id);
+        return post;
+    }
+
+    private User buildUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setProfilePictureUrl(username + "-pic");
+        return user;
+    }
+
+    private CommentCountProjection count(Long targetId, long count) {
+        return new CommentCountProjection() {
+            @Override
+            public Long getTargetId() {
+                return targetId;
+            }
+
+            @Override
+            public long getCount() {
+                return count;
+            }
+        };
+    }
+}
@@ -1,9 +1,13 @@
 package com.instagramclone.backend.post;
 
 import com.instagramclone.backend.notification.NotificationService;
+import com.instagramclone.backend.pagination.CursorPage;
+import com.instagramclone.backend.pagination.KeysetCursor;
+import com.instagramclone.backend.timeline.HomeTimelineService;
 import com.instagramclone.backend.user.User;
 import com.instagramclone.backend.user.UserRepository;
 import com.instagramclone.backend.user.UserService;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,10 +15,13 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.doNothing;
@@ -37,11 +44,17 @@ class PostServiceTest {
     @Mock
     private NotificationService notificationService;
 
+    @Mock
+    private HomeTimelineService homeTimelineService;
+
+    @Mock
+    private LikeCounterService likeCounterService;
+
     private PostService postService;
 
     @BeforeEach
     void setUp() {
-        postService = new PostService(postRepository, userRepository, userService, commentRepository, notificationService);
+        postService = new PostService(postRepository, userRepository, userService, commentRepository, notificationService, homeTimelineService, likeCounterService);
     }
 
     @Test
@@ -55,21 +68,115 @@ class PostServiceTest {
     }
 
     @Test
-    void toggleLike_addsLikeAndNotifies() {
+    void getFeedPage_returnsNextCursorWhenMoreRowsExist() {
+        User viewer = buildUser("viewer");
+        viewer.setId(1L);
+        Post newest = buildPost(30L, LocalDateTime.of(2024, 5, 3, 10, 0), viewer);
+        Post middle = buildPost(20L, LocalDateTime.of(2024, 5, 2, 10, 0), viewer);
+        Post oldest = buildPost(10L, LocalDateTime.of(2024, 5, 1, 10, 0), viewer);
+
+        when(userService.findByUsername("viewer")).thenReturn(Optional.of(viewer));
+        when(postRepository.findFeedPage(1L, PageRequest.of(0, 3))).thenReturn(List.of(newest, middle, oldest));
+
+        CursorPage<Post> page = postService.getFeedPage("viewer", null, 2);
+
+        assertEquals(List.of(newest, middle), page.items());
+        assertTrue(page.hasNext());
+        KeysetCursor cursor = KeysetCursor.decode(page.nextCursor());
+        assertEquals(middle.getCreatedAt(), cursor.createdAt());
+        assertEquals(20L, cursor.id());
+    }
+
+    @Test
+    void getFeedPage_servesMaterializedTimelineWhenAvailable() {
+        User viewer = buildUser("viewer");
+        viewer.setId(1L);
+        Post post = buildPost(30L, LocalDateTime.of(2024, 5, 3, 10, 0), viewer);
+        CursorPage<Post> timelinePage = new CursorPage<>(List.of(post), null);
+
+        when(userService.findByUsername("viewer")).thenReturn(Optional.of(viewer));
+        when(homeTimelineService.readFeed(1L, null, 20)).thenReturn(Optional.of(timelinePage));
+
+        CursorPage<Post> page = postService.getFeedPage("viewer", null, 20);
+
+        assertEquals(timelinePage, page);
+        verify(postRepository, never()).findFeedPage(any(), any());
+    }
+
+    @Test
+    void createPost_fansOutToTimelines() {
+        User owner = buildUser("owner");
+        owner.setId(5L);
+        when(userRepository.findByUsername("owner")).thenReturn(Optional.of(owner));
+        when(postRepository.save(any(Post.class))).thenAnswer(invocation -> {
+            Post saved = invocation.getArgument(0);
+            saved.setId(12L);
+            return saved;
+        });
+
+        Post created = postService.createPost("image", "caption", "owner");
+
+        verify(homeTimelineService).fanOutPost(12L, 5L, created.getCreatedAt());
+    }
+
+    @Test
+    void getFeedPage_continuesFromCursorAndStopsOnLastPage() {
+        User viewer = buildUser("viewer");
+        viewer.setId(1L);
+        LocalDateTime boundary = LocalDateTime.of(2024, 5, 2, 10, 0);
+        Post oldest = buildPost(10L, LocalDateTime.of(2024, 5, 1, 10, 0), viewer);
+        String cursor = new KeysetCursor(boundary, 20L).encode();
+
+        when(userService.findByUsername("viewer")).thenReturn(Optional.of(viewer));
+        when(postRepository.findFeedPageBefore(1L, boundary, 20L, PageRequest.of(0, 3))).thenReturn(List.of(oldest));
+
+        CursorPage<Post> page = postService.getFeedPage("viewer", cursor, 2);
+
+        assertEquals(List.of(oldest), page.items());
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    void toggleLike_insertsLikeIncrementsCounterAndNotifies() {
         User owner = buildUser("owner");
         User liker = buildUser("liker");
+        liker.setId(6L);
         Post post = new Post("image", "caption", owner);
         post.setId(1L);
 
         when(postRepository.findById(1L)).thenReturn(Optional.of(post));
         when(userRepository.findByUsername("liker")).thenReturn(Optional.of(liker));
-        when(postRepository.save(post)).thenReturn(post);
+        when(postRepository.deleteLike(1L, 6L)).thenReturn(0);
+        when(postRepository.insertLike(1L, 6L)).thenReturn(1);
+        when(postRepository.findLikesById(1L)).thenReturn(1);
 
         Post updated = postService.toggleLike(1L, "liker");
 
-        assertTrue(updated.getLikedBy().contains(liker));
         assertEquals(1, updated.getLikes());
+        verify(likeCounterService).adjust(1L, 1);
         verify(notificationService).createLikeNotification(liker, post);
+        assertTrue(updated.getLikedBy().isEmpty());
+    }
+
+    @Test
+    void toggleLike_deletesExistingLikeAndDecrementsCounter() {
+        User owner = buildUser("owner");
+        User liker = buildUser("liker");
+        liker.setId(6L);
+        Post post = new Post("image", "caption", owner);
+        post.setId(1L);
+
+        when(postRepository.findById(1L)).thenReturn(Optional.of(post));
+        when(userRepository.findByUsername("liker")).thenReturn(Optional.of(liker));
+        when(postRepository.deleteLike(1L, 6L)).thenReturn(1);
+        when(postRepository.findLikesById(1L)).thenReturn(0);
+
+        Post updated = postService.toggleLike(1L, "liker");
+
+        assertEquals(0, updated.getLikes());
+        verify(likeCounterService).adjust(1L, -1);
+        verify(postRepository, never()).insertLike(any(), any());
+        verify(notificationService, never()).createLikeNotification(any(), any());
     }
 
     @Test
@@ -152,6 +259,13 @@ class PostServiceTest {
         verify(commentRepository).delete(reply);
     }
 
+    private Post buildPost(Long id, LocalDateTime createdAt, User owner) {
+        Post post = new Post("image-" + id, "caption", owner);
+        post.setId(id);
+        post.setCreatedAt(createdAt);
+        return post;
+    }
+
     private User buildUser(String username) {
         User user = new User();
         user.setUsername(username);
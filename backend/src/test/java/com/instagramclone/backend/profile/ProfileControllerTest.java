@@ -1,6 +1,6 @@
 package com.instagramclone.backend.profile;
 
-import com.instagramclone.backend.post.CommentReactionService;
+import com.instagramclone.backend.post.PostResponseAssembler;
 import com.instagramclone.backend.post.PostService;
 import com.instagramclone.backend.storage.FileSystemStorageService;
 import com.instagramclone.backend.user.User;
@@ -31,11 +31,11 @@ class ProfileControllerTest {
     private FileSystemStorageService storageService;
 
     @Mock
-    private CommentReactionService reactionService;
+    private PostResponseAssembler postResponseAssembler;
 
     @Test
     void searchUsers_returnsEmptyWhenQueryTooShort() {
-        ProfileController controller = new ProfileController(userService, postService, storageService, reactionService);
+        ProfileController controller = new ProfileController(userService, postService, storageService, postResponseAssembler);
         Principal principal = () -> "alice";
 
         ResponseEntity<List<com.instagramclone.backend.user.UserSearchResponse>> response =
@@ -47,7 +47,7 @@ class ProfileControllerTest {
 
     @Test
     void mentionSuggestions_returnsFollowing() {
-        ProfileController controller = new ProfileController(userService, postService, storageService, reactionService);
+        ProfileController controller = new ProfileController(userService, postService, storageService, postResponseAssembler);
         Principal principal = () -> "alice";
 
         User alice = new User();
@@ -0,0 +1,220 @@
+package com.instagramclone.backend.realtime;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs two nodes in one JVM, each with its own broker channel, session registry and relay, sharing an
+ * in-memory stand-in for Redis sorted sets and pub/sub.
+ */
+class ClusterUserDestinationRelayTest {
+
+    private RedisStandIn redis;
+    private Node nodeA;
+    private Node nodeB;
+
+    @BeforeEach
+    void setUp() {
+        redis = new RedisStandIn();
+        nodeA = new Node("node-a", redis, Runnable::run);
+        nodeB = new Node("node-b", redis, Runnable::run);
+    }
+
+    @Test
+    void sendToUserOnOtherNodeIsRelayedWithTheSameBytes() {
+        nodeB.registry.register("alice", "session-1");
+
+        nodeA.template.convertAndSendToUser("alice", "/queue/messages", Map.of("content", "hi"));
+
+        assertEquals(1, nodeA.delivered.size());
+        assertEquals(1, nodeB.delivered.size());
+        Message<?> relayed = nodeB.delivered.get(0);
+        assertEquals("/user/alice/queue/messages", SimpMessageHeaderAccessor.getDestination(relayed.getHeaders()));
+        assertArrayEquals((byte[]) nodeA.delivered.get(0).getPayload(), (byte[]) relayed.getPayload());
+        assertEquals(1, redis.published);
+    }
+
+    @Test
+    void relayRunsOffTheSendingThread() {
+        List<Runnable> relayQueue = new ArrayList<>();
+        Node sender = new Node("node-c", redis, relayQueue::add);
+        nodeB.registry.register("alice", "session-1");
+
+        sender.template.convertAndSendToUser("alice", "/queue/messages", Map.of("content", "hi"));
+
+        assertEquals(1, sender.delivered.size());
+        assertEquals(0, redis.published);
+        assertEquals(1, relayQueue.size());
+
+        relayQueue.forEach(Runnable::run);
+
+        assertEquals(1, nodeB.delivered.size());
+        assertEquals(1, redis.published);
+    }
+
+    @Test
+    void sendToLocalUserIsNotPublished() {
+        nodeA.registry.register("alice", "session-1");
+
+        nodeA.template.convertAndSendToUser("alice", "/queue/messages", Map.of("content", "hi"));
+
+        assertEquals(1, nodeA.delivered.size());
+        assertTrue(nodeB.delivered.isEmpty());
+        assertEquals(0, redis.published);
+    }
+
+    @Test
+    void relayedMessagesAreNotRelayedAgain() {
+        nodeA.registry.register("alice", "session-1");
+        nodeB.registry.register("alice", "session-2");
+
+        nodeA.template.convertAndSendToUser("alice", "/queue/messages", Map.of("content", "hi"));
+
+        assertEquals(1, nodeA.delivered.size());
+        assertEquals(1, nodeB.delivered.size());
+        assertEquals(1, redis.published);
+    }
+
+    @Test
+    void closingLastSessionRemovesNodeFromRegistry() {
+        nodeB.registry.register("alice", "session-1");
+        nodeB.registry.register("alice", "session-2");
+
+        nodeB.registry.unregister("session-1");
+        assertEquals(Set.of("node-b"), nodeA.registry.remoteNodesFor("alice"));
+
+        nodeB.registry.unregister("session-2");
+        assertTrue(nodeA.registry.remoteNodesFor("alice").isEmpty());
+    }
+
+    @Test
+    void staleNodesAreIgnored() {
+        redis.zAdd("realtime:user-nodes:alice", "node-gone", System.currentTimeMillis() - Duration.ofMinutes(5).toMillis());
+
+        assertTrue(nodeA.registry.remoteNodesFor("alice").isEmpty());
+    }
+
+    @Test
+    void usernameOfParsesSendDestinations() {
+        assertEquals("alice", ClusterUserDestinationRelay.usernameOf("/user/alice/queue/messages"));
+        assertEquals("a/b", ClusterUserDestinationRelay.usernameOf("/user/a%2Fb/queue/typing"));
+        assertNull(ClusterUserDestinationRelay.usernameOf("/queue/messages-user123"));
+        assertNull(ClusterUserDestinationRelay.usernameOf("/user//queue"));
+    }
+
+    private static final class Node {
+        private final UserSessionRegistry registry;
+        private final SimpMessagingTemplate template;
+        private final List<Message<?>> delivered = new ArrayList<>();
+
+        @SuppressWarnings("unchecked")
+        private Node(String nodeId, RedisStandIn redis, Executor relayExecutor) {
+            StringRedisTemplate redisTemplate = redis.template();
+            registry = new UserSessionRegistry(redisTemplate, nodeId, 90);
+            ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+            // Stands in for the user destination handler and simple broker behind the broker channel.
+            brokerChannel.subscribe(delivered::add);
+            template = new SimpMessagingTemplate(brokerChannel);
+            template.setMessageConverter(new MappingJackson2MessageConverter());
+            ObjectProvider<SimpMessagingTemplate> templateProvider = mock(ObjectProvider.class);
+            lenient().when(templateProvider.getObject()).thenReturn(template);
+            ClusterUserDestinationRelay relay = new ClusterUserDestinationRelay(
+                    registry, redisTemplate, new ObjectMapper(), templateProvider, relayExecutor);
+            brokerChannel.addInterceptor(relay);
+            redis.subscribe(registry.channel(), relay);
+        }
+    }
+
+    /**
+     * Just enough Redis for the relay: sorted sets scored by heartbeat time and synchronous pub/sub.
+     */
+    private static final class RedisStandIn {
+        private final Map<String, Map<String, Double>> sortedSets = new ConcurrentHashMap<>();
+        private final Map<String, ClusterUserDestinationRelay> subscribers = new HashMap<>();
+        private int published;
+
+        void subscribe(String channel, ClusterUserDestinationRelay listener) {
+            subscribers.put(channel, listener);
+        }
+
+        void zAdd(String key, String member, double score) {
+            sortedSets.computeIfAbsent(key, ignored -> new ConcurrentHashMap<>()).put(member, score);
+        }
+
+        @SuppressWarnings("unchecked")
+        StringRedisTemplate template() {
+            StringRedisTemplate template = mock(StringRedisTemplate.class);
+            ZSetOperations<String, String> zSetOperations = mock(ZSetOperations.class);
+            lenient().when(template.opsForZSet()).thenReturn(zSetOperations);
+            lenient().when(template.expire(anyString(), any(Duration.class))).thenReturn(true);
+            lenient().when(zSetOperations.add(anyString(), anyString(), anyDouble())).thenAnswer(invocation -> {
+                zAdd(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2));
+                return true;
+            });
+            lenient().when(zSetOperations.remove(anyString(), any(Object[].class))).thenAnswer(invocation -> {
+                Map<String, Double> members = sortedSets.getOrDefault(invocation.<String>getArgument(0), Map.of());
+                long removed = 0;
+                for (int i = 1; i < invocation.getArguments().length; i++) {
+                    removed += members.remove(invocation.getArguments()[i]) == null ? 0 : 1;
+                }
+                return removed;
+            });
+            lenient().when(zSetOperations.rangeByScore(anyString(), anyDouble(), anyDouble())).thenAnswer(invocation -> {
+                double min = invocation.getArgument(1);
+                double max = invocation.getArgument(2);
+                Set<String> members = new LinkedHashSet<>();
+                sortedSets.getOrDefault(invocation.<String>getArgument(0), Map.of()).forEach((member, score) -> {
+                    if (score >= min && score <= max) {
+                        members.add(member);
+                    }
+                });
+                return members;
+            });
+            lenient().when(template.convertAndSend(anyString(), any())).thenAnswer(invocation -> {
+                String channel = invocation.getArgument(0);
+                String body = invocation.getArgument(1);
+                published++;
+                ClusterUserDestinationRelay subscriber = subscribers.get(channel);
+                if (subscriber == null) {
+                    return 0L;
+                }
+                subscriber.onMessage(new DefaultMessage(
+                        channel.getBytes(StandardCharsets.UTF_8),
+                        body.getBytes(StandardCharsets.UTF_8)
+                ), null);
+                return 1L;
+            });
+            return template;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.instagramclone.backend.realtime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class CoalescingUserSenderTest {
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    private CoalescingUserSender sender;
+
+    @BeforeEach
+    void setUp() {
+        sender = new CoalescingUserSender(messagingTemplate);
+    }
+
+    @Test
+    void flush_sendsOnlyLatestPayloadPerKey() {
+        sender.send("bob", "/queue/typing", "1:alice", "typing");
+        sender.send("bob", "/queue/typing", "1:alice", "stopped");
+        sender.send("bob", "/queue/typing", "2:carol", "typing");
+
+        sender.flush();
+
+        verify(messagingTemplate).convertAndSendToUser("bob", "/queue/typing", "stopped");
+        verify(messagingTemplate, times(1)).convertAndSendToUser("bob", "/queue/typing", "typing");
+        assertEquals(0, sender.pendingCount());
+    }
+
+    @Test
+    void flush_keepsGoingWhenOneSendFails() {
+        doThrow(new MessageDeliveryException("down"))
+                .when(messagingTemplate).convertAndSendToUser("alice", "/queue/notification-count", 1L);
+        sender.send("alice", "/queue/notification-count", null, 1L);
+        sender.send("bob", "/queue/notification-count", null, 2L);
+
+        sender.flush();
+
+        verify(messagingTemplate).convertAndSendToUser("bob", "/queue/notification-count", 2L);
+    }
+
+    @Test
+    void send_ignoresMissingUser() {
+        sender.send(" ", "/queue/typing", "1", "typing");
+
+        sender.flush();
+
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any());
+    }
+}
@@ -1,14 +1,20 @@
 package com.instagramclone.backend.storage;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -66,14 +72,94 @@ class AttachmentStorageServiceTest {
     }
 
     @Test
-    void assembleChunks_combinesParts() throws Exception {
+    void storePermanentFromUpload_assemblesChunksAndHashes() throws Exception {
         String tempKey = storageService.createTempKey();
         storageService.writeChunk(tempKey, 0, new ByteArrayInputStream("hello".getBytes(StandardCharsets.UTF_8)));
         storageService.writeChunk(tempKey, 1, new ByteArrayInputStream("world".getBytes(StandardCharsets.UTF_8)));
 
-        Path assembled = storageService.assembleChunks(tempKey, 2);
+        assertEquals(10, storageService.uploadSize(tempKey, 2));
+        StoredContent stored = storageService.storePermanentFromUpload(tempKey, 2, "assembled.bin");
 
-        assertArrayEquals("helloworld".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(assembled));
+        Path permanent = storageService.resolvePermanentPath("assembled.bin");
+        assertArrayEquals("helloworld".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(permanent));
+        assertEquals(10, stored.sizeBytes());
+        assertEquals(sha256("helloworld"), stored.checksum());
+        assertFalse(Files.exists(permanent.resolveSibling("assembled.bin.part")));
+    }
+
+    @Test
+    void storePermanentFromUpload_movesSingleFileUpload() throws Exception {
+        String tempKey = storageService.createTempKey();
+        storageService.ensureTempDirectory(tempKey);
+        storageService.writeTempFile(tempKey, new ByteArrayInputStream("single".getBytes(StandardCharsets.UTF_8)));
+
+        StoredContent stored = storageService.storePermanentFromUpload(tempKey, 1, "single.bin");
+
+        assertArrayEquals("single".getBytes(StandardCharsets.UTF_8),
+                Files.readAllBytes(storageService.resolvePermanentPath("single.bin")));
+        assertEquals(sha256("single"), stored.checksum());
+    }
+
+    @Test
+    void storePermanentFromUpload_rejectsMissingChunkAndExistingTarget() {
+        String tempKey = storageService.createTempKey();
+        storageService.writeChunk(tempKey, 0, new ByteArrayInputStream("hello".getBytes(StandardCharsets.UTF_8)));
+
+        assertThrows(RuntimeException.class, () -> storageService.storePermanentFromUpload(tempKey, 2, "missing.bin"));
+        assertFalse(Files.exists(storageService.resolvePermanentPath("missing.bin")));
+
+        storageService.storePermanent(new ByteArrayInputStream("taken".getBytes(StandardCharsets.UTF_8)), "taken.bin");
+        storageService.writeChunk(tempKey, 1, new ByteArrayInputStream("world".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(RuntimeException.class, () -> storageService.storePermanentFromUpload(tempKey, 2, "taken.bin"));
+        assertThrows(IllegalArgumentException.class, () -> storageService.storePermanentFromUpload(tempKey, 2, "../escape.bin"));
+    }
+
+    @Test
+    void writeChunk_streamsLargeInputAndHashesInOnePass() throws Exception {
+        String tempKey = storageService.createTempKey();
+        long size = 12L * 1024 * 1024 + 17;
+        MessageDigest expected = MessageDigest.getInstance("SHA-256");
+
+        StoredContent stored = storageService.writeChunk(tempKey, 0, new PatternInputStream(size, expected));
+
+        assertEquals(size, stored.sizeBytes());
+        assertEquals(size, Files.size(storageService.resolveChunkPath(tempKey, 0)));
+        assertEquals(HexFormat.of().formatHex(expected.digest()), stored.checksum());
+    }
+
+    @Test
+    void writeTempFile_removesPartialFileWhenStreamFails() {
+        String tempKey = storageService.createTempKey();
+        storageService.ensureTempDirectory(tempKey);
+        // Fails for good once 10,000 bytes are out, on both read paths: the default bulk read would swallow
+        // an exception thrown after its first byte and keep the stream going.
+        InputStream failing = new InputStream() {
+            private int remaining = 10_000;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining <= 0) {
+                    throw new IOException("connection reset");
+                }
+                remaining--;
+                return 'x';
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (remaining <= 0) {
+                    throw new IOException("connection reset");
+                }
+                int count = Math.min(length, remaining);
+                Arrays.fill(buffer, offset, offset + count, (byte) 'x');
+                remaining -= count;
+                return count;
+            }
+        };
+
+        assertThrows(RuntimeException.class, () -> storageService.writeTempFile(tempKey, failing));
+
+        assertFalse(Files.exists(storageService.resolveTempPath(tempKey).resolve("upload.bin")));
     }
 
     @Test
@@ -131,4 +217,41 @@ class AttachmentStorageServiceTest {
     void loadThumbnailAsResource_missingFileThrows() {
         assertThrows(RuntimeException.class, () -> storageService.loadThumbnailAsResource("missing-thumb.jpg"));
     }
+
+    private static String sha256(String value) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Generates bytes on the fly so the test itself never holds the whole payload, feeding them to a digest.
+     */
+    private static final class PatternInputStream extends InputStream {
+        private final MessageDigest digest;
+        private long remaining;
+
+        private PatternInputStream(long size, MessageDigest digest) {
+            this.remaining = size;
+            this.digest = digest;
+        }
+
+        @Override
+        public int read() {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (remaining == 0) {
+                return -1;
+            }
+            int count = (int) Math.min(length, remaining);
+            for (int i = 0; i < count; i++) {
+                buffer[offset + i] = (byte) ((remaining - i) % 251);
+            }
+            digest.update(buffer, offset, count);
+            remaining -= count;
+            return count;
+        }
+    }
 }
@@ -1,8 +1,6 @@
 package com.instagramclone.backend.storage;
 
 import com.instagramclone.backend.message.VirusScanStatus;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -11,27 +9,37 @@ import java.net.Socket;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
-import org.springframework.test.util.ReflectionTestUtils;
 
-import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class ClamAvVirusScanServiceTest {
 
     @TempDir
     Path tempDir;
 
+    private FakeClamd clamd;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (clamd != null) {
+            clamd.close();
+        }
+    }
+
     @Test
     void scanDisabledReturnsSkipped() throws Exception {
         Path file = Files.writeString(tempDir.resolve("sample.txt"), "hello");
-        ClamAvVirusScanService service = new ClamAvVirusScanService(false, "localhost", 3310, 1, true);
+        ClamAvVirusScanService service = new ClamAvVirusScanService(false, "localhost", 3310, 1, true, 2);
 
         VirusScanResult result = service.scan(file);
 
@@ -41,7 +49,7 @@ class ClamAvVirusScanServiceTest {
     @Test
     void scanFailureReturnsFailedWhenFailClosed() throws Exception {
         Path file = Files.writeString(tempDir.resolve("sample.txt"), "hello");
-        ClamAvVirusScanService service = new ClamAvVirusScanService(true, "invalid-host", 3310, 1, true);
+        ClamAvVirusScanService service = new ClamAvVirusScanService(true, "invalid-host", 3310, 1, true, 2);
 
         VirusScanResult result = service.scan(file);
 
@@ -51,7 +59,7 @@ class ClamAvVirusScanServiceTest {
     @Test
     void scanFailureReturnsSkippedWhenFailOpen() throws Exception {
         Path file = Files.writeString(tempDir.resolve("sample.txt"), "hello");
-        ClamAvVirusScanService service = new ClamAvVirusScanService(true, "invalid-host", 3310, 1, false);
+        ClamAvVirusScanService service = new ClamAvVirusScanService(true, "invalid-host", 3310, 1, false, 2);
 
         VirusScanResult result = service.scan(file);
 
@@ -61,111 +69,169 @@ class ClamAvVirusScanServiceTest {
     @Test
     void scanReturnsCleanWhenServerRespondsOk() throws Exception {
         Path file = Files.writeString(tempDir.resolve("clean.txt"), "clean");
+        clamd = new FakeClamd(content -> "stream: OK");
 
-        try (ServerSocket server = new ServerSocket(0)) {
-            int port = server.getLocalPort();
-            ExecutorService executor = Executors.newSingleThreadExecutor();
-            Future<?> serverTask = executor.submit(() -> handleStream(server, "stream: OK\0"));
-
-            ClamAvVirusScanService service = new ClamAvVirusScanService(true, "localhost", port, 2, true);
-            VirusScanResult result = service.scan(file);
+        VirusScanResult result = clamd.client().scan(file);
 
-            assertEquals(VirusScanStatus.CLEAN, result.status());
-
-            serverTask.get(2, TimeUnit.SECONDS);
-            executor.shutdownNow();
-        }
+        assertEquals(VirusScanStatus.CLEAN, result.status());
+        assertEquals(List.of("clean"), clamd.scannedContents());
     }
 
     @Test
     void scanReturnsInfectedWhenServerRespondsFound() throws Exception {
         Path file = Files.writeString(tempDir.resolve("infected.txt"), "infected");
+        clamd = new FakeClamd(content -> "stream: Eicar-Test-Signature FOUND");
 
-        try (ServerSocket server = new ServerSocket(0)) {
-            int port = server.getLocalPort();
-            ExecutorService executor = Executors.newSingleThreadExecutor();
-            Future<?> serverTask = executor.submit(() -> handleStream(server, "stream: Eicar FOUND\0"));
-
-            ClamAvVirusScanService service = new ClamAvVirusScanService(true, "localhost", port, 2, true);
-            VirusScanResult result = service.scan(file);
-
-            assertEquals(VirusScanStatus.INFECTED, result.status());
+        VirusScanResult result = clamd.client().scan(file);
 
-            serverTask.get(2, TimeUnit.SECONDS);
-            executor.shutdownNow();
-        }
+        assertEquals(VirusScanStatus.INFECTED, result.status());
     }
 
     @Test
     void scanReturnsFailedForUnexpectedResponse() throws Exception {
         Path file = Files.writeString(tempDir.resolve("unknown.txt"), "unknown");
+        clamd = new FakeClamd(content -> "INSTREAM size limit exceeded. ERROR");
 
-        try (ServerSocket server = new ServerSocket(0)) {
-            int port = server.getLocalPort();
-            ExecutorService executor = Executors.newSingleThreadExecutor();
-            Future<?> serverTask = executor.submit(() -> handleStream(server, "stream: ERROR\0"));
-
-            ClamAvVirusScanService service = new ClamAvVirusScanService(true, "localhost", port, 2, true);
-            VirusScanResult result = service.scan(file);
+        VirusScanResult result = clamd.client().scan(file);
 
-            assertEquals(VirusScanStatus.FAILED, result.status());
+        assertEquals(VirusScanStatus.FAILED, result.status());
+    }
 
-            serverTask.get(2, TimeUnit.SECONDS);
-            executor.shutdownNow();
+    @Test
+    void scanReusesSessionAcrossFiles() throws Exception {
+        byte[] large = new byte[3 * 256 * 1024 + 100];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) (i % 127);
         }
+        Path big = Files.write(tempDir.resolve("big.bin"), large);
+        Path small = Files.writeString(tempDir.resolve("small.txt"), "small");
+        clamd = new FakeClamd(content -> "stream: OK");
+        ClamAvVirusScanService service = clamd.client();
+
+        assertEquals(VirusScanStatus.CLEAN, service.scan(big).status());
+        assertEquals(VirusScanStatus.CLEAN, service.scan(small).status());
+        assertEquals(VirusScanStatus.CLEAN, service.scan(small).status());
+
+        assertEquals(1, clamd.connections());
+        assertEquals(new String(large, StandardCharsets.ISO_8859_1), clamd.scannedContents().get(0));
+        assertEquals(1, service.idleSessionCount());
     }
 
     @Test
-    void readResponseAndWriteLengthHelpers() throws Exception {
-        ClamAvVirusScanService service = new ClamAvVirusScanService(true, "localhost", 3310, 1, true);
-        ByteArrayInputStream input = new ByteArrayInputStream("stream: OK\0".getBytes(StandardCharsets.UTF_8));
+    void scanReconnectsWhenPooledSessionWasClosedByServer() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("clean.txt"), "clean");
+        clamd = new FakeClamd(content -> "stream: OK");
+        clamd.closeSessionsAfterOneScan = true;
+        ClamAvVirusScanService service = clamd.client();
 
-        String response = ReflectionTestUtils.invokeMethod(service, "readResponse", input);
+        assertEquals(VirusScanStatus.CLEAN, service.scan(file).status());
+        assertEquals(VirusScanStatus.CLEAN, service.scan(file).status());
 
-        assertTrue(response.contains("OK"));
+        assertEquals(2, clamd.connections());
+    }
 
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        ReflectionTestUtils.invokeMethod(service, "writeLength", out, 5);
-        assertArrayEquals(new byte[] {0, 0, 0, 5}, out.toByteArray());
+    @Test
+    void parseReplyChecksRequestId() throws Exception {
+        assertEquals("stream: OK", ClamAvVirusScanService.parseReply("3: stream: OK", 3));
+        assertThrows(IOException.class, () -> ClamAvVirusScanService.parseReply("2: stream: OK", 3));
+        assertThrows(IOException.class, () -> ClamAvVirusScanService.parseReply("stream OK", 1));
     }
 
-    private void handleStream(ServerSocket server, String response) {
-        try (Socket socket = server.accept()) {
-            socket.setSoTimeout(2000);
-            InputStream in = socket.getInputStream();
-            OutputStream out = socket.getOutputStream();
-            readUntilNull(in);
-            while (true) {
-                int length = readLength(in);
-                if (length <= 0) {
-                    break;
+    /**
+     * Speaks enough of the clamd protocol for the client: zIDSESSION, numbered zINSTREAM replies and zEND.
+     */
+    private static final class FakeClamd implements AutoCloseable {
+        private final ServerSocket server = new ServerSocket(0);
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        private final Function<String, String> verdict;
+        private final AtomicInteger connections = new AtomicInteger();
+        private final List<String> scannedContents = new CopyOnWriteArrayList<>();
+        private volatile boolean closeSessionsAfterOneScan;
+
+        private FakeClamd(Function<String, String> verdict) throws IOException {
+            this.verdict = verdict;
+            executor.submit(this::acceptLoop);
+        }
+
+        ClamAvVirusScanService client() {
+            return new ClamAvVirusScanService(true, "localhost", server.getLocalPort(), 2, true, 2);
+        }
+
+        int connections() {
+            return connections.get();
+        }
+
+        List<String> scannedContents() {
+            return scannedContents;
+        }
+
+        private void acceptLoop() {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    connections.incrementAndGet();
+                    executor.submit(() -> serve(socket));
+                } catch (IOException ex) {
+                    return;
                 }
-                in.readNBytes(length);
             }
-            out.write(response.getBytes(StandardCharsets.UTF_8));
-            out.flush();
-        } catch (IOException ignored) {
-            // ignore
         }
-    }
 
-    private void readUntilNull(InputStream in) throws IOException {
-        int value;
-        while ((value = in.read()) != -1) {
-            if (value == 0) {
-                return;
+        private void serve(Socket socket) {
+            try (socket) {
+                InputStream in = socket.getInputStream();
+                OutputStream out = socket.getOutputStream();
+                if (!"zIDSESSION".equals(readCommand(in))) {
+                    return;
+                }
+                int requestId = 0;
+                while (true) {
+                    String command = readCommand(in);
+                    if (!"zINSTREAM".equals(command)) {
+                        return;
+                    }
+                    requestId++;
+                    StringBuilder content = new StringBuilder();
+                    int length;
+                    while ((length = readLength(in)) > 0) {
+                        content.append(new String(in.readNBytes(length), StandardCharsets.ISO_8859_1));
+                    }
+                    scannedContents.add(content.toString());
+                    out.write((requestId + ": " + verdict.apply(content.toString()) + "\0").getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    if (closeSessionsAfterOneScan) {
+                        return;
+                    }
+                }
+            } catch (IOException ignored) {
+                // client went away
             }
         }
-    }
 
-    private int readLength(InputStream in) throws IOException {
-        byte[] data = in.readNBytes(4);
-        if (data.length < 4) {
-            return -1;
+        private String readCommand(InputStream in) throws IOException {
+            StringBuilder command = new StringBuilder();
+            int value;
+            while ((value = in.read()) > 0) {
+                command.append((char) value);
+            }
+            return value == -1 ? null : command.toString();
+        }
+
+        private int readLength(InputStream in) throws IOException {
+            byte[] data = in.readNBytes(4);
+            if (data.length < 4) {
+                return -1;
+            }
+            return ((data[0] & 0xFF) << 24)
+                    | ((data[1] & 0xFF) << 16)
+                    | ((data[2] & 0xFF) << 8)
+                    | (data[3] & 0xFF);
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+            executor.shutdownNow();
         }
-        return ((data[0] & 0xFF) << 24)
-                | ((data[1] & 0xFF) << 16)
-                | ((data[2] & 0xFF) << 8)
-                | (data[3] & 0xFF);
     }
 }
@@ -0,0 +1,113 @@
+package com.instagramclone.backend.storage;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageDerivativeServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ImageDerivativeService derivativeService = new ImageDerivativeService(new int[] {1080, 320, 640}, 0.8, Runnable::run);
+
+    @Test
+    void generate_writesOnlyWidthsNarrowerThanOriginal() throws IOException {
+        Path original = writeImage("photo.jpg", 700, 500, BufferedImage.TYPE_INT_RGB, "jpg");
+
+        List<Integer> widths = derivativeService.generate(original);
+
+        assertEquals(List.of(320, 640), widths);
+        Path variant = ImageDerivatives.directoryFor(original).resolve("320.jpg");
+        BufferedImage resized = ImageIO.read(variant.toFile());
+        assertEquals(320, resized.getWidth());
+        assertEquals(229, resized.getHeight(), 1);
+        assertFalse(Files.exists(ImageDerivatives.directoryFor(original).resolve("1080.jpg")));
+    }
+
+    @Test
+    void generate_keepsTransparentImagesAsPng() throws IOException {
+        Path original = writeImage("logo.png", 400, 400, BufferedImage.TYPE_INT_ARGB, "png");
+
+        derivativeService.generate(original);
+
+        assertTrue(Files.exists(ImageDerivatives.directoryFor(original).resolve("320.png")));
+    }
+
+    @Test
+    void generate_ignoresFilesThatAreNotImages() throws IOException {
+        Path original = tempDir.resolve("notes.txt");
+        Files.writeString(original, "not an image");
+
+        assertEquals(List.of(), derivativeService.generate(original));
+        assertFalse(Files.exists(ImageDerivatives.directoryFor(original)));
+    }
+
+    @Test
+    void generateInBackground_skipsUploadsTheQueueCannotTake() throws IOException {
+        ImageDerivativeService saturated = new ImageDerivativeService(new int[] {320}, 0.8, task -> {
+            throw new RejectedExecutionException("queue full");
+        });
+        Path original = writeImage("busy.jpg", 700, 500, BufferedImage.TYPE_INT_RGB, "jpg");
+
+        saturated.generateInBackground(original);
+
+        assertFalse(Files.exists(ImageDerivatives.directoryFor(original)));
+    }
+
+    @Test
+    void generateInBackground_writesVariantsOnTheExecutor() throws IOException {
+        Path original = writeImage("queued.jpg", 700, 500, BufferedImage.TYPE_INT_RGB, "jpg");
+
+        derivativeService.generateInBackground(original);
+
+        assertTrue(Files.exists(ImageDerivatives.directoryFor(original).resolve("640.jpg")));
+    }
+
+    @Test
+    void select_picksNarrowestVariantWideEnough() throws IOException {
+        Path original = writeImage("photo.jpg", 1200, 800, BufferedImage.TYPE_INT_RGB, "jpg");
+        derivativeService.generate(original);
+        Path directory = ImageDerivatives.directoryFor(original);
+
+        assertEquals(directory.resolve("320.jpg"), ImageDerivatives.select(original, 100));
+        assertEquals(directory.resolve("640.jpg"), ImageDerivatives.select(original, 321));
+        assertEquals(directory.resolve("1080.jpg"), ImageDerivatives.select(original, 1080));
+        assertEquals(original, ImageDerivatives.select(original, 1081));
+        assertEquals(original, ImageDerivatives.select(original, null));
+    }
+
+    @Test
+    void select_fallsBackToOriginalWithoutVariants() throws IOException {
+        Path original = writeImage("fresh.jpg", 900, 600, BufferedImage.TYPE_INT_RGB, "jpg");
+
+        assertEquals(original, ImageDerivatives.select(original, 320));
+    }
+
+    @Test
+    void delete_removesAllVariants() throws IOException {
+        Path original = writeImage("photo.jpg", 700, 500, BufferedImage.TYPE_INT_RGB, "jpg");
+        derivativeService.generate(original);
+
+        ImageDerivatives.delete(original);
+
+        assertFalse(Files.exists(ImageDerivatives.directoryFor(original)));
+        assertTrue(Files.exists(original));
+    }
+
+    private Path writeImage(String name, int width, int height, int type, String format) throws IOException {
+        Path path = tempDir.resolve(name);
+        ImageIO.write(new BufferedImage(width, height, type), format, path.toFile());
+        return path;
+    }
+}
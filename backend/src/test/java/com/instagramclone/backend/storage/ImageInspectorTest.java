@@ -0,0 +1,89 @@
+package com.instagramclone.backend.storage;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ImageInspectorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void inspect_readsDimensionsFromHeader() throws IOException {
+        Path file = tempDir.resolve("photo.png");
+        ImageIO.write(new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+
+        assertEquals(new ImageInspector.ImageInfo(640, 480), ImageInspector.inspect(file));
+    }
+
+    @Test
+    void inspect_returnsNullForNonImages() throws IOException {
+        Path file = tempDir.resolve("notes.txt");
+        Files.writeString(file, "not an image");
+
+        assertNull(ImageInspector.inspect(file));
+        assertNull(ImageInspector.decode(file, 100));
+    }
+
+    @Test
+    void decode_subsamplesLargeImages() throws IOException {
+        Path file = tempDir.resolve("wide.png");
+        ImageIO.write(new BufferedImage(4000, 300, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+
+        BufferedImage image = ImageInspector.decode(file, 500);
+
+        assertEquals(1000, image.getWidth());
+        assertEquals(75, image.getHeight());
+    }
+
+    @Test
+    void subsampling_keepsTwiceTheTargetWidth() {
+        assertEquals(1, ImageInspector.subsampling(1000, 640));
+        assertEquals(3, ImageInspector.subsampling(7728, 1080));
+        assertEquals(1, ImageInspector.subsampling(7728, 0));
+    }
+
+    @Test
+    void inspectAndDecode_applyExifOrientation() throws IOException {
+        Path file = tempDir.resolve("rotated.jpg");
+        Files.write(file, jpegWithOrientation(40, 20, 6));
+
+        assertEquals(new ImageInspector.ImageInfo(20, 40), ImageInspector.inspect(file));
+        BufferedImage image = ImageInspector.decode(file, 10);
+        assertEquals(20, image.getWidth());
+        assertEquals(40, image.getHeight());
+    }
+
+    private static byte[] jpegWithOrientation(int width, int height, int orientation) throws IOException {
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "jpg", jpeg);
+        byte[] encoded = jpeg.toByteArray();
+        byte[] exif = {
+                'E', 'x', 'i', 'f', 0, 0,
+                'M', 'M', 0, 42, 0, 0, 0, 8,
+                0, 1,
+                0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0,
+                0, 0, 0, 0
+        };
+        // APP1 goes after the JFIF APP0 segment, which must directly follow SOI.
+        int insertAt = 4 + ((encoded[4] & 0xFF) << 8 | (encoded[5] & 0xFF));
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        result.write(encoded, 0, insertAt);
+        result.write(0xFF);
+        result.write(0xE1);
+        result.write((exif.length + 2) >> 8);
+        result.write((exif.length + 2) & 0xFF);
+        result.write(exif);
+        result.write(encoded, insertAt, encoded.length - insertAt);
+        return result.toByteArray();
+    }
+}
@@ -0,0 +1,175 @@
+package com.instagramclone.backend.timeline;
+
+import com.instagramclone.backend.pagination.CursorPage;
+import com.instagramclone.backend.pagination.KeysetCursor;
+import com.instagramclone.backend.post.Post;
+import com.instagramclone.backend.post.PostRepository;
+import com.instagramclone.backend.user.User;
+import com.instagramclone.backend.user.UserRepository;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HomeTimelineServiceTest {
+
+    @Mock
+    private TimelineStore timelineStore;
+
+    @Mock
+    private PostRepository postRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    private TimelineProperties properties;
+
+    private HomeTimelineService timelineService;
+
+    @BeforeEach
+    void setUp() {
+        properties = new TimelineProperties();
+        properties.setFanOutFollowerThreshold(2);
+        properties.setMaxSize(100);
+        timelineService = new HomeTimelineService(timelineStore, postRepository, userRepository, properties);
+    }
+
+    @Test
+    void fanOutPost_pushesToAuthorAndFollowers() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 5, 1, 12, 0);
+        when(userRepository.countFollowers(1L)).thenReturn(2L);
+        when(userRepository.findFollowerIds(1L)).thenReturn(List.of(2L, 3L));
+
+        timelineService.fanOutPost(10L, 1L, createdAt);
+
+        verify(timelineStore).setFanOutOnRead(1L, false);
+        verify(timelineStore).push(List.of(1L, 2L, 3L), 10L, score(createdAt));
+    }
+
+    @Test
+    void fanOutPost_switchesToFanOutOnReadAboveThreshold() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 5, 1, 12, 0);
+        when(userRepository.countFollowers(1L)).thenReturn(3L);
+
+        timelineService.fanOutPost(10L, 1L, createdAt);
+
+        verify(timelineStore).setFanOutOnRead(1L, true);
+        verify(timelineStore).push(List.of(1L), 10L, score(createdAt));
+        verify(userRepository, never()).findFollowerIds(any());
+    }
+
+    @Test
+    void readFeed_requestsRebuildForColdTimeline() {
+        when(timelineStore.isReady(5L)).thenReturn(false);
+
+        Optional<CursorPage<Post>> page = timelineService.readFeed(5L, null, 10);
+
+        assertTrue(page.isEmpty());
+        verify(timelineStore).requestRebuild(5L);
+    }
+
+    @Test
+    void readFeed_mergesFanOutOnReadAuthorsAndPrunesDeletedPosts() {
+        Post pushed = buildPost(20L, LocalDateTime.of(2024, 5, 2, 10, 0));
+        Post pulled = buildPost(30L, LocalDateTime.of(2024, 5, 3, 10, 0));
+        when(timelineStore.isReady(5L)).thenReturn(true);
+        when(timelineStore.read(5L, Double.POSITIVE_INFINITY, 12)).thenReturn(List.of(20L, 15L));
+        when(postRepository.findWithUserByIdIn(List.of(20L, 15L))).thenReturn(List.of(pushed));
+        when(timelineStore.fanOutOnReadAuthors()).thenReturn(Set.of(9L));
+        when(userRepository.findFollowingIdsAmong(5L, Set.of(9L))).thenReturn(List.of(9L));
+        when(postRepository.findAuthorsPage(List.of(9L), PageRequest.of(0, 2))).thenReturn(List.of(pulled));
+
+        CursorPage<Post> page = timelineService.readFeed(5L, null, 1).orElseThrow();
+
+        assertEquals(List.of(pulled), page.items());
+        KeysetCursor next = KeysetCursor.decode(page.nextCursor());
+        assertEquals(30L, next.id());
+        verify(timelineStore).remove(5L, List.of(15L));
+        verify(timelineStore).touch(5L);
+    }
+
+    @Test
+    void readFeed_filtersEntriesAtOrAfterCursor() {
+        LocalDateTime boundary = LocalDateTime.of(2024, 5, 2, 10, 0);
+        Post sameTimestampNewer = buildPost(21L, boundary);
+        Post older = buildPost(19L, boundary);
+        when(timelineStore.isReady(5L)).thenReturn(true);
+        when(timelineStore.read(5L, score(boundary), 13)).thenReturn(List.of(21L, 19L));
+        when(postRepository.findWithUserByIdIn(List.of(21L, 19L))).thenReturn(List.of(sameTimestampNewer, older));
+
+        CursorPage<Post> page = timelineService.readFeed(5L, new KeysetCursor(boundary, 20L), 2).orElseThrow();
+
+        assertEquals(List.of(older), page.items());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void readFeed_fallsBackWhenTrimmedTimelineIsExhausted() {
+        when(timelineStore.isReady(5L)).thenReturn(true);
+        when(timelineStore.read(any(), anyDouble(), anyInt())).thenReturn(List.of(1L));
+        when(timelineStore.size(5L)).thenReturn(100L);
+
+        assertTrue(timelineService.readFeed(5L, null, 10).isEmpty());
+    }
+
+    @Test
+    void readFeed_fallsBackWhenRedisIsUnavailable() {
+        when(timelineStore.isReady(5L)).thenThrow(new RedisConnectionFailureException("down"));
+
+        assertTrue(timelineService.readFeed(5L, null, 10).isEmpty());
+    }
+
+    @Test
+    void readFeed_skipsWhenDisabled() {
+        properties.setEnabled(false);
+
+        assertFalse(timelineService.readFeed(5L, null, 10).isPresent());
+        verify(timelineStore, never()).isReady(any());
+    }
+
+    @Test
+    void rebuildPendingTimelines_replacesTimelineFromDatabase() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 5, 1, 12, 0);
+        Post post = buildPost(8L, createdAt);
+        when(timelineStore.pollRebuildRequests(50)).thenReturn(List.of(5L));
+        when(postRepository.findFeedPage(5L, PageRequest.of(0, 100))).thenReturn(List.of(post));
+
+        timelineService.rebuildPendingTimelines();
+
+        verify(timelineStore).replace(5L, Map.of(8L, score(createdAt)));
+    }
+
+    private Post buildPost(Long id, LocalDateTime createdAt) {
+        User owner = new User();
+        owner.setUsername("owner");
+        Post post = new Post("image", "caption", owner);
+        post.setId(id);
+        post.setCreatedAt(createdAt);
+        return post;
+    }
+
+    private double score(LocalDateTime createdAt) {
+        return createdAt.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
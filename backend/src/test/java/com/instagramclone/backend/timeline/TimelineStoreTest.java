@@ -0,0 +1,86 @@
+package com.instagramclone.backend.timeline;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TimelineStoreTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    @Mock
+    private SetOperations<String, String> setOperations;
+
+    private TimelineStore timelineStore;
+
+    @BeforeEach
+    void setUp() {
+        TimelineProperties properties = new TimelineProperties();
+        properties.setMaxSize(3);
+        properties.setTtlHours(1);
+        timelineStore = new TimelineStore(redisTemplate, properties);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void push_addsTrimsAndExpiresEachTimelineInPipeline() {
+        StringRedisConnection connection = mock(StringRedisConnection.class);
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            RedisCallback<Object> callback = invocation.getArgument(0);
+            callback.doInRedis(connection);
+            return List.of();
+        });
+
+        timelineStore.push(List.of(1L, 2L), 10L, 1000d);
+
+        verify(connection).zAdd("timeline:home:1", 1000d, "10");
+        verify(connection).zRemRange("timeline:home:1", 0, -4);
+        verify(connection).expire("timeline:home:2", 3600L);
+    }
+
+    @Test
+    void read_parsesMembersInScoreOrder() {
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(zSetOperations.reverseRangeByScore("timeline:home:1", Double.NEGATIVE_INFINITY, 50d, 0, 5))
+                .thenReturn(new LinkedHashSet<>(List.of("9", "4")));
+
+        assertEquals(List.of(9L, 4L), timelineStore.read(1L, 50d, 5));
+    }
+
+    @Test
+    void pollRebuildRequests_popsQueuedViewers() {
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.pop("timeline:rebuild-queue", 2)).thenReturn(List.of("3", "4"));
+
+        assertEquals(List.of(3L, 4L), timelineStore.pollRebuildRequests(2));
+    }
+
+    @Test
+    void fanOutOnReadAuthors_readsMembers() {
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.members("timeline:fan-out-on-read-authors")).thenReturn(Set.of("7"));
+
+        assertEquals(Set.of(7L), timelineStore.fanOutOnReadAuthors());
+    }
+}
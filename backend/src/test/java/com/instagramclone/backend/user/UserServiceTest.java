@@ -1,6 +1,7 @@
 package com.instagramclone.backend.user;
 
 import com.instagramclone.backend.notification.NotificationService;
+import com.instagramclone.backend.timeline.HomeTimelineService;
 import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
@@ -33,11 +34,14 @@ class UserServiceTest {
     @Mock
     private NotificationService notificationService;
 
+    @Mock
+    private HomeTimelineService homeTimelineService;
+
     private UserService userService;
 
     @BeforeEach
     void setUp() {
-        userService = new UserService(userRepository, passwordEncoder, notificationService);
+        userService = new UserService(userRepository, passwordEncoder, notificationService, homeTimelineService);
     }
 
     @Test
@@ -78,6 +82,7 @@ class UserServiceTest {
         verify(userRepository).save(follower);
         verify(userRepository).save(following);
         verify(notificationService).createFollowNotification(follower, following);
+        verify(homeTimelineService).invalidate(follower.getId());
     }
 
     @Test